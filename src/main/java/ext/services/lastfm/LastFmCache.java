@@ -27,15 +27,12 @@ import ext.services.xml.XMLUtils;
 import java.awt.Image;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.ImageIcon;
 
-import de.umass.lastfm.scrobble.SubmissionData;
-
 import org.apache.commons.io.FileUtils;
 import org.jajuk.services.core.SessionService;
 import org.jajuk.util.Const;
@@ -46,33 +43,65 @@ import org.jajuk.util.log.Log;
 
 /**
  * The Class LastFmCache.
+ * <p>
+ * Infos (albums, artists, album lists, similar artists and wikis) are stored in
+ * a single indexed store with the most recently used ones kept in memory.
+ * Images are stored as files. Pending submissions are stored in a durable
+ * queue. All instances share the same stores, and lookups don't lock each
+ * other.
+ * </p>
  */
 public class LastFmCache {
+  /** Max number of infos kept in memory. */
+  private static final int MAX_MEMORY_ENTRIES = 200;
+  /** Prefix of album infos keys. */
+  private static final String KEY_ALBUM_INFO = "album_info/";
+  /** Prefix of artist infos keys. */
+  private static final String KEY_ARTIST_INFO = "artist_info/";
+  /** Prefix of album lists keys. */
+  private static final String KEY_ALBUM_LIST = "album_list/";
+  /** Prefix of similar artists keys. */
+  private static final String KEY_ARTIST_SIMILAR = "artist_similar/";
+  /** Prefix of artist wikis keys. */
+  private static final String KEY_ARTIST_WIKI = "artist_wiki/";
+  /** Infos store. */
+  private static LastFmCacheStore store = new LastFmCacheStore(
+      SessionService.getConfFileByPath(Const.FILE_CACHE + '/' + Const.LASTFM_CACHE + '/'
+          + Const.LAST_FM_INFO_STORE));
+  /** Key -> most recently used infos, access ordered. */
+  private static Map<String, Object> memory = new LinkedHashMap<String, Object>(
+      MAX_MEMORY_ENTRIES * 2, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+      return size() > MAX_MEMORY_ENTRIES;
+    }
+  };
+  /** Pending submissions queue, null if not yet initialized. */
+  private static ScrobbleQueue queue;
   /** Album Cover Cache dir. */
   private static File albumCoverCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
       + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ALBUM_COVER_CACHE_DIR);
-  /** Album Cover Cache dir. */
-  private static File albumInfoCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ALBUM_INFO_CACHE_DIR);
-  private static File artistInfoCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_INFO_CACHE_DIR);
   /** Artist thumbs cache dir. */
   private static File artistThumbCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
       + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_THUMB_CACHE_DIR);
   /** Artist image cache dir. */
   private static File artistImageCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
       + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_IMAGE_CACHE_DIR);
-  /** Artist image cache dir. */
-  private static File artistSimilarCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE
-      + '/' + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_SIMILAR_CACHE_DIR);
-  /** Album list cache dir. */
-  private static File albumListCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ALBUM_LIST_CACHE_DIR);
-  /** Artist info cache dir. */
-  private static File artistWikiCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
-      + Const.LASTFM_CACHE + '/' + Const.LAST_FM_ARTIST_WIKI_CACHE_DIR);
   private static File submissionCacheDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
       + Const.LASTFM_CACHE + '/' + Const.LAST_FM_SUBMISSION_CACHE_DIR);
+  /** Infos cache dirs of previous releases, one file per info. */
+  private static final String[] LEGACY_INFO_DIRS = { Const.LAST_FM_ALBUM_INFO_CACHE_DIR,
+      Const.LAST_FM_ARTIST_INFO_CACHE_DIR, Const.LAST_FM_ALBUM_LIST_CACHE_DIR,
+      Const.LAST_FM_ARTIST_SIMILAR_CACHE_DIR, Const.LAST_FM_ARTIST_WIKI_CACHE_DIR };
+  static {
+    // The infos are now in the store, drop the ones stored by previous releases
+    if (!SessionService.getConfFileByPath(
+        Const.FILE_CACHE + '/' + Const.LASTFM_CACHE + '/' + Const.LAST_FM_INFO_STORE).exists()) {
+      deleteLegacyInfoDirs();
+    }
+  }
 
   /**
    * Clears the cache.
@@ -81,54 +110,30 @@ public class LastFmCache {
    */
   public synchronized boolean clearCache() {
     boolean exception = false;
+    synchronized (memory) {
+      memory.clear();
+    }
+    store.clear();
+    getQueue().clear();
+    deleteLegacyInfoDirs();
     try {
       FileUtils.cleanDirectory(getAlbumCoverCacheDir());
     } catch (IOException e) {
       Log.info("Could not delete all files from album cover cache");
       exception = true;
     }
-    try {
-      FileUtils.cleanDirectory(getAlbumInfoCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from album info cache");
-      exception = true;
-    }
     try {
       FileUtils.cleanDirectory(getArtistImageCacheDir());
     } catch (IOException e) {
       Log.info("Could not delete all files from artist image cache");
       exception = true;
     }
-    try {
-      FileUtils.cleanDirectory(getAlbumListCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from album list cache");
-      exception = true;
-    }
-    try {
-      FileUtils.cleanDirectory(getArtistSimilarCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from similar artist cache");
-      exception = true;
-    }
     try {
       FileUtils.cleanDirectory(getArtistThumbsCacheDir());
     } catch (IOException e) {
       Log.info("Could not delete all files from artist thumbs cache");
       exception = true;
     }
-    try {
-      FileUtils.cleanDirectory(getArtistWikiCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from artist wiki cache");
-      exception = true;
-    }
-    try {
-      FileUtils.cleanDirectory(getArtistInfoCacheDir());
-    } catch (IOException e) {
-      Log.info("Could not delete all files from artist info cache");
-      exception = true;
-    }
     try {
       FileUtils.cleanDirectory(getSubmissionDataDir());
     } catch (IOException e) {
@@ -138,6 +143,23 @@ public class LastFmCache {
     return exception;
   }
 
+  /**
+   * Delete the infos cache dirs of previous releases.
+   */
+  private static void deleteLegacyInfoDirs() {
+    for (String dir : LEGACY_INFO_DIRS) {
+      File legacyDir = SessionService.getConfFileByPath(Const.FILE_CACHE + '/'
+          + Const.LASTFM_CACHE + '/' + dir);
+      if (legacyDir.exists()) {
+        try {
+          FileUtils.deleteDirectory(legacyDir);
+        } catch (IOException e) {
+          Log.info("Could not delete the legacy cache dir: " + legacyDir.getAbsolutePath());
+        }
+      }
+    }
+  }
+
   /**
    * Private getter for albumCoverCacheDir. If dir does not exist, it's created
    * 
@@ -152,34 +174,6 @@ public class LastFmCache {
     return albumCoverCacheDir;
   }
 
-  /**
-   * Private getter for albumInfoCacheDir. If dir does not exist, it's created
-   * 
-   * @return the album info cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getAlbumInfoCacheDir() throws IOException {
-    if (!albumInfoCacheDir.exists()) {
-      FileUtils.forceMkdir(albumInfoCacheDir);
-    }
-    return albumInfoCacheDir;
-  }
-
-  /**
-   * Private getter for artistInfoCacheDir. If dir does not exist, it's created
-   * 
-   * @return the artist info cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getArtistInfoCacheDir() throws IOException {
-    if (!artistInfoCacheDir.exists()) {
-      FileUtils.forceMkdir(artistInfoCacheDir);
-    }
-    return artistInfoCacheDir;
-  }
-
   /**
    * Private getter for artistImageCacheDir. If dir does not exist, it's created
    * 
@@ -194,35 +188,6 @@ public class LastFmCache {
     return artistImageCacheDir;
   }
 
-  /**
-   * Private getter for artistInfoCacheDir. If dir does not exist, it's created
-   * 
-   * @return the artist info cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getAlbumListCacheDir() throws IOException {
-    if (!albumListCacheDir.exists()) {
-      FileUtils.forceMkdir(albumListCacheDir);
-    }
-    return albumListCacheDir;
-  }
-
-  /**
-   * Private getter for artistSimilarCacheDir. If dir does not exist, it's
-   * created
-   * 
-   * @return the artist similar cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getArtistSimilarCacheDir() throws IOException {
-    if (!artistSimilarCacheDir.exists()) {
-      FileUtils.forceMkdir(artistSimilarCacheDir);
-    }
-    return artistSimilarCacheDir;
-  }
-
   /**
    * Private getter for artistThumbCacheDir. If dir does not exist, it's created
    * 
@@ -237,20 +202,6 @@ public class LastFmCache {
     return artistThumbCacheDir;
   }
 
-  /**
-   * Private getter for artistWikiCacheDir. If dir does not exist, it's created
-   * 
-   * @return the artist wiki cache dir
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private synchronized File getArtistWikiCacheDir() throws IOException {
-    if (!artistWikiCacheDir.exists()) {
-      FileUtils.forceMkdir(artistWikiCacheDir);
-    }
-    return artistWikiCacheDir;
-  }
-
   /**
    * Gets the submission data dir.
    * 
@@ -273,7 +224,7 @@ public class LastFmCache {
    * @return the file name for album cover
    */
   private String getFileNameForAlbumCover(AlbumInfo album) {
-    return UtilString.concat(MD5Processor.hash(album.getBigCoverURL()), ".png");
+    return UtilString.concat(MD5Processor.digest(album.getBigCoverURL()), ".png");
   }
 
   /**
@@ -294,52 +245,6 @@ public class LastFmCache {
         getFileNameForAlbumCover(album));
   }
 
-  /**
-   * Album Cover Filename.
-   *
-   * @param artist the artist
-   * @param album the album
-   * @return the file name for album info
-   */
-  private String getFileNameForAlbumInfo(String artist, String album) {
-    return UtilString.concat(MD5Processor.hash(artist), MD5Processor.hash(album), ".xml");
-  }
-
-  /**
-   * Absolute Path to Album Info Filename.
-   *
-   * @param artist the artist
-   * @param album the album
-   * @return the file name for album info at cache
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForAlbumInfoAtCache(String artist, String album) throws IOException {
-    File albumInfoCacheDirFile = getAlbumInfoCacheDir();
-    if (albumInfoCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(albumInfoCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForAlbumInfo(artist, album));
-  }
-
-  /**
-   * Absolute Path to Artist Info Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist info at cache
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForArtistInfoAtCache(String artist) throws IOException {
-    File artistInfoCacheDirFile = getArtistInfoCacheDir();
-    if (artistInfoCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(artistInfoCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistInfo(artist));
-  }
-
   /**
    * Artist Image Filename.
    * 
@@ -348,7 +253,7 @@ public class LastFmCache {
    * @return the file name for artist image
    */
   private String getFileNameForArtistImage(SimilarArtistsInfo artist) {
-    return UtilString.concat(MD5Processor.hash(artist.getArtistName()), ".png");
+    return UtilString.concat(MD5Processor.digest(artist.getArtistName()), ".png");
   }
 
   /**
@@ -369,64 +274,6 @@ public class LastFmCache {
         getFileNameForArtistImage(artist));
   }
 
-  /**
-   * Artist Info Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist info
-   */
-  private String getFileNameForArtistInfo(String artist) {
-    return UtilString.concat(MD5Processor.hash(artist), ".xml");
-  }
-
-  /**
-   * Absolute Path to Artist info Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist info at cache
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForAlbumListAtCache(String artist) throws IOException {
-    File albumListCacheDirFile = getAlbumListCacheDir();
-    if (albumListCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(albumListCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistInfo(artist));
-  }
-
-  /**
-   * Artist Similar Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist similar
-   */
-  private String getFileNameForArtistSimilar(String artist) {
-    return UtilString.concat(MD5Processor.hash(artist), ".xml");
-  }
-
-  /**
-   * Absolute Path to Artist similar Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist similar at cache
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForArtistSimilarAtCache(String artist) throws IOException {
-    File artistSimilarCacheDirFile = getArtistSimilarCacheDir();
-    if (artistSimilarCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(artistSimilarCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistSimilar(artist));
-  }
-
   /**
    * Artist Thumb Filename.
    * 
@@ -435,7 +282,7 @@ public class LastFmCache {
    * @return the file name for artist thumb
    */
   private String getFileNameForArtistThumb(ArtistInfo artist) {
-    return UtilString.concat(MD5Processor.hash(artist.getName()), ".png");
+    return UtilString.concat(MD5Processor.digest(artist.getName()), ".png");
   }
 
   /**
@@ -456,51 +303,6 @@ public class LastFmCache {
         getFileNameForArtistThumb(artist));
   }
 
-  /**
-   * Artist Info Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist wiki
-   */
-  private String getFileNameForArtistWiki(String artist) {
-    return UtilString.concat(MD5Processor.hash(artist), ".xml");
-  }
-
-  /**
-   * Absolute Path to Artist similar Filename.
-   * 
-   * @param artist the artist
-   * 
-   * @return the file name for artist wiki at cache
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForArtistWikiAtCache(String artist) throws IOException {
-    File artistWikiCacheDirFile = getArtistWikiCacheDir();
-    if (artistWikiCacheDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(artistWikiCacheDirFile.getAbsolutePath(), File.separator,
-        getFileNameForArtistWiki(artist));
-  }
-
-  /**
-   * Gets the file name for submission cache.
-   * 
-   * @return the file name for submission cache
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private String getFileNameForSubmissionCache() throws IOException {
-    File submissionDataDirFile = getSubmissionDataDir();
-    if (submissionDataDirFile == null) {
-      return null;
-    }
-    return UtilString.concat(submissionDataDirFile.getAbsolutePath(), File.separator,
-        "submissionDataCache.xml");
-  }
-
   /**
    * Retrieves an Album Cover from cache.
    * 
@@ -508,7 +310,7 @@ public class LastFmCache {
    * 
    * @return the image
    */
-  public synchronized Image retrieveAlbumCover(AlbumInfo album) {
+  public Image retrieveAlbumCover(AlbumInfo album) {
     try {
       String path = getFileNameForAlbumCoverAtCache(album);
       if (path != null && new File(path).exists()) {
@@ -527,16 +329,8 @@ public class LastFmCache {
    * @param album the album
    * @return the audio scrobbler album
    */
-  public synchronized AlbumInfo retrieveAlbumInfo(String artist, String album) {
-    try {
-      String path = getFileNameForAlbumInfoAtCache(artist, album);
-      if (path != null && new File(path).exists()) {
-        return (AlbumInfo) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+  public AlbumInfo retrieveAlbumInfo(String artist, String album) {
+    return (AlbumInfo) retrieve(UtilString.concat(KEY_ALBUM_INFO, artist, "/", album));
   }
 
   /**
@@ -546,16 +340,8 @@ public class LastFmCache {
    * 
    * @return the audio scrobbler artist
    */
-  public synchronized ArtistInfo retrieveArtistInfo(String artist) {
-    try {
-      String path = getFileNameForArtistInfoAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return (ArtistInfo) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+  public ArtistInfo retrieveArtistInfo(String artist) {
+    return (ArtistInfo) retrieve(KEY_ARTIST_INFO + artist);
   }
 
   /**
@@ -565,7 +351,7 @@ public class LastFmCache {
    * 
    * @return the image
    */
-  public synchronized Image retrieveArtistImage(SimilarArtistsInfo artist) {
+  public Image retrieveArtistImage(SimilarArtistsInfo artist) {
     try {
       String path = getFileNameForArtistImageAtCache(artist);
       if (path != null && new File(path).exists()) {
@@ -584,16 +370,8 @@ public class LastFmCache {
    * 
    * @return the audio scrobbler album list
    */
-  public synchronized AlbumListInfo retrieveAlbumList(String artist) {
-    try {
-      String path = getFileNameForAlbumListAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return (AlbumListInfo) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+  public AlbumListInfo retrieveAlbumList(String artist) {
+    return (AlbumListInfo) retrieve(KEY_ALBUM_LIST + artist);
   }
 
   /**
@@ -603,16 +381,8 @@ public class LastFmCache {
    * 
    * @return the audio scrobbler similar artists
    */
-  public synchronized SimilarArtistsInfo retrieveArtistSimilar(String artist) {
-    try {
-      String path = getFileNameForArtistSimilarAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return (SimilarArtistsInfo) XMLUtils.readBeanFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return null;
+  public SimilarArtistsInfo retrieveArtistSimilar(String artist) {
+    return (SimilarArtistsInfo) retrieve(KEY_ARTIST_SIMILAR + artist);
   }
 
   /**
@@ -622,7 +392,7 @@ public class LastFmCache {
    * 
    * @return the image
    */
-  public synchronized Image retrieveArtistThumbImage(ArtistInfo artist) {
+  public Image retrieveArtistThumbImage(ArtistInfo artist) {
     try {
       String path = getFileNameForArtistThumbAtCache(artist);
       if (path != null && new File(path).exists()) {
@@ -641,16 +411,53 @@ public class LastFmCache {
    * 
    * @return the string
    */
-  public synchronized String retrieveArtistWiki(String artist) {
+  public String retrieveArtistWiki(String artist) {
+    return (String) retrieve(KEY_ARTIST_WIKI + artist);
+  }
+
+  /**
+   * Retrieves infos from memory or from the store.
+   * 
+   * @param key the infos key
+   * 
+   * @return the infos or null if not cached
+   */
+  private Object retrieve(String key) {
+    synchronized (memory) {
+      Object value = memory.get(key);
+      if (value != null) {
+        return value;
+      }
+    }
+    byte[] bytes = store.get(key);
+    if (bytes == null) {
+      return null;
+    }
     try {
-      String path = getFileNameForArtistWikiAtCache(artist);
-      if (path != null && new File(path).exists()) {
-        return (String) XMLUtils.readBeanFromFile(path);
+      Object value = XMLUtils.readBeanFromBytes(bytes);
+      if (value != null) {
+        synchronized (memory) {
+          memory.put(key, value);
+        }
       }
-    } catch (IOException e) {
+      return value;
+    } catch (RuntimeException e) {
       Log.error(e);
+      return null;
+    }
+  }
+
+  /**
+   * Stores infos in memory and in the store.
+   * 
+   * @param key the infos key
+   * @param value the infos
+   */
+  private void store(String key, Object value) {
+    store.put(key, XMLUtils.writeBeanToBytes(value));
+    synchronized (memory) {
+      memory.put(key, value);
     }
-    return null;
   }
 
   /**
@@ -659,7 +466,7 @@ public class LastFmCache {
    * @param album the album
    * @param cover the cover
    */
-  public synchronized void storeAlbumCover(AlbumInfo album, Image cover) {
+  public void storeAlbumCover(AlbumInfo album, Image cover) {
     if (cover == null || album == null) {
       return;
     }
@@ -681,19 +488,12 @@ public class LastFmCache {
    * @param album the album
    * @param albumObject the album object
    */
-  public synchronized void storeAlbumInfo(String artist, String album, AlbumInfo albumObject) {
+  public void storeAlbumInfo(String artist, String album, AlbumInfo albumObject) {
     if (artist == null || album == null || albumObject == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForAlbumInfoAtCache(artist, album);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(albumObject, fileAbsPath);
-        Log.debug(UtilString.concat("Stored album info for album {{", artist, " ", album, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
+    store(UtilString.concat(KEY_ALBUM_INFO, artist, "/", album), albumObject);
+    Log.debug(UtilString.concat("Stored album info for album {{", artist, " ", album, "}}"));
   }
 
   /**
@@ -702,19 +502,12 @@ public class LastFmCache {
    * @param artist the artist
    * @param artistObject 
    */
-  public synchronized void storeArtistInfo(String artist, ArtistInfo artistObject) {
-    if (artist == null) {
+  public void storeArtistInfo(String artist, ArtistInfo artistObject) {
+    if (artist == null || artistObject == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForArtistInfoAtCache(artist);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(artistObject, fileAbsPath);
-        Log.debug(UtilString.concat("Stored artist info for artist {{", artist, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
+    store(KEY_ARTIST_INFO + artist, artistObject);
+    Log.debug(UtilString.concat("Stored artist info for artist {{", artist, "}}"));
   }
 
   /**
@@ -723,7 +516,7 @@ public class LastFmCache {
    * @param artist the artist
    * @param image the image
    */
-  public synchronized void storeArtistImage(SimilarArtistsInfo artist, Image image) {
+  public void storeArtistImage(SimilarArtistsInfo artist, Image image) {
     if (image == null || artist == null) {
       return;
     }
@@ -744,19 +537,12 @@ public class LastFmCache {
    * @param artist the artist
    * @param list the list
    */
-  public synchronized void storeAlbumList(String artist, AlbumListInfo list) {
+  public void storeAlbumList(String artist, AlbumListInfo list) {
     if (artist == null || list == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForAlbumListAtCache(artist);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(list, fileAbsPath);
-        Log.debug(UtilString.concat("Stored album list for {{", artist, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
+    store(KEY_ALBUM_LIST + artist, list);
+    Log.debug(UtilString.concat("Stored album list for {{", artist, "}}"));
   }
 
   /**
@@ -765,19 +551,12 @@ public class LastFmCache {
    * @param artist the artist
    * @param similar the similar
    */
-  public synchronized void storeArtistSimilar(String artist, SimilarArtistsInfo similar) {
+  public void storeArtistSimilar(String artist, SimilarArtistsInfo similar) {
     if (artist == null || similar == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForArtistSimilarAtCache(artist);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(similar, fileAbsPath);
-        Log.debug(UtilString.concat("Stored artist similar for {{", artist, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
+    store(KEY_ARTIST_SIMILAR + artist, similar);
+    Log.debug(UtilString.concat("Stored artist similar for {{", artist, "}}"));
   }
 
   /**
@@ -786,7 +565,7 @@ public class LastFmCache {
    * @param artist the artist
    * @param image the image
    */
-  public synchronized void storeArtistThumbImage(ArtistInfo artist, Image image) {
+  public void storeArtistThumbImage(ArtistInfo artist, Image image) {
     if (image == null || artist == null) {
       return;
     }
@@ -807,77 +586,96 @@ public class LastFmCache {
    * @param artist the artist
    * @param wikiText the wiki text
    */
-  public synchronized void storeArtistWiki(String artist, String wikiText) {
+  public void storeArtistWiki(String artist, String wikiText) {
     if (artist == null || wikiText == null) {
       return;
     }
-    try {
-      String fileAbsPath = getFileNameForArtistWikiAtCache(artist);
-      if (fileAbsPath != null) {
-        XMLUtils.writeBeanToFile(wikiText, fileAbsPath);
-        Log.debug(UtilString.concat("Stored artist wiki for {{", artist, "}}"));
+    store(KEY_ARTIST_WIKI + artist, wikiText);
+    Log.debug(UtilString.concat("Stored artist wiki for {{", artist, "}}"));
+  }
+
+  /**
+   * Gets the pending submissions queue, importing the submissions stored by
+   * previous releases if any.
+   * 
+   * @return the queue
+   */
+  private static synchronized ScrobbleQueue getQueue() {
+    if (queue == null) {
+      queue = new ScrobbleQueue(new File(submissionCacheDir, Const.LAST_FM_SUBMISSION_QUEUE));
+      File legacy = new File(submissionCacheDir, "submissionDataCache.xml");
+      if (legacy.exists()) {
+        try {
+          @SuppressWarnings("unchecked")
+          List<FullSubmissionData> legacyData = (List<FullSubmissionData>) XMLUtils
+              .readObjectFromFile(legacy.getAbsolutePath());
+          for (FullSubmissionData data : legacyData) {
+            queue.add(data);
+          }
+        } catch (Exception e) {
+          Log.error(e);
+        }
+        if (!legacy.delete()) {
+          Log.warn("Cannot delete " + legacy.getAbsolutePath());
+        }
       }
-    } catch (IOException e) {
-      Log.error(e);
     }
+    return queue;
   }
 
   /**
-   * Adds the submission data.
-   * 
+   * Adds the submission data, it is forced to disk before returning.
    * 
    * @param submissionData 
    */
-  public synchronized void addSubmissionData(FullSubmissionData submissionData) {
-    List<FullSubmissionData> submissionDataList = getSubmissionData();
-    submissionDataList.add(submissionData);
-    Collections.sort(submissionDataList, new Comparator<FullSubmissionData>() {
-      @Override
-      public int compare(FullSubmissionData o1, FullSubmissionData o2) {
-        return Integer.valueOf(o1.getStartTime()).compareTo(o2.getStartTime());
-      }
-    });
-    try {
-      String path = getFileNameForSubmissionCache();
-      if (path != null) {
-        XMLUtils.writeObjectToFile(submissionDataList, path);
-        Log.debug(UtilString.concat("Stored submission data: {{" + submissionData, "}}"));
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
+  public void addSubmissionData(FullSubmissionData submissionData) {
+    getQueue().add(submissionData);
+    Log.debug(UtilString.concat("Stored submission data: {{" + submissionData, "}}"));
   }
 
   /**
    * Gets the submission data.
    * 
-   * @return the submission data
+   * @return the submission data, oldest first
    */
-  @SuppressWarnings("unchecked")
-  public synchronized List<FullSubmissionData> getSubmissionData() {
-    try {
-      String path = getFileNameForSubmissionCache();
-      if (path != null && new File(path).exists()) {
-        return (List<FullSubmissionData>) XMLUtils.readObjectFromFile(path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    return new ArrayList<FullSubmissionData>();
+  public List<FullSubmissionData> getSubmissionData() {
+    return getQueue().peek(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Gets the oldest submission data.
+   * 
+   * @param max max number of submissions to return
+   * 
+   * @return the oldest submission data, oldest first
+   */
+  public List<FullSubmissionData> getSubmissionData(int max) {
+    return getQueue().peek(max);
+  }
+
+  /**
+   * Gets the number of pending submissions.
+   * 
+   * @return the number of pending submissions
+   */
+  public int getSubmissionDataCount() {
+    return getQueue().size();
   }
 
   /**
    * Removes the submission data.
    * 
    */
-  public synchronized void removeSubmissionData() {
-    try {
-      String path = getFileNameForSubmissionCache();
-      if (path != null && new File(path).exists()) {
-        XMLUtils.writeObjectToFile(new ArrayList<SubmissionData>(), path);
-      }
-    } catch (IOException e) {
-      Log.error(e);
-    }
+  public void removeSubmissionData() {
+    getQueue().clear();
+  }
+
+  /**
+   * Removes the oldest submission data, typically once submitted.
+   * 
+   * @param count number of submissions to remove
+   */
+  public void removeSubmissionData(int count) {
+    getQueue().remove(count);
   }
 }
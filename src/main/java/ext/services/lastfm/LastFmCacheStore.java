@@ -0,0 +1,361 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package ext.services.lastfm;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.util.log.Log;
+
+/**
+ * Single file key/value store for the Last.fm cache, replacing one small file
+ * per cached item.
+ * <p>
+ * Values are appended to the file, an in-memory index maps each key to its
+ * latest value location. The index is rebuilt by scanning the file at first
+ * use, a truncated or corrupted record ends the scan and the file is truncated
+ * there. The file is compacted at first use when most of it is made of
+ * overwritten values.
+ * </p>
+ * <p>
+ * Reads are positional reads on the file channel and don't lock. Record format
+ * : [payload length (int)][key length (short)][key (UTF-8)][value][CRC32 of the
+ * payload (long)].
+ * </p>
+ */
+final class LastFmCacheStore {
+  /** Magic number ("JJKL"). */
+  private static final int MAGIC = 0x4A4A4B4C;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Header length in bytes : magic and version. */
+  private static final int HEADER_LENGTH = 8;
+  /** Size of overwritten values in bytes under which the file is never compacted. */
+  private static final long MIN_COMPACTION_WASTE = 1024 * 1024;
+  /** Store file. */
+  private final File file;
+  /** Key -> latest value location. */
+  private final Map<String, Location> index = new ConcurrentHashMap<String, Location>(1000);
+  /** Store file channel, null if not yet open. */
+  private volatile FileChannel channel;
+  /** Store file, null if not yet open. */
+  private RandomAccessFile raf;
+  /** Total size of the latest values. */
+  private long liveBytes;
+
+  /**
+   * Location of a value in the file.
+   */
+  private static final class Location {
+    /** Offset of the value. */
+    private final long offset;
+    /** Length of the value. */
+    private final int length;
+
+    /**
+     * Instantiates a new location.
+     *
+     * @param offset
+     * @param length
+     */
+    private Location(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Instantiates a new store, the file is only read at first use.
+   *
+   * @param file the store file
+   */
+  LastFmCacheStore(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Gets the value of a key.
+   *
+   * @param key
+   *
+   * @return the value or null if none
+   */
+  byte[] get(String key) {
+    FileChannel current;
+    try {
+      current = getChannel();
+    } catch (IOException e) {
+      Log.error(e);
+      return null;
+    }
+    Location location = index.get(key);
+    if (location == null) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(location.length);
+    try {
+      while (buffer.hasRemaining()) {
+        if (current.read(buffer, location.offset + buffer.position()) < 0) {
+          return null;
+        }
+      }
+    } catch (IOException e) {
+      // Store cleared during the read
+      Log.debug("Cannot read Last.fm cache entry: " + key);
+      return null;
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Set the value of a key.
+   *
+   * @param key
+   * @param value
+   */
+  synchronized void put(String key, byte[] value) {
+    try {
+      FileChannel current = getChannel();
+      byte[] keyBytes = key.getBytes("UTF-8");
+      if (keyBytes.length > Short.MAX_VALUE) {
+        Log.debug("Last.fm cache key too long, not stored");
+        return;
+      }
+      int payloadLength = 2 + keyBytes.length + value.length;
+      ByteBuffer buffer = ByteBuffer.allocate(4 + payloadLength + 8);
+      buffer.putInt(payloadLength);
+      buffer.putShort((short) keyBytes.length);
+      buffer.put(keyBytes);
+      buffer.put(value);
+      CRC32 crc = new CRC32();
+      crc.update(buffer.array(), 4, payloadLength);
+      buffer.putLong(crc.getValue());
+      buffer.flip();
+      long position = current.size();
+      while (buffer.hasRemaining()) {
+        current.write(buffer, position + buffer.position());
+      }
+      Location previous = index.put(key, new Location(position + 6 + keyBytes.length,
+          value.length));
+      if (previous != null) {
+        liveBytes -= previous.length;
+      }
+      liveBytes += value.length;
+    } catch (IOException e) {
+      Log.error(e);
+    }
+  }
+
+  /**
+   * Gets the number of keys.
+   *
+   * @return the number of keys
+   */
+  int size() {
+    try {
+      getChannel();
+    } catch (IOException e) {
+      Log.error(e);
+    }
+    return index.size();
+  }
+
+  /**
+   * Remove all the values.
+   */
+  synchronized void clear() {
+    close();
+    index.clear();
+    liveBytes = 0;
+    if (file.exists() && !file.delete()) {
+      Log.warn("Cannot delete the Last.fm cache store: " + file.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Close the store file, it is reopened at next use.
+   */
+  synchronized void close() {
+    if (raf != null) {
+      try {
+        raf.close();
+      } catch (IOException e) {
+        Log.error(e);
+      }
+    }
+    raf = null;
+    channel = null;
+  }
+
+  /**
+   * Gets the store file channel, opening the file and reading its index if
+   * required.
+   *
+   * @return the channel
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private FileChannel getChannel() throws IOException {
+    FileChannel current = channel;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (channel == null) {
+        open();
+      }
+      return channel;
+    }
+  }
+
+  /**
+   * Open the store file and read its index. Must be called with the store lock
+   * held.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void open() throws IOException {
+    FileUtils.forceMkdir(file.getParentFile());
+    index.clear();
+    liveBytes = 0;
+    long end = file.exists() ? scan() : 0;
+    if (end > HEADER_LENGTH && end - liveBytes > Math.max(MIN_COMPACTION_WASTE, liveBytes)) {
+      compact();
+      return;
+    }
+    raf = new RandomAccessFile(file, "rw");
+    if (end < HEADER_LENGTH) {
+      // New or unreadable store
+      index.clear();
+      liveBytes = 0;
+      raf.setLength(0);
+      raf.writeInt(MAGIC);
+      raf.writeInt(FORMAT_VERSION);
+    } else if (raf.length() > end) {
+      Log.warn("Last.fm cache store truncated after a corrupted record");
+      raf.setLength(end);
+    }
+    channel = raf.getChannel();
+  }
+
+  /**
+   * Read the index from the store file.
+   *
+   * @return the offset of the end of the last valid record, 0 if the file
+   * cannot be used
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private long scan() throws IOException {
+    long length = file.length();
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+        65536));
+    try {
+      if (length < HEADER_LENGTH || in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return 0;
+      }
+      long position = HEADER_LENGTH;
+      CRC32 crc = new CRC32();
+      while (true) {
+        byte[] payload;
+        long checksum;
+        try {
+          int payloadLength = in.readInt();
+          if (payloadLength < 2 || payloadLength > length - position) {
+            break;
+          }
+          payload = new byte[payloadLength];
+          in.readFully(payload);
+          checksum = in.readLong();
+        } catch (EOFException e) {
+          // Normal end of the file or partial last record after a crash
+          break;
+        }
+        crc.reset();
+        crc.update(payload);
+        int keyLength = ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF);
+        if (crc.getValue() != checksum || keyLength > payload.length - 2) {
+          break;
+        }
+        String key = new String(payload, 2, keyLength, "UTF-8");
+        int valueLength = payload.length - 2 - keyLength;
+        Location previous = index.put(key, new Location(position + 6 + keyLength, valueLength));
+        if (previous != null) {
+          liveBytes -= previous.length;
+        }
+        liveBytes += valueLength;
+        position += 4 + payload.length + 8;
+      }
+      return position;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Rewrite the store file with the latest values only. Must be called with
+   * the store lock held, the file being closed.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void compact() throws IOException {
+    Log.debug("Compacting the Last.fm cache store: " + file.getAbsolutePath());
+    File old = new File(file.getAbsolutePath() + ".old");
+    if (old.exists() && !old.delete()) {
+      throw new IOException("Cannot delete " + old.getAbsolutePath());
+    }
+    if (!file.renameTo(old)) {
+      throw new IOException("Cannot rename " + file.getAbsolutePath());
+    }
+    Map<String, Location> locations = new ConcurrentHashMap<String, Location>(index);
+    index.clear();
+    liveBytes = 0;
+    RandomAccessFile oldRaf = new RandomAccessFile(old, "r");
+    try {
+      raf = new RandomAccessFile(file, "rw");
+      raf.writeInt(MAGIC);
+      raf.writeInt(FORMAT_VERSION);
+      channel = raf.getChannel();
+      for (Map.Entry<String, Location> entry : locations.entrySet()) {
+        byte[] value = new byte[entry.getValue().length];
+        oldRaf.seek(entry.getValue().offset);
+        oldRaf.readFully(value);
+        put(entry.getKey(), value);
+      }
+    } finally {
+      oldRaf.close();
+    }
+    if (!old.delete()) {
+      Log.warn("Cannot delete " + old.getAbsolutePath());
+    }
+  }
+}
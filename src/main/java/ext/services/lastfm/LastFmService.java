@@ -32,6 +32,17 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import de.umass.lastfm.scrobble.ResponseStatus;
 import de.umass.lastfm.scrobble.Scrobbler;
@@ -53,6 +64,15 @@ import org.jajuk.util.log.Log;
  * The Class LastFmService.
  *
  * This class is responsible of retrieve information from Last.fm web services.
+ * <p>
+ * Concurrent lookups of the same information share a single request. The
+ * asynchronous lookups and the submissions run on a small executor. Plays are
+ * queued durably and submitted in batches of at most MAX_SUBMISSIONS, the
+ * queue is kept until the server accepts it. A batch rejected MAX_REJECTIONS
+ * times in a row is submitted again one submission at a time, and a single
+ * submission rejected MAX_REJECTIONS more times is dropped so it doesn't block
+ * the next ones.
+ * </p>
  * <singleton>
  */
 public class LastFmService {
@@ -81,8 +101,23 @@ public class LastFmService {
   private static final int MIN_DURATION_TO_SUBMIT = 30;
   /** The Constant MAX_SUBMISSIONS.   */
   private static final int MAX_SUBMISSIONS = 50;
+  /** Number of rejections after which a batch is split, then its submission dropped. */
+  private static final int MAX_REJECTIONS = 3;
+  /** Number of threads of the executor. */
+  private static final int NB_THREADS = 2;
   private Scrobbler scrobbler;
-  private boolean handshakePerformed;
+  private volatile boolean handshakePerformed;
+  /** Request key -> lookup in progress. */
+  private final ConcurrentMap<String, FutureTask<?>> inFlight =
+      new ConcurrentHashMap<String, FutureTask<?>>(10);
+  /** Executor of the asynchronous lookups and submissions. */
+  private final ThreadPoolExecutor executor;
+  /** Serializes the submissions. */
+  private final Object submissionLock = new Object();
+  /** Consecutive rejections of the oldest queued submissions, guarded by submissionLock. */
+  private int rejections;
+  /** Whether a submission is waiting in the executor. */
+  private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
   private Locale locale;
   private LastFmCache lastFmCache;
   /** The singleton. */
@@ -109,6 +144,97 @@ public class LastFmService {
     this.handshakePerformed = false;
     this.locale = locale;
     this.lastFmCache = lastFmCache;
+    executor = new ThreadPoolExecutor(NB_THREADS, NB_THREADS, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          private int count = 0;
+
+          @Override
+          public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Last.fm Thread " + (++count));
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Run a lookup, or wait for the same lookup if already in progress.
+   *
+   * @param key the lookup key, identifying the requested information
+   * @param lookup the lookup
+   *
+   * @return the lookup result or null if it failed
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T fetch(String key, Callable<T> lookup) {
+    FutureTask<T> task = new FutureTask<T>(lookup);
+    FutureTask<T> running = (FutureTask<T>) inFlight.putIfAbsent(key, task);
+    if (running == null) {
+      running = task;
+      try {
+        task.run();
+      } finally {
+        inFlight.remove(key, task);
+      }
+    }
+    try {
+      return running.get();
+    } catch (ExecutionException e) {
+      Log.error(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return null;
+  }
+
+  /**
+   * Run a call on the executor.
+   *
+   * @param call
+   *
+   * @return the call future
+   */
+  private <T> Future<T> async(Callable<T> call) {
+    return executor.submit(call);
+  }
+
+  /**
+   * Gets the album list without blocking, see
+   * {@link #getAlbumList(String, boolean, int)}.
+   *
+   * @param artist the artist
+   * @param hideVariousArtists
+   * @param minimumSongNumber
+   *
+   * @return the album list future
+   */
+  public Future<AlbumListInfo> getAlbumListAsync(final String artist,
+      final boolean hideVariousArtists, final int minimumSongNumber) {
+    return async(new Callable<AlbumListInfo>() {
+      @Override
+      public AlbumListInfo call() {
+        return getAlbumList(artist, hideVariousArtists, minimumSongNumber);
+      }
+    });
+  }
+
+  /**
+   * Gets the similar artists without blocking, see
+   * {@link #getSimilarArtists(String)}.
+   *
+   * @param artist the artist
+   *
+   * @return the similar artists future
+   */
+  public Future<SimilarArtistsInfo> getSimilarArtistsAsync(final String artist) {
+    return async(new Callable<SimilarArtistsInfo>() {
+      @Override
+      public SimilarArtistsInfo call() {
+        return getSimilarArtists(artist);
+      }
+    });
   }
 
   /**
@@ -132,22 +258,24 @@ public class LastFmService {
    *
    * @return the artist
    */
-  public ArtistInfo getArtist(String artist) {
-    try {
-      // Try to get from cache
-      ArtistInfo artistInfo = lastFmCache.retrieveArtistInfo(artist);
-      if (artistInfo == null) {
+  public ArtistInfo getArtist(final String artist) {
+    // Try to get from cache
+    ArtistInfo artistInfo = lastFmCache.retrieveArtistInfo(artist);
+    if (artistInfo != null) {
+      return artistInfo;
+    }
+    return fetch("artist/" + artist, new Callable<ArtistInfo>() {
+      @Override
+      public ArtistInfo call() {
         Artist a = Artist.getInfo(artist, UtilString.rot13(API_KEY));
-        if (a != null) {
-          artistInfo = LastFmArtist.getArtist(a);
-          lastFmCache.storeArtistInfo(artist, artistInfo);
+        if (a == null) {
+          return null;
         }
+        ArtistInfo info = LastFmArtist.getArtist(a);
+        lastFmCache.storeArtistInfo(artist, info);
+        return info;
       }
-      return artistInfo;
-    } catch (Exception e) {
-      Log.error(e);
-    }
-    return null;
+    });
   }
 
   /**
@@ -158,23 +286,25 @@ public class LastFmService {
    *
    * @return the album
    */
-  public AlbumInfo getAlbum(String artist, String album) {
-    try {
-      // Try to get from cache
-      AlbumInfo albumObject = lastFmCache.retrieveAlbumInfo(artist, album);
-      if (albumObject == null) {
+  public AlbumInfo getAlbum(final String artist, final String album) {
+    // Try to get from cache
+    AlbumInfo albumObject = lastFmCache.retrieveAlbumInfo(artist, album);
+    if (albumObject != null) {
+      return albumObject;
+    }
+    return fetch(UtilString.concat("album/", artist, "/", album), new Callable<AlbumInfo>() {
+      @Override
+      public AlbumInfo call() {
         Album a = Album.getInfo(artist, album, UtilString.rot13(API_KEY));
-        if (a != null) {
-          Playlist pl = Playlist.fetchAlbumPlaylist(a.getId(), UtilString.rot13(API_KEY));
-          albumObject = LastFmAlbum.getAlbum(a, pl);
-          lastFmCache.storeAlbumInfo(artist, album, albumObject);
+        if (a == null) {
+          return null;
         }
+        Playlist pl = Playlist.fetchAlbumPlaylist(a.getId(), UtilString.rot13(API_KEY));
+        AlbumInfo info = LastFmAlbum.getAlbum(a, pl);
+        lastFmCache.storeAlbumInfo(artist, album, info);
+        return info;
       }
-      return albumObject;
-    } catch (Exception e) {
-      Log.error(e);
-    }
-    return null;
+    });
   }
 
   /**
@@ -187,13 +317,18 @@ public class LastFmService {
    *
    * @return the album list
    */
-  public AlbumListInfo getAlbumList(String artist, boolean hideVariousArtists, int minimumSongNumber) {
-    try {
-      // Try to get from cache
-      AlbumListInfo albumList = lastFmCache.retrieveAlbumList(artist);
-      if (albumList == null) {
-        Collection<Album> as = Artist.getTopAlbums(artist, UtilString.rot13(API_KEY));
-        if (as != null) {
+  public AlbumListInfo getAlbumList(final String artist, boolean hideVariousArtists,
+      int minimumSongNumber) {
+    // Try to get from cache
+    AlbumListInfo albumList = lastFmCache.retrieveAlbumList(artist);
+    if (albumList == null) {
+      albumList = fetch("album_list/" + artist, new Callable<AlbumListInfo>() {
+        @Override
+        public AlbumListInfo call() {
+          Collection<Album> as = Artist.getTopAlbums(artist, UtilString.rot13(API_KEY));
+          if (as == null) {
+            return null;
+          }
           AlbumListInfo albums = LastFmAlbumList.getAlbumList(as, artist);
           List<AlbumInfo> result = new ArrayList<AlbumInfo>();
           for (AlbumInfo a : albums.getAlbums()) {
@@ -201,44 +336,45 @@ public class LastFmService {
               result.add(a);
             }
           }
-          albumList = new LastFmAlbumList();
-          albumList.setArtist(artist);
-          albumList.setAlbums(result);
-          lastFmCache.storeAlbumList(artist, albumList);
+          LastFmAlbumList list = new LastFmAlbumList();
+          list.setArtist(artist);
+          list.setAlbums(result);
+          lastFmCache.storeAlbumList(artist, list);
+          return list;
         }
-      }
-      if (albumList != null) {
-        List<AlbumInfo> albumsFiltered = null;
-        // Apply filter to hide "Various Artists" albums
-        if (hideVariousArtists) {
-          albumsFiltered = new ArrayList<AlbumInfo>();
-          for (AlbumInfo albumInfo : albumList.getAlbums()) {
-            if (!albumInfo.getArtist().equals(VARIOUS_ARTISTS)) { //NOSONAR
-              albumsFiltered.add(albumInfo);
-            }
-          }
-          albumList.setAlbums(albumsFiltered);
-        }
-        // Apply filter to hide albums with less than X songs
-        if (minimumSongNumber > 0) {
-          albumsFiltered = new ArrayList<AlbumInfo>();
-          for (AlbumInfo albumInfo : albumList.getAlbums()) {
-            AlbumInfo extendedAlbumInfo = getAlbum(artist, albumInfo.getTitle());
-            if (extendedAlbumInfo != null && extendedAlbumInfo.getTracks() != null //NOSONAR
-                && extendedAlbumInfo.getTracks().size() >= minimumSongNumber) {
-              albumsFiltered.add(albumInfo);
-            }
-          }
+      });
+    }
+    if (albumList == null) {
+      return null;
+    }
+    // The cached list is shared, filter a copy
+    List<AlbumInfo> albumsFiltered = albumList.getAlbums();
+    // Apply filter to hide "Various Artists" albums
+    if (hideVariousArtists) {
+      List<AlbumInfo> filtered = new ArrayList<AlbumInfo>();
+      for (AlbumInfo albumInfo : albumsFiltered) {
+        if (!albumInfo.getArtist().equals(VARIOUS_ARTISTS)) { //NOSONAR
+          filtered.add(albumInfo);
         }
-        if (albumsFiltered != null) {
-          albumList.setAlbums(albumsFiltered);
+      }
+      albumsFiltered = filtered;
+    }
+    // Apply filter to hide albums with less than X songs
+    if (minimumSongNumber > 0) {
+      List<AlbumInfo> filtered = new ArrayList<AlbumInfo>();
+      for (AlbumInfo albumInfo : albumsFiltered) {
+        AlbumInfo extendedAlbumInfo = getAlbum(artist, albumInfo.getTitle());
+        if (extendedAlbumInfo != null && extendedAlbumInfo.getTracks() != null //NOSONAR
+            && extendedAlbumInfo.getTracks().size() >= minimumSongNumber) {
+          filtered.add(albumInfo);
         }
       }
-      return albumList;
-    } catch (Exception e) {
-      Log.error(e);
+      albumsFiltered = filtered;
     }
-    return null;
+    LastFmAlbumList out = new LastFmAlbumList();
+    out.setArtist(albumList.getArtist());
+    out.setAlbums(albumsFiltered);
+    return out;
   }
 
    /**
@@ -248,22 +384,21 @@ public class LastFmService {
    *
    * @return the image
    */
-  public Image getImage(AlbumInfo album) {
-    try {
-      Image img = null;
-      Proxy proxy = DownloadManager.getProxy();
-      // Try to retrieve from cache
-      img = lastFmCache.retrieveAlbumCover(album);
-      if (img == null && album.getBigCoverURL() != null && !album.getBigCoverURL().isEmpty()) {
-        img = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
-            .getConnection(album.getBigCoverURL(), proxy));
-        lastFmCache.storeAlbumCover(album, img);
-      }
+  public Image getImage(final AlbumInfo album) {
+    // Try to retrieve from cache
+    Image img = lastFmCache.retrieveAlbumCover(album);
+    if (img != null || album.getBigCoverURL() == null || album.getBigCoverURL().isEmpty()) {
       return img;
-    } catch (IOException e) {
-      Log.error(e);
     }
-    return null;
+    return fetch("album_cover/" + album.getBigCoverURL(), new Callable<Image>() {
+      @Override
+      public Image call() throws IOException {
+        Image cover = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
+            .getConnection(album.getBigCoverURL(), DownloadManager.getProxy()));
+        lastFmCache.storeAlbumCover(album, cover);
+        return cover;
+      }
+    });
   }
 
   /**
@@ -273,26 +408,26 @@ public class LastFmService {
    *
    * @return the image
    */
-  public Image getImage(ArtistInfo artist) {
-    try {
-      // Try to retrieve from cache
-      Image img = lastFmCache.retrieveArtistThumbImage(artist);
-      Proxy proxy = DownloadManager.getProxy();
-      if (img == null && artist.getImageUrl() != null && !artist.getImageUrl().isEmpty()) {
+  public Image getImage(final ArtistInfo artist) {
+    // Try to retrieve from cache
+    Image img = lastFmCache.retrieveArtistThumbImage(artist);
+    if (img != null || artist.getImageUrl() == null || artist.getImageUrl().isEmpty()) {
+      return img;
+    }
+    return fetch("artist_thumb/" + artist.getName(), new Callable<Image>() {
+      @Override
+      public Image call() throws IOException {
         // Try to get from Artist.getImages() method
-        img = getArtistImageFromLastFM(artist.getName());
+        Image thumb = getArtistImageFromLastFM(artist.getName());
         // if not then get from artist info
-        if (img == null) {
-          img = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
-              .getConnection(artist.getImageUrl(), proxy));
+        if (thumb == null) {
+          thumb = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
+              .getConnection(artist.getImageUrl(), DownloadManager.getProxy()));
         }
-        lastFmCache.storeArtistThumbImage(artist, img);
+        lastFmCache.storeArtistThumbImage(artist, thumb);
+        return thumb;
       }
-      return img;
-    } catch (Exception e) {
-      Log.error(e);
-    }
-    return null;
+    });
   }
 
   /**
@@ -302,32 +437,31 @@ public class LastFmService {
    *
    * @return the image
    */
-  public Image getImage(SimilarArtistsInfo similar) {
-    try {
-      // Try to retrieve from cache
-      Image img = lastFmCache.retrieveArtistImage(similar);
-      Proxy proxy = DownloadManager.getProxy();
-      if (img != null) {
-        return img;
-      }
-      // Try to get from LastFM
-      img = getArtistImageFromLastFM(similar.getArtistName());
-      // Get from similar artist info
-      if (img == null) {
-        String similarUrl = similar.getPicture();
-        if (!similarUrl.trim().isEmpty()) {
-          img = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
-              .getConnection(similarUrl, proxy));
-        }
-      }
-      if (img != null) {
-        lastFmCache.storeArtistImage(similar, img);
-      }
+  public Image getImage(final SimilarArtistsInfo similar) {
+    // Try to retrieve from cache
+    Image img = lastFmCache.retrieveArtistImage(similar);
+    if (img != null) {
       return img;
-    } catch (Exception e) {
-      Log.error(e);
     }
-    return null;
+    return fetch("artist_image/" + similar.getArtistName(), new Callable<Image>() {
+      @Override
+      public Image call() throws IOException {
+        // Try to get from LastFM
+        Image image = getArtistImageFromLastFM(similar.getArtistName());
+        // Get from similar artist info
+        if (image == null) {
+          String similarUrl = similar.getPicture();
+          if (!similarUrl.trim().isEmpty()) {
+            image = ext.services.network.NetworkUtils.getImage(ext.services.network.NetworkUtils
+                .getConnection(similarUrl, DownloadManager.getProxy()));
+          }
+        }
+        if (image != null) {
+          lastFmCache.storeArtistImage(similar, image);
+        }
+        return image;
+      }
+    });
   }
 
   /**
@@ -366,23 +500,25 @@ public class LastFmService {
    *
    * @return the similar artists
    */
-  public SimilarArtistsInfo getSimilarArtists(String artist) {
-    try {
-      // Try to get from cache
-      SimilarArtistsInfo similar = lastFmCache.retrieveArtistSimilar(artist);
-      if (similar == null) {
+  public SimilarArtistsInfo getSimilarArtists(final String artist) {
+    // Try to get from cache
+    SimilarArtistsInfo similar = lastFmCache.retrieveArtistSimilar(artist);
+    if (similar != null) {
+      return similar;
+    }
+    return fetch("artist_similar/" + artist, new Callable<SimilarArtistsInfo>() {
+      @Override
+      public SimilarArtistsInfo call() {
         Collection<Artist> as = Artist.getSimilar(artist, UtilString.rot13(API_KEY));
         Artist a = Artist.getInfo(artist, UtilString.rot13(API_KEY));
-        if (a != null) {
-          similar = LastFmSimilarArtists.getSimilarArtists(as, a);
-          lastFmCache.storeArtistSimilar(artist, similar);
+        if (a == null) {
+          return null;
         }
+        SimilarArtistsInfo info = LastFmSimilarArtists.getSimilarArtists(as, a);
+        lastFmCache.storeArtistSimilar(artist, info);
+        return info;
       }
-      return similar;
-    } catch (Exception e) {
-      Log.error(e);
-    }
-    return null;
+    });
   }
 
   /**
@@ -392,25 +528,26 @@ public class LastFmService {
    *
    * @return the wiki text
    */
-  public String getWikiText(String artist) {
-    try {
-      // Try to get from cache
-      String wikiText = lastFmCache.retrieveArtistWiki(artist);
-      if (wikiText == null) {
+  public String getWikiText(final String artist) {
+    // Try to get from cache
+    String wikiText = lastFmCache.retrieveArtistWiki(artist);
+    if (wikiText != null) {
+      return wikiText;
+    }
+    return fetch("artist_wiki/" + artist, new Callable<String>() {
+      @Override
+      public String call() {
         String userName = null;
         Artist a = Artist.getInfo(artist, locale, userName, UtilString.rot13(API_KEY));
-        wikiText = a != null ? a.getWikiSummary() : "";
-        if (wikiText != null) {
-          wikiText = wikiText.replaceAll("<.*?>", "");
-          wikiText = StringEscapeUtils.unescapeHtml(wikiText);
+        String text = a != null ? a.getWikiSummary() : "";
+        if (text != null) {
+          text = text.replaceAll("<.*?>", "");
+          text = StringEscapeUtils.unescapeHtml(text);
         }
-        lastFmCache.storeArtistWiki(artist, wikiText);
+        lastFmCache.storeArtistWiki(artist, text);
+        return text;
       }
-      return wikiText;
-    } catch (Exception e) {
-      Log.error(e);
-    }
-    return null;
+    });
   }
 
   /**
@@ -427,13 +564,13 @@ public class LastFmService {
   }
 
   /**
-   * Submits song to Last.fm
+   * Submits song to Last.fm : the song is queued on disk and the queue is
+   * submitted asynchronously.
    *
    * @param track
    * @param millisPlayed ms the audio file has already played
-   * @throws ScrobblerException the scrobbler exception
    */
-  public void submit(Track track, long millisPlayed) throws ScrobblerException {
+  public void submit(Track track, long millisPlayed) {
     // Do all necessary checks
     if (!checkUser() || !checkPassword() || !checkArtist(track) || !checkTitle(track)
         || !checkDuration(track)) {
@@ -441,75 +578,150 @@ public class LastFmService {
     }
     // Get started to play in secs UTC and not in MS (lastfm-bindings API was unclear about it)
     long startedToPlay = (System.currentTimeMillis() - millisPlayed) / 1000;
-    Log.info("Trying to submit song to Last.fm, play time=" + millisPlayed / 1000 + " secs");
-    try {
-      performHandshakeIfNeeded();
-      SubmissionData submissionData = new SubmissionData(track.getArtist().getName2(),
-          track.getName(), track.getAlbum().getName2(), (int) track.getDuration(),
-          (int) track.getOrder(), Source.USER, null, startedToPlay);
-      ResponseStatus status = scrobbler.submit(submissionData);
-      if (status.ok()) {
-        Log.info("Song submitted to Last.fm");
-      } else {
-        handshakePerformed = false;
-        lastFmCache.addSubmissionData(new FullSubmissionData(track.getArtist().getName2(), track
-            .getName(), track.getAlbum().getName2(), (int) track.getDuration(), (int) track
-            .getOrder(), Source.USER.toString(), (int) startedToPlay));
-        throw new ScrobblerException(status.getStatus());
-      }
-    } catch (IOException e) {
-      Log.error(e);
-      handshakePerformed = false;
-      lastFmCache.addSubmissionData(new FullSubmissionData(track.getArtist().getName2(), track
-          .getName(), track.getAlbum().getName2(), (int) track.getDuration(), (int) track
-          .getOrder(), Source.USER.toString(), (int) startedToPlay));
-      throw new ScrobblerException(e.getMessage());
-    }
+    Log.info("Queuing song for Last.fm submission, play time=" + millisPlayed / 1000 + " secs");
+    lastFmCache.addSubmissionData(new FullSubmissionData(track.getArtist().getName2(), track
+        .getName(), track.getAlbum().getName2(), (int) track.getDuration(), (int) track
+        .getOrder(), Source.USER.toString(), (int) startedToPlay));
+    submitCache();
   }
 
   /**
-   * Submits cache data to Last.fm
-   *
-   * @throws ScrobblerException the scrobbler exception
+   * Submits cache data to Last.fm asynchronously.
    */
-  public void submitCache() throws ScrobblerException {
+  public void submitCache() {
     // Do all necessary checks
     if (!checkUser() || !checkPassword()) {
       return;
     }
-    List<FullSubmissionData> collectionWithSubmissionData = lastFmCache.getSubmissionData();
-    if (!collectionWithSubmissionData.isEmpty()) {
-      // More than MAX_SUBMISSIONS submissions at once are not allowed
-      int size = collectionWithSubmissionData.size();
-      if (size > MAX_SUBMISSIONS) {
-        collectionWithSubmissionData = collectionWithSubmissionData.subList(size - MAX_SUBMISSIONS,
-            size);
-      }
-      Log.info("Trying to submit cache to Last.fm");
-      try {
-        performHandshakeIfNeeded();
-        List<SubmissionData> submissionDataList = new ArrayList<SubmissionData>();
-        for (ext.services.lastfm.FullSubmissionData submissionData : collectionWithSubmissionData) {
-          SubmissionData sd = new SubmissionData(submissionData.getArtist(),
-              submissionData.getTitle(), submissionData.getAlbum(), submissionData.getDuration(),
-              submissionData.getTrackNumber(), Source.valueOf(submissionData.getSource()), null,
-              submissionData.getStartTime());
-          submissionDataList.add(sd);
+    // A flush already waiting in the executor will submit the whole queue
+    if (!flushScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        flushScheduled.set(false);
+        try {
+          flushSubmissions();
+        } catch (ScrobblerException e) {
+          Log.error(e);
         }
-        ResponseStatus status = scrobbler.submit(submissionDataList);
-        if (status.ok()) {
-          lastFmCache.removeSubmissionData();
-          Log.info("Cache submitted to Last.fm");
-        } else {
+      }
+    });
+  }
+
+  /**
+   * Submits the queued submissions, oldest first, by batches of at most
+   * MAX_SUBMISSIONS. A batch is removed from the queue only once accepted by
+   * the server. Network errors and session or authentication failures keep
+   * the batch for later, see {@link #reject(List)} for rejected batches.
+   *
+   * @throws ScrobblerException the scrobbler exception, the remaining
+   * submissions are kept for later
+   */
+  void flushSubmissions() throws ScrobblerException {
+    synchronized (submissionLock) {
+      if (!checkUser() || !checkPassword()) {
+        return;
+      }
+      List<FullSubmissionData> batch = getNextBatch();
+      while (!batch.isEmpty()) {
+        Log.info("Trying to submit " + batch.size() + " song(s) to Last.fm");
+        try {
+          performHandshakeIfNeeded();
+          List<SubmissionData> submissionDataList = new ArrayList<SubmissionData>(batch.size());
+          for (FullSubmissionData submissionData : batch) {
+            submissionDataList.add(new SubmissionData(submissionData.getArtist(), submissionData
+                .getTitle(), submissionData.getAlbum(), submissionData.getDuration(),
+                submissionData.getTrackNumber(), getSource(submissionData), null,
+                submissionData.getStartTime()));
+          }
+          ResponseStatus status = scrobbler.submit(submissionDataList);
+          if (!status.ok()) {
+            handshakePerformed = false;
+            if (status.getStatus() != ResponseStatus.FAILED || !reject(batch)) {
+              throw new ScrobblerException(status.getStatus());
+            }
+            // The rejected submission has been dropped, go on with the next ones
+            batch = getNextBatch();
+            continue;
+          }
+        } catch (IOException e) {
+          Log.error(e);
           handshakePerformed = false;
-          throw new ScrobblerException(status.getStatus());
+          throw new ScrobblerException(e.getMessage());
         }
-      } catch (IOException e) {
-        Log.error(e);
-        handshakePerformed = false;
-        throw new ScrobblerException(e.getMessage());
+        rejections = 0;
+        lastFmCache.removeSubmissionData(batch.size());
+        Log.info(batch.size() + " song(s) submitted to Last.fm");
+        batch = getNextBatch();
+      }
+    }
+  }
+
+  /**
+   * Gets the next submissions to submit. Must be called holding the
+   * submission lock.
+   *
+   * @return the oldest submissions, a single one if the previous batches have
+   * been rejected too many times
+   */
+  private List<FullSubmissionData> getNextBatch() {
+    return lastFmCache.getSubmissionData((rejections >= MAX_REJECTIONS) ? 1 : MAX_SUBMISSIONS);
+  }
+
+  /**
+   * Handle a batch rejected by the server. After MAX_REJECTIONS, batches are
+   * made of a single submission to isolate the rejected one, which is dropped
+   * after MAX_REJECTIONS more rejections. Must be called holding the
+   * submission lock.
+   *
+   * @param batch the rejected batch
+   *
+   * @return whether the rejected submission has been dropped
+   */
+  private boolean reject(List<FullSubmissionData> batch) {
+    rejections++;
+    if (batch.size() > 1 || rejections < 2 * MAX_REJECTIONS) {
+      return false;
+    }
+    FullSubmissionData data = batch.get(0);
+    Log.warn("Last.fm rejected this submission " + rejections + " times, dropping it: "
+        + data.getArtist() + " - " + data.getTitle());
+    lastFmCache.removeSubmissionData(1);
+    // Keep isolating the next submissions until one is accepted
+    rejections = MAX_REJECTIONS;
+    return true;
+  }
+
+  /**
+   * Gets the source of a submission.
+   *
+   * @param submissionData
+   *
+   * @return the source, USER if unknown so a bad entry doesn't block the queue
+   */
+  private static Source getSource(FullSubmissionData submissionData) {
+    String source = submissionData.getSource();
+    if (source != null) {
+      try {
+        return Source.valueOf(source);
+      } catch (IllegalArgumentException e) {
+        Log.debug("Unknown submission source: " + source);
       }
     }
+    return Source.USER;
+  }
+
+  /**
+   * Sets the handshake URL, the default one is the Last.fm server. For tests
+   * purpose.
+   *
+   * @param url the handshake URL
+   */
+  void setHandshakeURL(String url) {
+    scrobbler.setHandshakeURL(url);
+    handshakePerformed = false;
   }
 
   /**
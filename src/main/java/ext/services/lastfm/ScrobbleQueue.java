@@ -0,0 +1,242 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package ext.services.lastfm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jajuk.util.JournalFile;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.log.Log;
+
+/**
+ * Durable queue of the Last.fm submissions not yet accepted by the server,
+ * oldest first.
+ * <p>
+ * A new submission is appended to the queue file and forced to disk before
+ * returning, so a play is never lost by a crash or a network failure. The file
+ * is rewritten with recovery support when submissions are removed, after a
+ * successful batch submission. The queue is capped : once full, the oldest
+ * submissions are dropped.
+ * </p>
+ * <p>
+ * Records are framed and checked by a {@link JournalFile} : a truncated or
+ * corrupted record ends the read and is dropped from the file, so the next
+ * submissions can be read back.
+ * </p>
+ */
+final class ScrobbleQueue {
+  /** Magic number ("JJKS"). */
+  private static final int MAGIC = 0x4A4A4B53;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 2;
+  /** Default max number of queued submissions. */
+  private static final int MAX_SIZE = 10000;
+  /** Max number of queued submissions. */
+  private final int maxSize;
+  /** Queue file. */
+  private final JournalFile journal;
+  /** Queued submissions, oldest first, null if not yet read. */
+  private List<FullSubmissionData> items;
+  /** Submissions payload writer. */
+  private final JournalFile.PayloadWriter<FullSubmissionData> writer =
+      new JournalFile.PayloadWriter<FullSubmissionData>() {
+        @Override
+        public boolean write(FullSubmissionData data, DataOutputStream out) throws IOException {
+          out.writeUTF(nonNull(data.getArtist()));
+          out.writeUTF(nonNull(data.getTitle()));
+          out.writeUTF(nonNull(data.getAlbum()));
+          out.writeInt(data.getDuration());
+          out.writeInt(data.getTrackNumber());
+          out.writeUTF(nonNull(data.getSource()));
+          out.writeInt(data.getStartTime());
+          return true;
+        }
+      };
+
+
+  /**
+   * Instantiates a new queue, the file is only read at first use.
+   *
+   * @param file the queue file
+   */
+  ScrobbleQueue(File file) {
+    this(file, MAX_SIZE);
+  }
+
+  /**
+   * Instantiates a new queue, the file is only read at first use.
+   *
+   * @param file the queue file
+   * @param maxSize max number of queued submissions
+   */
+  ScrobbleQueue(File file, int maxSize) {
+    this.journal = new JournalFile(file, MAGIC, FORMAT_VERSION, "Last.fm submissions queue");
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Append a submission and force it to disk. If the queue is full, the
+   * oldest submissions are dropped first.
+   *
+   * @param data the submission
+   */
+  synchronized void add(FullSubmissionData data) {
+    List<FullSubmissionData> current = getItems();
+    if (current.size() >= maxSize) {
+      // Drop a tenth of the queue at once so the file is not rewritten at each
+      // play
+      int count = current.size() - maxSize + Math.max(1, maxSize / 10);
+      Log.warn("Last.fm submissions queue is full, dropping the " + count
+          + " oldest submission(s)");
+      current.subList(0, count).clear();
+      try {
+        rewrite();
+      } catch (IOException e) {
+        Log.error(e);
+      }
+    }
+    try {
+      journal.append(Collections.singletonList(data), writer);
+    } catch (IOException e) {
+      // Still submitted if the session lasts long enough
+      Log.error(e);
+    }
+    current.add(data);
+  }
+
+  /**
+   * Gets the oldest submissions.
+   *
+   * @param max max number of submissions to return
+   *
+   * @return a copy of the oldest submissions, oldest first
+   */
+  synchronized List<FullSubmissionData> peek(int max) {
+    List<FullSubmissionData> current = getItems();
+    return new ArrayList<FullSubmissionData>(current.subList(0, Math.min(max, current.size())));
+  }
+
+  /**
+   * Remove the oldest submissions, typically once accepted by the server.
+   *
+   * @param count number of submissions to remove
+   */
+  synchronized void remove(int count) {
+    List<FullSubmissionData> current = getItems();
+    current.subList(0, Math.min(count, current.size())).clear();
+    try {
+      rewrite();
+    } catch (IOException e) {
+      Log.error(e);
+    }
+  }
+
+  /**
+   * Gets the number of queued submissions.
+   *
+   * @return the number of queued submissions
+   */
+  synchronized int size() {
+    return getItems().size();
+  }
+
+  /**
+   * Remove all the submissions.
+   */
+  synchronized void clear() {
+    items = new ArrayList<FullSubmissionData>();
+    if (journal.getFile().exists() && !journal.getFile().delete()) {
+      Log.warn("Cannot delete the Last.fm submissions queue: "
+          + journal.getFile().getAbsolutePath());
+    }
+  }
+
+  /**
+   * Gets the submissions, reading the queue file if not yet done. Must be
+   * called with the queue lock held.
+   *
+   * @return the submissions
+   */
+  private List<FullSubmissionData> getItems() {
+    if (items == null) {
+      items = new ArrayList<FullSubmissionData>();
+      try {
+        read();
+      } catch (Exception e) {
+        Log.error(e);
+      }
+    }
+    return items;
+  }
+
+  /**
+   * Read the queue file. The file is truncated after the last valid record.
+   *
+   * @throws Exception the exception
+   */
+  private void read() throws Exception {
+    UtilSystem.recoverFileIfRequired(journal.getFile());
+    if (!journal.getFile().exists()) {
+      return;
+    }
+    journal.replay(0, new JournalFile.PayloadReader() {
+      @Override
+      public boolean read(DataInputStream in) throws IOException {
+        items.add(new FullSubmissionData(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(),
+            in.readInt(), in.readUTF(), in.readInt()));
+        return true;
+      }
+    });
+    Log.debug("Last.fm submissions queue: " + items.size() + " pending submission(s)");
+  }
+
+  /**
+   * Rewrite the queue file with the current submissions.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void rewrite() throws IOException {
+    if (items.isEmpty()) {
+      if (journal.getFile().exists() && !journal.getFile().delete()) {
+        throw new IOException("Cannot delete " + journal.getFile().getAbsolutePath());
+      }
+      return;
+    }
+    journal.rewrite(0, items, writer);
+  }
+
+  /**
+   * Replace null strings by empty ones.
+   *
+   * @param value
+   *
+   * @return the value or an empty string
+   */
+  private static String nonNull(String value) {
+    return (value == null) ? "" : value;
+  }
+}
@@ -29,6 +29,8 @@ import java.beans.XMLDecoder;
 import java.beans.XMLEncoder;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.CharArrayReader;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -124,6 +126,40 @@ public final class XMLUtils {
     }
   }
 
+  /**
+   * Writes an object to XML bytes.
+   * 
+   * @param bean the bean
+   * 
+   * @return the XML bytes
+   */
+  public static byte[] writeBeanToBytes(Object bean) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+    XMLEncoder encoder = new XMLEncoder(out);
+    try {
+      encoder.writeObject(bean);
+    } finally {
+      encoder.close();
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Reads an object from XML bytes.
+   * 
+   * @param bytes the XML bytes
+   * 
+   * @return the object
+   */
+  public static Object readBeanFromBytes(byte[] bytes) {
+    XMLDecoder decoder = new XMLDecoder(new ByteArrayInputStream(bytes));
+    try {
+      return decoder.readObject();
+    } finally {
+      decoder.close();
+    }
+  }
+
   /**
    * Reads an object from an XML file.
    * 
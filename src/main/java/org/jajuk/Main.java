@@ -22,6 +22,7 @@ package org.jajuk;
 
 import ext.JVM;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.Locale;
 
 import javax.swing.JDialog;
@@ -31,6 +32,7 @@ import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
 import org.jajuk.base.Collection;
+import org.jajuk.base.ItemManager;
 import org.jajuk.services.bookmark.History;
 import org.jajuk.services.core.ExitService;
 import org.jajuk.services.core.SessionService;
@@ -42,11 +44,13 @@ import org.jajuk.services.startup.StartupCollectionService;
 import org.jajuk.services.startup.StartupControlsService;
 import org.jajuk.services.startup.StartupEngineService;
 import org.jajuk.services.startup.StartupGUIService;
+import org.jajuk.services.startup.StartupScheduler;
 import org.jajuk.services.webradio.WebRadioHelper;
 import org.jajuk.ui.helpers.FontManager;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.DownloadManager;
+import org.jajuk.util.IconLoader;
 import org.jajuk.util.LocaleManager;
 import org.jajuk.util.UpgradeManager;
 import org.jajuk.util.UtilGUI;
@@ -149,45 +153,140 @@ public final class Main {
       // "Downloading mplayer" message by default in the splash screen in case
       // of it is downloaded
       StartupGUIService.fireStepOneOver();
-      StartupCollectionService.registerTypes();
-      // Display progress
-      StartupGUIService.fireStepTwoOver();
-      // Load collection
-      StartupCollectionService.loadCollection();
-      // Load webradios (should be done synchronously now because of the new WebRadioView)
-      WebRadioHelper.loadWebRadios();
+      // Next startup steps run as soon as their prerequisites are done, so
+      // the collection load overlaps with other loadings and the UI is
+      // launched as soon as possible
+      StartupScheduler scheduler = new StartupScheduler();
+      scheduler.add("types", new Runnable() {
+        @Override
+        public void run() {
+          StartupCollectionService.registerTypes();
+          // Display progress
+          StartupGUIService.fireStepTwoOver();
+        }
+      });
+      scheduler.add("collection", new Runnable() {
+        @Override
+        public void run() {
+          StartupCollectionService.loadCollection();
+        }
+      }, "types");
+      // Load webradios (should be done before the UI because of the WebRadioView)
+      scheduler.add("webradios", new Runnable() {
+        @Override
+        public void run() {
+          WebRadioHelper.loadWebRadios();
+        }
+      });
       // Upgrade step2 (after collection load)
-      UpgradeManager.upgradeStep2();
-      // Clean the collection up
-      Collection.cleanupLogical();
-      // Display progress
-      StartupGUIService.fireStepThreeOver();
-      // Load history
-      History.load();
-      // Load ambiences
-      AmbienceManager.getInstance().load();
+      scheduler.add("upgrade2", new Runnable() {
+        @Override
+        public void run() {
+          UpgradeManager.upgradeStep2();
+        }
+      }, "collection", "webradios");
+      scheduler.add("cleanup", new Runnable() {
+        @Override
+        public void run() {
+          // Clean the collection up
+          Collection.cleanupLogical();
+          // Display progress
+          StartupGUIService.fireStepThreeOver();
+        }
+      }, "upgrade2");
+      // Switch to sorted mode, must be done before starting auto-refresh thread
+      scheduler.add("sort", new Runnable() {
+        @Override
+        public void run() {
+          ItemManager.switchAllManagersToOrderState();
+        }
+      }, "cleanup");
+      scheduler.add("history", new Runnable() {
+        @Override
+        public void run() {
+          History.load();
+        }
+      }, "cleanup");
+      scheduler.add("ambiences", new Runnable() {
+        @Override
+        public void run() {
+          AmbienceManager.getInstance().load();
+        }
+      }, "cleanup");
       // Start LastFM support
-      LastFmManager.getInstance();
-      // Load djs
-      DigitalDJManager.getInstance().loadAllDJs();
-      // Various asynchronous startup actions that needs collection load
-      StartupAsyncService.startupAsyncAfterCollectionLoad();
-      // Auto mount devices, freeze for SMB drives
-      // if network is not reachable
+      scheduler.add("lastfm", new Runnable() {
+        @Override
+        public void run() {
+          LastFmManager.getInstance();
+        }
+      });
+      scheduler.add("djs", new Runnable() {
+        @Override
+        public void run() {
+          DigitalDJManager.getInstance().loadAllDJs();
+        }
+      }, "ambiences");
+      // Auto mount devices, freeze for SMB drives if network is not reachable.
       // Do not start this if first session, it is causes concurrency with
       // first refresh thread
-      if (!UpgradeManager.isFirstSession()) {
-        StartupEngineService.autoMount();
-      }
+      scheduler.add("mount", new Runnable() {
+        @Override
+        public void run() {
+          if (!UpgradeManager.isFirstSession()) {
+            StartupEngineService.autoMount();
+          }
+        }
+      }, "cleanup");
       // Launch startup track if any (but don't start it if first session
       // because the first refresh is probably still running)
-      if (!UpgradeManager.isFirstSession()) {
-        StartupEngineService.launchInitialTrack();
-      }
+      scheduler.add("queue", new Runnable() {
+        @Override
+        public void run() {
+          if (!UpgradeManager.isFirstSession()) {
+            StartupEngineService.launchInitialTrack();
+          }
+        }
+      }, "mount", "history", "ambiences", "webradios");
+      // Load icons in the EDT while the collection is loading
+      scheduler.add("icons", new Runnable() {
+        @Override
+        public void run() {
+          try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+              @Override
+              public void run() {
+                IconLoader.preloadIcons();
+              }
+            });
+          } catch (InterruptedException e) {
+            Log.error(e);
+          } catch (InvocationTargetException e) {
+            Log.error(e);
+          }
+        }
+      });
       // Launch the right jajuk window
-      StartupGUIService.launchUI();
+      scheduler.add("ui", new Runnable() {
+        @Override
+        public void run() {
+          StartupGUIService.launchUI();
+        }
+      }, "cleanup", "ambiences", "djs", "history", "webradios", "lastfm", "queue", "icons");
+      // Various asynchronous startup actions that needs collection load
+      scheduler.add("async", new Runnable() {
+        @Override
+        public void run() {
+          StartupAsyncService.startupAsyncAfterCollectionLoad();
+        }
+      }, "sort", "djs", "history", "lastfm");
       // Late collection upgrade actions
-      UpgradeManager.upgradeStep3();
+      scheduler.add("upgrade3", new Runnable() {
+        @Override
+        public void run() {
+          UpgradeManager.upgradeStep3();
+        }
+      }, "ui");
+      scheduler.run();
     } catch (final Exception e) { // last chance to catch any error for logging purpose
       e.printStackTrace();
       Log.error(106, e);
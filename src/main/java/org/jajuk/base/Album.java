@@ -20,7 +20,6 @@
  */
 package org.jajuk.base;
 
-import java.awt.MediaTracker;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -42,13 +41,11 @@ import org.jajuk.services.tags.Tag;
 import org.jajuk.ui.thumbnails.ThumbnailManager;
 import org.jajuk.util.Const;
 import org.jajuk.util.IconLoader;
-import org.jajuk.util.JajukFileFilter;
 import org.jajuk.util.JajukIcons;
 import org.jajuk.util.Messages;
 import org.jajuk.util.UtilFeatures;
 import org.jajuk.util.UtilString;
 import org.jajuk.util.error.JajukException;
-import org.jajuk.util.filters.ImageFilter;
 import org.jajuk.util.log.Log;
 
 /**
@@ -415,35 +412,19 @@ public class Album extends LogicalItem implements Comparable<Album> {
    * @return a cover file matching criteria or null
    */
   private File findCoverFile(Set<Directory> dirs, boolean onlyStandardCovers) {
-    JajukFileFilter filter = new JajukFileFilter(ImageFilter.getInstance());
     for (Directory dir : dirs) {
-      File fDir = dir.getFio(); // store this dir
-      java.io.File[] files = fDir.listFiles();// null if none file
-      // found
-      for (int i = 0; files != null && i < files.length; i++) {
-        if (files[i].exists()
+      // Candidates images have been validated when indexed
+      for (CoverIndex.Candidate candidate : CoverIndex.getInstance().getCandidates(dir)) {
         // check size to avoid out of memory errors
-            && files[i].length() < MAX_COVER_SIZE * 1024
-            // Is it an image ?
-            && filter.accept(files[i])) {
-          // Filter standard view if required
-          if (onlyStandardCovers && !UtilFeatures.isStandardCover(files[i])) {
-            continue;
-          }
-          // Test the image is not corrupted
-          try {
-            ImageIcon ii = new ImageIcon(files[i].getAbsolutePath());
-            // Note that at this point, the image is fully loaded (done in the ImageIcon
-            // constructor)
-            if (ii.getImageLoadStatus() == MediaTracker.COMPLETE) {
-              return files[i];
-            } else {
-              Log.debug("Problem loading: " + files[i].getAbsolutePath());
-            }
-          } catch (Exception e) {
-            Log.error(e);
-          }
+        if (!candidate.isValid() || candidate.getSize() >= MAX_COVER_SIZE * 1024) {
+          continue;
+        }
+        File file = candidate.getFile(dir);
+        // Filter standard view if required
+        if (onlyStandardCovers && !UtilFeatures.isStandardCover(file)) {
+          continue;
         }
+        return file;
       }
     }
     return null;
@@ -21,6 +21,7 @@
 package org.jajuk.base;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -263,31 +264,19 @@ public final class AlbumManager extends ItemManager implements Observer {
       out = new ArrayList<Album>(1);
       out.add(((Track) item).getAlbum());
     } else {
-      try {
-        lock.readLock().lock();
-        ReadOnlyIterator<Album> albums = getAlbumsIterator();
-        // Use a set to avoid dups
-        Set<Album> albumSet = new HashSet<Album>();
-        while (albums.hasNext()) {
-          Album album = albums.next();
-          List<Track> cache = album.getTracksCache();
-          synchronized (cache) {
-            for (Track track : cache) {
-              if (item instanceof Artist && track.getArtist().equals(item)) {
-                albumSet.add(album);
-              } else if (item instanceof Genre && track.getGenre().equals(item)) {
-                albumSet.add(album);
-              } else if (item instanceof Year && track.getYear().equals(item)) {
-                albumSet.add(album);
-              }
-            }
+      // Use a set to avoid dups
+      Set<Album> albumSet = new HashSet<Album>();
+      // Artists, genres and years reference their tracks
+      Collection<Track> cache = TrackManager.getTracksCache(item);
+      if (cache != null && !(item instanceof Album)) {
+        synchronized (cache) {
+          for (Track track : cache) {
+            albumSet.add(track.getAlbum());
           }
         }
-        out = new ArrayList<Album>(albumSet);
-        Collections.sort(out);
-      } finally {
-        lock.readLock().unlock();
       }
+      out = new ArrayList<Album>(albumSet);
+      Collections.sort(out);
     }
     return out;
   }
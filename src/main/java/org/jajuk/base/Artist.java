@@ -20,6 +20,9 @@
  */
 package org.jajuk.base;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import javax.swing.ImageIcon;
 
 import org.jajuk.util.Const;
@@ -33,6 +36,9 @@ import org.jajuk.util.Messages;
  * Logical item.
  */
 public class Artist extends LogicalItem implements Comparable<Artist> {
+  /** For perfs, we cache the associated tracks (tracks of this album-artist for album-artists). This cache is filled by the TrackManager using the getTracksCache() method */
+  private final Set<Track> cache = new LinkedHashSet<Track>(15);
+
   /**
    * Artist constructor.
    *
@@ -136,4 +142,13 @@ public class Artist extends LogicalItem implements Comparable<Artist> {
   public ImageIcon getIconRepresentation() {
     return IconLoader.getIcon(JajukIcons.ARTIST);
   }
+
+  /**
+   * Gets the tracks cache.
+   * 
+   * @return tracks cache for this artist (perf), in no particular order: sort it on read
+   */
+  public Set<Track> getTracksCache() {
+    return this.cache;
+  }
 }
@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.Date;
@@ -40,6 +41,7 @@ import org.apache.commons.lang.StringUtils;
 import org.jajuk.services.core.SessionService;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
+import org.jajuk.util.IDPool;
 import org.jajuk.util.Messages;
 import org.jajuk.util.ReadOnlyIterator;
 import org.jajuk.util.UpgradeManager;
@@ -48,6 +50,7 @@ import org.jajuk.util.UtilSystem;
 import org.jajuk.util.error.JajukException;
 import org.jajuk.util.log.Log;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
@@ -166,6 +169,40 @@ public final class Collection extends DefaultHandler {
    * @throws IOException Signals that an I/O exception has occurred.
    */
   public static synchronized void commit() throws IOException {
+    // Make sure no journal append occurs between the snapshot writing and the journal truncation
+    synchronized (CollectionJournal.getInstance()) {
+      commitSnapshot();
+      if (Conf.getBoolean(Const.CONF_COLLECTION_BINARY_SNAPSHOT)) {
+        try {
+          CollectionBinarySnapshot.write(SessionService.getConfFileByPath(Const.FILE_COLLECTION));
+        } catch (IOException e) {
+          // Not fatal, an out of date snapshot is ignored at next startup
+          Log.error(e);
+        }
+      }
+      // All the journaled changes are now part of the snapshot
+      CollectionJournal.getInstance().compacted();
+    }
+    try {
+      CoverIndex.getInstance().commit();
+    } catch (IOException e) {
+      // Not fatal, directories are indexed again
+      Log.error(e);
+    }
+    try {
+      DuplicateIndex.getInstance().commit();
+    } catch (IOException e) {
+      // Not fatal, files are fingerprinted again
+      Log.error(e);
+    }
+  }
+
+  /**
+   * Write the full collection snapshot.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void commitSnapshot() throws IOException {
     long time = System.currentTimeMillis();
     String sCharset = Conf.getString(Const.CONF_COLLECTION_CHARSET);
     java.io.File out = SessionService.getConfFileByPath(Const.FILE_COLLECTION + "."
@@ -291,14 +328,52 @@ public final class Collection extends DefaultHandler {
       throw new JajukException(5, file.toString());
     }
     lTime = System.currentTimeMillis();
+    // Try the binary snapshot first, it is much faster to load than the XML file
+    if (!file.equals(regularFile) || !Conf.getBoolean(Const.CONF_COLLECTION_BINARY_SNAPSHOT)
+        || !CollectionBinarySnapshot.load(file)) {
+      SAXParser saxParser = newSAXParser();
+      saxParser.parse(file.toURI().toURL().toString(), getInstance());
+    }
+    // Apply changes done since this snapshot has been written
+    if (file.equals(regularFile)) {
+      CollectionJournal.getInstance().replay(getInstance());
+    }
+  }
+
+  /**
+   * Build a SAX parser configured for collection parsing.
+   *
+   * @return the SAX parser
+   *
+   * @throws SAXException the SAX exception
+   * @throws ParserConfigurationException the parser configuration exception
+   */
+  private static SAXParser newSAXParser() throws SAXException, ParserConfigurationException {
     SAXParserFactory spf = SAXParserFactory.newInstance();
     spf.setValidating(false);
     spf.setNamespaceAware(false);
     // See http://xerces.apache.org/xerces-j/features.html for details
     spf.setFeature("http://xml.org/sax/features/external-general-entities", false);
     spf.setFeature("http://xml.org/sax/features/string-interning", true);
-    SAXParser saxParser = spf.newSAXParser();
-    saxParser.parse(file.toURI().toURL().toString(), getInstance());
+    return spf.newSAXParser();
+  }
+
+  /**
+   * Parse a collection XML fragment (item sections without the collection root element),
+   * used to replay journaled item registrations.
+   *
+   * @param fragment the XML fragment
+   *
+   * @throws SAXException the SAX exception
+   * @throws ParserConfigurationException the parser configuration exception
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void parseFragment(String fragment) throws SAXException, ParserConfigurationException,
+      IOException {
+    lTime = System.currentTimeMillis();
+    SAXParser saxParser = newSAXParser();
+    saxParser.parse(new InputSource(new StringReader("<" + Const.XML_COLLECTION + ">" + fragment
+        + "</" + Const.XML_COLLECTION + ">")), this);
   }
 
   /**
@@ -334,6 +409,9 @@ public final class Collection extends DefaultHandler {
     DirectoryManager.getInstance().clear();
     PlaylistManager.getInstance().clear();
     DeviceManager.getInstance().clear();
+    TrackSearchIndex.getInstance().clear();
+    CoverIndex.getInstance().clear();
+    DuplicateIndex.getInstance().clear();
   }
 
   /**
@@ -403,7 +481,8 @@ public final class Collection extends DefaultHandler {
    * it musn't be used for strings that have low probability to be used several
    * times (like raw names) as it uses a lot of CPU (equals() is called) and we
    * want startup to be as fast as possible. Note that the use of intern() save
-   * around 1/4 of overall heap memory
+   * around 1/4 of overall heap memory. Items IDs are stored into the IDPool
+   * instead, the same way computed IDs are.
    *
    * We use sax-interning for the main items sections (<styles> for ie). For all
    * raw items, we don't perform equals on item name but we compare the string
@@ -584,7 +663,7 @@ public final class Collection extends DefaultHandler {
     if (type == null) {
       return;
     }
-    String sTrackId = attributes.getValue(Const.XML_TRACK).intern();
+    String sTrackId = IDPool.canonical(attributes.getValue(Const.XML_TRACK));
     // UPGRADE check if track Id is right
     if ((hmWrongRightTrackID.size() > 0) &&
     // replace wrong by right ID
@@ -592,7 +671,7 @@ public final class Collection extends DefaultHandler {
       sTrackId = hmWrongRightTrackID.get(sTrackId);
     }
     Track track = TrackManager.getInstance().getTrackByID(sTrackId);
-    String sParentID = attributes.getValue(Const.XML_DIRECTORY).intern();
+    String sParentID = IDPool.canonical(attributes.getValue(Const.XML_DIRECTORY));
     // UPGRADE check parent ID is right
     if ((hmWrongRightDirectoryID.size() > 0) &&
     // replace wrong by right ID
@@ -623,15 +702,15 @@ public final class Collection extends DefaultHandler {
             + attributes.getValue(Const.XML_QUALITY) + " Error:" + e.getMessage());
       }
     }
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     /*
      * UPGRADE test : if first element we check has the right ID, we avoid wasting time checking
      * others item one. If is is an upgrade, we force the check.We always check id in debug mode.
      */
     String sRightID = sID;
     if (needCheckID) {
-      sRightID = FileManager.createID(sItemName, dParent).intern();
-      if (sRightID == sID) { //NOSONAR
+      sRightID = FileManager.createID(sItemName, dParent);
+      if (sRightID.equals(sID)) {
         needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong file Id, upgraded: " + sItemName);
@@ -652,13 +731,12 @@ public final class Collection extends DefaultHandler {
   private void handleDirectories(Attributes attributes, int idIndex) {
     Directory dParent = null;
     // dParent = null;
-    String sParentID = attributes.getValue(Const.XML_DIRECTORY_PARENT).intern();
+    String sParentID = IDPool.canonical(attributes.getValue(Const.XML_DIRECTORY_PARENT));
     // UPGRADE
     if ((hmWrongRightDirectoryID.size() > 0) && (hmWrongRightDirectoryID.containsKey(sParentID))) {
       sParentID = hmWrongRightDirectoryID.get(sParentID);
     }
-    // We use intern() here for performances
-    if (sParentID != "-1") { //NOSONAR
+    if (!"-1".equals(sParentID)) {
       // Parent directory should be already referenced
       // because of order conservation
       dParent = DirectoryManager.getInstance().getDirectoryByID(sParentID);
@@ -667,7 +745,7 @@ public final class Collection extends DefaultHandler {
         return;
       }
     }
-    String sDeviceID = attributes.getValue(Const.XML_DEVICE).intern();
+    String sDeviceID = IDPool.canonical(attributes.getValue(Const.XML_DEVICE));
     // take upgraded device ID if needed
     if ((hmWrongRightDeviceID.size() > 0) && (hmWrongRightDeviceID.containsKey(sDeviceID))) {
       sDeviceID = hmWrongRightDeviceID.get(sDeviceID);
@@ -677,12 +755,12 @@ public final class Collection extends DefaultHandler {
       return;
     }
     String sItemName = attributes.getValue(Const.XML_NAME);
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     // UPGRADE test
     String sRightID = sID;
     if (needCheckID) {
-      sRightID = DirectoryManager.createID(sItemName, device, dParent).intern();
-      if (sRightID == sID) {//NOSONAR
+      sRightID = DirectoryManager.createID(sItemName, device, dParent);
+      if (sRightID.equals(sID)) {
         needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong directory Id, upgraded: " + sItemName);
@@ -707,29 +785,29 @@ public final class Collection extends DefaultHandler {
    * @throws ParseException the parse exception
    */
   private void handleTracks(Attributes attributes, int idIndex) throws ParseException {
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     String sTrackName = attributes.getValue(Const.XML_TRACK_NAME);
     // album
-    String sAlbumID = attributes.getValue(Const.XML_TRACK_ALBUM).intern();
+    String sAlbumID = IDPool.canonical(attributes.getValue(Const.XML_TRACK_ALBUM));
     if ((hmWrongRightAlbumID.size() > 0) && (hmWrongRightAlbumID.containsKey(sAlbumID))) {
       sAlbumID = hmWrongRightAlbumID.get(sAlbumID);
     }
     Album album = AlbumManager.getInstance().getAlbumByID(sAlbumID);
     // Genre
-    String sGenreID = attributes.getValue(Const.XML_TRACK_GENRE).intern();
+    String sGenreID = IDPool.canonical(attributes.getValue(Const.XML_TRACK_GENRE));
     if ((hmWrongRightGenreID.size() > 0) && (hmWrongRightGenreID.containsKey(sGenreID))) {
       sGenreID = hmWrongRightGenreID.get(sGenreID);
     }
     Genre genre = GenreManager.getInstance().getGenreByID(sGenreID);
     // Year
-    String sYearID = attributes.getValue(Const.XML_TRACK_YEAR).intern();
+    String sYearID = IDPool.canonical(attributes.getValue(Const.XML_TRACK_YEAR));
     Year year = YearManager.getInstance().getYearByID(sYearID);
     // For jajuk < 1.4
     if (year == null) {
       year = YearManager.getInstance().registerYear(sYearID, sYearID);
     }
     // Artist
-    String sArtistID = attributes.getValue(Const.XML_TRACK_ARTIST).intern();
+    String sArtistID = IDPool.canonical(attributes.getValue(Const.XML_TRACK_ARTIST));
     if ((hmWrongRightArtistID.size() > 0) && (hmWrongRightArtistID.containsKey(sArtistID))) {
       sArtistID = hmWrongRightArtistID.get(sArtistID);
     }
@@ -737,7 +815,7 @@ public final class Collection extends DefaultHandler {
     // Album-artist (not a constructor level property)
     String sAlbumArtist = attributes.getValue(Const.XML_ALBUM_ARTIST);
     if (StringUtils.isNotBlank(sAlbumArtist)) {
-      sAlbumArtist = sAlbumArtist.intern();
+      sAlbumArtist = IDPool.canonical(sAlbumArtist);
     }
     if ((hmWrongRightAlbumArtistID.size() > 0)
         && (hmWrongRightAlbumArtistID.containsKey(sAlbumArtist))) {
@@ -753,7 +831,7 @@ public final class Collection extends DefaultHandler {
     // Length
     long length = UtilString.fastLongParser(attributes.getValue(Const.XML_TRACK_LENGTH));
     // Type
-    String typeID = attributes.getValue(Const.XML_TYPE).intern();
+    String typeID = IDPool.canonical(attributes.getValue(Const.XML_TYPE));
     if (needCheckConversions) {
       if (CONVERSION.containsKey(typeID)) {
         typeID = CONVERSION.get(typeID);
@@ -795,8 +873,8 @@ public final class Collection extends DefaultHandler {
     String sRightID = sID;
     if (needCheckID) {
       sRightID = TrackManager.createID(sTrackName, album, genre, artist, length, year, lOrder,
-          type, lDiscNumber).intern();
-      if (sRightID == sID) {//NOSONAR
+          type, lDiscNumber);
+      if (sRightID.equals(sID)) {
         needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong Track Id, upgraded: " + sTrackName);
@@ -831,7 +909,7 @@ public final class Collection extends DefaultHandler {
    * @param idIndex 
    */
   private void handleAlbums(Attributes attributes, int idIndex) {
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     String sItemName = attributes.getValue(Const.XML_NAME).intern();
     String sAttributeAlbumArtist = attributes.getValue(Const.XML_ALBUM_ARTIST);
     if (sAttributeAlbumArtist != null) {
@@ -846,8 +924,8 @@ public final class Collection extends DefaultHandler {
     // UPGRADE test
     String sRightID = sID;
     if (needCheckID) {
-      sRightID = AlbumManager.createID(sItemName, lItemDiscID).intern();
-      if (sRightID == sID) {//NOSONAR
+      sRightID = AlbumManager.createID(sItemName, lItemDiscID);
+      if (sRightID.equals(sID)) {
         needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong album Id, upgraded: " + sItemName);
@@ -867,13 +945,13 @@ public final class Collection extends DefaultHandler {
    * @param idIndex 
    */
   private void handleArtists(Attributes attributes, int idIndex) {
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     String sItemName = attributes.getValue(Const.XML_NAME).intern();
     // UPGRADE test
     String sRightID = sID;
     if (needCheckID) {
-      sRightID = ItemManager.createID(sItemName).intern();
-      if (sRightID == sID) {//NOSONAR
+      sRightID = ItemManager.createID(sItemName);
+      if (sRightID.equals(sID)) {
         needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong artist Id, upgraded: " + sItemName);
@@ -893,13 +971,13 @@ public final class Collection extends DefaultHandler {
    * @param idIndex 
    */
   private void handleGenres(Attributes attributes, int idIndex) {
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     String sItemName = attributes.getValue(Const.XML_NAME).intern();
     // UPGRADE test
     String sRightID = sID;
     if (needCheckID) {
-      sRightID = ItemManager.createID(sItemName).intern();
-      if (sRightID == sID) {//NOSONAR
+      sRightID = ItemManager.createID(sItemName);
+      if (sRightID.equals(sID)) {
         needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong genre Id, upgraded: " + sItemName);
@@ -919,7 +997,7 @@ public final class Collection extends DefaultHandler {
    * @param idIndex 
    */
   private void handlePlaylistFiles(Attributes attributes, int idIndex) {
-    String sParentID = attributes.getValue(Const.XML_DIRECTORY).intern();
+    String sParentID = IDPool.canonical(attributes.getValue(Const.XML_DIRECTORY));
     // UPGRADE check parent ID is right
     if ((hmWrongRightDirectoryID.size() > 0) &&
     // replace wrong by right ID
@@ -930,13 +1008,13 @@ public final class Collection extends DefaultHandler {
     if (dParent == null) { // check directory is exists
       return;
     }
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     String sItemName = attributes.getValue(Const.XML_NAME);
     // UPGRADE test
     String sRightID = sID;
     if (needCheckID) {
-      sRightID = PlaylistManager.createID(sItemName, dParent).intern();
-      if (sRightID == sID) {//NOSONAR
+      sRightID = PlaylistManager.createID(sItemName, dParent);
+      if (sRightID.equals(sID)) {
         needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong playlist Id, upgraded: " + sItemName);
@@ -956,15 +1034,15 @@ public final class Collection extends DefaultHandler {
    * @param idIndex 
    */
   private void handleDevices(Attributes attributes, int idIndex) {
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     String sItemName = attributes.getValue(Const.XML_NAME);
     long lType = UtilString.fastLongParser(attributes.getValue(Const.XML_TYPE));
     Device.Type type = Device.Type.values()[(int) lType];
     // UPGRADE test
     String sRightID = sID;
     if (needCheckID) {
-      sRightID = ItemManager.createID(sItemName).intern();
-      if (sRightID == sID) {//NOSONAR
+      sRightID = ItemManager.createID(sItemName);
+      if (sRightID.equals(sID)) {
         needCheckID = UpgradeManager.isUpgradeDetected() || SessionService.isTestMode();
       } else {
         Log.debug("** Wrong device Id, upgraded: " + sItemName);
@@ -985,7 +1063,7 @@ public final class Collection extends DefaultHandler {
    * @param idIndex 
    */
   private void handleYears(Attributes attributes, int idIndex) {
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     String sItemName = attributes.getValue(Const.XML_NAME).intern();
     Year year = YearManager.getInstance().registerYear(sID, sItemName);
     if (year != null) {
@@ -1000,7 +1078,7 @@ public final class Collection extends DefaultHandler {
    * @param idIndex 
    */
   private void handleAlbumArtists(Attributes attributes, int idIndex) {
-    String sID = attributes.getValue(idIndex).intern();
+    String sID = IDPool.canonical(attributes.getValue(idIndex));
     String sItemName = attributes.getValue(Const.XML_NAME).intern();
     AlbumArtist albumArtist = AlbumArtistManager.getInstance().registerAlbumArtist(sID, sItemName);
     if (albumArtist != null) {
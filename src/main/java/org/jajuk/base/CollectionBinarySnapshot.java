@@ -0,0 +1,653 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Const;
+import org.jajuk.util.IDPool;
+import org.jajuk.util.ReadOnlyIterator;
+import org.jajuk.util.UpgradeManager;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.log.Log;
+
+/**
+ * Compact binary snapshot of the collection, used to speed up startup.
+ * <p>
+ * collection.xml remains the reference and export format : the binary snapshot
+ * is written next to it at each collection commit and stamped with the size and
+ * date of the collection.xml file it mirrors. It is only read if this stamp still
+ * matches, otherwise (or if anything goes wrong) the collection.xml file is parsed.
+ * </p>
+ * <p>
+ * Format (version 1) :
+ * <ul>
+ * <li>Header : magic, format version, jajuk release, collection.xml stamp</li>
+ * <li>String table : every ID, name and string value is stored once and then
+ * referenced by its index</li>
+ * <li>One section per item manager, in collection.xml order : properties meta
+ * information, then one record per item made of fixed-width constructor fields
+ * (string indexes and longs) followed by a typed key/value block for others properties</li>
+ * </ul>
+ * </p>
+ */
+final class CollectionBinarySnapshot {
+  /** Magic number ("JJKC"). */
+  private static final int MAGIC = 0x4A4A4B43;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Null string index. */
+  private static final int NULL_INDEX = -1;
+  /** Typed values tags. */
+  private static final byte TYPE_NULL = 0;
+  private static final byte TYPE_STRING = 1;
+  private static final byte TYPE_LONG = 2;
+  private static final byte TYPE_DOUBLE = 3;
+  private static final byte TYPE_BOOLEAN = 4;
+  private static final byte TYPE_DATE = 5;
+  private static final byte TYPE_CLASS = 6;
+  /** Fixed fields layouts : 'S' for a string index, 'L' for a long. */
+  private static final String LAYOUT_DEVICE = "SSLS";
+  private static final String LAYOUT_NAMED = "SS";
+  private static final String LAYOUT_ALBUM = "SSL";
+  private static final String LAYOUT_TRACK = "SSSSSLSLSLS";
+  private static final String LAYOUT_DIRECTORY = "SSSS";
+  private static final String LAYOUT_FILE = "SSSSLL";
+  private static final String LAYOUT_PLAYLIST = "SSS";
+  /** Fixed fields properties, matching the layouts above. */
+  private static final String[] KEYS_DEVICE = { Const.XML_ID, Const.XML_NAME, Const.XML_TYPE,
+      Const.XML_URL };
+  private static final String[] KEYS_NAMED = { Const.XML_ID, Const.XML_NAME };
+  private static final String[] KEYS_ALBUM = { Const.XML_ID, Const.XML_NAME,
+      Const.XML_ALBUM_DISC_ID };
+  private static final String[] KEYS_TRACK = { Const.XML_ID, Const.XML_NAME, Const.XML_ALBUM,
+      Const.XML_GENRE, Const.XML_ARTIST, Const.XML_TRACK_LENGTH, Const.XML_YEAR,
+      Const.XML_TRACK_ORDER, Const.XML_TYPE, Const.XML_TRACK_DISC_NUMBER, Const.XML_ALBUM_ARTIST };
+  private static final String[] KEYS_DIRECTORY = { Const.XML_ID, Const.XML_NAME,
+      Const.XML_DIRECTORY_PARENT, Const.XML_DEVICE };
+  private static final String[] KEYS_FILE = { Const.XML_ID, Const.XML_NAME, Const.XML_DIRECTORY,
+      Const.XML_TRACK, Const.XML_SIZE, Const.XML_QUALITY };
+  private static final String[] KEYS_PLAYLIST = { Const.XML_ID, Const.XML_NAME,
+      Const.XML_DIRECTORY };
+  /** String table used during writing. */
+  private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>(10000);
+  private final List<String> strings = new ArrayList<String>(10000);
+  /** String table used during reading. */
+  private String[] table;
+  /** Which string table entries have already been pooled (IDs only). */
+  private boolean[] pooled;
+
+  /**
+   * Hidden constructor, use static methods.
+   */
+  private CollectionBinarySnapshot() {
+    super();
+  }
+
+  /**
+   * Gets the snapshot file.
+   *
+   * @return the snapshot file
+   */
+  static java.io.File getSnapshotFile() {
+    return SessionService.getConfFileByPath(Const.FILE_COLLECTION_BINARY);
+  }
+
+  /**
+   * Compute the stamp of the collection.xml file a snapshot mirrors.
+   *
+   * @param xml the collection.xml file
+   *
+   * @return the stamp
+   */
+  private static String getStamp(java.io.File xml) {
+    return xml.length() + "/" + xml.lastModified();
+  }
+
+  /**
+   * Write the snapshot of current collection.
+   *
+   * @param xml the freshly written collection.xml file this snapshot mirrors
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static void write(java.io.File xml) throws IOException {
+    long time = System.currentTimeMillis();
+    new CollectionBinarySnapshot().writeSnapshot(xml);
+    Log.debug("Binary collection snapshot written in " + (System.currentTimeMillis() - time)
+        + " ms");
+  }
+
+  /**
+   * Load the snapshot if it is usable for the given collection.xml file.
+   *
+   * @param xml the collection.xml file
+   *
+   * @return true if the snapshot has been loaded, false if the collection.xml file
+   * must be parsed instead
+   */
+  static boolean load(java.io.File xml) {
+    java.io.File snapshot = getSnapshotFile();
+    if (!snapshot.exists() || !xml.exists()) {
+      return false;
+    }
+    // IDs computation may change between releases, an upgrade requires the
+    // collection.xml parsing ID checks
+    if (UpgradeManager.isUpgradeDetected()) {
+      Log.debug("Upgrade detected, binary collection snapshot ignored");
+      return false;
+    }
+    long time = System.currentTimeMillis();
+    try {
+      if (!new CollectionBinarySnapshot().readSnapshot(snapshot, xml)) {
+        return false;
+      }
+      Log.debug("Binary collection snapshot loaded in " + (System.currentTimeMillis() - time)
+          + " ms");
+      return true;
+    } catch (Exception e) {
+      // Never block startup because of the snapshot, the collection.xml file is still there
+      Log.error(e);
+      Collection.clearCollection();
+      return false;
+    }
+  }
+
+  /**
+   * Write the snapshot.
+   *
+   * @param xml the collection.xml file
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeSnapshot(java.io.File xml) throws IOException {
+    // Items are serialized first to build the string table
+    ByteArrayOutputStream body = new ByteArrayOutputStream(1000000);
+    DataOutputStream out = new DataOutputStream(body);
+    // Sections count
+    out.writeInt(10);
+    writeSection(out, DeviceManager.getInstance(), DeviceManager.getInstance().getDevices(),
+        LAYOUT_DEVICE, KEYS_DEVICE);
+    writeSection(out, GenreManager.getInstance(), GenreManager.getInstance().getGenres(),
+        LAYOUT_NAMED, KEYS_NAMED);
+    writeSection(out, ArtistManager.getInstance(), ArtistManager.getInstance().getArtists(),
+        LAYOUT_NAMED, KEYS_NAMED);
+    writeSection(out, AlbumArtistManager.getInstance(), AlbumArtistManager.getInstance()
+        .getAlbumArtists(), LAYOUT_NAMED, KEYS_NAMED);
+    writeSection(out, AlbumManager.getInstance(), AlbumManager.getInstance().getAlbums(),
+        LAYOUT_ALBUM, KEYS_ALBUM);
+    writeSection(out, YearManager.getInstance(), YearManager.getInstance().getYears(),
+        LAYOUT_NAMED, KEYS_NAMED);
+    // We clean up all orphan tracks as in collection.xml
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getElementCount());
+    TrackManager.getInstance().getLock().readLock().lock();
+    try {
+      ReadOnlyIterator<Track> it = TrackManager.getInstance().getTracksIterator();
+      while (it.hasNext()) {
+        Track track = it.next();
+        if (track.getFiles().size() > 0) {
+          tracks.add(track);
+        }
+      }
+    } finally {
+      TrackManager.getInstance().getLock().readLock().unlock();
+    }
+    writeSection(out, TrackManager.getInstance(), tracks, LAYOUT_TRACK, KEYS_TRACK);
+    writeSection(out, DirectoryManager.getInstance(), DirectoryManager.getInstance()
+        .getDirectories(), LAYOUT_DIRECTORY, KEYS_DIRECTORY);
+    writeSection(out, FileManager.getInstance(), FileManager.getInstance().getFiles(),
+        LAYOUT_FILE, KEYS_FILE);
+    writeSection(out, PlaylistManager.getInstance(), PlaylistManager.getInstance()
+        .getPlaylists(), LAYOUT_PLAYLIST, KEYS_PLAYLIST);
+    out.flush();
+    // Now write the header, the string table and the body
+    java.io.File saving = SessionService.getConfFileByPath(Const.FILE_COLLECTION_BINARY + "."
+        + Const.FILE_SAVING_FILE_EXTENSION);
+    DataOutputStream file = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+        saving), 1000000));
+    try {
+      file.writeInt(MAGIC);
+      file.writeInt(FORMAT_VERSION);
+      file.writeUTF(Const.JAJUK_VERSION);
+      file.writeUTF(getStamp(xml));
+      file.writeInt(strings.size());
+      for (String s : strings) {
+        writeRawString(file, s);
+      }
+      body.writeTo(file);
+      file.flush();
+    } finally {
+      file.close();
+    }
+    UtilSystem.saveFileWithRecoverySupport(getSnapshotFile());
+  }
+
+  /**
+   * Write a manager section.
+   *
+   * @param out
+   * @param manager
+   * @param items
+   * @param layout fixed fields layout
+   * @param fixedKeys fixed fields properties
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeSection(DataOutputStream out, ItemManager manager,
+      List<? extends Item> items, String layout, String[] fixedKeys) throws IOException {
+    out.writeInt(index(manager.getXMLTag()));
+    // Properties meta information
+    List<PropertyMetaInformation> metas = new ArrayList<PropertyMetaInformation>(
+        manager.getProperties());
+    out.writeInt(metas.size());
+    for (PropertyMetaInformation meta : metas) {
+      out.writeInt(index(meta.getName()));
+      int flags = (meta.isCustom() ? 1 : 0) | (meta.isConstructor() ? 2 : 0)
+          | (meta.isVisible() ? 4 : 0) | (meta.isEditable() ? 8 : 0)
+          | (meta.isMergeable() ? 16 : 0);
+      out.writeByte(flags);
+      out.writeInt(index(meta.getType().getName()));
+      writeValue(out, meta.getDefaultValue());
+    }
+    // Items
+    out.writeInt(items.size());
+    Map<String, Object> others = new HashMap<String, Object>(20);
+    for (Item item : items) {
+      for (int i = 0; i < fixedKeys.length; i++) {
+        Object value = item.getRawValue(fixedKeys[i]);
+        if (layout.charAt(i) == 'L') {
+          out.writeLong(value == null ? 0 : ((Number) value).longValue());
+        } else {
+          out.writeInt(value == null ? NULL_INDEX : index(value.toString()));
+        }
+      }
+      others.clear();
+      others.putAll(item.getProperties());
+      for (String key : fixedKeys) {
+        others.remove(key);
+      }
+      out.writeInt(others.size());
+      for (Map.Entry<String, Object> entry : others.entrySet()) {
+        out.writeInt(index(entry.getKey()));
+        writeValue(out, entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Gets the string table index of a string, adding it if required.
+   *
+   * @param s
+   *
+   * @return the index
+   */
+  private int index(String s) {
+    if (s == null) {
+      return NULL_INDEX;
+    }
+    Integer index = stringIndexes.get(s);
+    if (index == null) {
+      index = strings.size();
+      strings.add(s);
+      stringIndexes.put(s, index);
+    }
+    return index;
+  }
+
+  /**
+   * Write a typed value.
+   *
+   * @param out
+   * @param value
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(TYPE_NULL);
+    } else if (value instanceof Long) {
+      out.writeByte(TYPE_LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(TYPE_DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(TYPE_BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Date) {
+      out.writeByte(TYPE_DATE);
+      out.writeLong(((Date) value).getTime());
+    } else if (value instanceof Class<?>) {
+      out.writeByte(TYPE_CLASS);
+      out.writeInt(index(((Class<?>) value).getName()));
+    } else {
+      out.writeByte(TYPE_STRING);
+      out.writeInt(index(value.toString()));
+    }
+  }
+
+  /**
+   * Write a string without the 64KB limit of writeUTF().
+   *
+   * @param out
+   * @param s
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeRawString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read the snapshot.
+   *
+   * @param snapshot the snapshot file
+   * @param xml the collection.xml file
+   *
+   * @return whether the snapshot was usable
+   *
+   * @throws Exception the exception
+   */
+  private boolean readSnapshot(java.io.File snapshot, java.io.File xml) throws Exception {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+        snapshot), 1000000));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        Log.debug("Unknown binary collection snapshot format");
+        return false;
+      }
+      if (!Const.JAJUK_VERSION.equals(in.readUTF())) {
+        Log.debug("Binary collection snapshot written by another release");
+        return false;
+      }
+      if (!getStamp(xml).equals(in.readUTF())) {
+        Log.debug("Binary collection snapshot out of date");
+        return false;
+      }
+      int size = in.readInt();
+      table = new String[size];
+      pooled = new boolean[size];
+      byte[] buffer = new byte[256];
+      for (int i = 0; i < size; i++) {
+        int length = in.readInt();
+        if (length > buffer.length) {
+          buffer = new byte[length];
+        }
+        in.readFully(buffer, 0, length);
+        table[i] = new String(buffer, 0, length, "UTF-8");
+      }
+      int sections = in.readInt();
+      for (int i = 0; i < sections; i++) {
+        readSection(in);
+      }
+      return true;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Gets a string from the string table.
+   *
+   * @param index
+   *
+   * @return the string
+   */
+  private String string(int index) {
+    return (index == NULL_INDEX) ? null : table[index];
+  }
+
+  /**
+   * Gets an ID from the string table. IDs are pooled because items are
+   * compared using their ID references, note that each distinct ID is pooled
+   * only once whatever the number of items referencing it.
+   *
+   * @param index
+   *
+   * @return the ID
+   */
+  private String id(int index) {
+    if (index == NULL_INDEX) {
+      return null;
+    }
+    if (!pooled[index]) {
+      table[index] = IDPool.canonical(table[index]);
+      pooled[index] = true;
+    }
+    return table[index];
+  }
+
+  /**
+   * Read a typed value.
+   *
+   * @param in
+   *
+   * @return the value
+   *
+   * @throws Exception the exception
+   */
+  private Object readValue(DataInputStream in) throws Exception {
+    byte type = in.readByte();
+    switch (type) {
+    case TYPE_NULL:
+      return null;
+    case TYPE_LONG:
+      return in.readLong();
+    case TYPE_DOUBLE:
+      return in.readDouble();
+    case TYPE_BOOLEAN:
+      return in.readBoolean();
+    case TYPE_DATE:
+      return new Date(in.readLong());
+    case TYPE_CLASS:
+      return Class.forName(string(in.readInt()));
+    case TYPE_STRING:
+      return string(in.readInt());
+    default:
+      throw new IOException("Unknown value type: " + type);
+    }
+  }
+
+  /**
+   * Read a manager section.
+   *
+   * @param in
+   *
+   * @throws Exception the exception
+   */
+  private void readSection(DataInputStream in) throws Exception {
+    String tag = string(in.readInt());
+    ItemManager manager = ItemManager.getItemManagerByXMLTag(tag);
+    if (manager == null) {
+      throw new IOException("Unknown collection section: " + tag);
+    }
+    // Properties meta information, standard properties are already registered
+    int metas = in.readInt();
+    for (int i = 0; i < metas; i++) {
+      String name = id(in.readInt());
+      int flags = in.readByte();
+      Class<?> type = Class.forName(string(in.readInt()));
+      Object defaultValue = readValue(in);
+      if (manager.getMetaInformation(name) == null) {
+        manager.registerProperty(new PropertyMetaInformation(name, (flags & 1) != 0,
+            (flags & 2) != 0, (flags & 4) != 0, (flags & 8) != 0, (flags & 16) != 0, type,
+            defaultValue));
+      }
+    }
+    String layout = getLayout(manager);
+    Object[] fields = new Object[layout.length()];
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      for (int j = 0; j < fields.length; j++) {
+        if (layout.charAt(j) == 'L') {
+          fields[j] = in.readLong();
+        } else {
+          // Every string fixed field but the name is an ID
+          fields[j] = (j == 1) ? string(in.readInt()) : id(in.readInt());
+        }
+      }
+      Item item = register(manager, fields);
+      int properties = in.readInt();
+      for (int j = 0; j < properties; j++) {
+        String key = id(in.readInt());
+        Object value = readValue(in);
+        if (item != null) {
+          item.setProperty(key, value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the fixed fields layout for a manager.
+   *
+   * @param manager
+   *
+   * @return the layout
+   */
+  private static String getLayout(ItemManager manager) {
+    if (manager instanceof DeviceManager) {
+      return LAYOUT_DEVICE;
+    } else if (manager instanceof AlbumManager) {
+      return LAYOUT_ALBUM;
+    } else if (manager instanceof TrackManager) {
+      return LAYOUT_TRACK;
+    } else if (manager instanceof DirectoryManager) {
+      return LAYOUT_DIRECTORY;
+    } else if (manager instanceof FileManager) {
+      return LAYOUT_FILE;
+    } else if (manager instanceof PlaylistManager) {
+      return LAYOUT_PLAYLIST;
+    }
+    return LAYOUT_NAMED;
+  }
+
+  /**
+   * Register an item from its fixed fields.
+   *
+   * @param manager
+   * @param fields
+   *
+   * @return the registered item or null if it references unknown items
+   */
+  private static Item register(ItemManager manager, Object[] fields) {
+    String sID = (String) fields[0];
+    String sName = (String) fields[1];
+    if (manager instanceof DeviceManager) {
+      Device.Type type = Device.Type.values()[(int) (long) (Long) fields[2]];
+      return DeviceManager.getInstance().registerDevice(sID, sName, type, (String) fields[3]);
+    } else if (manager instanceof GenreManager) {
+      return GenreManager.getInstance().registerGenre(sID, sName);
+    } else if (manager instanceof AlbumArtistManager) {
+      return AlbumArtistManager.getInstance().registerAlbumArtist(sID, sName);
+    } else if (manager instanceof ArtistManager) {
+      return ArtistManager.getInstance().registerArtist(sID, sName);
+    } else if (manager instanceof AlbumManager) {
+      return AlbumManager.getInstance().registerAlbum(sID, sName, (Long) fields[2]);
+    } else if (manager instanceof YearManager) {
+      return YearManager.getInstance().registerYear(sID, sName);
+    } else if (manager instanceof TrackManager) {
+      return registerTrack(fields);
+    } else if (manager instanceof DirectoryManager) {
+      Directory dParent = null;
+      if (!"-1".equals(fields[2])) {
+        dParent = DirectoryManager.getInstance().getDirectoryByID((String) fields[2]);
+        if (dParent == null) {
+          return null;
+        }
+      }
+      Device device = DeviceManager.getInstance().getDeviceByID((String) fields[3]);
+      if (device == null) {
+        return null;
+      }
+      Directory directory = DirectoryManager.getInstance().registerDirectory(sID, sName, dParent,
+          device);
+      // also remember top-level directories at the device
+      if (dParent == null) {
+        device.addDirectory(directory);
+      }
+      return directory;
+    } else if (manager instanceof FileManager) {
+      // Check file type is still registered, it can be
+      // useful for ie if mplayer is no more available
+      if (TypeManager.getInstance().getTypeByExtension(UtilSystem.getExtension(sName)) == null) {
+        return null;
+      }
+      Directory directory = DirectoryManager.getInstance().getDirectoryByID((String) fields[2]);
+      Track track = TrackManager.getInstance().getTrackByID((String) fields[3]);
+      if (directory == null || track == null) {
+        return null;
+      }
+      return FileManager.getInstance().registerFile(sID, sName, directory, track,
+          (Long) fields[4], (Long) fields[5]);
+    } else if (manager instanceof PlaylistManager) {
+      Directory directory = DirectoryManager.getInstance().getDirectoryByID((String) fields[2]);
+      if (directory == null) {
+        return null;
+      }
+      return PlaylistManager.getInstance().registerPlaylistFile(sID, sName, directory);
+    }
+    return null;
+  }
+
+  /**
+   * Register a track from its fixed fields.
+   *
+   * @param fields
+   *
+   * @return the registered track or null if it references unknown items
+   */
+  private static Track registerTrack(Object[] fields) {
+    Album album = AlbumManager.getInstance().getAlbumByID((String) fields[2]);
+    Genre genre = GenreManager.getInstance().getGenreByID((String) fields[3]);
+    Artist artist = ArtistManager.getInstance().getArtistByID((String) fields[4]);
+    Year year = YearManager.getInstance().getYearByID((String) fields[6]);
+    Type type = TypeManager.getInstance().getTypeByID((String) fields[8]);
+    if (album == null || genre == null || artist == null || year == null || type == null) {
+      return null;
+    }
+    Track track = TrackManager.getInstance().registerTrack((String) fields[0],
+        (String) fields[1], album, genre, artist, (Long) fields[5], year, (Long) fields[7], type,
+        (Long) fields[9]);
+    AlbumArtist albumArtist = AlbumArtistManager.getInstance().getAlbumArtistByID(
+        (String) fields[10]);
+    if (albumArtist == null) {
+      albumArtist = AlbumArtistManager.getInstance().registerAlbumArtist(Const.UNKNOWN_ARTIST);
+    }
+    track.setAlbumArtist(albumArtist);
+    return track;
+  }
+}
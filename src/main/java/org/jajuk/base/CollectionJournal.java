@@ -0,0 +1,418 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jajuk.services.core.PersistenceService;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.JournalFile;
+import org.jajuk.util.UtilString;
+import org.jajuk.util.log.Log;
+
+/**
+ * Append-only journal of item-level collection changes.
+ * <p>
+ * Instead of rewriting the whole collection.xml file each time an item changes,
+ * changes are queued in memory, then appended (and synced to disk) to the journal
+ * file by the persistence service. At startup, the journal is replayed over the
+ * last collection.xml snapshot. A full collection commit (compaction) is only
+ * required when the journal grows over a size threshold or when a change cannot
+ * be journaled (custom properties definition changes for ie).
+ * </p>
+ * <p>
+ * Records are framed and checked by a {@link JournalFile}.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class CollectionJournal {
+  /** Magic number ("JJKJ"). */
+  private static final int MAGIC = 0x4A4A4B4A;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Record type : a property has been set. */
+  private static final byte OP_PROPERTY_SET = 1;
+  /** Record type : a property has been removed. */
+  private static final byte OP_PROPERTY_REMOVED = 2;
+  /** Record type : an item has been registered. */
+  private static final byte OP_ITEM_REGISTERED = 3;
+  /** Record type : an item has been removed. */
+  private static final byte OP_ITEM_REMOVED = 4;
+  /** Self instance. */
+  private static CollectionJournal self = new CollectionJournal();
+  /**
+   * Changes not yet written to disk, protected by its own monitor so producers
+   * never wait for I/O.
+   */
+  private List<Entry> pending = new ArrayList<Entry>(100);
+  /** Writes the entries payloads. */
+  private final JournalFile.PayloadWriter<Entry> writer = new JournalFile.PayloadWriter<Entry>() {
+    @Override
+    public boolean write(Entry entry, DataOutputStream out) throws IOException {
+      return writePayload(entry, out);
+    }
+  };
+
+  /**
+   * A journal entry. Values are formatted only when the entry is written to
+   * disk, so the callers (often the GUI thread) only pay for a list insertion.
+   */
+  private static final class Entry {
+    private final byte op;
+    private final Item item;
+    private final String key;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param op the record type
+     * @param item the changed item
+     * @param key the changed property, null for item-level records
+     */
+    Entry(byte op, Item item, String key) {
+      this.op = op;
+      this.item = item;
+      this.key = key;
+    }
+  }
+
+  /**
+   * Instance getter.
+   *
+   * @return the instance
+   */
+  public static CollectionJournal getInstance() {
+    return self;
+  }
+
+  /**
+   * Hidden constructor.
+   */
+  private CollectionJournal() {
+    super();
+  }
+
+  /**
+   * Gets the journal file.
+   *
+   * @return the journal file
+   */
+  private static JournalFile getJournalFile() {
+    return new JournalFile(SessionService.getConfFileByPath(Const.FILE_COLLECTION_JOURNAL),
+        MAGIC, FORMAT_VERSION, "collection journal");
+  }
+
+  /**
+   * Queue a property change.
+   *
+   * @param item the changed item
+   * @param key the changed property
+   */
+  void propertySet(Item item, String key) {
+    queue(new Entry(OP_PROPERTY_SET, item, key));
+  }
+
+  /**
+   * Queue a property removal.
+   *
+   * @param item the changed item
+   * @param key the removed property
+   */
+  void propertyRemoved(Item item, String key) {
+    queue(new Entry(OP_PROPERTY_REMOVED, item, key));
+  }
+
+  /**
+   * Queue an item registration.
+   *
+   * @param item the registered item
+   */
+  void itemRegistered(Item item) {
+    queue(new Entry(OP_ITEM_REGISTERED, item, null));
+  }
+
+  /**
+   * Queue an item removal.
+   *
+   * @param item the removed item
+   */
+  void itemRemoved(Item item) {
+    queue(new Entry(OP_ITEM_REMOVED, item, null));
+  }
+
+  /**
+   * Queue an entry.
+   *
+   * @param entry
+   */
+  private void queue(Entry entry) {
+    synchronized (pending) {
+      pending.add(entry);
+    }
+  }
+
+  /**
+   * Return whether the journal is large enough to be compacted into a new
+   * collection.xml snapshot.
+   *
+   * @return whether the journal should be compacted
+   */
+  public boolean isCompactionRequired() {
+    return getJournalFile().length() > Conf.getInt(Const.CONF_COLLECTION_JOURNAL_MAX_SIZE) * 1024L;
+  }
+
+  /**
+   * Append pending changes to the journal file and force them to disk.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized void flush() throws IOException {
+    List<Entry> toWrite;
+    synchronized (pending) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      toWrite = pending;
+      pending = new ArrayList<Entry>(100);
+    }
+    long time = System.currentTimeMillis();
+    int count = getJournalFile().append(toWrite, writer);
+    Log.debug("Collection journal: " + count + " change(s) appended in "
+        + (System.currentTimeMillis() - time) + " ms");
+  }
+
+  /**
+   * Write an entry payload.
+   *
+   * @param entry
+   * @param out
+   *
+   * @return whether the entry has been written
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private boolean writePayload(Entry entry, DataOutputStream out) throws IOException {
+    Item item = entry.item;
+    ItemManager manager = ItemManager.getItemManager(item.getClass());
+    if (manager == null) {
+      return false;
+    }
+    out.writeByte(entry.op);
+    writeString(out, manager.getXMLTag());
+    writeString(out, item.getID());
+    switch (entry.op) {
+    case OP_PROPERTY_SET:
+      writeString(out, entry.key);
+      Object value = item.getRawValue(entry.key);
+      PropertyMetaInformation meta = item.getMeta(entry.key);
+      if (value == null || meta == null) {
+        writeString(out, null);
+      } else {
+        writeString(out, UtilString.format(value, meta, false));
+      }
+      break;
+    case OP_PROPERTY_REMOVED:
+      writeString(out, entry.key);
+      break;
+    case OP_ITEM_REGISTERED:
+      String xml = item.toXml();
+      if (xml.length() == 0) {
+        return false;
+      }
+      writeString(out, xml);
+      break;
+    default:
+      break;
+    }
+    out.flush();
+    return true;
+  }
+
+  /**
+   * Write a nullable string.
+   *
+   * @param out
+   * @param s
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = s.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read a nullable string.
+   *
+   * @param in
+   *
+   * @return the string
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  /**
+   * Called by Collection.commit() once a new snapshot has been fully written :
+   * all the journaled changes are now part of the snapshot and the journal can
+   * be truncated. Changes queued during the snapshot writing are kept pending as
+   * replaying them again is harmless.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void compacted() throws IOException {
+    // Truncate the file rather than deleting it to keep it in place in case of crash
+    getJournalFile().restart(0);
+  }
+
+  /**
+   * Replay the journal over the freshly loaded collection snapshot.
+   *
+   * @param handler the collection parser used to register journaled items
+   */
+  synchronized void replay(final Collection handler) {
+    JournalFile journal = getJournalFile();
+    if (!journal.hasRecords()) {
+      return;
+    }
+    long time = System.currentTimeMillis();
+    int count = 0;
+    // consecutive registrations are parsed in a single pass
+    final StringBuilder registrations = new StringBuilder();
+    try {
+      count = journal.replay(0, new JournalFile.PayloadReader() {
+        @Override
+        public boolean read(DataInputStream in) throws Exception {
+          byte op = in.readByte();
+          String tag = readString(in);
+          String id = readString(in);
+          if (op == OP_ITEM_REGISTERED) {
+            registrations.append('<').append(tag).append('>').append(readString(in))
+                .append("</").append(tag).append('>');
+          } else {
+            if (registrations.length() > 0) {
+              handler.parseFragment(registrations.toString());
+              registrations.setLength(0);
+            }
+            replayEntry(op, tag, id, in);
+          }
+          return true;
+        }
+      });
+      if (registrations.length() > 0) {
+        handler.parseFragment(registrations.toString());
+      }
+    } catch (Exception e) {
+      // A journal problem should never prevent jajuk from starting, we simply lose
+      // the latest changes
+      Log.error(e);
+    }
+    Log.debug("Collection journal: " + count + " change(s) replayed in "
+        + (System.currentTimeMillis() - time) + " ms");
+  }
+
+  /**
+   * Replay a property or item removal record.
+   *
+   * @param op
+   * @param tag
+   * @param id
+   * @param in
+   *
+   * @throws Exception the exception
+   */
+  private void replayEntry(byte op, String tag, String id, DataInputStream in) throws Exception {
+    ItemManager manager = ItemManager.getItemManagerByXMLTag(tag);
+    if (manager == null) {
+      return;
+    }
+    Item item = manager.getItemByID(id);
+    if (item == null) {
+      return;
+    }
+    if (op == OP_ITEM_REMOVED) {
+      manager.removeItem(item);
+      return;
+    }
+    String key = readString(in);
+    if (op == OP_PROPERTY_REMOVED) {
+      item.removeProperty(key);
+      return;
+    }
+    // OP_PROPERTY_SET
+    PropertyMetaInformation meta = manager.getMetaInformation(key);
+    if (meta == null) {
+      Log.debug("Unknown journaled property: " + key);
+      return;
+    }
+    String sValue = readString(in);
+    Object value = (sValue == null) ? null : UtilString.parse(sValue, meta.getType());
+    if (Const.XML_TRACK.equals(key) && item instanceof File) {
+      Track track = TrackManager.getInstance().getTrackByID((String) value);
+      if (track != null) {
+        ((File) item).setTrack(track);
+      }
+    } else if (Const.XML_ALBUM_ARTIST.equals(key) && item instanceof Track) {
+      // keep the album-artist reference (and its tracks cache) in sync
+      AlbumArtist albumArtist = AlbumArtistManager.getInstance().getAlbumArtistByID(
+          (String) value);
+      if (albumArtist != null) {
+        ((Track) item).setAlbumArtist(albumArtist);
+      }
+    } else {
+      if (Const.XML_NAME.equals(key) && value != null) {
+        item.name = (String) value;
+      }
+      item.setProperty(key, value);
+    }
+  }
+
+  /**
+   * Tell whether item changes should be journaled for now. Changes done before
+   * the persistence service is started (collection loading for ie) are not.
+   *
+   * @return whether item changes should be journaled
+   */
+  static boolean isEnabled() {
+    return PersistenceService.getInstance().isAlive();
+  }
+}
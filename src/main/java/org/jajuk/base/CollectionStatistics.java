@@ -0,0 +1,447 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.jajuk.util.Const;
+
+/**
+ * Collection statistics : tracks by genre, year and artist, size by device,
+ * tracks and size added by month, total size and duration.
+ * <p>
+ * Counters are updated at each track or file registration, removal or change,
+ * so reading them doesn't walk the collection. The contribution of each
+ * registered track and file to the counters is kept so it can be withdrawn
+ * exactly when the item changes or is removed.
+ * </p>
+ * <p>
+ * Months are given as yyyyMM integers, tracks without discovery date are
+ * counted in month 0.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class CollectionStatistics {
+  /** Self instance. */
+  private static CollectionStatistics self = new CollectionStatistics();
+  /** Registered tracks -> their contribution. */
+  private final Map<Track, TrackEntry> tracks = new IdentityHashMap<Track, TrackEntry>(1000);
+  /** Registered files -> their contribution. */
+  private final Map<File, FileEntry> files = new IdentityHashMap<File, FileEntry>(1000);
+  /** Number of tracks by genre. */
+  private final Map<Genre, Integer> tracksByGenre = new HashMap<Genre, Integer>(100);
+  /** Number of tracks by year. */
+  private final Map<Year, Integer> tracksByYear = new HashMap<Year, Integer>(100);
+  /** Number of tracks by artist. */
+  private final Map<Artist, Integer> tracksByArtist = new HashMap<Artist, Integer>(1000);
+  /** Number of tracks by discovery month. */
+  private final TreeMap<Integer, Integer> tracksByMonth = new TreeMap<Integer, Integer>();
+  /** Files size by device. */
+  private final Map<Device, Long> sizeByDevice = new HashMap<Device, Long>(10);
+  /** Files size by discovery month of their track. */
+  private final TreeMap<Integer, Long> sizeByMonth = new TreeMap<Integer, Long>();
+  /** Total files size in bytes. */
+  private long totalSize;
+  /** Total tracks duration in secs. */
+  private long totalDuration;
+
+  /**
+   * Contribution of a track.
+   */
+  private static final class TrackEntry {
+    private final Genre genre;
+    private final Year year;
+    private final Artist artist;
+    private final int month;
+    private final long duration;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param track the track
+     */
+    private TrackEntry(Track track) {
+      this.genre = track.getGenre();
+      this.year = track.getYear();
+      this.artist = track.getArtist();
+      this.month = getMonth(track.getDiscoveryDate());
+      this.duration = track.getDuration();
+    }
+  }
+
+  /**
+   * Contribution of a file.
+   */
+  private static final class FileEntry {
+    private final Device device;
+    private final int month;
+    private final long size;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param file the file
+     */
+    private FileEntry(File file) {
+      this.device = (file.getDirectory() == null) ? null : file.getDirectory().getDevice();
+      Track track = file.getTrack();
+      this.month = (track == null) ? 0 : getMonth(track.getDiscoveryDate());
+      this.size = file.getSize();
+    }
+  }
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  public static CollectionStatistics getInstance() {
+    return self;
+  }
+
+  /**
+   * private constructor for singleton.
+   */
+  private CollectionStatistics() {
+    super();
+  }
+
+  /**
+   * Gets the month of a date.
+   *
+   * @param date the date, can be null
+   *
+   * @return the month as a yyyyMM integer, 0 for a null date
+   */
+  public static int getMonth(Date date) {
+    if (date == null) {
+      return 0;
+    }
+    Calendar cal = Calendar.getInstance();
+    cal.setTime(date);
+    return cal.get(Calendar.YEAR) * 100 + cal.get(Calendar.MONTH) + 1;
+  }
+
+  /**
+   * Tell whether a property change may change the statistics.
+   *
+   * @param sKey the property name
+   *
+   * @return whether a property change may change the statistics
+   */
+  static boolean isStatisticsProperty(String sKey) {
+    return Const.XML_SIZE.equals(sKey) || Const.XML_TRACK.equals(sKey)
+        || Const.XML_TRACK_DISCOVERY_DATE.equals(sKey);
+  }
+
+  /**
+   * Notify the statistics of an item registration. Items other than tracks
+   * and files are ignored.
+   *
+   * @param item the registered item
+   */
+  synchronized void added(Item item) {
+    if (item instanceof Track) {
+      Track track = (Track) item;
+      remove(tracks.get(track));
+      TrackEntry entry = new TrackEntry(track);
+      tracks.put(track, entry);
+      add(entry);
+    } else if (item instanceof File) {
+      File file = (File) item;
+      remove(files.get(file));
+      FileEntry entry = new FileEntry(file);
+      files.put(file, entry);
+      add(entry);
+    }
+  }
+
+  /**
+   * Notify the statistics of an item removal. Items other than tracks and
+   * files are ignored.
+   *
+   * @param item the removed item
+   */
+  synchronized void removed(Item item) {
+    if (item instanceof Track) {
+      remove(tracks.remove(item));
+    } else if (item instanceof File) {
+      remove(files.remove(item));
+    }
+  }
+
+  /**
+   * Notify the statistics of a track or file change. Not registered items are
+   * ignored, they are counted at registration.
+   *
+   * @param item the changed item
+   */
+  synchronized void changed(Item item) {
+    if (item instanceof Track) {
+      Track track = (Track) item;
+      if (tracks.containsKey(track)) {
+        added(track);
+        // The files month is the track one
+        for (File file : track.getFiles()) {
+          if (files.containsKey(file)) {
+            added(file);
+          }
+        }
+      }
+    } else if (item instanceof File && files.containsKey(item)) {
+      added(item);
+    }
+  }
+
+  /**
+   * Notify the statistics that a manager has been cleared.
+   *
+   * @param manager the cleared manager
+   */
+  synchronized void cleared(ItemManager manager) {
+    if (manager instanceof TrackManager) {
+      tracks.clear();
+      tracksByGenre.clear();
+      tracksByYear.clear();
+      tracksByArtist.clear();
+      tracksByMonth.clear();
+      totalDuration = 0;
+    } else if (manager instanceof FileManager) {
+      files.clear();
+      sizeByDevice.clear();
+      sizeByMonth.clear();
+      totalSize = 0;
+    }
+  }
+
+  /**
+   * Add a track contribution.
+   *
+   * @param entry the contribution
+   */
+  private void add(TrackEntry entry) {
+    increment(tracksByGenre, entry.genre, 1);
+    increment(tracksByYear, entry.year, 1);
+    increment(tracksByArtist, entry.artist, 1);
+    increment(tracksByMonth, entry.month, 1);
+    totalDuration += entry.duration;
+  }
+
+  /**
+   * Withdraw a track contribution.
+   *
+   * @param entry the contribution, can be null
+   */
+  private void remove(TrackEntry entry) {
+    if (entry == null) {
+      return;
+    }
+    increment(tracksByGenre, entry.genre, -1);
+    increment(tracksByYear, entry.year, -1);
+    increment(tracksByArtist, entry.artist, -1);
+    increment(tracksByMonth, entry.month, -1);
+    totalDuration -= entry.duration;
+  }
+
+  /**
+   * Add a file contribution.
+   *
+   * @param entry the contribution
+   */
+  private void add(FileEntry entry) {
+    increment(sizeByDevice, entry.device, entry.size);
+    increment(sizeByMonth, entry.month, entry.size);
+    totalSize += entry.size;
+  }
+
+  /**
+   * Withdraw a file contribution.
+   *
+   * @param entry the contribution, can be null
+   */
+  private void remove(FileEntry entry) {
+    if (entry == null) {
+      return;
+    }
+    increment(sizeByDevice, entry.device, -entry.size);
+    increment(sizeByMonth, entry.month, -entry.size);
+    totalSize -= entry.size;
+  }
+
+  /**
+   * Change a counter, dropping it once back to zero.
+   *
+   * @param counters the counters
+   * @param key the counter key, ignored if null
+   * @param delta the change
+   */
+  private static <K> void increment(Map<K, Integer> counters, K key, int delta) {
+    if (key == null) {
+      return;
+    }
+    Integer count = counters.get(key);
+    int value = (count == null ? 0 : count) + delta;
+    if (value == 0) {
+      counters.remove(key);
+    } else {
+      counters.put(key, value);
+    }
+  }
+
+  /**
+   * Change a counter, dropping it once back to zero.
+   *
+   * @param counters the counters
+   * @param key the counter key, ignored if null
+   * @param delta the change
+   */
+  private static <K> void increment(Map<K, Long> counters, K key, long delta) {
+    if (key == null) {
+      return;
+    }
+    Long count = counters.get(key);
+    long value = (count == null ? 0 : count) + delta;
+    if (value == 0) {
+      counters.remove(key);
+    } else {
+      counters.put(key, value);
+    }
+  }
+
+  /**
+   * Gets the number of registered tracks.
+   *
+   * @return the number of registered tracks
+   */
+  public synchronized int getTrackCount() {
+    return tracks.size();
+  }
+
+  /**
+   * Gets the number of registered files.
+   *
+   * @return the number of registered files
+   */
+  public synchronized int getFileCount() {
+    return files.size();
+  }
+
+  /**
+   * Gets the total size of the files.
+   *
+   * @return the total size in bytes
+   */
+  public synchronized long getTotalSize() {
+    return totalSize;
+  }
+
+  /**
+   * Gets the total duration of the tracks.
+   *
+   * @return the total duration in secs
+   */
+  public synchronized long getTotalDuration() {
+    return totalDuration;
+  }
+
+  /**
+   * Gets the number of tracks by genre.
+   *
+   * @return a copy of the genre -> number of tracks map
+   */
+  public synchronized Map<Genre, Integer> getTracksByGenre() {
+    return new HashMap<Genre, Integer>(tracksByGenre);
+  }
+
+  /**
+   * Gets the number of tracks by year.
+   *
+   * @return a copy of the year -> number of tracks map
+   */
+  public synchronized Map<Year, Integer> getTracksByYear() {
+    return new HashMap<Year, Integer>(tracksByYear);
+  }
+
+  /**
+   * Gets the number of tracks by artist.
+   *
+   * @return a copy of the artist -> number of tracks map
+   */
+  public synchronized Map<Artist, Integer> getTracksByArtist() {
+    return new HashMap<Artist, Integer>(tracksByArtist);
+  }
+
+  /**
+   * Gets the size of the files by device.
+   *
+   * @return a copy of the device -> size in bytes map
+   */
+  public synchronized Map<Device, Long> getSizeByDevice() {
+    return new HashMap<Device, Long>(sizeByDevice);
+  }
+
+  /**
+   * Gets the number of tracks discovered each month.
+   *
+   * @return a copy of the month (yyyyMM) -> number of tracks map
+   */
+  public synchronized SortedMap<Integer, Integer> getTracksByMonth() {
+    return new TreeMap<Integer, Integer>(tracksByMonth);
+  }
+
+  /**
+   * Gets the number of tracks discovered until a month.
+   *
+   * @param month the month (yyyyMM), included
+   *
+   * @return the number of tracks discovered until this month
+   */
+  public synchronized int getTracksUntil(int month) {
+    int count = 0;
+    for (int value : tracksByMonth.headMap(month, true).values()) {
+      count += value;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the size of the files whose track has been discovered until a month.
+   *
+   * @param month the month (yyyyMM), included
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getSizeUntil(int month) {
+    long size = 0;
+    for (long value : sizeByMonth.headMap(month, true).values()) {
+      size += value;
+    }
+    return size;
+  }
+}
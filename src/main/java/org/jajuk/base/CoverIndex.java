@@ -0,0 +1,432 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.awt.MediaTracker;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.ImageIcon;
+
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Const;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.filters.ImageFilter;
+import org.jajuk.util.log.Log;
+
+/**
+ * Persistent index of the cover candidates (image files) of each directory.
+ * <p>
+ * Directories are indexed by the device refresh (from the files it lists
+ * anyway) and indexed again only when their modification date changed. Each
+ * candidate image is validated once, when indexed, by reading its dimensions.
+ * Cover lookups then use the index and don't list directories nor decode
+ * images. A directory never indexed yet (device not refreshed since) is
+ * indexed by the first lookup.
+ * </p>
+ * <p>
+ * Format (version 1) : magic, format version, entries count, then for each
+ * entry : directory ID, directory date, candidates count and for each
+ * candidate its name, size, width and height.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class CoverIndex {
+  /** Magic number ("JJKI"). */
+  private static final int MAGIC = 0x4A4A4B49;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Self instance. */
+  private static CoverIndex self = new CoverIndex();
+  /** Directory ID -> indexed candidates. */
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>(1000);
+  /** Whether the index file has been read. */
+  private boolean bLoaded = false;
+  /** Whether the index changed since last commit. */
+  private volatile boolean bChanged = false;
+
+  /**
+   * A cover candidate : an image file of a directory.
+   */
+  public static final class Candidate {
+    /** File name. */
+    private final String name;
+    /** File size in bytes. */
+    private final long size;
+    /** Image width, 0 if the image cannot be read. */
+    private final int width;
+    /** Image height, 0 if the image cannot be read. */
+    private final int height;
+
+    /**
+     * Instantiates a new candidate.
+     *
+     * @param name
+     * @param size
+     * @param width
+     * @param height
+     */
+    private Candidate(String name, long size, int width, int height) {
+      this.name = name;
+      this.size = size;
+      this.width = width;
+      this.height = height;
+    }
+
+    /**
+     * Gets the file name.
+     *
+     * @return the file name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the file size.
+     *
+     * @return the file size in bytes
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * Gets the image width.
+     *
+     * @return the image width, 0 if the image cannot be read
+     */
+    public int getWidth() {
+      return width;
+    }
+
+    /**
+     * Gets the image height.
+     *
+     * @return the image height, 0 if the image cannot be read
+     */
+    public int getHeight() {
+      return height;
+    }
+
+    /**
+     * Return whether the image could be read when indexed.
+     *
+     * @return whether the image is valid
+     */
+    public boolean isValid() {
+      return width > 0 && height > 0;
+    }
+
+    /**
+     * Gets the candidate file.
+     *
+     * @param dir the directory the candidate belongs to
+     *
+     * @return the candidate file
+     */
+    public java.io.File getFile(Directory dir) {
+      return new java.io.File(dir.getFio(), name);
+    }
+  }
+
+  /**
+   * Indexed candidates of a directory.
+   */
+  private static final class Entry {
+    /** Directory date when indexed. */
+    private final long date;
+    /** Candidates, in listing order. */
+    private final List<Candidate> candidates;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param date
+     * @param candidates
+     */
+    private Entry(long date, List<Candidate> candidates) {
+      this.date = date;
+      this.candidates = candidates;
+    }
+  }
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  public static CoverIndex getInstance() {
+    return self;
+  }
+
+  /**
+   * private constructor for singleton.
+   */
+  private CoverIndex() {
+    super();
+  }
+
+  /**
+   * Gets the index file.
+   *
+   * @return the index file
+   */
+  static java.io.File getIndexFile() {
+    return SessionService.getConfFileByPath(Const.FILE_COVER_INDEX);
+  }
+
+  /**
+   * Gets the cover candidates of a directory, in listing order. The
+   * directory is indexed first if it never has been.
+   *
+   * @param dir the directory
+   *
+   * @return the cover candidates (unmodifiable)
+   */
+  public List<Candidate> getCandidates(Directory dir) {
+    load();
+    Entry entry = entries.get(dir.getID());
+    if (entry == null) {
+      java.io.File fDir = dir.getFio();
+      entry = index(dir, fDir.lastModified(), fDir.listFiles());
+    }
+    return entry.candidates;
+  }
+
+  /**
+   * Index a directory listed by a refresh, if it changed since it has been
+   * indexed.
+   *
+   * @param dir the directory
+   * @param files the directory files (null if the directory cannot be read)
+   */
+  void refresh(Directory dir, java.io.File[] files) {
+    load();
+    long date = dir.getFio().lastModified();
+    Entry entry = entries.get(dir.getID());
+    if (entry == null || entry.date != date) {
+      index(dir, date, files);
+    }
+  }
+
+  /**
+   * Forget the candidates of a directory, call it after writing or deleting
+   * images in it.
+   *
+   * @param dir the directory
+   */
+  public void invalidate(Directory dir) {
+    load();
+    if (entries.remove(dir.getID()) != null) {
+      bChanged = true;
+    }
+  }
+
+  /**
+   * Index the image files of a directory.
+   *
+   * @param dir the directory
+   * @param date the directory date
+   * @param files the directory files (null if the directory cannot be read)
+   *
+   * @return the new entry
+   */
+  private Entry index(Directory dir, long date, java.io.File[] files) {
+    List<Candidate> candidates = new ArrayList<Candidate>(2);
+    ImageFilter filter = ImageFilter.getInstance();
+    for (int i = 0; files != null && i < files.length; i++) {
+      java.io.File file = files[i];
+      if (!filter.accept(file) || !file.isFile()) {
+        continue;
+      }
+      long size = file.length();
+      int[] dimensions = { 0, 0 };
+      // Don't even read too large images, they are never used as covers
+      if (size < Const.MAX_COVER_SIZE * 1024) {
+        dimensions = readDimensions(file);
+      }
+      candidates.add(new Candidate(file.getName(), size, dimensions[0], dimensions[1]));
+    }
+    Entry entry = new Entry(date, Collections.unmodifiableList(candidates));
+    entries.put(dir.getID(), entry);
+    bChanged = true;
+    return entry;
+  }
+
+  /**
+   * Read the dimensions of an image. ImageIO only reads the image header,
+   * images ImageIO cannot read are fully loaded.
+   *
+   * @param file the image file
+   *
+   * @return width and height, 0 if the image cannot be read
+   */
+  private static int[] readDimensions(java.io.File file) {
+    try {
+      ImageInputStream iis = ImageIO.createImageInputStream(file);
+      if (iis != null) {
+        try {
+          Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+          if (readers.hasNext()) {
+            ImageReader reader = readers.next();
+            try {
+              reader.setInput(iis, true, true);
+              return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+              reader.dispose();
+            }
+          }
+        } finally {
+          iis.close();
+        }
+      }
+    } catch (IOException e) {
+      Log.debug("Cannot read image header: " + file.getAbsolutePath() + " : " + e.getMessage());
+    }
+    // Fallback to the AWT loader
+    try {
+      ImageIcon ii = new ImageIcon(file.getAbsolutePath());
+      if (ii.getImageLoadStatus() == MediaTracker.COMPLETE) {
+        return new int[] { ii.getIconWidth(), ii.getIconHeight() };
+      }
+      Log.debug("Problem loading: " + file.getAbsolutePath());
+    } catch (Exception e) {
+      Log.error(e);
+    }
+    return new int[] { 0, 0 };
+  }
+
+  /**
+   * Read the index file if not done yet. A missing or unreadable index file
+   * is ignored : directories are indexed again.
+   */
+  private synchronized void load() {
+    if (bLoaded) {
+      return;
+    }
+    bLoaded = true;
+    java.io.File file = getIndexFile();
+    if (!file.exists()) {
+      return;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(file)));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+          Log.debug("Unknown cover index format, ignored");
+          return;
+        }
+        int nbEntries = in.readInt();
+        for (int i = 0; i < nbEntries; i++) {
+          String id = in.readUTF();
+          long date = in.readLong();
+          int nbCandidates = in.readInt();
+          List<Candidate> candidates = new ArrayList<Candidate>(nbCandidates);
+          for (int j = 0; j < nbCandidates; j++) {
+            candidates.add(new Candidate(in.readUTF(), in.readLong(), in.readInt(), in.readInt()));
+          }
+          // Don't override entries indexed meanwhile
+          if (!entries.containsKey(id)) {
+            entries.put(id, new Entry(date, Collections.unmodifiableList(candidates)));
+          }
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      Log.error(e);
+      entries.clear();
+    }
+  }
+
+  /**
+   * Write the index file if it changed. Entries of directories no more in
+   * the collection are dropped.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized void commit() throws IOException {
+    if (!bChanged) {
+      return;
+    }
+    bChanged = false;
+    Iterator<String> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      if (DirectoryManager.getInstance().getDirectoryByID(it.next()) == null) {
+        it.remove();
+      }
+    }
+    java.io.File saving = SessionService.getConfFileByPath(Const.FILE_COVER_INDEX + "."
+        + Const.FILE_SAVING_FILE_EXTENSION);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+        saving)));
+    try {
+      // Take a copy as entries may be indexed meanwhile
+      List<Map.Entry<String, Entry>> copy = new ArrayList<Map.Entry<String, Entry>>(
+          entries.entrySet());
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(copy.size());
+      for (Map.Entry<String, Entry> mapEntry : copy) {
+        out.writeUTF(mapEntry.getKey());
+        out.writeLong(mapEntry.getValue().date);
+        out.writeInt(mapEntry.getValue().candidates.size());
+        for (Candidate candidate : mapEntry.getValue().candidates) {
+          out.writeUTF(candidate.name);
+          out.writeLong(candidate.size);
+          out.writeInt(candidate.width);
+          out.writeInt(candidate.height);
+        }
+      }
+      out.flush();
+    } finally {
+      out.close();
+    }
+    UtilSystem.saveFileWithRecoverySupport(getIndexFile());
+  }
+
+  /**
+   * Forget all entries, the index file is read again at next lookup.
+   */
+  synchronized void clear() {
+    entries.clear();
+    bLoaded = false;
+    bChanged = false;
+  }
+}
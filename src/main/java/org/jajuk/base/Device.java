@@ -40,6 +40,7 @@ import org.jajuk.events.ObservationManager;
 import org.jajuk.services.bookmark.History;
 import org.jajuk.services.core.ExitService;
 import org.jajuk.services.players.QueueModel;
+import org.jajuk.services.tags.TagMetadataCache;
 import org.jajuk.ui.helpers.ManualDeviceRefreshReporter;
 import org.jajuk.ui.helpers.RefreshReporter;
 import org.jajuk.ui.widgets.InformationJPanel;
@@ -690,6 +691,8 @@ public class Device extends PhysicalItem implements Comparable<Device> {
     } else {
       throw new JajukException(11, "\"" + getName() + "\" at URL : " + getUrl());
     }
+    // files of this device are now ready
+    PlaylistCandidates.getInstance().invalidate();
     // notify views to refresh if needed
     ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_MOUNT));
     return bMounted;
@@ -789,6 +792,22 @@ public class Device extends PhysicalItem implements Comparable<Device> {
    */
   boolean refreshCommand(final boolean bDeepScan, final boolean bManual,
       List<Directory> dirsToRefresh) {
+    return refreshCommand(bDeepScan, bManual, dirsToRefresh, true);
+  }
+
+  /**
+   * The refresh itself.
+   * 
+   * @param bDeepScan whether it is a deep refresh request or only fast
+   * @param bManual whether it is a manual refresh or auto
+   * @param dirsToRefresh list of the directory to refresh, null if all of them
+   * @param bRecursive whether the known sub-directories of the directories to
+   * refresh are refreshed too (new ones always are)
+   * 
+   * @return true if some changes occurred in device
+   */
+  boolean refreshCommand(final boolean bDeepScan, final boolean bManual,
+      List<Directory> dirsToRefresh, boolean bRecursive) {
     try {
       // Check if this device is mounted (useful when called by
       // automatic refresh)
@@ -834,9 +853,10 @@ public class Device extends PhysicalItem implements Comparable<Device> {
       } else {
         dirs = dirsToRefresh;
       }
-      for (Directory dir : dirs) {
-        scanRecursively(dir, bDeepScan);
-      }
+      RefreshPipeline pipeline = new RefreshPipeline(this, bDeepScan, bRecursive, reporter);
+      pipeline.run(dirs);
+      // Fingerprint the new or changed files in the background
+      DuplicateIndex.getInstance().refresh(pipeline.getRegisteredFiles());
       // Force a GUI refresh if new files or directories discovered or have been
       // removed
       if (((FileManager.getInstance().getElementCount() - iNbFilesBeforeRefresh) != 0)
@@ -852,6 +872,10 @@ public class Device extends PhysicalItem implements Comparable<Device> {
     } finally {
       // make sure to unlock refreshing even if an error occurred
       bAlreadyRefreshing = false;
+      // Save the tag cache and free its memory once the last refresh is over
+      if (!DeviceManager.getInstance().isAnyDeviceRefreshing()) {
+        TagMetadataCache.getInstance().release();
+      }
       // reporter is null if mount is not mounted due to early return
       if (reporter != null) {
         // Notify the reporter of the actual refresh startup
@@ -862,31 +886,6 @@ public class Device extends PhysicalItem implements Comparable<Device> {
     }
   }
 
-  /**
-   * Scan recursively.
-   *  
-   * @param dir top directory to scan
-   * @param bDeepScan whether we want to perform a deep scan (read tags again)
-   */
-  private void scanRecursively(final Directory dir, final boolean bDeepScan) {
-    dir.scan(bDeepScan, reporter);
-    if (reporter != null) {
-      reporter.updateState(dir);
-    }
-    final File[] files = dir.getFio().listFiles(UtilSystem.getDirFilter());
-    if (files != null) {
-      for (final File element : files) {
-        // Leave ASAP if exit request
-        if (ExitService.isExiting()) {
-          return;
-        }
-        final Directory subDir = DirectoryManager.getInstance().registerDirectory(
-            element.getName(), dir, this);
-        scanRecursively(subDir, bDeepScan);
-      }
-    }
-  }
-
   /**
    * Sets the url.
    * 
@@ -900,6 +899,7 @@ public class Device extends PhysicalItem implements Comparable<Device> {
     for (final org.jajuk.base.File file : FileManager.getInstance().getFiles()) {
       file.reset();
     }
+    FileManager.getInstance().invalidatePathIndex();
     /** Reset playlists */
     for (final Playlist plf : PlaylistManager.getInstance().getPlaylists()) {
       plf.reset();
@@ -1216,6 +1216,7 @@ public class Device extends PhysicalItem implements Comparable<Device> {
       return;
     }
     bMounted = false;
+    PlaylistCandidates.getInstance().invalidate();
     if (bUIRefresh) {
       ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_UNMOUNT));
     }
@@ -91,6 +91,9 @@ public final class DeviceManager extends ItemManager {
     // Auto-refresh
     registerProperty(new PropertyMetaInformation(Const.XML_DEVICE_AUTO_REFRESH, false, true, true,
         false, false, Double.class, 0d));
+    // Watch
+    registerProperty(new PropertyMetaInformation(Const.XML_DEVICE_WATCH, false, false, true,
+        false, false, Boolean.class, false));
     // Expand
     registerProperty(new PropertyMetaInformation(Const.XML_EXPANDED, false, false, false, false,
         true, Boolean.class, false));
@@ -111,6 +114,7 @@ public final class DeviceManager extends ItemManager {
       tAutoRefresh.setPriority(Thread.MIN_PRIORITY);
       tAutoRefresh.start();
     }
+    DeviceWatcher.getInstance().start();
   }
 
   /**
@@ -316,6 +320,8 @@ public final class DeviceManager extends ItemManager {
    * Must be the shortest possible.
    */
   void refreshAllDevices() {
+    // Watch newly mounted devices or directories found meanwhile
+    DeviceWatcher.getInstance().update();
     try {
       // check thread is not already refreshing
       if (bGlobalRefreshing) {
@@ -331,6 +337,12 @@ public final class DeviceManager extends ItemManager {
           continue;
         }
         double frequency = 60000 * device.getDoubleValue(Const.XML_DEVICE_AUTO_REFRESH);
+        // Watched devices are refreshed on changes, they are still fully
+        // refreshed from time to time as some file systems (network, FUSE...)
+        // may never notify the changes
+        if (frequency != 0d && DeviceWatcher.getInstance().isWatched(device)) {
+          frequency = Math.max(frequency, DeviceWatcher.FALLBACK_REFRESH_DELAY);
+        }
         // check if this device needs auto-refresh
         if (frequency == 0d
             || device.getDateLastRefresh() > (System.currentTimeMillis() - frequency)) {
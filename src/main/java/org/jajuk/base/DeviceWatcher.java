@@ -0,0 +1,433 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jajuk.events.JajukEvent;
+import org.jajuk.events.JajukEvents;
+import org.jajuk.events.ObservationManager;
+import org.jajuk.services.core.ExitService;
+import org.jajuk.util.Const;
+import org.jajuk.util.log.Log;
+
+/**
+ * Incremental refresh of the devices with the watch option set.
+ * <p>
+ * Every known directory of a watched device is registered to the file system
+ * watch service. The changes notified are gathered until no change happened
+ * for a while, then only the changed directories are refreshed (their known
+ * sub-directories are not, they have their own watches). New directories are
+ * refreshed with their whole content and watched once registered.
+ * </p>
+ * <p>
+ * Watched devices are only fully refreshed by the periodic auto-refresh every
+ * {@link #FALLBACK_REFRESH_DELAY} at most, in case the file system never
+ * notifies the changes (some network or FUSE file systems). Devices whose
+ * directories cannot be watched (unsupported file system, too many
+ * directories for the system limits) are left to the periodic auto-refresh.
+ * </p>
+ * <p>
+ * All the watches bookkeeping is done by the watcher thread.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+final class DeviceWatcher {
+  /** Delay without change before refreshing the changed directories (ms). */
+  static final int DEBOUNCE_DELAY = 2000;
+  /** Maximal refresh delay when changes never stop (ms). */
+  private static final int MAX_DEBOUNCE_DELAY = 10000;
+  /** Watch service poll delay when no change is pending (ms). */
+  private static final int IDLE_DELAY = 1000;
+  /** Minimal delay between two full refreshes of a watched device (ms). */
+  static final int FALLBACK_REFRESH_DELAY = 3600000;
+  /** Self instance. */
+  private static DeviceWatcher self = new DeviceWatcher();
+  /** Devices actually watched, read by the auto-refresh thread. */
+  private final Set<Device> watchedDevices = Collections
+      .newSetFromMap(new ConcurrentHashMap<Device, Boolean>());
+  /** Devices that cannot be watched. */
+  private final Set<Device> failedDevices = Collections
+      .newSetFromMap(new ConcurrentHashMap<Device, Boolean>());
+  /** Watch key -> watched directory. */
+  private final Map<WatchKey, Directory> keys = new HashMap<WatchKey, Directory>(100);
+  /** Watched directory -> watch key. */
+  private final Map<Directory, WatchKey> watched = new HashMap<Directory, WatchKey>(100);
+  /** Changed directories by device, waiting for refresh. */
+  private final Map<Device, Set<Directory>> changed = new LinkedHashMap<Device, Set<Directory>>();
+  /** Directories with removed entries by device, waiting for cleanup. */
+  private final Map<Device, Set<Directory>> removed = new LinkedHashMap<Device, Set<Directory>>();
+  /** Devices to refresh fully (some changes have been lost). */
+  private final Set<Device> lost = new LinkedHashSet<Device>();
+  /** Date of the first pending change. */
+  private long lDateFirstChange = 0;
+  /** Date of the last change. */
+  private long lDateLastChange = 0;
+  /** Whether the watches should be updated. */
+  private volatile boolean bUpdateRequired = true;
+  /** The watch service, null if not started or not available. */
+  private WatchService service;
+  /** The watcher thread. */
+  private Thread watcher;
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  static DeviceWatcher getInstance() {
+    return self;
+  }
+
+  /**
+   * private constructor for singleton.
+   */
+  private DeviceWatcher() {
+    super();
+  }
+
+  /**
+   * Start the watcher thread if not running.
+   */
+  synchronized void start() {
+    if (watcher != null && watcher.isAlive()) {
+      return;
+    }
+    if (service == null) {
+      try {
+        service = FileSystems.getDefault().newWatchService();
+      } catch (IOException e) {
+        Log.error(e);
+        return;
+      }
+    }
+    watcher = new Thread("Device Watcher Thread") {
+      @Override
+      public void run() {
+        while (!ExitService.isExiting()) {
+          try {
+            watch();
+          } catch (InterruptedException e) {
+            return;
+          } catch (Exception e) {
+            Log.error(e);
+          }
+        }
+      }
+    };
+    watcher.setDaemon(true);
+    watcher.setPriority(Thread.MIN_PRIORITY);
+    watcher.start();
+  }
+
+  /**
+   * Ask the watcher thread to update the watches (devices mounted or
+   * unmounted, watch option changed, directories added by a refresh).
+   */
+  void update() {
+    bUpdateRequired = true;
+  }
+
+  /**
+   * Return whether a device is watched, so it doesn't need periodic
+   * refreshes.
+   *
+   * @param device the device
+   *
+   * @return whether the device is watched
+   */
+  boolean isWatched(Device device) {
+    return watchedDevices.contains(device);
+  }
+
+  /**
+   * Wait for a change and refresh the changed directories once no change
+   * happened for a while.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private void watch() throws InterruptedException {
+    if (bUpdateRequired) {
+      bUpdateRequired = false;
+      updateWatches();
+    }
+    long delay = IDLE_DELAY;
+    if (isPending()) {
+      delay = Math.max(1, lDateLastChange + DEBOUNCE_DELAY - System.currentTimeMillis());
+    }
+    WatchKey key = service.poll(delay, TimeUnit.MILLISECONDS);
+    if (key != null) {
+      handle(key);
+    }
+    long now = System.currentTimeMillis();
+    if (isPending()
+        && (now - lDateLastChange >= DEBOUNCE_DELAY
+            || now - lDateFirstChange >= MAX_DEBOUNCE_DELAY)) {
+      refresh();
+      // Changes kept for later
+      lDateFirstChange = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Return whether some changes are waiting for refresh.
+   *
+   * @return whether some changes are waiting for refresh
+   */
+  private boolean isPending() {
+    return !changed.isEmpty() || !removed.isEmpty() || !lost.isEmpty();
+  }
+
+  /**
+   * Gather the changes notified for a directory.
+   *
+   * @param key the directory watch key
+   */
+  private void handle(WatchKey key) {
+    Directory dir = keys.get(key);
+    if (dir == null) {
+      key.cancel();
+      return;
+    }
+    if (!isPending()) {
+      lDateFirstChange = System.currentTimeMillis();
+    }
+    Device device = dir.getDevice();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        lost.add(device);
+      } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+        add(removed, device, dir);
+      } else {
+        add(changed, device, dir);
+      }
+    }
+    // The key is invalid if the directory has been removed or unmounted
+    if (!key.reset()) {
+      keys.remove(key);
+      watched.remove(dir);
+    }
+    lDateLastChange = System.currentTimeMillis();
+  }
+
+  /**
+   * Add a directory to a device directories map.
+   *
+   * @param map the device directories map
+   * @param device the device
+   * @param dir the directory
+   */
+  private static void add(Map<Device, Set<Directory>> map, Device device, Directory dir) {
+    Set<Directory> dirs = map.get(device);
+    if (dirs == null) {
+      dirs = new LinkedHashSet<Directory>();
+      map.put(device, dirs);
+    }
+    dirs.add(dir);
+  }
+
+  /**
+   * Refresh the changed directories. Changes of devices being refreshed by
+   * another thread are kept for later.
+   */
+  private void refresh() {
+    Set<Device> devices = new LinkedHashSet<Device>(changed.keySet());
+    devices.addAll(removed.keySet());
+    devices.addAll(lost);
+    long lDateRefresh = System.currentTimeMillis();
+    boolean bNeedUIRefresh = false;
+    for (Device device : devices) {
+      if (ExitService.isExiting()) {
+        return;
+      }
+      if (!device.isMounted()) {
+        forget(device);
+        continue;
+      }
+      if (device.isRefreshing() || device.isSynchronizing()) {
+        // Try again later
+        lDateLastChange = System.currentTimeMillis();
+        continue;
+      }
+      Set<Directory> removedDirs = removed.remove(device);
+      Set<Directory> changedDirs = changed.remove(device);
+      if (lost.remove(device)) {
+        Log.debug("{{" + device.getName() + "}} Some changes have been lost, full refresh");
+        bNeedUIRefresh |= device.cleanRemovedFiles(null);
+        bNeedUIRefresh |= device.refreshCommand(false, false, null);
+        continue;
+      }
+      if (removedDirs != null) {
+        bNeedUIRefresh |= device.cleanRemovedFiles(existing(removedDirs));
+      }
+      List<Directory> dirs = existing(changedDirs);
+      if (removedDirs != null) {
+        // Renamed entries are notified as removed then created
+        for (Directory dir : existing(removedDirs)) {
+          if (!dirs.contains(dir)) {
+            dirs.add(dir);
+          }
+        }
+      }
+      if (!dirs.isEmpty()) {
+        // Deep refresh to read the tags of the changed files again, unchanged
+        // files tags are read from the tag cache
+        bNeedUIRefresh |= device.refreshCommand(true, false, dirs, false);
+      }
+    }
+    if (bNeedUIRefresh) {
+      Collection.cleanupLogical();
+      ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_REFRESH));
+    }
+    // Watch the new directories, and refresh again those changed since they
+    // have been walked
+    for (Directory dir : updateWatches()) {
+      if (dir.getFio().lastModified() >= lDateRefresh) {
+        add(changed, dir.getDevice(), dir);
+        lDateLastChange = System.currentTimeMillis();
+      }
+    }
+  }
+
+  /**
+   * Filter the directories still in the collection.
+   *
+   * @param dirs directories, can be null
+   *
+   * @return the directories still in the collection
+   */
+  private static List<Directory> existing(Set<Directory> dirs) {
+    List<Directory> out = new ArrayList<Directory>();
+    if (dirs != null) {
+      for (Directory dir : dirs) {
+        if (DirectoryManager.getInstance().getDirectoryByID(dir.getID()) != null) {
+          out.add(dir);
+        }
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Watch the known directories of the devices to watch and stop watching
+   * the others.
+   *
+   * @return the newly watched directories
+   */
+  private List<Directory> updateWatches() {
+    List<Directory> added = new ArrayList<Directory>();
+    Set<Device> toWatch = new HashSet<Device>();
+    for (Device device : DeviceManager.getInstance().getDevices()) {
+      // CD devices may share the same mount point
+      if (device.isMounted() && device.getBooleanValue(Const.XML_DEVICE_WATCH)
+          && device.getType() != Device.Type.FILES_CD && !failedDevices.contains(device)) {
+        toWatch.add(device);
+      }
+    }
+    // Stop watching removed directories and devices no more to watch
+    Iterator<Map.Entry<Directory, WatchKey>> it = watched.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Directory, WatchKey> entry = it.next();
+      Directory dir = entry.getKey();
+      if (!toWatch.contains(dir.getDevice()) || !entry.getValue().isValid()
+          || DirectoryManager.getInstance().getDirectoryByID(dir.getID()) == null) {
+        entry.getValue().cancel();
+        keys.remove(entry.getValue());
+        it.remove();
+      }
+    }
+    watchedDevices.retainAll(toWatch);
+    for (Directory dir : DirectoryManager.getInstance().getDirectories()) {
+      Device device = dir.getDevice();
+      if (!toWatch.contains(device) || watched.containsKey(dir)) {
+        continue;
+      }
+      try {
+        WatchKey key = dir.getFio().toPath().register(service,
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, dir);
+        watched.put(dir, key);
+        added.add(dir);
+      } catch (IOException e) {
+        if (dir.getFio().exists()) {
+          // Leave this device to the periodic auto-refresh
+          Log.warn("Cannot watch device {{" + device.getName() + "}} : " + e.getMessage());
+          failedDevices.add(device);
+          toWatch.remove(device);
+          forget(device);
+        }
+      }
+    }
+    Iterator<Directory> itAdded = added.iterator();
+    while (itAdded.hasNext()) {
+      if (!toWatch.contains(itAdded.next().getDevice())) {
+        itAdded.remove();
+      }
+    }
+    for (Device device : toWatch) {
+      if (watchedDevices.add(device)) {
+        Log.debug("Watching device {{" + device.getName() + "}}");
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Stop watching a device and forget its pending changes.
+   *
+   * @param device the device
+   */
+  private void forget(Device device) {
+    watchedDevices.remove(device);
+    Iterator<Map.Entry<Directory, WatchKey>> it = watched.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Directory, WatchKey> entry = it.next();
+      if (entry.getKey().getDevice().equals(device)) {
+        entry.getValue().cancel();
+        keys.remove(entry.getValue());
+        it.remove();
+      }
+    }
+    changed.remove(device);
+    removed.remove(device);
+    lost.remove(device);
+  }
+}
@@ -23,15 +23,21 @@ package org.jajuk.base;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.swing.ImageIcon;
 
 import org.jajuk.services.core.ExitService;
 import org.jajuk.services.tags.Tag;
+import org.jajuk.services.tags.TagMetadata;
+import org.jajuk.services.tags.TagMetadataCache;
 import org.jajuk.ui.helpers.RefreshReporter;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
@@ -275,56 +281,102 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
    * @param reporter Refresh handler
    */
   void scan(boolean bDeepScan, RefreshReporter reporter) {
-    // Make sure to reset the disc ID
-    this.discID = -1;
-    java.io.File[] filelist = getFio().listFiles(UtilSystem.getFileFilter());
-    if (filelist == null || filelist.length == 0) { // none file, leave
+    ScanContent content = listContent();
+    if (content == null) { // none file, leave
+      // Make sure to reset the disc ID
+      this.discID = -1;
       return;
     }
+    register(content, bDeepScan, reporter);
+  }
+
+  /**
+   * List the music and playlist files of this directory and compute its disc
+   * ID. Nothing is registered so this can be done by a refresh walker thread.
+   * The cover candidates of the directory are indexed from the same listing.
+   * 
+   * @return the directory content or null if none file
+   */
+  ScanContent listContent() {
+    java.io.File[] allFiles = getFio().listFiles();
+    if (allFiles == null || allFiles.length == 0) { // none file, leave
+      return null;
+    }
+    List<File> filelist = new ArrayList<File>(allFiles.length);
+    JajukFileFilter knownTypes = UtilSystem.getFileFilter();
+    for (File file : allFiles) {
+      if (knownTypes.accept(file)) {
+        filelist.add(file);
+      }
+    }
+    if (filelist.size() == 0) { // none file, leave
+      return null;
+    }
+    CoverIndex.getInstance().refresh(this, allFiles);
     // Create a list of music files and playlist files to consider
-    List<File> musicFiles = new ArrayList<File>(filelist.length);
-    List<File> playlistFiles = new ArrayList<File>(1 + filelist.length / 10);
-    for (int i = 0; i < filelist.length; i++) {
+    List<File> musicFiles = new ArrayList<File>(filelist.size());
+    List<File> playlistFiles = new ArrayList<File>(1 + filelist.size() / 10);
+    for (File file : filelist) {
       // Leave ASAP if exit request
       if (ExitService.isExiting()) {
-        return;
+        return null;
       }
       // Check file name is correct (useful to fix name encoding
       // issues)
-      if (!new File(filelist[i].getAbsolutePath()).exists()) {
-        Log.warn("Cannot read file name (please rename it): {{" + filelist[i].getAbsolutePath()
+      if (!new File(file.getAbsolutePath()).exists()) {
+        Log.warn("Cannot read file name (please rename it): {{" + file.getAbsolutePath()
             + "}}");
         continue;
       }
       // Ignore iTunes files
-      if (filelist[i].getName().startsWith("._")) {
+      if (file.getName().startsWith("._")) {
         continue;
       }
       // check if we recognize the file as music file
-      String extension = UtilSystem.getExtension(filelist[i]);
+      String extension = UtilSystem.getExtension(file);
       Type type = TypeManager.getInstance().getTypeByExtension(extension);
       // Now, compute disc ID and cache tags 
       if (type.getBooleanValue(Const.XML_TYPE_IS_MUSIC)) {
-        musicFiles.add(filelist[i]);
+        musicFiles.add(file);
       } else { // playlist
-        playlistFiles.add(filelist[i]);
+        playlistFiles.add(file);
       }
     }
     // Compute the disc id 
-    this.discID = computeDiscID();
+    return new ScanContent(musicFiles, playlistFiles, computeDiscID(allFiles));
+  }
+
+  /**
+   * Register the files found by listContent().
+   * 
+   * @param content the directory content
+   * @param bDeepScan :
+   * force files tag read
+   * @param reporter Refresh handler
+   * 
+   * @return the music files registered, new or whose tags have been read again
+   */
+  List<org.jajuk.base.File> register(ScanContent content, boolean bDeepScan,
+      RefreshReporter reporter) {
+    this.discID = content.discID;
+    List<org.jajuk.base.File> registered = new ArrayList<org.jajuk.base.File>();
     // Perform actual scan and check errors for each file
-    for (File musicFile : musicFiles) {
+    for (File musicFile : content.musicFiles) {
       try {
-        scanMusic(musicFile, bDeepScan, reporter);
+        org.jajuk.base.File file = scanMusic(musicFile, bDeepScan, reporter,
+            content.tags.get(musicFile));
+        if (file != null) {
+          registered.add(file);
+        }
       } catch (Exception e) {
-        Log.error(103, filelist.length > 0 ? "{{" + musicFile.toString() + "}}" : "", e);
+        Log.error(103, "{{" + musicFile.toString() + "}}", e);
       }
     }
-    for (File playlistFile : playlistFiles) {
+    for (File playlistFile : content.playlistFiles) {
       try {
         scanPlaylist(playlistFile, bDeepScan, reporter);
       } catch (Exception e) {
-        Log.error(103, filelist.length > 0 ? "{{" + playlistFile.toString() + "}}" : "", e);
+        Log.error(103, "{{" + playlistFile.toString() + "}}", e);
       }
     }
     // Clear the tag cache so tags are actually read at next deep refresh
@@ -336,18 +388,101 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
     for (Album album : albumsToCheck) {
       album.findCover();
     }
+    return registered;
+  }
+
+  /**
+   * Tell whether the tag of a music file of this directory has to be read
+   * by a scan.
+   * 
+   * @param music the music file
+   * @param bDeepScan whether it is a deep scan
+   * 
+   * @return whether the tag has to be read
+   */
+  boolean isTagReadRequired(java.io.File music, boolean bDeepScan) {
+    String sId = FileManager.createID(music.getName(), this);
+    return isTagReadRequired(music, FileManager.getInstance().getFileByID(sId), bDeepScan);
+  }
+
+  /**
+   * Tell whether the tag of a music file of this directory has to be read
+   * by a scan.
+   * 
+   * @param music the music file
+   * @param fileRef the already known file or null if it is a new file
+   * @param bDeepScan whether it is a deep scan
+   * 
+   * @return whether the tag has to be read
+   */
+  private boolean isTagReadRequired(java.io.File music, org.jajuk.base.File fileRef,
+      boolean bDeepScan) {
+    // if known file and no deep scan, just leave
+    if (fileRef != null && !bDeepScan) {
+      return false;
+    }
+    // Is this format tag readable ?
+    Type type = TypeManager.getInstance().getTypeByExtension(UtilSystem.getExtension(music));
+    boolean tagSupported = (type.getTaggerClass() != null);
+    // Deep refresh : if the audio file format doesn't support tagging (like wav) and the file
+    // is already known, continue, no need to try to read tags
+    return tagSupported || fileRef == null;
+  }
+
+  /**
+   * Content of a directory found by a scan, not yet registered.
+   */
+  static final class ScanContent {
+    /** Music files. */
+    private final List<File> musicFiles;
+    /** Playlist files. */
+    private final List<File> playlistFiles;
+    /** Directory disc ID. */
+    private final long discID;
+    /** Music file -> tag being read by a refresh tag reader. Other files tags are read at registration. */
+    private final Map<File, Future<TagMetadata>> tags = new HashMap<File, Future<TagMetadata>>();
+
+    /**
+     * Instantiates a new scan content.
+     * 
+     * @param musicFiles 
+     * @param playlistFiles 
+     * @param discID 
+     */
+    private ScanContent(List<File> musicFiles, List<File> playlistFiles, long discID) {
+      this.musicFiles = musicFiles;
+      this.playlistFiles = playlistFiles;
+      this.discID = discID;
+    }
+
+    /**
+     * Gets the music files.
+     * 
+     * @return the music files
+     */
+    List<File> getMusicFiles() {
+      return musicFiles;
+    }
+
+    /**
+     * Set the tag being read for a music file.
+     * 
+     * @param music the music file
+     * @param tag the tag being read
+     */
+    void setPendingTag(File music, Future<TagMetadata> tag) {
+      tags.put(music, tag);
+    }
   }
 
   /**
    * Compute the directory disc id (simply the sum in bits of the audio files lengths)
+   * @param files the directory files
    * @return the directory disc id
    */
-  private long computeDiscID() {
+  private long computeDiscID(java.io.File[] files) {
     long out = 0;
     JajukFileFilter filter = new JajukFileFilter(AudioFilter.getInstance());
-    File fDir = getFio();
-    java.io.File[] files = fDir.listFiles();// null if none file
-    // found
     for (int i = 0; files != null && i < files.length; i++) {
       if (filter.accept(files[i])) {
         out += files[i].length();
@@ -376,10 +511,13 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
    * @param music 
    * @param bDeepScan 
    * @param reporter 
+   * @param pendingTag the tag being read by a refresh tag reader, null to read it now
+   * @return the registered file, null if the file is known and its tags have
+   * not been read again
    * @throws JajukException the jajuk exception
    */
-  private void scanMusic(java.io.File music, boolean bDeepScan, RefreshReporter reporter)
-      throws JajukException {
+  private org.jajuk.base.File scanMusic(java.io.File music, boolean bDeepScan, RefreshReporter reporter,
+      Future<TagMetadata> pendingTag) throws JajukException {
     String lName = music.getName();
     String sId = FileManager.createID(lName, this);
     // check the file is not already known in database
@@ -387,23 +525,17 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
     // Set name again to make sure Windows users will see actual
     // name with right case
     if (UtilSystem.isUnderWindows() && fileRef != null) {
-      fileRef.setName(lName);
+      FileManager.getInstance().setFileName(fileRef, lName);
     }
-    // if known file and no deep scan, just leave
-    if (fileRef != null && !bDeepScan) {
-      return;
+    if (!isTagReadRequired(music, fileRef, bDeepScan)) {
+      return null;
     }
     // Is this format tag readable ?
     Type type = TypeManager.getInstance().getTypeByExtension(UtilSystem.getExtension(music));
     boolean tagSupported = (type.getTaggerClass() != null);
-    // Deep refresh : if the audio file format doesn't support tagging (like wav) and the file
-    // is already known, continue, no need to try to read tags
-    if (!tagSupported && fileRef != null) {
-      return;
-    }
     // Ignore tag error to make sure to get a
     // tag object in all cases.
-    Tag tag = Tag.getTagForFio(music, true);
+    TagMetadata tag = getTag(music, pendingTag, reporter);
     // We need a tag instance even for unsupported formats but it that
     // case, we don't notify tag reading errors
     if (tag.isCorrupted() && tagSupported) {
@@ -441,6 +573,35 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
     for (String s : Tag.getActivatedExtraTags()) {
       track.setProperty(s, tag.getTagField(s));
     }
+    return FileManager.getInstance().getFileByID(sId);
+  }
+
+  /**
+   * Gets the tag of a music file, waiting for its read by a refresh tag reader
+   * if any.
+   * 
+   * @param music the music file
+   * @param pendingTag the tag being read or null if it has not been submitted
+   * to a tag reader
+   * @param reporter the refresh reporter, can be null
+   * 
+   * @return the tag metadata
+   * 
+   * @throws JajukException if the tag read failed or has been interrupted
+   */
+  private TagMetadata getTag(java.io.File music, Future<TagMetadata> pendingTag,
+      RefreshReporter reporter) throws JajukException {
+    if (pendingTag == null) {
+      return TagMetadataCache.getInstance().read(music, reporter);
+    }
+    try {
+      return pendingTag.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new JajukException(103, music.getName(), e);
+    } catch (ExecutionException e) {
+      throw new JajukException(103, music.getName(), e.getCause());
+    }
   }
 
   private Track registerFile(java.io.File music, String sFileId, String sTrackName,
@@ -637,7 +798,7 @@ public class Directory extends PhysicalItem implements Comparable<Directory> {
    * @return whether this item should be hidden with hide option
    */
   public boolean shouldBeHidden() {
-    if (getDevice().isMounted() || !Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED)) {
+    if (getDevice().isMounted() || !Conf.getSnapshot().isHideUnmounted()) {
       return false;
     }
     return true;
@@ -0,0 +1,582 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jajuk.services.core.ExitService;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Const;
+import org.jajuk.util.MD5Processor;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.log.Log;
+
+/**
+ * Persistent index of the files content fingerprints, used to find the files
+ * having the same content (copies of a file on several devices or
+ * directories).
+ * <p>
+ * Fingerprints are computed in stages, each stage only for the files the
+ * previous one cannot tell apart : the file size, then a hash of a few blocks
+ * sampled at the start, middle and end of the file, then a hash of the whole
+ * content for the files sharing the same size and sampled blocks with another
+ * file. Small files are fully read by the sampling stage.
+ * </p>
+ * <p>
+ * The files registered by a device refresh (new files or files whose tags
+ * have been read again) are fingerprinted in the background, and only when
+ * their size or date changed. The files sharing their size and sampled blocks
+ * are grouped as they are fingerprinted, so only the groups of the changed
+ * files are checked for full hashes. Files of unmounted devices keep their
+ * last fingerprint, their full hash is computed once they can be read.
+ * </p>
+ * <p>
+ * Format (version 1) : magic, format version, entries count, then for each
+ * entry : file ID, file size, file date, sampled blocks hash and full hash
+ * (empty if not computed).
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class DuplicateIndex {
+  /** Magic number ("JJKD"). */
+  private static final int MAGIC = 0x4A4A4B44;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Size of a sampled block in bytes. */
+  static final int BLOCK_SIZE = 4096;
+  /** Number of sampled blocks, evenly spread from the start to the end. */
+  static final int BLOCKS = 3;
+  /** Self instance. */
+  private static DuplicateIndex self = new DuplicateIndex();
+  /** File ID -> fingerprint. */
+  private final Map<String, Fingerprint> entries = new ConcurrentHashMap<String, Fingerprint>(
+      1000);
+  /** Candidates key -> IDs of the files sharing it, guarded by itself. */
+  private final Map<String, Set<String>> candidates = new HashMap<String, Set<String>>(1000);
+  /** Files waiting to be fingerprinted. */
+  private final Set<File> pending = Collections
+      .newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+  /** Whether a fingerprinting task is waiting for the pending files. */
+  private final AtomicBoolean bScheduled = new AtomicBoolean(false);
+  /** Fingerprinting thread. */
+  private final ThreadPoolExecutor executor;
+  /** Whether the index file has been read. */
+  private volatile boolean bLoaded = false;
+  /** Whether the index changed since last commit. */
+  private volatile boolean bChanged = false;
+
+  /**
+   * Content fingerprint of a file.
+   */
+  private static final class Fingerprint {
+    /** File size when fingerprinted. */
+    private final long size;
+    /** File date when fingerprinted. */
+    private final long date;
+    /** Hash of the sampled blocks. */
+    private final String sample;
+    /** Hash of the whole content, null if not computed. */
+    private final String full;
+
+    /**
+     * Instantiates a new fingerprint.
+     *
+     * @param size
+     * @param date
+     * @param sample
+     * @param full
+     */
+    private Fingerprint(long size, long date, String sample, String full) {
+      this.size = size;
+      this.date = date;
+      this.sample = sample;
+      this.full = full;
+    }
+
+    /**
+     * Gets the key shared by the files that may have the same content.
+     *
+     * @return the candidates key
+     */
+    private String getCandidatesKey() {
+      return size + "/" + sample;
+    }
+  }
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  public static DuplicateIndex getInstance() {
+    return self;
+  }
+
+  /**
+   * private constructor for singleton.
+   */
+  private DuplicateIndex() {
+    executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Duplicate Index Thread");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Gets the index file.
+   *
+   * @return the index file
+   */
+  static java.io.File getIndexFile() {
+    return SessionService.getConfFileByPath(Const.FILE_DUPLICATE_INDEX);
+  }
+
+  /**
+   * Fingerprint the files registered by a refresh in the background.
+   *
+   * @param files the registered files
+   */
+  void refresh(Collection<File> files) {
+    if (files.isEmpty()) {
+      return;
+    }
+    pending.addAll(files);
+    if (!bScheduled.compareAndSet(false, true)) {
+      // Already waiting
+      return;
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        bScheduled.set(false);
+        List<File> toIndex = new ArrayList<File>(pending);
+        pending.removeAll(toIndex);
+        try {
+          index(toIndex);
+        } catch (Exception e) {
+          Log.error(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Fingerprint all the files of a device, then the whole content of the
+   * files that may have the same content than another file.
+   *
+   * @param device the device
+   */
+  void index(Device device) {
+    List<File> files = new ArrayList<File>();
+    for (File file : FileManager.getInstance().getFiles()) {
+      if (file.getDevice().equals(device)) {
+        files.add(file);
+      }
+    }
+    index(files);
+  }
+
+  /**
+   * Fingerprint the given files if new or changed, then the whole content of
+   * the files that may have the same content than another file.
+   *
+   * @param files the files
+   */
+  void index(Collection<File> files) {
+    load();
+    Set<String> keys = new HashSet<String>();
+    for (File file : files) {
+      if (ExitService.isExiting()) {
+        return;
+      }
+      if (!file.getDevice().isMounted()) {
+        continue;
+      }
+      java.io.File fio = file.getFIO();
+      long size = fio.length();
+      long date = fio.lastModified();
+      Fingerprint fingerprint = entries.get(file.getID());
+      if (fingerprint == null || fingerprint.size != size || fingerprint.date != date) {
+        try {
+          fingerprint = fingerprint(fio, size, date);
+          put(file.getID(), fingerprint);
+          bChanged = true;
+        } catch (IOException e) {
+          Log.debug("Cannot fingerprint: " + fio.getAbsolutePath() + " : " + e.getMessage());
+          continue;
+        }
+      }
+      keys.add(fingerprint.getCandidatesKey());
+    }
+    resolveCandidates(keys);
+  }
+
+  /**
+   * Set a file fingerprint and move the file to its candidates group.
+   *
+   * @param id the file ID
+   * @param fingerprint the fingerprint
+   */
+  private void put(String id, Fingerprint fingerprint) {
+    synchronized (candidates) {
+      Fingerprint old = entries.put(id, fingerprint);
+      String key = fingerprint.getCandidatesKey();
+      if (old != null && !old.getCandidatesKey().equals(key)) {
+        removeCandidate(id, old);
+      }
+      Set<String> ids = candidates.get(key);
+      if (ids == null) {
+        ids = new HashSet<String>(2);
+        candidates.put(key, ids);
+      }
+      ids.add(id);
+    }
+  }
+
+  /**
+   * Forget a file fingerprint.
+   *
+   * @param id the file ID
+   */
+  private void remove(String id) {
+    synchronized (candidates) {
+      Fingerprint old = entries.remove(id);
+      if (old != null) {
+        removeCandidate(id, old);
+      }
+    }
+  }
+
+  /**
+   * Remove a file from its candidates group. Must be called with the
+   * candidates lock held.
+   *
+   * @param id the file ID
+   * @param fingerprint the file fingerprint
+   */
+  private void removeCandidate(String id, Fingerprint fingerprint) {
+    String key = fingerprint.getCandidatesKey();
+    Set<String> ids = candidates.get(key);
+    if (ids != null) {
+      ids.remove(id);
+      if (ids.isEmpty()) {
+        candidates.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Compute the full hash of the files of the given candidates groups having
+   * at least two files, if not done yet and if the file can be read.
+   *
+   * @param keys the candidates keys
+   */
+  private void resolveCandidates(Collection<String> keys) {
+    for (String key : keys) {
+      List<String> ids;
+      synchronized (candidates) {
+        Set<String> group = candidates.get(key);
+        if (group == null || group.size() < 2) {
+          continue;
+        }
+        ids = new ArrayList<String>(group);
+      }
+      for (String id : ids) {
+        if (ExitService.isExiting()) {
+          return;
+        }
+        Fingerprint fingerprint = entries.get(id);
+        File file = FileManager.getInstance().getFileByID(id);
+        if (fingerprint == null || fingerprint.full != null || file == null || !file.isReady()) {
+          continue;
+        }
+        java.io.File fio = file.getFIO();
+        try {
+          InputStream in = new FileInputStream(fio);
+          String full;
+          try {
+            full = MD5Processor.digest(in);
+          } finally {
+            in.close();
+          }
+          // Ignore files changed since their sampling, they will be sampled again
+          if (fio.length() == fingerprint.size && fio.lastModified() == fingerprint.date) {
+            put(id, new Fingerprint(fingerprint.size, fingerprint.date, fingerprint.sample, full));
+            bChanged = true;
+          }
+        } catch (IOException e) {
+          Log.debug("Cannot fingerprint: " + fio.getAbsolutePath() + " : " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Compute the fingerprint of a file, without its full hash unless the
+   * sampled blocks are the whole file.
+   *
+   * @param fio the file
+   * @param size the file size
+   * @param date the file date
+   *
+   * @return the fingerprint
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static Fingerprint fingerprint(java.io.File fio, long size, long date)
+      throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(fio, "r");
+    try {
+      if (size <= BLOCKS * BLOCK_SIZE) {
+        byte[] content = new byte[(int) size];
+        raf.readFully(content);
+        String hash = MD5Processor.digest(content, 0, content.length);
+        return new Fingerprint(size, date, hash, hash);
+      }
+      byte[] blocks = new byte[BLOCKS * BLOCK_SIZE];
+      for (int i = 0; i < BLOCKS; i++) {
+        raf.seek((size - BLOCK_SIZE) * i / (BLOCKS - 1));
+        raf.readFully(blocks, i * BLOCK_SIZE, BLOCK_SIZE);
+      }
+      return new Fingerprint(size, date, MD5Processor.digest(blocks, 0, blocks.length), null);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Gets the full content hash of a file, known only if another file may have
+   * the same content.
+   *
+   * @param file the file
+   *
+   * @return the content hash or null if unknown
+   */
+  public String getContentHash(File file) {
+    load();
+    Fingerprint fingerprint = entries.get(file.getID());
+    if (fingerprint == null || fingerprint.size != file.getSize()) {
+      return null;
+    }
+    return fingerprint.full;
+  }
+
+  /**
+   * Gets the other files with the same content than a file.
+   *
+   * @param file the file
+   *
+   * @return the files with the same content, void if none or unknown
+   */
+  public List<File> getDuplicates(File file) {
+    List<File> out = new ArrayList<File>(1);
+    String hash = getContentHash(file);
+    if (hash == null) {
+      return out;
+    }
+    for (Map.Entry<String, Fingerprint> entry : entries.entrySet()) {
+      if (hash.equals(entry.getValue().full) && !entry.getKey().equals(file.getID())) {
+        File duplicate = FileManager.getInstance().getFileByID(entry.getKey());
+        if (duplicate != null) {
+          out.add(duplicate);
+        }
+      }
+    }
+    Collections.sort(out);
+    return out;
+  }
+
+  /**
+   * Gets all the groups of files with the same content. Files not
+   * fingerprinted yet (devices not refreshed since their addition) are not
+   * reported.
+   *
+   * @return the groups of at least two files with the same content, each
+   * group sorted
+   */
+  public List<List<File>> getDuplicates() {
+    load();
+    Map<String, List<File>> groups = new HashMap<String, List<File>>();
+    for (Map.Entry<String, Fingerprint> entry : entries.entrySet()) {
+      String hash = entry.getValue().full;
+      File file = FileManager.getInstance().getFileByID(entry.getKey());
+      if (hash == null || file == null || file.getSize() != entry.getValue().size) {
+        continue;
+      }
+      List<File> group = groups.get(hash);
+      if (group == null) {
+        group = new ArrayList<File>(2);
+        groups.put(hash, group);
+      }
+      group.add(file);
+    }
+    List<List<File>> out = new ArrayList<List<File>>();
+    for (List<File> group : groups.values()) {
+      if (group.size() > 1) {
+        Collections.sort(group);
+        out.add(group);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Read the index file if not done yet. A missing or unreadable index file
+   * is ignored : files are fingerprinted again.
+   */
+  private void load() {
+    if (bLoaded) {
+      return;
+    }
+    synchronized (this) {
+      if (bLoaded) {
+        return;
+      }
+      read();
+      bLoaded = true;
+    }
+  }
+
+  /**
+   * Read the index file.
+   */
+  private void read() {
+    java.io.File file = getIndexFile();
+    if (!file.exists()) {
+      return;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(file)));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+          Log.debug("Unknown duplicate index format, ignored");
+          return;
+        }
+        int nbEntries = in.readInt();
+        for (int i = 0; i < nbEntries; i++) {
+          String id = in.readUTF();
+          long size = in.readLong();
+          long date = in.readLong();
+          String sample = in.readUTF();
+          String full = in.readUTF();
+          // Don't override entries fingerprinted meanwhile
+          if (!entries.containsKey(id)) {
+            put(id, new Fingerprint(size, date, sample, full.isEmpty() ? null : full));
+          }
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      Log.error(e);
+      synchronized (candidates) {
+        entries.clear();
+        candidates.clear();
+      }
+    }
+  }
+
+  /**
+   * Write the index file if it changed. Entries of files no more in the
+   * collection are dropped.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized void commit() throws IOException {
+    if (!bChanged) {
+      return;
+    }
+    bChanged = false;
+    for (String id : new ArrayList<String>(entries.keySet())) {
+      if (FileManager.getInstance().getFileByID(id) == null) {
+        remove(id);
+      }
+    }
+    java.io.File saving = SessionService.getConfFileByPath(Const.FILE_DUPLICATE_INDEX + "."
+        + Const.FILE_SAVING_FILE_EXTENSION);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+        saving)));
+    try {
+      // Take a copy as files may be fingerprinted meanwhile
+      List<Map.Entry<String, Fingerprint>> copy = new ArrayList<Map.Entry<String, Fingerprint>>(
+          entries.entrySet());
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(copy.size());
+      for (Map.Entry<String, Fingerprint> mapEntry : copy) {
+        Fingerprint fingerprint = mapEntry.getValue();
+        out.writeUTF(mapEntry.getKey());
+        out.writeLong(fingerprint.size);
+        out.writeLong(fingerprint.date);
+        out.writeUTF(fingerprint.sample);
+        out.writeUTF(fingerprint.full == null ? "" : fingerprint.full);
+      }
+      out.flush();
+    } finally {
+      out.close();
+    }
+    UtilSystem.saveFileWithRecoverySupport(getIndexFile());
+  }
+
+  /**
+   * Forget all entries, the index file is read again at next lookup.
+   */
+  synchronized void clear() {
+    synchronized (candidates) {
+      entries.clear();
+      candidates.clear();
+    }
+    bLoaded = false;
+    bChanged = false;
+  }
+}
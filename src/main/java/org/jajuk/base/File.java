@@ -278,7 +278,7 @@ public class File extends PhysicalItem implements Comparable<File> {
    */
   public boolean shouldBeHidden() {
     if (getDirectory().getDevice().isMounted()
-        || !Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED)) {
+        || !Conf.getSnapshot().isHideUnmounted()) {
       return false;
     }
     return true;
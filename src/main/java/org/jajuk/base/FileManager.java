@@ -25,11 +25,13 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.jajuk.events.JajukEvent;
@@ -57,26 +59,22 @@ public final class FileManager extends ItemManager {
   private final List<File> alBestofFiles = new ArrayList<File>(20);
   /** Self instance. */
   private static FileManager singleton = new FileManager();
+  /** Absolute path -> file index, null until first lookup or after a path change. */
+  private Map<String, File> pathIndex;
+  /** Case-folded absolute path -> file index, used as a second chance lookup. */
+  private Map<String, File> foldedPathIndex;
+  /**
+   * Case-folded absolute path -> the other files with this path, when several
+   * files only differ by the case.
+   */
+  private Map<String, List<File>> foldedPathCollisions;
+  /** Path indexes lock, always taken after the manager lock if both are required. */
+  private final Object pathIndexLock = new Object();
   /**
    * Played recently filtering predicate
    * <br/>Applies on HistoryItem collections 
    */
   protected static final int CONSIDERE_AS_RECENTLY_PLAYED_DAYS = 150;
-  /** File comparator based on rate. */
-  private final Comparator<File> rateComparator = new Comparator<File>() {
-    @Override
-    public int compare(File file1, File file2) {
-      long lRate1 = file1.getTrack().getRate();
-      long lRate2 = file2.getTrack().getRate();
-      if (lRate1 == lRate2) {
-        return 0;
-      } else if (lRate1 < lRate2) {
-        return 1;
-      } else {
-        return -1;
-      }
-    }
-  };
 
   /**
    * No constructor available, only static access.
@@ -139,11 +137,11 @@ public final class FileManager extends ItemManager {
         if (directory.getDevice().isRefreshing() && Log.isDebugEnabled()) {
           Log.debug("registrated new file: " + file);
         }
-      } else if (!file.getName().equals(sName)) {
+      } else {
         // If file already exist and the track has changed, make changes
         // Set name again because under Windows, the file name case
         // could have changed but we keep the same file object
-        file.setName(sName);
+        setFileName(file, sName);
       }
       // Add file to track
       track.addFile(file);
@@ -153,6 +151,26 @@ public final class FileManager extends ItemManager {
     }
   }
 
+  /**
+   * Set the name of a known file whose case changed (under Windows), keeping
+   * the same file object. The file is indexed again with its new path.
+   *
+   * @param file the file
+   * @param sName the actual file name
+   */
+  void setFileName(File file, String sName) {
+    lock.writeLock().lock();
+    try {
+      if (!file.getName().equals(sName)) {
+        unindexPath(file);
+        file.setName(sName);
+        indexPath(file);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
   /**
    * Register an File without known id.
    *
@@ -349,46 +367,212 @@ public final class FileManager extends ItemManager {
    *
    * @return file or null if given path is not known
    */
-  File getFileByPath(String sPath) {
+  public File getFileByPath(String sPath) {
     lock.readLock().lock();
     try {
-      File fOut = null;
-      java.io.File fToCompare = new java.io.File(sPath);
-      ReadOnlyIterator<File> it = getFilesIterator();
-      while (it.hasNext()) {
-        File file = it.next();
-        // we compare io files and not paths
-        // to avoid dealing with path name issues
-        if (file.getFIO().equals(fToCompare)) {
-          fOut = file;
-          break;
+      synchronized (pathIndexLock) {
+        if (pathIndex == null) {
+          buildPathIndex();
         }
-      }
-      // Fix  #1717 (Cannot load some playlists) : if the file is not found, second chance ignoring the case
-      // This can happen under Unix when using an SMB drive
-      if (fOut == null) {
-        it = getFilesIterator();
-        while (it.hasNext()) {
-          File file = it.next();
-          if (file.getFIO().getAbsolutePath().equalsIgnoreCase(fToCompare.getAbsolutePath())) {
-            fOut = file;
-            break;
-          }
+        // we use io files paths to avoid dealing with path name issues
+        String path = new java.io.File(sPath).getAbsolutePath();
+        File fOut = pathIndex.get(path);
+        // Fix  #1717 (Cannot load some playlists) : if the file is not found, second chance ignoring the case
+        // This can happen under Unix when using an SMB drive
+        if (fOut == null) {
+          fOut = foldedPathIndex.get(foldCase(path));
         }
+        return fOut;
       }
-      return fOut;
     } finally {
       lock.readLock().unlock();
     }
   }
 
+  /**
+   * Build the path indexes from the registered files. Must be called with the
+   * manager read lock and the path indexes lock.
+   */
+  private void buildPathIndex() {
+    pathIndex = new HashMap<String, File>(getElementCount() * 2);
+    foldedPathIndex = new HashMap<String, File>(getElementCount() * 2);
+    foldedPathCollisions = new HashMap<String, List<File>>(2);
+    ReadOnlyIterator<File> it = getFilesIterator();
+    while (it.hasNext()) {
+      addToPathIndex(it.next());
+    }
+  }
+
+  /**
+   * Gets the key of a file in the path index.
+   *
+   * @param file
+   *
+   * @return the file absolute path or null if the file has no directory
+   */
+  private static String getPathKey(File file) {
+    if (file.getDirectory() == null) {
+      return null;
+    }
+    return new java.io.File(file.getAbsolutePath()).getAbsolutePath();
+  }
+
+  /**
+   * Gets the case-folded form of a path.
+   *
+   * @param path
+   *
+   * @return the path in lower case
+   */
+  private static String foldCase(String path) {
+    return path.toLowerCase(Locale.ENGLISH);
+  }
+
+  /**
+   * Add a file to the path indexes, they must be built. When several files
+   * only differ by the case, the first one is kept in the case-folded index.
+   *
+   * @param file
+   */
+  private void addToPathIndex(File file) {
+    String path = getPathKey(file);
+    if (path == null) {
+      return;
+    }
+    pathIndex.put(path, file);
+    String folded = foldCase(path);
+    File first = foldedPathIndex.get(folded);
+    if (first == null) {
+      foldedPathIndex.put(folded, file);
+    } else if (first != file) {
+      List<File> others = foldedPathCollisions.get(folded);
+      if (others == null) {
+        others = new ArrayList<File>(1);
+        foldedPathCollisions.put(folded, others);
+      }
+      if (!others.contains(file)) {
+        others.add(file);
+      }
+    }
+  }
+
+  /**
+   * Index the path of a file if the path indexes are built.
+   *
+   * @param file
+   */
+  private void indexPath(File file) {
+    synchronized (pathIndexLock) {
+      if (pathIndex != null) {
+        addToPathIndex(file);
+      }
+    }
+  }
+
+  /**
+   * Remove the path of a file from the path indexes if they are built.
+   *
+   * @param file
+   */
+  private void unindexPath(File file) {
+    synchronized (pathIndexLock) {
+      if (pathIndex == null) {
+        return;
+      }
+      String path = getPathKey(file);
+      if (path == null) {
+        return;
+      }
+      if (pathIndex.get(path) == file) {
+        pathIndex.remove(path);
+      }
+      String folded = foldCase(path);
+      List<File> others = foldedPathCollisions.get(folded);
+      if (foldedPathIndex.get(folded) == file) {
+        if (others == null) {
+          foldedPathIndex.remove(folded);
+        } else {
+          // Another file still has this case-folded path
+          foldedPathIndex.put(folded, others.remove(0));
+        }
+      } else if (others != null) {
+        others.remove(file);
+      }
+      if (others != null && others.isEmpty()) {
+        foldedPathCollisions.remove(folded);
+      }
+    }
+  }
+
+  /**
+   * Drop the path indexes, they will be built again at next lookup. Called
+   * when the path of many files changes (device url change for ie).
+   */
+  void invalidatePathIndex() {
+    synchronized (pathIndexLock) {
+      pathIndex = null;
+      foldedPathIndex = null;
+      foldedPathCollisions = null;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.base.ItemManager#registerItem(org.jajuk.base.Item)
+   */
+  @Override
+  protected void registerItem(Item item) {
+    lock.writeLock().lock();
+    try {
+      super.registerItem(item);
+      indexPath((File) item);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.base.ItemManager#removeItem(org.jajuk.base.Item)
+   */
+  @Override
+  public void removeItem(Item item) {
+    lock.writeLock().lock();
+    try {
+      super.removeItem(item);
+      if (item != null) {
+        unindexPath((File) item);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.base.ItemManager#clear()
+   */
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      super.clear();
+      invalidatePathIndex();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
   /**
    * Gets the ready files.
    *
    * @return All accessible files of the collection
    */
   public List<File> getReadyFiles() {
-    List<File> files = getFiles();
+    List<File> files = new ArrayList<File>(getFiles());
     CollectionUtils.filter(files, new JajukPredicates.ReadyFilePredicate());
     return files;
   }
@@ -400,15 +584,7 @@ public final class FileManager extends ItemManager {
    * @return the file
    */
   public File getShuffleFile() {
-    List<File> alEligibleFiles = getReadyFiles();
-    // filter banned files
-    CollectionUtils.filter(alEligibleFiles, new JajukPredicates.BannedFilePredicate());
-    if (alEligibleFiles.size() > 0) {
-      int index = UtilSystem.getRandom().nextInt(alEligibleFiles.size() - 1);
-      return alEligibleFiles.get(index);
-    } else {
-      return null;
-    }
+    return PlaylistCandidates.getInstance().getShuffleFile(UtilSystem.getRandom());
   }
 
   /**
@@ -418,9 +594,8 @@ public final class FileManager extends ItemManager {
    * collection)
    */
   public List<File> getGlobalShufflePlaylist() {
-    List<File> alEligibleFiles = getReadyFiles();
-    // filter banned files
-    CollectionUtils.filter(alEligibleFiles, new JajukPredicates.BannedFilePredicate());
+    // mounted and unbanned files
+    List<File> alEligibleFiles = PlaylistCandidates.getInstance().getShuffleFiles();
     // We filter recently played tracks to improve the quality of the randomness
     filterRecentlyPlayedTracks(alEligibleFiles);
     // shuffle
@@ -431,12 +606,12 @@ public final class FileManager extends ItemManager {
     }
     // (not shuffle) Album / album
     else if (Conf.getString(Const.CONF_GLOBAL_RANDOM_MODE).equals(Const.MODE_ALBUM2)) {
-      final List<Album> albums = AlbumManager.getInstance().getAlbums();
+      final List<Album> albums = new ArrayList<Album>(AlbumManager.getInstance().getAlbums());
       Collections.shuffle(albums, UtilSystem.getRandom());
       // We need an index (bench: 45* faster)
-      final Map<Album, Integer> index = new HashMap<Album, Integer>();
-      for (Album album : albums) {
-        index.put(album, albums.indexOf(album));
+      final Map<Album, Integer> index = new HashMap<Album, Integer>(albums.size());
+      for (int i = 0; i < albums.size(); i++) {
+        index.put(albums.get(i), i);
       }
       Collections.sort(alEligibleFiles, new Comparator<File>() {
         @Override
@@ -470,24 +645,26 @@ public final class FileManager extends ItemManager {
    */
   protected void filterRecentlyPlayedTracks(List<File> files) {
     long now = new Date().getTime();
-    for (HistoryItem item : History.getInstance().getItems()) {
-      int trackAgeDays = (int) ((now - item.getDate()) / Const.MILLISECONDS_IN_A_DAY);
-      if (trackAgeDays < CONSIDERE_AS_RECENTLY_PLAYED_DAYS) {
-        if (files.size() > Const.NB_TRACKS_ON_ACTION) {
-          File file = FileManager.getInstance().getFileByID(item.getFileId());
-          if (file != null && file.getTrack() != null) {
-            // Remove this item if it exist in the list (otherwise, List does nothing)
-            files.remove(file);
-          }
-        } else {
-          //We reach the floor of too few tracks so we stop to filter by date
-          break;
+    Set<File> candidates = new HashSet<File>(files);
+    Set<File> recentlyPlayed = new HashSet<File>();
+    // Only the recently played area of the history, newest first
+    long from = now - ((long) CONSIDERE_AS_RECENTLY_PLAYED_DAYS) * Const.MILLISECONDS_IN_A_DAY
+        + 1;
+    for (HistoryItem item : History.getInstance().getItems(from, Long.MAX_VALUE)) {
+      if (files.size() - recentlyPlayed.size() > Const.NB_TRACKS_ON_ACTION) {
+        File file = FileManager.getInstance().getFileByID(item.getFileId());
+        if (file != null && file.getTrack() != null && candidates.contains(file)) {
+          recentlyPlayed.add(file);
         }
       } else {
-        // We reach the non-recently played area of the history, we can leave
+        //We reach the floor of too few tracks so we stop to filter by date
         break;
       }
     }
+    // Remove them in a single pass
+    if (!recentlyPlayed.isEmpty()) {
+      files.removeAll(recentlyPlayed);
+    }
   }
 
   /**
@@ -520,35 +697,9 @@ public final class FileManager extends ItemManager {
    * @return The entire accessible novelties collection
    */
   List<File> getGlobalNoveltiesPlaylist(boolean bHideUnmounted) {
-    List<File> alEligibleFiles = new ArrayList<File>(1000);
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    // Filter by age
-    CollectionUtils.filter(tracks,
-        new JajukPredicates.AgePredicate(Conf.getInt(Const.CONF_OPTIONS_NOVELTIES_AGE)));
-    // filter banned tracks
-    CollectionUtils.filter(tracks, new JajukPredicates.BannedTrackPredicate());
-    for (Track track : tracks) {
-      if (alEligibleFiles.size() > Const.NB_TRACKS_ON_ACTION) {
-        break;
-      }
-      File file = track.getBestFile(bHideUnmounted);
-      // try to get a mounted file
-      // (can return null)
-      if (file == null) {// none mounted file, take first file we find
-        continue;
-      }
-      alEligibleFiles.add(file);
-    }
-    // sort alphabetically and by date, newest first
-    Collections.sort(alEligibleFiles, new Comparator<File>() {
-      @Override
-      public int compare(File file1, File file2) {
-        String sCompared1 = file1.getTrack().getDiscoveryDate().getTime() + file1.getAbsolutePath();
-        String sCompared2 = file2.getTrack().getDiscoveryDate().getTime() + file2.getAbsolutePath();
-        return sCompared2.compareTo(sCompared1);
-      }
-    });
-    return alEligibleFiles;
+    // newest unbanned tracks first
+    return PlaylistCandidates.getInstance().getNovelties(
+        Conf.getInt(Const.CONF_OPTIONS_NOVELTIES_AGE), Const.NB_TRACKS_ON_ACTION, bHideUnmounted);
   }
 
   /**
@@ -604,19 +755,6 @@ public final class FileManager extends ItemManager {
     return out;
   }
 
-  /**
-   * Gets the sorted by rate.
-   *
-   * @return a sorted set of the collection by rate, highest first
-   */
-  private List<File> getSortedByRate() {
-    // use only mounted files
-    List<File> alEligibleFiles = getReadyFiles();
-    // now sort by rate
-    Collections.sort(alEligibleFiles, rateComparator);
-    return alEligibleFiles;
-  }
-
   /**
    * Return a shuffled playlist with the entire accessible bestof collection,
    * best first.
@@ -624,17 +762,17 @@ public final class FileManager extends ItemManager {
    * @return Shuffled best tracks (n% of favorite)
    */
   public List<File> getGlobalBestofPlaylist() {
-    List<File> al = getSortedByRate();
-    // Filter banned files
-    CollectionUtils.filter(al, new JajukPredicates.BannedFilePredicate());
+    // mounted and unbanned files
+    int size = PlaylistCandidates.getInstance().getShuffleFilesCount();
     List<File> alBest = null;
-    if (al.size() > 0) {
+    if (size > 0) {
       // find superior interval value
-      int sup = (int) ((Const.BESTOF_PROPORTION) * al.size());
+      int sup = (int) ((Const.BESTOF_PROPORTION) * size);
       if (sup < 2) {
-        sup = al.size();
+        sup = size;
       }
-      alBest = al.subList(0, sup - 1);
+      // Only walk the best files, highest rate first
+      alBest = PlaylistCandidates.getInstance().getReadyFilesByRate(sup - 1);
       Collections.shuffle(alBest, UtilSystem.getRandom());
     }
     return alBest;
@@ -661,26 +799,10 @@ public final class FileManager extends ItemManager {
     Log.debug("Invoking Refresh of BestOf-Files");
     // clear data
     alBestofFiles.clear();
-    // create a temporary table to remove unmounted files
     int iNbBestofFiles = Integer.parseInt(Conf.getString(Const.CONF_BESTOF_TRACKS_SIZE));
-    List<File> alEligibleFiles = new ArrayList<File>(iNbBestofFiles);
-    List<Track> tracks = TrackManager.getInstance().getTracks();
-    // filter banned tracks
-    CollectionUtils.filter(tracks, new JajukPredicates.BannedTrackPredicate());
-    for (Track track : tracks) {
-      File file = track.getBestFile(Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED));
-      if (file != null) {
-        alEligibleFiles.add(file);
-      }
-    }
-    Collections.sort(alEligibleFiles, rateComparator);
-    // Keep as much items as we can
-    int i = 0;
-    while (i < alEligibleFiles.size() && i < iNbBestofFiles) {
-      File file = alEligibleFiles.get(i);
-      alBestofFiles.add(file);
-      i++;
-    }
+    // Keep as much items as we can, highest rate first
+    alBestofFiles.addAll(PlaylistCandidates.getInstance().getBestFiles(iNbBestofFiles,
+        Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED)));
   }
 
   /**
@@ -20,6 +20,9 @@
  */
 package org.jajuk.base;
 
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import javax.swing.ImageIcon;
 
 import org.jajuk.util.Const;
@@ -33,6 +36,9 @@ import org.jajuk.util.Messages;
  * Logical item
  */
 public class Genre extends LogicalItem implements Comparable<Genre> {
+  /** For perfs, we cache the associated tracks. This cache is filled by the TrackManager using the getTracksCache() method */
+  private final Set<Track> cache = new LinkedHashSet<Track>(100);
+
   /**
    * Genre constructor.
    *
@@ -133,4 +139,13 @@ public class Genre extends LogicalItem implements Comparable<Genre> {
   public ImageIcon getIconRepresentation() {
     return IconLoader.getIcon(JajukIcons.GENRE);
   }
+
+  /**
+   * Gets the tracks cache.
+   * 
+   * @return tracks cache for this genre (perf), in no particular order: sort it on read
+   */
+  public Set<Track> getTracksCache() {
+    return this.cache;
+  }
 }
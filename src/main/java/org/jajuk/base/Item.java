@@ -20,12 +20,12 @@
  */
 package org.jajuk.base;
 
-import com.google.common.collect.Lists;
-
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.swing.ImageIcon;
@@ -56,9 +56,8 @@ public abstract class Item implements Const {
   /** Cache-string which holds the filter-string for the default "any"-Searches, this is filled during the first search and 
    * cleaned on all points where the properties are adjusted. */
   private String any = null;
-  private static final List<String> lowPriorityCollectionProperties = Lists.asList(XML_TRACK_HITS,
-      new String[] { XML_TRACK_TOTAL_PLAYTIME, XML_EXPANDED, XML_ALBUM_DISCOVERED_COVER,
-          XML_TRACK_RATE, XML_ORIGIN });
+  /** Lower-cased "any" string used as search key, cleaned along with the "any" cache. */
+  private volatile String searchKey;
 
   /**
    * Constructor.
@@ -134,9 +133,10 @@ public abstract class Item implements Const {
     if (!(otherItem instanceof Item)) {
       return false;
     }
-    // [Perf] We can compare with an == operator here because
-    // all ID are stored into String intern() buffer
-    return getID() == ((Item) otherItem).getID();
+    // [Perf] We can most of the time compare with an == operator here because
+    // all ID are stored into the IDPool, other IDs are compared by value
+    String sOtherID = ((Item) otherItem).getID();
+    return getID() == sOtherID || getID().equals(sOtherID);
   }
 
   /**
@@ -299,36 +299,67 @@ public abstract class Item implements Const {
    * @param oValue 
    */
   public final void setProperty(String sKey, Object oValue) {
-    // reset cached value
-    any = null;
     properties.put(sKey, oValue);
+    searchValuesChanged(sKey);
     notifyCollectionChange(sKey);
   }
 
   private final void notifyCollectionChange(String key) {
+    notifyCollectionChange(key, false);
+  }
+
+  /**
+   * Notify the persistence layer about a property change.
+   * 
+   * @param key the changed property or null if several properties changed
+   * @param removed whether the property has been removed
+   */
+  private final void notifyCollectionChange(String key, boolean removed) {
     // Ignore this if the persistence service is not yet started to speed up startup
-    if (!PersistenceService.getInstance().isAlive()) {
+    if (!CollectionJournal.isEnabled()) {
       return;
     }
-    // SmartPlaylist are not persisted
-    if (this instanceof SmartPlaylist) {
+    // SmartPlaylist are not persisted and types are set programmatically
+    if (this instanceof SmartPlaylist || this instanceof Type) {
       return;
     }
     // Webradios are stored outside the collection file and are persisted separately
     if (this instanceof WebRadio) {
       PersistenceService.getInstance().setRadiosChanged();
-    } else {
-      // Some properties like the track total play time is incremented very often and we don't want to commit 
-      // collection that soon so we set a low urgency to its commit
-      if (lowPriorityCollectionProperties.contains(key)) {
-        PersistenceService.getInstance().setCollectionChanged(Urgency.LOW);
-      } else {
-        // On the contrary, we want others changes to be commited ASAP
+    } else if (isRegistered()) {
+      // Items not yet registered are journaled as a whole at registration time
+      if (key == null) {
+        // A full properties change cannot be journaled, commit the whole collection
         PersistenceService.getInstance().setCollectionChanged(Urgency.HIGH);
+      } else if (removed) {
+        CollectionJournal.getInstance().propertyRemoved(this, key);
+      } else {
+        CollectionJournal.getInstance().propertySet(this, key);
       }
     }
   }
 
+  /**
+   * Tell whether this item is the one currently registered by its manager.
+   * 
+   * @return whether this item is registered
+   */
+  private boolean isRegistered() {
+    ItemManager manager = ItemManager.getItemManager(getClass());
+    return manager != null && manager.getItemByID(sID) == this;
+  }
+
+  /**
+   * Gets the raw property value, without default value fallback.
+   * 
+   * @param sKey 
+   * 
+   * @return the raw value or null if the property is not set
+   */
+  Object getRawValue(String sKey) {
+    return properties.get(sKey);
+  }
+
   /**
    * Gets the any.
    * 
@@ -339,6 +370,58 @@ public abstract class Item implements Const {
       return any;
     }
     StringBuilder sb = new StringBuilder(100);
+    for (String sValue : getAnyValues()) {
+      sb.append(sValue);
+    }
+    any = sb.toString();
+    return any;
+  }
+
+  /**
+   * Gets the "any" string in lower case (default locale), used as search key
+   * by filters. The key is cached like the "any" string.
+   *
+   * @return the lower-cased "any" string
+   */
+  public String getAnySearchKey() {
+    String key = searchKey;
+    if (key == null) {
+      key = getAny().toLowerCase(Locale.getDefault());
+      searchKey = key;
+    }
+    return key;
+  }
+
+  /**
+   * Notify that some values of this item changed : the "any" string and the
+   * search key will be computed again and the collection indexes (search
+   * index, playlist candidates and statistics) are told about the change.
+   * Every change of the item properties or associated items must go through
+   * this method.
+   *
+   * @param sKey the changed property or null if any property may have changed
+   */
+  void searchValuesChanged(String sKey) {
+    // reset cached values
+    any = null;
+    searchKey = null;
+    TrackSearchIndex.getInstance().changed(this);
+    if (sKey == null || PlaylistCandidates.isCandidateProperty(sKey)) {
+      PlaylistCandidates.getInstance().changed(this);
+    }
+    if (sKey == null || CollectionStatistics.isStatisticsProperty(sKey)) {
+      CollectionStatistics.getInstance().changed(this);
+    }
+  }
+
+  /**
+   * Gets the human values of the visible properties, i.e. the values
+   * concatenated by getAny().
+   * 
+   * @return the visible properties human values
+   */
+  List<String> getAnyValues() {
+    List<String> values = new ArrayList<String>(properties.size());
     Iterator<String> it = properties.keySet().iterator();
     while (it.hasNext()) {
       String sKey = it.next();
@@ -349,11 +432,10 @@ public abstract class Item implements Const {
           // visible items
           continue;
         }
-        sb.append(sValue);
+        values.add(sValue);
       }
     }
-    any = sb.toString();
-    return any;
+    return values;
   }
 
   /**
@@ -448,8 +530,7 @@ public abstract class Item implements Const {
         }
       }
     }
-    // remove cached value
-    any = null;
+    searchValuesChanged(null);
   }
 
   /**
@@ -459,8 +540,7 @@ public abstract class Item implements Const {
    */
   public void setProperties(Map<String, Object> properties) {
     this.properties = properties;
-    // remove cached value
-    any = null;
+    searchValuesChanged(null);
     notifyCollectionChange(null);
   }
 
@@ -477,9 +557,8 @@ public abstract class Item implements Const {
    */
   public void removeProperty(String sKey) {
     properties.remove(sKey);
-    // remove cached value
-    any = null;
-    notifyCollectionChange(null);
+    searchValuesChanged(sKey);
+    notifyCollectionChange(sKey, true);
   }
 
   /**
@@ -523,8 +602,7 @@ public abstract class Item implements Const {
         this.properties.put(sProperty, propertiesSource.getValue(sProperty));
       }
     }
-    // reset cached value
-    any = null;
+    searchValuesChanged(null);
   }
 
   /**
@@ -20,15 +20,20 @@
  */
 package org.jajuk.base;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -51,14 +56,18 @@ public abstract class ItemManager {
   /** Maps properties meta information name and object. */
   private final Map<String, PropertyMetaInformation> hmPropertiesMetaInformation = new LinkedHashMap<String, PropertyMetaInformation>(
       10);
-  /** The Lock. */
+  /** The Lock, held by writers of the items collection. */
   ReadWriteLock lock = new ReentrantReadWriteLock();
   /** Use an array list during startup which is faster during loading the collection. */
   private List<Item> startupItems = new ArrayList<Item>(100);
-  /** Stores the items by ID to have quick access if necessary. */
-  private final Map<String, Item> internalMap = new HashMap<String, Item>(100);
+  /** Stores the items by ID to have quick access if necessary, can be read without locking. */
+  private final Map<String, Item> internalMap = new ConcurrentHashMap<String, Item>(100);
   /** Collection pointer : at the beginning point to the ArrayList, later this is replaced by a TreeSet to have correct ordering. */
   private Collection<Item> items = startupItems;
+  /** Immutable copy of the items shared by all readers, null if items changed since it was built. */
+  private volatile List<Item> snapshot;
+  /** Last built snapshot, returned to UI readers while a writer holds the lock, null if none. */
+  private volatile List<Item> lastSnapshot;
 
   /**
    * Item manager default constructor.
@@ -89,15 +98,126 @@ public abstract class ItemManager {
     try {
       // populate a new TreeSet with the startup-items
       if (startupItems != null) {
-        items = new TreeSet<Item>(startupItems);
+        if (isStrictlyOrdered(startupItems)) {
+          // Items are usually loaded in order, build the tree in linear time
+          items = new TreeSet<Item>(new OrderedItems(startupItems));
+        } else {
+          items = new TreeSet<Item>(startupItems);
+        }
         // Free startup memory
         startupItems = null;
+        snapshot = null;
       }
     } finally {
       lock.writeLock().unlock();
     }
   }
 
+  /**
+   * Return whether items are in strictly ascending natural order.
+   *
+   * @param list the items
+   *
+   * @return whether items are in strictly ascending natural order
+   */
+  @SuppressWarnings("unchecked")
+  private static boolean isStrictlyOrdered(List<Item> list) {
+    for (int i = 1; i < list.size(); i++) {
+      if (((Comparable<Item>) list.get(i - 1)).compareTo(list.get(i)) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Read-only sorted set view of a list of items in strictly ascending natural
+   * order. It allows to build a TreeSet in linear time (TreeSet only trusts
+   * sorted sets order).
+   */
+  static final class OrderedItems extends AbstractSet<Item> implements SortedSet<Item> {
+    /** The ordered items. */
+    private final List<Item> list;
+
+    /**
+     * Instantiates a new ordered items view.
+     *
+     * @param list the items, in strictly ascending natural order
+     */
+    OrderedItems(List<Item> list) {
+      this.list = list;
+    }
+
+    @Override
+    public Iterator<Item> iterator() {
+      return Collections.unmodifiableList(list).iterator();
+    }
+
+    @Override
+    public int size() {
+      return list.size();
+    }
+
+    @Override
+    public Comparator<? super Item> comparator() {
+      // natural ordering, like the built TreeSet
+      return null;
+    }
+
+    @Override
+    public Item first() {
+      return list.get(0);
+    }
+
+    @Override
+    public Item last() {
+      return list.get(list.size() - 1);
+    }
+
+    @Override
+    public SortedSet<Item> subSet(Item fromElement, Item toElement) {
+      int from = indexOf(fromElement);
+      int to = indexOf(toElement);
+      if (from > to) {
+        throw new IllegalArgumentException("fromElement > toElement");
+      }
+      return new OrderedItems(list.subList(from, to));
+    }
+
+    @Override
+    public SortedSet<Item> headSet(Item toElement) {
+      return new OrderedItems(list.subList(0, indexOf(toElement)));
+    }
+
+    @Override
+    public SortedSet<Item> tailSet(Item fromElement) {
+      return new OrderedItems(list.subList(indexOf(fromElement), list.size()));
+    }
+
+    /**
+     * Binary search of an item.
+     *
+     * @param item the item
+     *
+     * @return the index of the first item greater than or equal to the given
+     * one, the list size if none
+     */
+    @SuppressWarnings("unchecked")
+    private int indexOf(Item item) {
+      int low = 0;
+      int high = list.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (((Comparable<Item>) list.get(mid)).compareTo(item) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
   /**
    * Registers a new item manager.
    *
@@ -135,6 +255,8 @@ public abstract class ItemManager {
     PropertyMetaInformation meta = getMetaInformation(sProperty);
     hmPropertiesMetaInformation.remove(sProperty);
     applyRemoveProperty(meta); // remove this property from all items
+    // Properties definitions are not journaled, commit the whole collection
+    PersistenceService.getInstance().setCollectionChanged(Urgency.HIGH);
   }
 
   /**
@@ -172,6 +294,8 @@ public abstract class ItemManager {
     } finally {
       lock.readLock().unlock();
     }
+    // Properties definitions are not journaled, commit the whole collection
+    PersistenceService.getInstance().setCollectionChanged(Urgency.HIGH);
   }
 
   /**
@@ -322,6 +446,22 @@ public abstract class ItemManager {
     }
   }
 
+  /**
+   * Get the manager from a given manager XML tag (like "tracks").
+   *
+   * @param sTag the manager XML tag
+   *
+   * @return associated item manager or null if none was found
+   */
+  static ItemManager getItemManagerByXMLTag(String sTag) {
+    for (ItemManager manager : hmItemManagers.values()) {
+      if (manager.getXMLTag().equals(sTag)) {
+        return manager;
+      }
+    }
+    return null;
+  }
+
   /**
    * Get ItemManager manager for given item class.
    *
@@ -353,7 +493,7 @@ public abstract class ItemManager {
         managerType = 3;
       }
       // build used items set
-      List<Item> lItems = new ArrayList<Item>(100);
+      Set<Item> lItems = new HashSet<Item>(100);
       List<Track> tracks = TrackManager.getInstance().getTracks();
       for (Track track : tracks) {
         switch (managerType) {
@@ -380,6 +520,8 @@ public abstract class ItemManager {
         if (!lItems.contains(item)) {
           it.remove();
           internalMap.remove(item.getID());
+          snapshot = null;
+          notifyCollectionChange(item, true);
         }
       }
     } finally {
@@ -409,27 +551,35 @@ public abstract class ItemManager {
       if (item != null) {
         items.remove(item);
         internalMap.remove(item.getID());
-        notifyCollectionChange(item);
+        snapshot = null;
+        if (item instanceof Track) {
+          TrackSearchIndex.getInstance().removed((Track) item);
+        }
+        PlaylistCandidates.getInstance().removed(item);
+        CollectionStatistics.getInstance().removed(item);
+        notifyCollectionChange(item, true);
       }
     } finally {
       lock.writeLock().unlock();
     }
   }
 
-  private final void notifyCollectionChange(Item item) {
+  private final void notifyCollectionChange(Item item, boolean removed) {
     // Ignore this if the persistence service is not yet started to speed up startup
-    if (!PersistenceService.getInstance().isAlive()) {
+    if (!CollectionJournal.isEnabled()) {
       return;
     }
-    // SmartPlaylist are not persisted
-    if (item instanceof SmartPlaylist) {
+    // SmartPlaylist are not persisted and types are set programmatically
+    if (item instanceof SmartPlaylist || item instanceof Type) {
       return;
     }
     // Webradios are stored outside the collection file and are persisted separately
     if (item instanceof WebRadio) {
       PersistenceService.getInstance().setRadiosChanged();
+    } else if (removed) {
+      CollectionJournal.getInstance().itemRemoved(item);
     } else {
-      PersistenceService.getInstance().setCollectionChanged(Urgency.HIGH);
+      CollectionJournal.getInstance().itemRegistered(item);
     }
   }
 
@@ -443,7 +593,13 @@ public abstract class ItemManager {
     try {
       items.add(item);
       internalMap.put(item.getID(), item);
-      notifyCollectionChange(item);
+      snapshot = null;
+      if (item instanceof Track) {
+        TrackSearchIndex.getInstance().added((Track) item);
+      }
+      PlaylistCandidates.getInstance().added(item);
+      CollectionStatistics.getInstance().added(item);
+      notifyCollectionChange(item, false);
     } finally {
       lock.writeLock().unlock();
     }
@@ -606,7 +762,13 @@ public abstract class ItemManager {
    * @return number of item
    */
   public int getElementCount() {
-    return items.size();
+    // Don't build a snapshot, the count is read before and after registrations
+    lock.readLock().lock();
+    try {
+      return items.size();
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
@@ -617,22 +779,73 @@ public abstract class ItemManager {
    * @return Item
    */
   public Item getItemByID(String sID) {
+    if (sID == null) {
+      return null;
+    }
     return internalMap.get(sID);
   }
 
   /**
-   * Return a copy of all registered items. The resulting list can be used without
-   * need of locking.
+   * Return an immutable snapshot of all registered items. The resulting list
+   * can be used without need of locking and is not affected by later changes.
+   * <p>
+   * The snapshot is shared by all callers and built again only after a
+   * change, so copy it before sorting or filtering it in-place. Waits for
+   * the writers holding the lock.
+   * </p>
    *
-   * @return a copy of all registered items
+   * @return an immutable snapshot of all registered items
    */
   public List<? extends Item> getItems() {
-    // getItems() creates a copy of the list of items and thus iterates over the current list of items
-    // therefore a ConcurrentModifcationException could be triggered if we do not lock while actually
-    // doing the copying. Usage of the list afterwards is save without locking
+    List<Item> current = snapshot;
+    if (current != null) {
+      return current;
+    }
     lock.readLock().lock();
+    return buildSnapshot();
+  }
+
+  /**
+   * Return an immutable snapshot of all registered items without waiting for
+   * the writers : if a writer holds the lock, the previous snapshot is
+   * returned, so it may miss the latest changes. For display only (tables
+   * populated during a refresh), never use it to decide what to change in
+   * the collection.
+   *
+   * @return an immutable snapshot of the registered items, possibly stale
+   */
+  public List<? extends Item> getItemsWithoutWaiting() {
+    List<Item> current = snapshot;
+    if (current != null) {
+      return current;
+    }
+    if (!lock.readLock().tryLock()) {
+      current = lastSnapshot;
+      if (current != null) {
+        return current;
+      }
+      // No snapshot built yet, wait for it
+      lock.readLock().lock();
+    }
+    return buildSnapshot();
+  }
+
+  /**
+   * Gets the snapshot, building it if required, then release the read lock
+   * held by the caller.
+   *
+   * @return the snapshot
+   */
+  private List<Item> buildSnapshot() {
+    List<Item> current;
     try {
-      return new ArrayList<Item>(items);
+      current = snapshot;
+      if (current == null) {
+        current = Collections.unmodifiableList(new ArrayList<Item>(items));
+        snapshot = current;
+        lastSnapshot = current;
+      }
+      return current;
     } finally {
       lock.readLock().unlock();
     }
@@ -659,6 +872,11 @@ public abstract class ItemManager {
     try {
       items.clear();
       internalMap.clear();
+      snapshot = null;
+      if (this instanceof TrackManager) {
+        PlaylistCandidates.getInstance().clear();
+      }
+      CollectionStatistics.getInstance().cleared(this);
     } finally {
       lock.writeLock().unlock();
     }
@@ -674,12 +892,16 @@ public abstract class ItemManager {
     try {
       // first create a copy
       ArrayList<Item> itemsCopy = new ArrayList<Item>(items);
-      // then remove all elements
-      clear();
-      // and then re-add all items again to make them correctly sorted again
+      // then remove all elements (without clear() as the collection content doesn't change)
+      items.clear();
+      internalMap.clear();
+      // and then re-add all items again to make them correctly sorted again. Note that we
+      // don't use registerItem() here as the collection content doesn't actually change
       for (Item item : itemsCopy) {
-        registerItem(item);
+        items.add(item);
+        internalMap.put(item.getID(), item);
       }
+      snapshot = null;
     } finally {
       lock.writeLock().unlock();
     }
@@ -737,7 +737,7 @@ public class Playlist extends PhysicalItem implements Comparable<Playlist> {
    */
   public boolean shouldBeHidden() {
     if (getDirectory().getDevice().isMounted()
-        || (!Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED))) {
+        || (!Conf.getSnapshot().isHideUnmounted())) {
       // option "only display mounted devices"
       return false;
     }
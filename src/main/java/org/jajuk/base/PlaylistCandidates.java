@@ -0,0 +1,431 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jajuk.util.Const;
+
+/**
+ * Candidate sets of the best of, novelties and shuffle smart playlists.
+ * <p>
+ * Unbanned tracks having at least one file are kept ordered by rate and by
+ * discovery date, and ready files of unbanned tracks are kept in an indexed
+ * array so a random file can be picked in constant time. Playlists are then
+ * built by walking these structures instead of filtering and sorting the whole
+ * collection at each call.
+ * </p>
+ * <p>
+ * Like the {@link TrackSearchIndex}, the sets are maintained incrementally:
+ * track registration and changes (rate, ban, discovery date, files) only flag
+ * the track as dirty, dirty tracks are re-indexed by the next query. A device
+ * mount or unmount changes the ready state of many files at once, so it
+ * flags the whole collection, which is then indexed again by the next query.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+final class PlaylistCandidates {
+  /** Entries ordering, highest rate first. */
+  private static final Comparator<Entry> RATE_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry e1, Entry e2) {
+      if (e1.rate != e2.rate) {
+        return e1.rate < e2.rate ? 1 : -1;
+      }
+      return e1.id.compareTo(e2.id);
+    }
+  };
+  /** Entries ordering, newest first, then by path (reverse alphabetical order as before). */
+  private static final Comparator<Entry> DISCOVERY_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry e1, Entry e2) {
+      if (e1.discovery != e2.discovery) {
+        return e1.discovery < e2.discovery ? 1 : -1;
+      }
+      int comp = e2.path.compareTo(e1.path);
+      if (comp != 0) {
+        return comp;
+      }
+      return e1.id.compareTo(e2.id);
+    }
+  };
+  /** Self instance, created once the orderings are set. */
+  private static PlaylistCandidates self = new PlaylistCandidates();
+  /** Registered tracks -> their entry or null if the track is not (yet) a candidate. */
+  private final Map<Track, Entry> entries = new IdentityHashMap<Track, Entry>(1000);
+  /** Registered tracks to re-index before next query. */
+  private Set<Track> dirty = newTrackSet();
+  /** Whether all registered tracks must be indexed again before next query. */
+  private boolean bAllDirty = true;
+  /** Candidate tracks entries, highest rate first. */
+  private final TreeSet<Entry> byRate = new TreeSet<Entry>(RATE_ORDER);
+  /** Candidate tracks entries, newest first. */
+  private final TreeSet<Entry> byDiscovery = new TreeSet<Entry>(DISCOVERY_ORDER);
+  /** Ready files of unbanned tracks. */
+  private final List<File> shuffleFiles = new ArrayList<File>(1000);
+  /** Ready files of unbanned tracks -> their index in shuffleFiles. */
+  private final Map<File, Integer> shufflePositions = new IdentityHashMap<File, Integer>(1000);
+
+  /**
+   * Indexed state of a candidate track. Entries are immutable so they can be
+   * removed from the sorted sets once the track changed.
+   */
+  private static final class Entry {
+    private final String id;
+    private final long rate;
+    private final long discovery;
+    private final String path;
+    /** Best file, mounted or not. */
+    private final File anyFile;
+    /** Best mounted file or null if none. */
+    private final File readyFile;
+    /** Ready files indexed in the shuffle array. */
+    private final List<File> readyFiles;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param track the track
+     * @param anyFile best file, mounted or not
+     * @param readyFiles ready files of the track
+     */
+    private Entry(Track track, File anyFile, List<File> readyFiles) {
+      this.id = track.getID();
+      this.rate = track.getRate();
+      this.discovery = (track.getDiscoveryDate() == null) ? 0 : track.getDiscoveryDate().getTime();
+      this.anyFile = anyFile;
+      this.path = anyFile.getAbsolutePath();
+      this.readyFile = track.getBestFile(true);
+      this.readyFiles = readyFiles;
+    }
+  }
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  static PlaylistCandidates getInstance() {
+    return self;
+  }
+
+  /**
+   * private constructor for singleton.
+   */
+  private PlaylistCandidates() {
+    super();
+  }
+
+  /**
+   * Create a track set.
+   *
+   * @return a new identity set of tracks
+   */
+  private static Set<Track> newTrackSet() {
+    return Collections.newSetFromMap(new IdentityHashMap<Track, Boolean>(100));
+  }
+
+  /**
+   * Tell whether a property change may change the candidates.
+   *
+   * @param sKey the property name
+   *
+   * @return whether a property change may change the candidates
+   */
+  static boolean isCandidateProperty(String sKey) {
+    return Const.XML_TRACK_RATE.equals(sKey) || Const.XML_TRACK_BANNED.equals(sKey)
+        || Const.XML_TRACK_DISCOVERY_DATE.equals(sKey) || Const.XML_QUALITY.equals(sKey);
+  }
+
+  /**
+   * Notify the candidates of an item registration.
+   *
+   * @param item the registered item
+   */
+  synchronized void added(Item item) {
+    if (item instanceof Track) {
+      Track track = (Track) item;
+      if (!entries.containsKey(track)) {
+        entries.put(track, null);
+      }
+      if (!bAllDirty) {
+        dirty.add(track);
+      }
+    } else {
+      changed(item);
+    }
+  }
+
+  /**
+   * Notify the candidates of an item removal.
+   *
+   * @param item the removed item
+   */
+  synchronized void removed(Item item) {
+    if (item instanceof Track) {
+      unindex((Track) item);
+      entries.remove(item);
+      dirty.remove(item);
+    } else {
+      changed(item);
+    }
+  }
+
+  /**
+   * Notify the candidates of a track or file change. Other items are ignored.
+   *
+   * @param item the changed item
+   */
+  void changed(Item item) {
+    Track track;
+    if (item instanceof Track) {
+      track = (Track) item;
+    } else if (item instanceof File) {
+      track = ((File) item).getTrack();
+    } else {
+      return;
+    }
+    if (track == null) {
+      return;
+    }
+    synchronized (this) {
+      // Ignore not yet registered tracks, they will be indexed at registration
+      if (!bAllDirty && entries.containsKey(track)) {
+        dirty.add(track);
+      }
+    }
+  }
+
+  /**
+   * Notify the candidates that the ready state of many files changed (device
+   * mounted or unmounted).
+   */
+  synchronized void invalidate() {
+    bAllDirty = true;
+    dirty.clear();
+  }
+
+  /**
+   * Clear the candidates and forget registered tracks.
+   */
+  synchronized void clear() {
+    entries.clear();
+    dirty.clear();
+    byRate.clear();
+    byDiscovery.clear();
+    shuffleFiles.clear();
+    shufflePositions.clear();
+    bAllDirty = true;
+  }
+
+  /**
+   * Re-index dirty tracks.
+   */
+  private void update() {
+    if (bAllDirty) {
+      bAllDirty = false;
+      byRate.clear();
+      byDiscovery.clear();
+      shuffleFiles.clear();
+      shufflePositions.clear();
+      for (Track track : new ArrayList<Track>(entries.keySet())) {
+        entries.put(track, null);
+        index(track);
+      }
+      return;
+    }
+    if (dirty.isEmpty()) {
+      return;
+    }
+    for (Track track : dirty) {
+      unindex(track);
+      index(track);
+    }
+    dirty = newTrackSet();
+  }
+
+  /**
+   * Index a registered track.
+   *
+   * @param track the track
+   */
+  private void index(Track track) {
+    if (track.getBooleanValue(Const.XML_TRACK_BANNED)) {
+      return;
+    }
+    File anyFile = track.getBestFile(false);
+    if (anyFile == null) {
+      return;
+    }
+    List<File> readyFiles = track.getReadyFiles();
+    Entry entry = new Entry(track, anyFile, readyFiles);
+    entries.put(track, entry);
+    byRate.add(entry);
+    byDiscovery.add(entry);
+    for (File file : readyFiles) {
+      if (!shufflePositions.containsKey(file)) {
+        shufflePositions.put(file, shuffleFiles.size());
+        shuffleFiles.add(file);
+      }
+    }
+  }
+
+  /**
+   * Remove a track from the candidates if indexed.
+   *
+   * @param track the track
+   */
+  private void unindex(Track track) {
+    Entry entry = entries.get(track);
+    if (entry == null) {
+      return;
+    }
+    entries.put(track, null);
+    byRate.remove(entry);
+    byDiscovery.remove(entry);
+    for (File file : entry.readyFiles) {
+      Integer position = shufflePositions.remove(file);
+      if (position == null) {
+        continue;
+      }
+      // Move the last file to the freed position
+      File last = shuffleFiles.remove(shuffleFiles.size() - 1);
+      if (last != file) {
+        shuffleFiles.set(position, last);
+        shufflePositions.put(last, position);
+      }
+    }
+  }
+
+  /**
+   * Return the best files of the highest rated unbanned tracks.
+   *
+   * @param max max number of files
+   * @param bHideUnmounted whether only mounted files should be returned
+   *
+   * @return files, highest rate first
+   */
+  synchronized List<File> getBestFiles(int max, boolean bHideUnmounted) {
+    update();
+    List<File> out = new ArrayList<File>(Math.min(max, byRate.size()));
+    for (Entry entry : byRate) {
+      if (out.size() >= max) {
+        break;
+      }
+      File file = bHideUnmounted ? entry.readyFile : entry.anyFile;
+      if (file != null) {
+        out.add(file);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Return the ready files of the highest rated unbanned tracks.
+   *
+   * @param max max number of files
+   *
+   * @return ready files, highest rate first
+   */
+  synchronized List<File> getReadyFilesByRate(int max) {
+    update();
+    List<File> out = new ArrayList<File>(Math.min(max, shuffleFiles.size()));
+    for (Entry entry : byRate) {
+      for (File file : entry.readyFiles) {
+        if (out.size() >= max) {
+          return out;
+        }
+        out.add(file);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Return the best files of the most recently discovered unbanned tracks.
+   *
+   * @param iAge max age of the tracks in days
+   * @param max max number of files
+   * @param bHideUnmounted whether only mounted files should be returned
+   *
+   * @return files, newest first
+   */
+  synchronized List<File> getNovelties(int iAge, int max, boolean bHideUnmounted) {
+    update();
+    long now = System.currentTimeMillis();
+    List<File> out = new ArrayList<File>();
+    for (Entry entry : byDiscovery) {
+      if (out.size() >= max || (now - entry.discovery) / Const.MILLISECONDS_IN_A_DAY > iAge) {
+        break;
+      }
+      File file = bHideUnmounted ? entry.readyFile : entry.anyFile;
+      if (file != null) {
+        out.add(file);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Return all ready files of unbanned tracks, in no particular order.
+   *
+   * @return a new list of the shuffle candidates
+   */
+  synchronized List<File> getShuffleFiles() {
+    update();
+    return new ArrayList<File>(shuffleFiles);
+  }
+
+  /**
+   * Gets the number of ready files of unbanned tracks.
+   *
+   * @return the number of shuffle candidates
+   */
+  synchronized int getShuffleFilesCount() {
+    update();
+    return shuffleFiles.size();
+  }
+
+  /**
+   * Return a random ready file of an unbanned track.
+   *
+   * @param random the random generator to use
+   *
+   * @return a random file or null if none
+   */
+  synchronized File getShuffleFile(Random random) {
+    update();
+    if (shuffleFiles.isEmpty()) {
+      return null;
+    }
+    return shuffleFiles.get(random.nextInt(shuffleFiles.size()));
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jajuk.services.core.ExitService;
+import org.jajuk.services.tags.TagMetadata;
+import org.jajuk.services.tags.TagMetadataCache;
+import org.jajuk.ui.helpers.RefreshReporter;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.log.Log;
+
+/**
+ * Staged device refresh.
+ * <p>
+ * <ul>
+ * <li>A walker thread lists the directories recursively and submits the tags
+ * to read to the tag readers</li>
+ * <li>A bounded pool of tag readers performs the tags I/O and parsing (the
+ * walker reads the tags itself when the pool is saturated)</li>
+ * <li>The refresh thread registers the directories files one directory after
+ * the other, in the walk order, so the result doesn't depend on the tags
+ * reading order</li>
+ * </ul>
+ * Only the refresh thread registers files and tracks and notifies the
+ * refresh reporter.
+ * </p>
+ */
+final class RefreshPipeline {
+  /** Maximal number of scanned directories waiting for registration. */
+  private static final int MAX_PENDING_DIRECTORIES = 32;
+  /** Maximal number of tags waiting for a tag reader, per tag reader. */
+  private static final int MAX_PENDING_TAGS_PER_READER = 64;
+  /** Queue end marker. */
+  private static final ScannedDirectory END = new ScannedDirectory(null, null);
+  /** Refreshed device. */
+  private final Device device;
+  /** Whether it is a deep refresh. */
+  private final boolean bDeepScan;
+  /** Whether the known sub-directories are refreshed too. */
+  private final boolean bRecursive;
+  /** Refresh reporter, can be null. */
+  private final RefreshReporter reporter;
+  /** Scanned directories waiting for registration. */
+  private final BlockingQueue<ScannedDirectory> scanned = new ArrayBlockingQueue<ScannedDirectory>(
+      MAX_PENDING_DIRECTORIES);
+  /** Tag readers. */
+  private ThreadPoolExecutor readers;
+  /** Set when the registration is over to stop the walker. */
+  private volatile boolean bStopped = false;
+  /** Music files registered by the registration stage. */
+  private final List<File> registered = new ArrayList<File>();
+
+  /**
+   * A directory and its content waiting for registration.
+   */
+  private static final class ScannedDirectory {
+    /** The directory. */
+    private final Directory dir;
+    /** The directory content, null if none file. */
+    private final Directory.ScanContent content;
+
+    /**
+     * Instantiates a new scanned directory.
+     * 
+     * @param dir 
+     * @param content 
+     */
+    private ScannedDirectory(Directory dir, Directory.ScanContent content) {
+      this.dir = dir;
+      this.content = content;
+    }
+  }
+
+  /**
+   * Instantiates a new refresh pipeline.
+   * 
+   * @param device the refreshed device
+   * @param bDeepScan whether tags should be read again for known files
+   * @param reporter the refresh reporter, can be null
+   */
+  RefreshPipeline(Device device, boolean bDeepScan, RefreshReporter reporter) {
+    this(device, bDeepScan, true, reporter);
+  }
+
+  /**
+   * Instantiates a new refresh pipeline.
+   * 
+   * @param device the refreshed device
+   * @param bDeepScan whether tags should be read again for known files
+   * @param bRecursive whether the known sub-directories are refreshed too, new
+   * sub-directories are always refreshed
+   * @param reporter the refresh reporter, can be null
+   */
+  RefreshPipeline(Device device, boolean bDeepScan, boolean bRecursive, RefreshReporter reporter) {
+    this.device = device;
+    this.bDeepScan = bDeepScan;
+    this.bRecursive = bRecursive;
+    this.reporter = reporter;
+  }
+
+  /**
+   * Refresh given directories and their sub-directories. Returns when all of
+   * them have been registered.
+   * 
+   * @param dirs top directories to refresh
+   */
+  void run(final List<Directory> dirs) {
+    int nbReaders = Math.max(1, Conf.getInt(Const.CONF_REFRESH_THREADS));
+    readers = new ThreadPoolExecutor(nbReaders, nbReaders, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(nbReaders * MAX_PENDING_TAGS_PER_READER),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Device Refresh Tag Reader Thread");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+          }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    Thread walker = new Thread("Device Refresh Walker Thread") {
+      @Override
+      public void run() {
+        try {
+          for (Directory dir : dirs) {
+            walk(dir);
+          }
+        } catch (InterruptedException e) {
+          Log.debug("Refresh walker interrupted");
+        } catch (Exception e) {
+          Log.error(e);
+        } finally {
+          try {
+            enqueue(END);
+          } catch (InterruptedException e) {
+            Log.debug("Refresh walker interrupted");
+          }
+        }
+      }
+    };
+    walker.setPriority(Thread.currentThread().getPriority());
+    walker.start();
+    try {
+      register();
+    } finally {
+      bStopped = true;
+      // Unlock the walker if waiting for room in the queue
+      scanned.clear();
+      readers.shutdownNow();
+      try {
+        walker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Gets the music files registered by the last run : new files and files
+   * whose tags have been read again.
+   * 
+   * @return the registered files
+   */
+  List<File> getRegisteredFiles() {
+    return registered;
+  }
+
+  /**
+   * Registration stage : register the scanned directories in the walk order.
+   */
+  private void register() {
+    try {
+      while (true) {
+        ScannedDirectory item = scanned.take();
+        // Leave ASAP if exit request
+        if (item == END || ExitService.isExiting()) {
+          return;
+        }
+        if (item.content != null) {
+          registered.addAll(item.dir.register(item.content, bDeepScan, reporter));
+        }
+        if (reporter != null) {
+          reporter.updateState(item.dir);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Walk stage : scan a directory, submit its tags to read and walk its
+   * sub-directories.
+   * 
+   * @param dir the directory to scan
+   * 
+   * @throws InterruptedException if interrupted while waiting for the
+   * registration stage
+   */
+  private void walk(Directory dir) throws InterruptedException {
+    // Leave ASAP if exit request
+    if (bStopped || ExitService.isExiting()) {
+      return;
+    }
+    Directory.ScanContent content = dir.listContent();
+    if (content != null) {
+      for (final java.io.File music : content.getMusicFiles()) {
+        if (dir.isTagReadRequired(music, bDeepScan)) {
+          content.setPendingTag(music, readers.submit(new Callable<TagMetadata>() {
+            @Override
+            public TagMetadata call() throws Exception {
+              // Unchanged files tags are read from the tag cache
+              return TagMetadataCache.getInstance().read(music, reporter);
+            }
+          }));
+        }
+      }
+    }
+    enqueue(new ScannedDirectory(dir, content));
+    final java.io.File[] files = dir.getFio().listFiles(UtilSystem.getDirFilter());
+    if (files != null) {
+      for (final java.io.File element : files) {
+        if (!bRecursive
+            && DirectoryManager.getInstance().getDirectoryByID(
+                DirectoryManager.createID(element.getName(), device, dir)) != null) {
+          continue;
+        }
+        final Directory subDir = DirectoryManager.getInstance().registerDirectory(
+            element.getName(), dir, device);
+        walk(subDir);
+      }
+    }
+  }
+
+  /**
+   * Pass a scanned directory to the registration stage, waiting for room if
+   * required.
+   * 
+   * @param item the scanned directory
+   * 
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private void enqueue(ScannedDirectory item) throws InterruptedException {
+    while (!bStopped) {
+      if (scanned.offer(item, 100, TimeUnit.MILLISECONDS)) {
+        return;
+      }
+    }
+  }
+}
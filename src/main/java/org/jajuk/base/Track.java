@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -183,6 +184,8 @@ public class Track extends LogicalItem implements Comparable<Track> {
    */
   void removeFile(File file) {
     alFiles.remove(file);
+    // files paths are searchable
+    searchValuesChanged(null);
   }
 
   /**
@@ -240,11 +243,29 @@ public class Track extends LogicalItem implements Comparable<Track> {
   public File getBestFile(boolean bIgnoreUnmounted) {
     File fileOut = null;
     final List<File> alMountedFiles = new ArrayList<File>(2);
+    // Content of the ready files kept so far
+    Set<String> readyContents = null;
     // firstly, filter mounted files if needed
     for (final File file : alFiles) {
-      if (!bIgnoreUnmounted || file.isReady()) {
-        alMountedFiles.add(file);
+      if (bIgnoreUnmounted && !file.isReady()) {
+        continue;
       }
+      // Skip the copies of a ready file already kept, they have the same
+      // quality
+      String content = (alFiles.size() > 1) ? DuplicateIndex.getInstance().getContentHash(file)
+          : null;
+      if (content != null) {
+        if (readyContents != null && readyContents.contains(content)) {
+          continue;
+        }
+        if (file.isReady()) {
+          if (readyContents == null) {
+            readyContents = new HashSet<String>(2);
+          }
+          readyContents.add(content);
+        }
+      }
+      alMountedFiles.add(file);
     }
     if (alMountedFiles.size() == 1) {
       fileOut = alMountedFiles.get(0);
@@ -419,6 +440,8 @@ public class Track extends LogicalItem implements Comparable<Track> {
     // make sure a file will be referenced by only one track (first found)
     if (!alFiles.contains(file) && file.getTrack().equals(this)) {
       alFiles.add(file);
+      // files paths are searchable
+      searchValuesChanged(null);
     }
   }
 
@@ -556,6 +579,19 @@ public class Track extends LogicalItem implements Comparable<Track> {
    * @param albumArtist : the album artist
    */
   public void setAlbumArtist(AlbumArtist albumArtist) {
+    // For performances, move the track to the new album-artist cache
+    if (this.albumArtist != null && !this.albumArtist.equals(albumArtist)) {
+      Set<Track> cache = this.albumArtist.getTracksCache();
+      synchronized (cache) {
+        cache.remove(this);
+      }
+    }
+    if (albumArtist != null && !albumArtist.equals(this.albumArtist)) {
+      Set<Track> cache = albumArtist.getTracksCache();
+      synchronized (cache) {
+        cache.add(this);
+      }
+    }
     this.albumArtist = albumArtist;
     // We store the album-artist ID string, not the album-artist itself
     setProperty(Const.XML_ALBUM_ARTIST, albumArtist.getID());
@@ -576,7 +612,7 @@ public class Track extends LogicalItem implements Comparable<Track> {
    * @return whether this item should be hidden with hide option
    */
   public boolean shouldBeHidden() {
-    if (getBestFile(true) != null || !Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED)) {
+    if (getBestFile(true) != null || !Conf.getSnapshot().isHideUnmounted()) {
       return false;
     }
     return true;
@@ -21,13 +21,14 @@
 package org.jajuk.base;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -232,10 +233,12 @@ public final class TrackManager extends ItemManager {
       }
       track = new Track(sId, sName, album, genre, artist, length, year, lOrder, type, lDiscNumber);
       registerItem(track);
-      // For performances, add the track to the album cache
-      List<Track> cache = track.getAlbum().getTracksCache();
-      synchronized (cache) {
-        cache.add(track);
+      // For performances, add the track to the album, artist, genre and year
+      // caches (album-artist cache is filled by the track itself when setting it)
+      for (Collection<Track> cache : getTracksCaches(track)) {
+        synchronized (cache) {
+          cache.add(track);
+        }
       }
       return track;
     } finally {
@@ -895,6 +898,10 @@ public final class TrackManager extends ItemManager {
     try {
       // re apply old properties from old item
       newTrack.cloneProperties(track);
+      // album-artist is not a constructor property, clone it as well
+      if (newTrack.getAlbumArtist() == null && track.getAlbumArtist() != null) {
+        newTrack.setAlbumArtist(track.getAlbumArtist());
+      }
       // update files references
       updateFilesReferences(track, newTrack, filter);
       if (track.getFiles().size() == 0) { // normal case: old track has no
@@ -931,6 +938,72 @@ public final class TrackManager extends ItemManager {
     }
   }
 
+  /**
+   * Remove a track and drop it from the album, artist, album-artist, genre and
+   * year tracks caches.
+   * 
+   * @param item the track to remove
+   */
+  @Override
+  public void removeItem(Item item) {
+    lock.writeLock().lock();
+    try {
+      super.removeItem(item);
+      if (item instanceof Track) {
+        Track track = (Track) item;
+        List<Collection<Track>> caches = getTracksCaches(track);
+        if (track.getAlbumArtist() != null) {
+          caches.add(track.getAlbumArtist().getTracksCache());
+        }
+        for (Collection<Track> cache : caches) {
+          synchronized (cache) {
+            cache.remove(track);
+          }
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the album, artist, genre and year tracks caches a track belongs to.
+   * 
+   * @param track 
+   * 
+   * @return the tracks caches
+   */
+  private List<Collection<Track>> getTracksCaches(Track track) {
+    List<Collection<Track>> caches = new ArrayList<Collection<Track>>(5);
+    caches.add(track.getAlbum().getTracksCache());
+    caches.add(track.getArtist().getTracksCache());
+    caches.add(track.getGenre().getTracksCache());
+    caches.add(track.getYear().getTracksCache());
+    return caches;
+  }
+
+  /**
+   * Gets the tracks cache of an album, an artist, an album-artist, a genre or a
+   * year.
+   * 
+   * @param item 
+   * 
+   * @return the item tracks cache or null if the item has no tracks cache
+   */
+  static Collection<Track> getTracksCache(Item item) {
+    if (item instanceof Album) {
+      return ((Album) item).getTracksCache();
+    } else if (item instanceof Artist) {
+      // includes album-artists
+      return ((Artist) item).getTracksCache();
+    } else if (item instanceof Genre) {
+      return ((Genre) item).getTracksCache();
+    } else if (item instanceof Year) {
+      return ((Year) item).getTracksCache();
+    }
+    return null;
+  }
+
   /**
    * Remove a file mapping from a track.
    * 
@@ -1005,58 +1078,69 @@ public final class TrackManager extends ItemManager {
    * artists,years and genres because others items are already sorted)
    * @return the associated tracks
    */
-  @SuppressWarnings("unchecked")
   public List<Track> getAssociatedTracks(List<Item> items, boolean sorted) {
     if (items == null || items.size() == 0) {
       return new ArrayList<Track>(0);
     }
     List<Track> out = new ArrayList<Track>(items.size());
-    if (items.get(0) instanceof Album) {
-      // check the album cache
-      for (Item item : items) {
-        List<Track> tracks = ((Album) item).getTracksCache();
+    Item first = items.get(0);
+    if (first instanceof Album || first instanceof Artist || first instanceof Genre
+        || first instanceof Year) {
+      // Lookup the items tracks caches. A track belongs to a single album,
+      // artist, album-artist, genre and year so only items dups have to be
+      // dropped
+      for (Item item : new LinkedHashSet<Item>(items)) {
+        Collection<Track> tracks = getTracksCache(item);
         synchronized (tracks) {
-          if (tracks.size() > 0) {
-            out.addAll(tracks);
-          }
+          out.addAll(tracks);
         }
       }
-      // cache is not sorted correct for albums with more than 1 disc
       if (sorted) {
-        // sort Tracks
-        Collections.sort(out, new TrackComparator(TrackComparatorType.ORDER));
+        // album cache is not sorted correct for albums with more than 1 disc
+        TrackComparatorType type = TrackComparatorType.ORDER;
+        if (first instanceof Artist) {
+          type = TrackComparatorType.ARTIST_ALBUM;
+        } else if (first instanceof Genre) {
+          type = TrackComparatorType.GENRE_ARTIST_ALBUM;
+        } else if (first instanceof Year) {
+          type = TrackComparatorType.YEAR_ALBUM;
+        }
+        Collections.sort(out, new TrackComparator(type));
       }
     }
     // If the item is itself a track, simply return it
-    else if (items.get(0) instanceof Track) {
+    else if (first instanceof Track) {
       for (Item item : items) {
         out.add((Track) item);
       }
       if (sorted) {
         Collections.sort(out, new TrackComparator(TrackComparatorType.ALBUM));
       }
-    } else if (items.get(0) instanceof File) {
+    } else if (first instanceof File) {
       for (Item item : items) {
         out.add(((File) item).getTrack());
       }
       if (sorted) {
         Collections.sort(out, new TrackComparator(TrackComparatorType.ALBUM));
       }
-    } else if (items.get(0) instanceof Directory) {
+    } else if (first instanceof Directory) {
+      // Caution, do not add dups
+      Set<Track> added = new HashSet<Track>();
       for (Item item : items) {
         Directory dir = (Directory) item;
         for (File file : dir.getFilesRecursively()) {
           Track track = file.getTrack();
-          // Caution, do not add dups
-          if (!out.contains(track)) {
-            out.add(file.getTrack());
+          if (added.add(track)) {
+            out.add(track);
           }
         }
       }
       if (sorted) {
         Collections.sort(out, new TrackComparator(TrackComparatorType.ORDER));
       }
-    } else if (items.get(0) instanceof Playlist) {
+    } else if (first instanceof Playlist) {
+      // Caution, do not add dups
+      Set<Track> added = new HashSet<Track>();
       for (Item item : items) {
         Playlist pl = (Playlist) item;
         List<File> files;
@@ -1068,52 +1152,14 @@ public final class TrackManager extends ItemManager {
         }
         for (File file : files) {
           Track track = file.getTrack();
-          // Caution, do not add dups
-          if (!out.contains(track)) {
-            out.add(file.getTrack());
+          if (added.add(track)) {
+            out.add(track);
           }
         }
       }
       if (sorted) {
         Collections.sort(out, new TrackComparator(TrackComparatorType.ALBUM));
       }
-    } else if (items.get(0) instanceof Artist) {
-      Iterator<Item> tracks = (Iterator<Item>) getItemsIterator();
-      while (tracks.hasNext()) {
-        Track track = (Track) tracks.next();
-        if (items.contains(track.getArtist())) {
-          out.add(track);
-        }
-        // Sort by album
-        if (sorted) {
-          Collections.sort(out, new TrackComparator(TrackComparatorType.ARTIST_ALBUM));
-        }
-      }
-      return out;
-    } else if (items.get(0) instanceof Genre) {
-      Iterator<Item> tracks = (Iterator<Item>) getItemsIterator();
-      while (tracks.hasNext()) {
-        Track track = (Track) tracks.next();
-        if (items.contains(track.getGenre())) {
-          out.add(track);
-        }
-        // Sort by genre
-        if (sorted) {
-          Collections.sort(out, new TrackComparator(TrackComparatorType.GENRE_ARTIST_ALBUM));
-        }
-      }
-    } else if (items.get(0) instanceof Year) {
-      Iterator<Item> tracks = (Iterator<Item>) getItemsIterator();
-      while (tracks.hasNext()) {
-        Track track = (Track) tracks.next();
-        if (items.contains(track.getYear())) {
-          out.add(track);
-        }
-        // Sort by year
-        if (sorted) {
-          Collections.sort(out, new TrackComparator(TrackComparatorType.YEAR_ALBUM));
-        }
-      }
     }
     return out;
   }
@@ -1160,27 +1206,28 @@ public final class TrackManager extends ItemManager {
   }
 
   /**
-   * Perform a search in all files names with given criteria.
+   * Perform a search in all tracks searchable text (see Item.getAny()) with
+   * given criteria.
    * 
    * @param criteria 
    * 
-   * @return an ordered list of available files
+   * @return a list of available files ordered by relevance
    */
   public List<SearchResult> search(String criteria) {
+    // Search the index first, without locking the collection
+    List<Track> tracks = TrackSearchIndex.getInstance().search(criteria);
     lock.readLock().lock();
     try {
-      boolean hide = Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED);
-      List<SearchResult> resu = new ArrayList<SearchResult>();
-      ReadOnlyIterator<Track> tracks = getTracksIterator();
-      while (tracks.hasNext()) {
-        Track track = tracks.next();
+      boolean hide = Conf.getSnapshot().isHideUnmounted();
+      List<SearchResult> resu = new ArrayList<SearchResult>(tracks.size());
+      for (Track track : tracks) {
+        // Make sure the track has not been removed since the search
+        if (getTrackByID(track.getID()) != track) {
+          continue;
+        }
         File playable = track.getBestFile(hide);
         if (playable != null) {
-          String sResu = track.getAny();
-          if (sResu.toLowerCase(Locale.getDefault()).indexOf(
-              criteria.toLowerCase(Locale.getDefault())) != -1) {
-            resu.add(new SearchResult(playable, playable.toStringSearch()));
-          }
+          resu.add(new SearchResult(playable, playable.toStringSearch()));
         }
       }
       return resu;
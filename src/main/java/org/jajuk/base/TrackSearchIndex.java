@@ -0,0 +1,745 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted full-text index over the tracks searchable text.
+ * <p>
+ * The searchable text of a track is made of the visible properties human
+ * values (the ones concatenated by Item.getAny()) and of its files absolute
+ * paths. This text is split into lower-cased words, each distinct word is
+ * stored once in a dictionary and maps a sorted list of track slots. The
+ * dictionary itself is indexed by trigrams (and by one and two characters
+ * prefixes) so a criteria word can be found inside a word without scanning the
+ * whole dictionary.
+ * </p>
+ * <p>
+ * The index is maintained incrementally: track registration and changes only
+ * flag the track as dirty (cheap enough to be done at collection load time),
+ * dirty tracks are (re)indexed by the next search or by an explicit
+ * {@link #refresh()} call. Words no more used by any track are dropped from the
+ * dictionary once they make up half of it.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class TrackSearchIndex {
+  /** Slot value for a registered track not yet indexed. */
+  private static final int NO_SLOT = -1;
+  /** Size of the n-grams indexing the dictionary. */
+  private static final int GRAM_SIZE = 3;
+  /** Score of a criteria word equal to a track word. */
+  private static final int SCORE_EXACT = 3;
+  /** Score of a criteria word starting a track word. */
+  private static final int SCORE_PREFIX = 2;
+  /** Score of a criteria word found inside a track word. */
+  private static final int SCORE_INFIX = 1;
+  /** Number of unused words under which the dictionary is never compacted. */
+  private static final int MIN_DEAD_WORDS = 1000;
+  /** Self instance. */
+  private static TrackSearchIndex self = new TrackSearchIndex();
+  /** Registered tracks -> their slot or NO_SLOT if not yet indexed. */
+  private final Map<Track, Integer> slots = new IdentityHashMap<Track, Integer>(1000);
+  /** Serializes refreshes so an older words set never replaces a newer one. */
+  private final Object refreshLock = new Object();
+  /** Registered tracks to (re)index before next search. */
+  private Set<Track> dirty = newTrackSet();
+  /** Slot -> track. */
+  private Track[] slotTracks = new Track[1000];
+  /** Slot -> ids of the words indexed for this slot. */
+  private int[][] slotWords = new int[1000][];
+  /** Number of allocated slots (used or free). */
+  private int slotCount;
+  /** Slots released by removed tracks. */
+  private final IntList freeSlots = new IntList();
+  /** Word -> word id. */
+  private final Map<String, Integer> dictionary = new HashMap<String, Integer>(1000);
+  /** Word id -> word. */
+  private String[] words = new String[1000];
+  /** Word id -> sorted slots of the tracks containing this word. */
+  private IntList[] postings = new IntList[1000];
+  /** Number of words in the dictionary. */
+  private int wordCount;
+  /** Number of dictionary words no more used by any track. */
+  private int deadWords;
+  /** Trigram -> sorted ids of the dictionary words containing it. */
+  private final Map<String, IntList> grams = new HashMap<String, IntList>(1000);
+  /** One or two characters prefix -> sorted ids of the dictionary words starting with it. */
+  private final Map<String, IntList> prefixes = new HashMap<String, IntList>(1000);
+  /** Per-slot score of the current search, reset after each search. */
+  private int[] scores = new int[1000];
+  /** Per-slot number of criteria words matched by the current search. */
+  private int[] matches = new int[1000];
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  public static TrackSearchIndex getInstance() {
+    return self;
+  }
+
+  /**
+   * private constructor for singleton.
+   */
+  private TrackSearchIndex() {
+    super();
+  }
+
+  /**
+   * Notify the index of a track registration.
+   *
+   * @param track the registered track
+   */
+  synchronized void added(Track track) {
+    if (!slots.containsKey(track)) {
+      slots.put(track, NO_SLOT);
+    }
+    dirty.add(track);
+  }
+
+  /**
+   * Notify the index of an item change. Only tracks and files (whose paths are
+   * searchable from their track) are considered.
+   *
+   * @param item the changed item
+   */
+  void changed(Item item) {
+    Track track;
+    if (item instanceof Track) {
+      track = (Track) item;
+    } else if (item instanceof File) {
+      track = ((File) item).getTrack();
+    } else {
+      return;
+    }
+    if (track == null) {
+      return;
+    }
+    synchronized (this) {
+      // Ignore not yet registered tracks, they will be indexed at registration
+      if (slots.containsKey(track)) {
+        dirty.add(track);
+      }
+    }
+  }
+
+  /**
+   * Notify the index of a track removal.
+   *
+   * @param track the removed track
+   */
+  synchronized void removed(Track track) {
+    dirty.remove(track);
+    Integer slot = slots.remove(track);
+    if (slot != null && slot != NO_SLOT) {
+      releaseSlot(slot);
+      compactDictionaryIfRequired();
+    }
+  }
+
+  /**
+   * Drop the whole index.
+   */
+  synchronized void clear() {
+    slots.clear();
+    dirty = newTrackSet();
+    slotTracks = new Track[1000];
+    slotWords = new int[1000][];
+    slotCount = 0;
+    freeSlots.clear();
+    dictionary.clear();
+    words = new String[1000];
+    postings = new IntList[1000];
+    wordCount = 0;
+    deadWords = 0;
+    grams.clear();
+    prefixes.clear();
+    scores = new int[1000];
+    matches = new int[1000];
+  }
+
+  /**
+   * Index all dirty tracks. Called by searches, may be called beforehand to
+   * make the first search immediate.
+   */
+  public void refresh() {
+    synchronized (this) {
+      if (dirty.isEmpty()) {
+        // Don't wait for a running refresh
+        return;
+      }
+    }
+    synchronized (refreshLock) {
+      List<Track> tracks;
+      synchronized (this) {
+        if (dirty.isEmpty()) {
+          return;
+        }
+        tracks = new ArrayList<Track>(dirty);
+        dirty = newTrackSet();
+      }
+      // Compute the tracks words outside the monitor : human values use other
+      // managers locks and we don't want to block collection changes meanwhile.
+      // A track changed during this computation is flagged dirty again and
+      // indexed by the next refresh, that can't start before this one is done.
+      List<Set<String>> tracksWords = new ArrayList<Set<String>>(tracks.size());
+      for (Track track : tracks) {
+        tracksWords.add(getWords(track));
+      }
+      synchronized (this) {
+        for (int i = 0; i < tracks.size(); i++) {
+          Track track = tracks.get(i);
+          Integer slot = slots.get(track);
+          if (slot == null) {
+            // removed meanwhile
+            continue;
+          }
+          if (slot == NO_SLOT) {
+            slot = allocateSlot(track);
+            slots.put(track, slot);
+          } else {
+            unindex(slot);
+          }
+          index(slot, tracksWords.get(i));
+        }
+        compactDictionaryIfRequired();
+      }
+    }
+  }
+
+  /**
+   * Search tracks matching all words of given criteria. A criteria word matches
+   * if it is found inside a track word, or, for words shorter than three
+   * characters, if it starts a track word.
+   *
+   * @param criteria
+   *
+   * @return matching tracks, best matches first : tracks containing the
+   * criteria words as whole words rank first, tracks whose name contains the
+   * full criteria get a bonus.
+   */
+  List<Track> search(String criteria) {
+    Set<String> criteriaWords = new LinkedHashSet<String>();
+    addWords(criteria, criteriaWords);
+    if (criteriaWords.isEmpty()) {
+      return new ArrayList<Track>(0);
+    }
+    refresh();
+    synchronized (this) {
+      return match(criteriaWords, criteria.trim().toLowerCase(Locale.getDefault()));
+    }
+  }
+
+  /**
+   * Gets the tracks matching all given words, by decreasing score. Must be
+   * called with the monitor held.
+   *
+   * @param criteriaWords lower-cased criteria words
+   * @param criteria lower-cased full criteria
+   *
+   * @return matching tracks, best matches first
+   */
+  private List<Track> match(Set<String> criteriaWords, String criteria) {
+    IntList touched = new IntList();
+    int round = 0;
+    try {
+      for (String criteriaWord : criteriaWords) {
+        IntList[] matchingWords = getMatchingWords(criteriaWord);
+        boolean found = false;
+        // Words are processed from best to worst score so a track only gets the
+        // best score for each criteria word
+        for (int score = SCORE_EXACT; score >= SCORE_INFIX; score--) {
+          IntList ids = matchingWords[score - 1];
+          for (int i = 0; i < ids.size(); i++) {
+            IntList posting = postings[ids.get(i)];
+            for (int j = 0; j < posting.size(); j++) {
+              int slot = posting.get(j);
+              if (matches[slot] == round) {
+                if (round == 0) {
+                  touched.add(slot);
+                }
+                matches[slot] = round + 1;
+                scores[slot] += score;
+                found = true;
+              }
+            }
+          }
+        }
+        round++;
+        if (!found) {
+          return new ArrayList<Track>(0);
+        }
+      }
+      // Tracks whose name contains the full criteria are the most relevant
+      int nameBonus = SCORE_EXACT * criteriaWords.size();
+      // Scores are small integers, sort the tracks using a bucket per score
+      IntList[] buckets = new IntList[2 * nameBonus + 1];
+      int count = 0;
+      for (int i = 0; i < touched.size(); i++) {
+        int slot = touched.get(i);
+        if (matches[slot] == criteriaWords.size()) {
+          int score = scores[slot];
+          if (slotTracks[slot].getName().toLowerCase(Locale.getDefault()).contains(criteria)) {
+            score += nameBonus;
+          }
+          if (buckets[score] == null) {
+            buckets[score] = new IntList();
+          }
+          buckets[score].add(slot);
+          count++;
+        }
+      }
+      List<Track> out = new ArrayList<Track>(count);
+      for (int score = buckets.length - 1; score >= 0; score--) {
+        if (buckets[score] != null) {
+          for (int i = 0; i < buckets[score].size(); i++) {
+            out.add(slotTracks[buckets[score].get(i)]);
+          }
+        }
+      }
+      return out;
+    } finally {
+      // Reset scratch arrays for next search
+      for (int i = 0; i < touched.size(); i++) {
+        int slot = touched.get(i);
+        matches[slot] = 0;
+        scores[slot] = 0;
+      }
+    }
+  }
+
+  /**
+   * Gets the dictionary words matching a criteria word. Must be called with the
+   * monitor held.
+   *
+   * @param criteriaWord lower-cased criteria word
+   *
+   * @return matching words ids, indexed by score - 1
+   */
+  private IntList[] getMatchingWords(String criteriaWord) {
+    IntList[] out = new IntList[] { new IntList(), new IntList(), new IntList() };
+    Integer exact = dictionary.get(criteriaWord);
+    if (exact != null) {
+      out[SCORE_EXACT - 1].add(exact);
+    }
+    if (criteriaWord.length() < GRAM_SIZE) {
+      // Too short for grams, only look for words starting with it
+      IntList ids = prefixes.get(criteriaWord);
+      if (ids != null) {
+        for (int i = 0; i < ids.size(); i++) {
+          if (words[ids.get(i)].length() > criteriaWord.length()) {
+            out[SCORE_PREFIX - 1].add(ids.get(i));
+          }
+        }
+      }
+      return out;
+    }
+    // Intersect the words lists of every criteria gram, starting with the
+    // shortest one
+    IntList[] lists = new IntList[criteriaWord.length() - GRAM_SIZE + 1];
+    for (int i = 0; i < lists.length; i++) {
+      lists[i] = grams.get(criteriaWord.substring(i, i + GRAM_SIZE));
+      if (lists[i] == null) {
+        return out;
+      }
+    }
+    Arrays.sort(lists, new Comparator<IntList>() {
+      @Override
+      public int compare(IntList l1, IntList l2) {
+        return l1.size() - l2.size();
+      }
+    });
+    IntList candidates = lists[0];
+    for (int i = 1; i < lists.length && candidates.size() > 0; i++) {
+      candidates = candidates.intersect(lists[i]);
+    }
+    // Grams matching doesn't check their order, check actual words
+    for (int i = 0; i < candidates.size(); i++) {
+      int id = candidates.get(i);
+      String word = words[id];
+      if (word.length() == criteriaWord.length()) {
+        // already added as exact match if equal
+        continue;
+      }
+      if (word.startsWith(criteriaWord)) {
+        out[SCORE_PREFIX - 1].add(id);
+      } else if (word.contains(criteriaWord)) {
+        out[SCORE_INFIX - 1].add(id);
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Index a track words into given slot. Must be called with the monitor
+   * held.
+   *
+   * @param slot
+   * @param trackWords
+   */
+  private void index(int slot, Set<String> trackWords) {
+    int[] ids = new int[trackWords.size()];
+    int i = 0;
+    for (String word : trackWords) {
+      int id = getWordID(word);
+      if (postings[id].size() == 0) {
+        deadWords--;
+      }
+      postings[id].insert(slot);
+      ids[i++] = id;
+    }
+    slotWords[slot] = ids;
+  }
+
+  /**
+   * Remove the words of given slot from the index. Must be called with the
+   * monitor held.
+   *
+   * @param slot
+   */
+  private void unindex(int slot) {
+    int[] ids = slotWords[slot];
+    if (ids != null) {
+      for (int id : ids) {
+        postings[id].delete(slot);
+        if (postings[id].size() == 0) {
+          deadWords++;
+        }
+      }
+      slotWords[slot] = null;
+    }
+  }
+
+  /**
+   * Allocate a slot for given track. Must be called with the monitor held.
+   *
+   * @param track
+   *
+   * @return the slot
+   */
+  private int allocateSlot(Track track) {
+    int slot;
+    if (freeSlots.size() > 0) {
+      slot = freeSlots.removeLast();
+    } else {
+      slot = slotCount++;
+      if (slot == slotTracks.length) {
+        int size = slotTracks.length * 2;
+        slotTracks = Arrays.copyOf(slotTracks, size);
+        slotWords = Arrays.copyOf(slotWords, size);
+        scores = Arrays.copyOf(scores, size);
+        matches = Arrays.copyOf(matches, size);
+      }
+    }
+    slotTracks[slot] = track;
+    return slot;
+  }
+
+  /**
+   * Release given slot. Must be called with the monitor held.
+   *
+   * @param slot
+   */
+  private void releaseSlot(int slot) {
+    unindex(slot);
+    slotTracks[slot] = null;
+    freeSlots.add(slot);
+  }
+
+  /**
+   * Gets a word id, the word is added to the dictionary if unknown. Must be
+   * called with the monitor held.
+   *
+   * @param word
+   *
+   * @return the word id
+   */
+  private int getWordID(String word) {
+    Integer id = dictionary.get(word);
+    if (id != null) {
+      return id;
+    }
+    int newID = wordCount++;
+    if (newID == words.length) {
+      words = Arrays.copyOf(words, newID * 2);
+      postings = Arrays.copyOf(postings, newID * 2);
+    }
+    words[newID] = word;
+    // Unused until indexed
+    postings[newID] = new IntList();
+    deadWords++;
+    dictionary.put(word, newID);
+    // Ids are increasing so the grams lists remain sorted
+    for (int i = 0; i + GRAM_SIZE <= word.length(); i++) {
+      addWordID(grams, word.substring(i, i + GRAM_SIZE), newID);
+    }
+    for (int i = 1; i < GRAM_SIZE && i <= word.length(); i++) {
+      addWordID(prefixes, word.substring(0, i), newID);
+    }
+    return newID;
+  }
+
+  /**
+   * Rebuild the dictionary without the unused words if they make up half of
+   * it. Must be called with the monitor held.
+   */
+  private void compactDictionaryIfRequired() {
+    if (deadWords < MIN_DEAD_WORDS || deadWords < wordCount / 2) {
+      return;
+    }
+    String[] oldWords = words;
+    IntList[] oldPostings = postings;
+    int oldCount = wordCount;
+    int[] newIDs = new int[oldCount];
+    words = new String[Math.max(1000, 2 * (oldCount - deadWords))];
+    postings = new IntList[words.length];
+    wordCount = 0;
+    deadWords = 0;
+    dictionary.clear();
+    grams.clear();
+    prefixes.clear();
+    // Old ids order is kept so the grams lists remain sorted
+    for (int id = 0; id < oldCount; id++) {
+      if (oldPostings[id].size() == 0) {
+        newIDs[id] = -1;
+        continue;
+      }
+      int newID = getWordID(oldWords[id]);
+      postings[newID] = oldPostings[id];
+      deadWords--;
+      newIDs[id] = newID;
+    }
+    for (int slot = 0; slot < slotCount; slot++) {
+      int[] ids = slotWords[slot];
+      if (ids != null) {
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = newIDs[ids[i]];
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of words in the dictionary, including unused ones.
+   *
+   * @return the number of words in the dictionary
+   */
+  synchronized int getWordCount() {
+    return wordCount;
+  }
+
+  /**
+   * Add a new word id to the words list associated with given key.
+   *
+   * @param map grams or prefixes map
+   * @param key
+   * @param id the new word id, greater than any id already added
+   */
+  private static void addWordID(Map<String, IntList> map, String key, int id) {
+    IntList ids = map.get(key);
+    if (ids == null) {
+      ids = new IntList();
+      map.put(key, ids);
+    }
+    // a gram may appear several times in the same word
+    if (ids.size() == 0 || ids.get(ids.size() - 1) != id) {
+      ids.add(id);
+    }
+  }
+
+  /**
+   * Gets the searchable words of a track.
+   *
+   * @param track
+   *
+   * @return the track words
+   */
+  private static Set<String> getWords(Track track) {
+    Set<String> out = new LinkedHashSet<String>();
+    for (String value : track.getAnyValues()) {
+      addWords(value, out);
+    }
+    for (File file : track.getFiles()) {
+      addWords(file.getAbsolutePath(), out);
+    }
+    return out;
+  }
+
+  /**
+   * Split a text into lower-cased words (letters and digits sequences).
+   *
+   * @param text
+   * @param out the set to populate
+   */
+  static void addWords(String text, Set<String> out) {
+    String lower = text.toLowerCase(Locale.getDefault());
+    int start = -1;
+    for (int i = 0; i <= lower.length(); i++) {
+      if (i < lower.length() && Character.isLetterOrDigit(lower.charAt(i))) {
+        if (start < 0) {
+          start = i;
+        }
+      } else if (start >= 0) {
+        out.add(lower.substring(start, i));
+        start = -1;
+      }
+    }
+  }
+
+  /**
+   * Create an identity-based tracks set.
+   *
+   * @return the set
+   */
+  private static Set<Track> newTrackSet() {
+    return Collections.newSetFromMap(new IdentityHashMap<Track, Boolean>());
+  }
+
+  /**
+   * Growable list of ints, sorted when populated through insert().
+   */
+  private static final class IntList {
+    /** Values. */
+    private int[] values = new int[4];
+    /** Number of values. */
+    private int size;
+
+    /**
+     * Gets the size.
+     *
+     * @return the size
+     */
+    int size() {
+      return size;
+    }
+
+    /**
+     * Gets a value.
+     *
+     * @param index
+     *
+     * @return the value
+     */
+    int get(int index) {
+      return values[index];
+    }
+
+    /**
+     * Append a value.
+     *
+     * @param value
+     */
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    /**
+     * Remove the last value.
+     *
+     * @return the removed value
+     */
+    int removeLast() {
+      return values[--size];
+    }
+
+    /**
+     * Insert a value at its sorted position if not yet present.
+     *
+     * @param value
+     */
+    void insert(int value) {
+      int pos = Arrays.binarySearch(values, 0, size, value);
+      if (pos >= 0) {
+        return;
+      }
+      pos = -pos - 1;
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      System.arraycopy(values, pos, values, pos + 1, size - pos);
+      values[pos] = value;
+      size++;
+    }
+
+    /**
+     * Delete a value from a sorted list.
+     *
+     * @param value
+     */
+    void delete(int value) {
+      int pos = Arrays.binarySearch(values, 0, size, value);
+      if (pos >= 0) {
+        System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+        size--;
+      }
+    }
+
+    /**
+     * Intersect two sorted lists.
+     *
+     * @param other
+     *
+     * @return a new list with values present in both lists
+     */
+    IntList intersect(IntList other) {
+      IntList out = new IntList();
+      int i = 0;
+      int j = 0;
+      while (i < size && j < other.size) {
+        if (values[i] < other.values[j]) {
+          i++;
+        } else if (values[i] > other.values[j]) {
+          j++;
+        } else {
+          out.add(values[i]);
+          i++;
+          j++;
+        }
+      }
+      return out;
+    }
+
+    /**
+     * Clear the list.
+     */
+    void clear() {
+      size = 0;
+    }
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.events;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jajuk.util.Const;
+import org.jajuk.util.log.Log;
+
+/**
+ * Executes asynchronous events, one lane per observer.
+ * <p>
+ * Each observer gets its own lane : the events it is notified of are executed
+ * one after the other, in notification order, while different observers are
+ * updated concurrently by a fixed size pool of threads (one per CPU, at least
+ * two). A lane executes a single event per turn and then goes back to the
+ * pool queue, so a busy observer can't monopolize a thread. An observer
+ * blocked in an update holds one pool thread, it is reported as a slow
+ * observer. High priority observers are updated by the dispatching thread
+ * before the event is handed to the other observers.
+ * </p>
+ * <p>
+ * As for synchronous notifications, an event holds an execution canal of the
+ * observer registry until all its observers are updated, so the executions of
+ * a given event are limited.
+ * </p>
+ * <p>
+ * When an observer is late, pending events of subjects for which only the last
+ * occurrence matters (like device refreshes or launched files) are replaced by
+ * the newest one.
+ * </p>
+ */
+final class EventDispatcher {
+  /** Subjects whose pending events can be replaced by a newer occurrence. */
+  private static final Set<JajukEvents> COALESCED_SUBJECTS = EnumSet.of(
+      JajukEvents.DEVICE_REFRESH, JajukEvents.FILE_LAUNCHED);
+  /** Number of threads executing the lanes. */
+  static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+  /** Observer -> its lane, lanes are removed once empty. Also used as lock for lanes content. */
+  private final Map<Observer, Lane> lanes = new IdentityHashMap<Observer, Lane>();
+  /** Threads executing the lanes. */
+  private final ThreadPoolExecutor executor;
+  /** Number of events waiting in lanes. */
+  private final AtomicInteger pending = new AtomicInteger(0);
+  /** Number of executed updates. */
+  private final AtomicLong executions = new AtomicLong(0);
+  /** Sum of the delays between notifications and updates, in ns. */
+  private final AtomicLong totalLatency = new AtomicLong(0);
+  /** Max delay between a notification and an update, in ns. */
+  private final AtomicLong maxLatency = new AtomicLong(0);
+  /** Observer class -> number of slow updates. */
+  private final ConcurrentMap<String, AtomicInteger> slowObservers = new ConcurrentHashMap<String, AtomicInteger>(
+      10);
+
+  /**
+   * An event being dispatched, holding its execution canal until all its
+   * observers are updated.
+   */
+  private static final class Execution {
+    /** The dispatched event. */
+    private final JajukEvent event;
+    /** Number of observers not yet updated, plus one while dispatching. */
+    private final AtomicInteger remaining = new AtomicInteger(1);
+
+    /**
+     * Instantiates a new execution.
+     * 
+     * @param event 
+     */
+    Execution(JajukEvent event) {
+      this.event = event;
+    }
+
+    /**
+     * An observer has been updated, or will never be.
+     */
+    void done() {
+      if (remaining.decrementAndGet() == 0) {
+        ObserverRegistry.releaseCanal(event);
+      }
+    }
+  }
+
+  /**
+   * An event waiting in a lane.
+   */
+  private static final class Delivery {
+    /** The event to execute, may be a coalesced one. */
+    private final JajukEvent event;
+    /** The execution this delivery is part of. */
+    private final Execution execution;
+
+    /**
+     * Instantiates a new delivery.
+     * 
+     * @param event 
+     * @param execution 
+     */
+    Delivery(JajukEvent event, Execution execution) {
+      this.event = event;
+      this.execution = execution;
+    }
+  }
+
+  /**
+   * Events waiting for a given observer.
+   */
+  private final class Lane implements Runnable {
+    /** The observer. */
+    private final Observer observer;
+    /** Events not yet executed. */
+    private final LinkedList<Delivery> events = new LinkedList<Delivery>();
+
+    /**
+     * Instantiates a new lane.
+     * 
+     * @param observer 
+     */
+    Lane(Observer observer) {
+      this.observer = observer;
+    }
+
+    /**
+     * Queue an event, must be called holding the lanes lock.
+     * 
+     * @param event 
+     */
+    void add(Delivery delivery) {
+      JajukEvent event = delivery.event;
+      if (COALESCED_SUBJECTS.contains(event.getSubject())) {
+        Iterator<Delivery> it = events.iterator();
+        while (it.hasNext()) {
+          Delivery previous = it.next();
+          if (previous.event.getSubject() == event.getSubject()) {
+            it.remove();
+            pending.decrementAndGet();
+            previous.execution.done();
+            delivery = new Delivery(coalesce(previous.event, event), delivery.execution);
+            break;
+          }
+        }
+      }
+      events.add(delivery);
+      pending.incrementAndGet();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      Delivery delivery;
+      synchronized (lanes) {
+        delivery = events.poll();
+        if (delivery == null) {
+          // cleared meanwhile
+          lanes.remove(observer);
+          return;
+        }
+        pending.decrementAndGet();
+      }
+      try {
+        update(observer, delivery.event);
+      } finally {
+        delivery.execution.done();
+        synchronized (lanes) {
+          if (events.isEmpty()) {
+            lanes.remove(observer);
+          } else {
+            // Give the thread back to the other lanes
+            executor.execute(this);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Instantiates a new event dispatcher.
+   */
+  EventDispatcher() {
+    // Lanes wait in an unbounded queue for one of the pool threads
+    executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Event Executor Thread");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Dispatch an event to its observers.
+   * 
+   * @param event the event
+   * @param observers the observers registered to the event subject, high
+   * priority observers first
+   */
+  void dispatch(JajukEvent event, List<Observer> observers) {
+    if (!ObserverRegistry.acquireCanal(event)) {
+      return;
+    }
+    Execution execution = new Execution(event);
+    try {
+      for (Observer observer : observers) {
+        if (observer == null) {
+          continue;
+        }
+        if (observer instanceof HighPriorityObserver) {
+          update(observer, event);
+          continue;
+        }
+        Lane toStart = null;
+        execution.remaining.incrementAndGet();
+        synchronized (lanes) {
+          Lane lane = lanes.get(observer);
+          if (lane == null) {
+            lane = new Lane(observer);
+            lanes.put(observer, lane);
+            toStart = lane;
+          }
+          lane.add(new Delivery(event, execution));
+        }
+        if (toStart != null) {
+          executor.execute(toStart);
+        }
+      }
+    } finally {
+      execution.done();
+    }
+  }
+
+  /**
+   * Merge two events of the same subject, the newest one wins but keeps the
+   * previous file of the oldest one so the observer sees the actual change.
+   * 
+   * @param previous the pending event
+   * @param event the new event
+   * 
+   * @return the event to execute instead of both
+   */
+  private static JajukEvent coalesce(JajukEvent previous, JajukEvent event) {
+    if (event.getSubject() != JajukEvents.FILE_LAUNCHED || event.getDetails() == null) {
+      return event;
+    }
+    Properties details = new Properties();
+    details.putAll(event.getDetails());
+    Object old = ObservationManager.getDetail(previous, Const.DETAIL_OLD);
+    if (old == null) {
+      details.remove(Const.DETAIL_OLD);
+    } else {
+      details.put(Const.DETAIL_OLD, old);
+    }
+    JajukEvent merged = new JajukEvent(event.getSubject(), details);
+    merged.setNotificationDate(previous.getNotificationDate());
+    return merged;
+  }
+
+  /**
+   * Update an observer and record statistics.
+   * 
+   * @param observer 
+   * @param event 
+   */
+  private void update(Observer observer, JajukEvent event) {
+    long start = System.nanoTime();
+    if (event.getNotificationDate() > 0) {
+      long latency = start - event.getNotificationDate();
+      executions.incrementAndGet();
+      totalLatency.addAndGet(latency);
+      long max = maxLatency.get();
+      while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+        max = maxLatency.get();
+      }
+    }
+    ObserverRegistry.update(observer, event);
+    long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (duration > Const.SLOW_OBSERVER_DELAY) {
+      String name = observer.getClass().getName();
+      AtomicInteger count = slowObservers.get(name);
+      if (count == null) {
+        slowObservers.putIfAbsent(name, new AtomicInteger(0));
+        count = slowObservers.get(name);
+      }
+      count.incrementAndGet();
+      Log.warn("Slow observer: " + name + " took " + duration + " ms to handle: " + event);
+    }
+  }
+
+  /**
+   * Forget all pending events.
+   */
+  void clear() {
+    synchronized (lanes) {
+      for (Lane lane : lanes.values()) {
+        pending.addAndGet(-lane.events.size());
+        for (Delivery delivery : lane.events) {
+          delivery.execution.done();
+        }
+        lane.events.clear();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of events waiting for an observer.
+   * 
+   * @return the number of events waiting for an observer
+   */
+  int getPendingCount() {
+    return pending.get();
+  }
+
+  /**
+   * Gets the average delay between a notification and an update.
+   * 
+   * @return the average delay in ms
+   */
+  long getAverageLatency() {
+    long count = executions.get();
+    if (count == 0) {
+      return 0;
+    }
+    return TimeUnit.NANOSECONDS.toMillis(totalLatency.get() / count);
+  }
+
+  /**
+   * Gets the max delay between a notification and an update.
+   * 
+   * @return the max delay in ms
+   */
+  long getMaxLatency() {
+    return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+  }
+
+  /**
+   * Gets the slow observers.
+   * 
+   * @return observer class -> number of updates slower than
+   * {@link Const#SLOW_OBSERVER_DELAY}
+   */
+  Map<String, Integer> getSlowObservers() {
+    Map<String, Integer> out = new HashMap<String, Integer>(slowObservers.size());
+    for (Map.Entry<String, AtomicInteger> entry : slowObservers.entrySet()) {
+      out.put(entry.getKey(), entry.getValue().get());
+    }
+    return out;
+  }
+}
@@ -30,6 +30,8 @@ public class JajukEvent {
   private final JajukEvents subject;
   /** Event properties. */
   private Properties pDetails;
+  /** Asynchronous notification date (System.nanoTime()), 0 if not notified asynchronously. */
+  private long lNotificationDate;
 
   /**
    * Event constructor.
@@ -71,6 +73,26 @@ public class JajukEvent {
     return subject;
   }
 
+  /**
+   * Gets the asynchronous notification date.
+   * 
+   * @return the notification date as given by System.nanoTime(), 0 if the
+   * event has not been notified asynchronously
+   */
+  long getNotificationDate() {
+    return lNotificationDate;
+  }
+
+  /**
+   * Sets the asynchronous notification date.
+   * 
+   * @param lNotificationDate the notification date as given by
+   * System.nanoTime()
+   */
+  void setNotificationDate(long lNotificationDate) {
+    this.lNotificationDate = lNotificationDate;
+  }
+
   /**
    * ToString method.
    * 
@@ -29,12 +29,15 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.jajuk.services.core.ExitService;
+import org.jajuk.util.Const;
 import org.jajuk.util.log.Log;
 
 /**
  * This is a mediator managing relationships between subjects and observers
  * <p>
  * All notification methods are synchronized to assure event order.
+ * Asynchronous events are executed by a fixed size pool of threads (one per
+ * CPU), a given observer gets them in notification order.
  */
 public final class ObservationManager {
   /** one event -> list of components. */
@@ -45,6 +48,8 @@ public final class ObservationManager {
   static BlockingQueue<JajukEvent> queue = new LinkedBlockingQueue<JajukEvent>();
   /** The observation fifo. */
   private static ObservationManagerThread observationThread;
+  /** Asynchronous events executor. */
+  static EventDispatcher dispatcher = new EventDispatcher();
 
   /**
    * Empty constructor to avoid instantiating this utility class.
@@ -103,6 +108,7 @@ public final class ObservationManager {
        * We don't launch it in a regular thread because EDT waits thread end to
        * display
        */
+      event.setNotificationDate(System.nanoTime());
       queue.add(event);
       // synchronize here to avoid creating more than one observation manager
       // thread
@@ -136,6 +142,20 @@ public final class ObservationManager {
     observerRegistry.notifySync(event);
   }
 
+  /**
+   * Dispatch an asynchronous event to all components having registered for its
+   * subject.
+   * 
+   * @param event The event to dispatch.
+   */
+  static void dispatch(JajukEvent event) {
+    JajukEvents subject = event.getSubject();
+    Log.debug("Notify: " + subject);
+    // save last event
+    hLastEventBySubject.put(subject, event.getDetails());
+    dispatcher.dispatch(event, observerRegistry.getObservers(subject));
+  }
+
   /**
    * Return whether the event already occurred at least once.
    * 
@@ -193,6 +213,46 @@ public final class ObservationManager {
     return hLastEventBySubject.get(subject);
   }
 
+  /**
+   * Gets the number of asynchronous events not yet handled by all their
+   * observers.
+   * 
+   * @return the number of events waiting for dispatch or for an observer
+   */
+  public static int getPendingEventsCount() {
+    return queue.size() + dispatcher.getPendingCount();
+  }
+
+  /**
+   * Gets the average delay between an asynchronous notification and the
+   * update of an observer.
+   * 
+   * @return the average dispatch latency in ms
+   */
+  public static long getAverageDispatchLatency() {
+    return dispatcher.getAverageLatency();
+  }
+
+  /**
+   * Gets the max delay between an asynchronous notification and the update of
+   * an observer.
+   * 
+   * @return the max dispatch latency in ms
+   */
+  public static long getMaxDispatchLatency() {
+    return dispatcher.getMaxLatency();
+  }
+
+  /**
+   * Gets the observers that took more than {@link Const#SLOW_OBSERVER_DELAY}
+   * to handle an asynchronous event.
+   * 
+   * @return observer class name -> number of slow updates
+   */
+  public static Map<String, Integer> getSlowObservers() {
+    return dispatcher.getSlowObservers();
+  }
+
   /**
    * Remove all registered Observers. This is mainly used in Unit Tests
    * to get a clean state again.
@@ -200,6 +260,7 @@ public final class ObservationManager {
   public static void clear() {
     hLastEventBySubject.clear();
     queue.clear();
+    dispatcher.clear();
     observerRegistry.clear();
   }
 }
@@ -220,12 +281,7 @@ class ObservationManagerThread extends Thread {
         final JajukEvent event = ObservationManager.queue.poll(1000, TimeUnit.MILLISECONDS);
         if (event != null) {
           // launch action asynchronously
-          new Thread("Event Executor for: " + event.toString()) {
-            @Override
-            public void run() {
-              ObservationManager.notifySync(event);
-            }
-          }.start();
+          ObservationManager.dispatch(event);
         }
         // Make sure to handle any exception or error to avoid the observation
         // system to die. Throwable covers all types of Exceptions/Errors.
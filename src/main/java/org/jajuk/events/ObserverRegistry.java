@@ -51,18 +51,8 @@ class ObserverRegistry {
    */
   @SuppressWarnings("unchecked")
   void notifySync(JajukEvent event) {
-    // do the synchronization on canals in two parts to do the "update" without
-    // holding the lock
-    synchronized (canals) {
-      int numberOfExecutions = 0;
-      if (canals.containsKey(event)) {
-        numberOfExecutions = canals.get(event);
-      }
-      if (numberOfExecutions > Const.MAX_EVENT_EXECUTIONS) {
-        Log.warn("Event overflow for : " + event);
-        return;
-      }
-      canals.put(event, numberOfExecutions + 1);
+    if (!acquireCanal(event)) {
+      return;
     }
     try {
       JajukEvents subject = event.getSubject();
@@ -76,29 +66,94 @@ class ObserverRegistry {
       while (it.hasNext()) {
         Observer obs = it.next();
         if (obs != null) {
-          try {
-            obs.update(event);
-          } catch (Throwable t) {
-            Log.error(t);
-          }
+          update(obs, event);
         }
       }
     } finally {
-      synchronized (canals) {
-        int numberOfExecutions = canals.get(event);
-        assert (numberOfExecutions > 0);
+      releaseCanal(event);
+    }
+  }
+
+  /**
+   * Take an execution canal for an event. Every successful call must be
+   * followed by a {@link #releaseCanal(JajukEvent)} call once all the observers
+   * have been updated.
+   * 
+   * @param event The event to execute
+   * 
+   * @return whether the event can be executed, false if too many executions of
+   * this event are running
+   */
+  static boolean acquireCanal(JajukEvent event) {
+    synchronized (canals) {
+      int numberOfExecutions = 0;
+      if (canals.containsKey(event)) {
+        numberOfExecutions = canals.get(event);
+      }
+      if (numberOfExecutions > Const.MAX_EVENT_EXECUTIONS) {
+        Log.warn("Event overflow for : " + event);
+        return false;
+      }
+      canals.put(event, numberOfExecutions + 1);
+      return true;
+    }
+  }
+
+  /**
+   * Release an execution canal taken for an event.
+   * 
+   * @param event The executed event
+   */
+  static void releaseCanal(JajukEvent event) {
+    synchronized (canals) {
+      Integer numberOfExecutions = canals.get(event);
+      if (numberOfExecutions == null) {
+        // canals cleared meanwhile
+        return;
+      }
+      assert (numberOfExecutions > 0);
+      // to avoid adding more and more memory via the canals-map, we should remove items when they
+      // reach zero again
+      // the effect on memory is rather small, but it shows up after some time in memory profiles
+      // nevertheless.
+      if (numberOfExecutions <= 1) {
+        canals.remove(event);
+      } else {
         canals.put(event, numberOfExecutions - 1);
-        // to avoid adding more and more memory via the canals-map, we should remove items when they
-        // reach zero again
-        // the effect on memory is rather small, but it shows up after some time in memory profiles
-        // nevertheless.
-        if (canals.get(event) == 0) {
-          canals.remove(event);
-        }
       }
     }
   }
 
+  /**
+   * Update an observer, an observer failure never stops the event execution.
+   * 
+   * @param observer the observer
+   * @param event the event
+   */
+  static void update(Observer observer, JajukEvent event) {
+    try {
+      observer.update(event);
+    } catch (Throwable t) {
+      Log.error(t);
+    }
+  }
+
+  /**
+   * Gets the observers registered for a subject.
+   * 
+   * @param subject the subject
+   * 
+   * @return a copy of the observers list, high priority observers first
+   */
+  @SuppressWarnings("unchecked")
+  synchronized List<Observer> getObservers(JajukEvents subject) {
+    List<Observer> observers = hEventComponents.get(subject);
+    if (observers == null) {
+      return new ArrayList<Observer>(0);
+    }
+    return (List<Observer>) ((ArrayList<Observer>) observers).clone();
+  }
+
   /**
    * Register an Observer for an event.
    * 
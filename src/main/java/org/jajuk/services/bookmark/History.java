@@ -26,13 +26,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -63,6 +66,15 @@ import org.xml.sax.helpers.DefaultHandler;
  * components, so any changes on the model should be done in the EDT see
  * http://java
  * .sun.com/javase/6/docs/api/javax/swing/package-summary.html#threading
+ * <p>
+ * Plays are added in time order, so the items are sorted by decreasing date
+ * and time range queries are binary searches. The last play date of each file
+ * is indexed for constant time "played since" lookups.
+ * </p>
+ * <p>
+ * Changes are appended to a journal at commit, the history file is only
+ * rewritten when the journal grows larger than it, see {@link HistoryJournal}.
+ * </p>
  */
 public final class History extends DefaultHandler implements HighPriorityObserver {
   /** Self instance. */
@@ -72,6 +84,10 @@ public final class History extends DefaultHandler implements HighPriorityObserve
   private static Vector<HistoryItem> items = new Vector<HistoryItem>(100);
   /** History begin date. */
   private static long lDateStart;
+  /** File ID -> last play date. */
+  private static Map<String, Long> lastPlayed = new ConcurrentHashMap<String, Long>(100);
+  /** ID of the current history file the journal applies to, 0 if none. */
+  private static volatile long lJournalId;
   /** Cached date formatter. */
   private SimpleDateFormat formatter;
 
@@ -143,37 +159,71 @@ public final class History extends DefaultHandler implements HighPriorityObserve
     if (FileManager.getInstance().getFileByID(sFileId) == null) {
       return;
     }
-    // OK, begin to add the new history item
+    synchronized (items) {
+      addItemInternal(sFileId, lDate);
+      HistoryJournal.getInstance().played(sFileId, lDate);
+    }
+    PersistenceService.getInstance().setHistoryChanged();
+  }
+
+  /**
+   * Add an history item without any check nor journaling.
+   * 
+   * @param sFileId 
+   * @param lDate 
+   */
+  private void addItemInternal(String sFileId, long lDate) {
     HistoryItem hi = new HistoryItem(sFileId, lDate);
     // check if previous history item is not the same,
     // otherwise, keep last one
-    if (items.size() > 0) {
-      HistoryItem hiPrevious = items.get(0);
-      if (hiPrevious.getFileId().equals(hi.getFileId())) {
-        items.remove(0);
-      }
-      items.add(0, hi); // keep only most recent date
-      // test maximum history size, if >, remove oldest item
-      if (items.size() > Const.MAX_HISTORY_SIZE) {
-        items.remove(items.size() - 1);
-      }
-    } else { // first element in history
-      items.add(0, hi);
+    if (items.size() > 0 && items.get(0).getFileId().equals(sFileId)) {
+      items.remove(0);
+    }
+    items.add(0, hi); // keep only most recent date
+    lastPlayed.put(sFileId, lDate);
+    // test maximum history size, if >, remove oldest item
+    if (items.size() > Const.MAX_HISTORY_SIZE) {
+      HistoryItem oldest = items.remove(items.size() - 1);
+      lastPlayed.remove(oldest.getFileId(), oldest.getDate());
     }
-    PersistenceService.getInstance().setHistoryChanged();
   }
 
   /**
    * Clear history.
    */
   public void clear() {
+    synchronized (items) {
+      clearInternal();
+      HistoryJournal.getInstance().cleared();
+    }
+    PersistenceService.getInstance().setHistoryChanged();
+  }
+
+  /**
+   * Clear history without journaling.
+   */
+  private void clearInternal() {
     items.clear();
+    lastPlayed.clear();
   }
 
   /**
    * Cleanup history of dead items (removed files after a refresh).
+   * <p>
+   * Not journaled : dead items are dropped at load anyway.
+   * </p>
    */
   public void cleanup() {
+    synchronized (items) {
+      removeDeadItems();
+      rebuildIndex();
+    }
+  }
+
+  /**
+   * Remove the items whose file is no more known.
+   */
+  private void removeDeadItems() {
     Iterator<HistoryItem> it = items.iterator();
     while (it.hasNext()) {
       HistoryItem hi = it.next();
@@ -183,6 +233,19 @@ public final class History extends DefaultHandler implements HighPriorityObserve
     }
   }
 
+  /**
+   * Rebuild the last play dates index from the items.
+   */
+  private void rebuildIndex() {
+    lastPlayed.clear();
+    // newest first, so keep the first date found for each file
+    for (HistoryItem hi : items) {
+      if (!lastPlayed.containsKey(hi.getFileId())) {
+        lastPlayed.put(hi.getFileId(), hi.getDate());
+      }
+    }
+  }
+
   /**
    * Change ID for a file.
    * 
@@ -190,39 +253,156 @@ public final class History extends DefaultHandler implements HighPriorityObserve
    * @param sIDNew 
    */
   public void changeID(final String sIDOld, final String sIDNew) {
+    synchronized (items) {
+      changeIDInternal(sIDOld, sIDNew);
+      HistoryJournal.getInstance().idChanged(sIDOld, sIDNew);
+    }
+    PersistenceService.getInstance().setHistoryChanged();
+  }
+
+  /**
+   * Change ID for a file without journaling.
+   * 
+   * @param sIDOld 
+   * @param sIDNew 
+   */
+  private void changeIDInternal(final String sIDOld, final String sIDNew) {
+    boolean changed = false;
     for (int i = 0; i < items.size(); i++) {
       HistoryItem hi = items.get(i);
       if (hi.getFileId().equals(sIDOld)) {
-        items.remove(i);
-        items.add(i, new HistoryItem(sIDNew, hi.getDate()));
+        items.set(i, new HistoryItem(sIDNew, hi.getDate()));
+        changed = true;
       }
     }
+    if (changed) {
+      rebuildIndex();
+    }
   }
 
   /**
    * Clear history for all history items before iDays days.
+   * <p>
+   * Not journaled : old items are dropped at load anyway.
+   * </p>
    * 
    * @param iDays 
    */
   public void clear(final int iDays) {
-    // Begins by clearing deleted files
-    Iterator<HistoryItem> it = items.iterator();
-    while (it.hasNext()) {
-      HistoryItem hi = it.next();
-      if (FileManager.getInstance().getFileByID(hi.getFileId()) == null) {
-        it.remove();
+    synchronized (items) {
+      // Begins by clearing deleted files
+      removeDeadItems();
+      // Follow day limits
+      if (iDays != -1) { // -1 : infinite history
+        long limit = System.currentTimeMillis() - (((long) iDays) * Const.MILLISECONDS_IN_A_DAY);
+        int index = indexOfFirstBefore(limit);
+        if (index < items.size()) {
+          items.subList(index, items.size()).clear();
+        }
       }
+      rebuildIndex();
     }
-    // Follow day limits
-    if (iDays == -1) { // infinite history
-      return;
+  }
+
+  /**
+   * Return the index of the newest item played strictly before a date.
+   * 
+   * @param lDate 
+   * 
+   * @return the index, the items count if none
+   */
+  private static int indexOfFirstBefore(long lDate) {
+    // items are sorted by decreasing date
+    int low = 0;
+    int high = items.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (items.get(mid).getDate() < lDate) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
     }
-    it = items.iterator();
-    while (it.hasNext()) {
-      HistoryItem hi = it.next();
-      if (hi.getDate() < (System.currentTimeMillis() - (((long) iDays) * Const.MILLISECONDS_IN_A_DAY))) {
-        it.remove();
+    return low;
+  }
+
+  /**
+   * Gets the items played in a time range, newest first.
+   * 
+   * @param from range start date (ms), inclusive
+   * @param to range end date (ms), exclusive
+   * 
+   * @return a copy of the items played in this range
+   */
+  public List<HistoryItem> getItems(long from, long to) {
+    synchronized (items) {
+      int first = indexOfFirstBefore(to);
+      int last = indexOfFirstBefore(from);
+      if (first >= last) {
+        return new ArrayList<HistoryItem>(0);
       }
+      return new ArrayList<HistoryItem>(items.subList(first, last));
+    }
+  }
+
+  /**
+   * Return whether a file has been played since a date.
+   * 
+   * @param sFileId 
+   * @param lDate (ms)
+   * 
+   * @return whether the file last play is at or after this date
+   */
+  public boolean isPlayedSince(String sFileId, long lDate) {
+    Long lastDate = lastPlayed.get(sFileId);
+    return lastDate != null && lastDate >= lDate;
+  }
+
+  /**
+   * Gets the last play date of a file.
+   * 
+   * @param sFileId 
+   * 
+   * @return the last play date (ms) or -1 if the file is not in the history
+   */
+  public long getLastPlayedDate(String sFileId) {
+    Long lastDate = lastPlayed.get(sFileId);
+    return (lastDate == null) ? -1 : lastDate;
+  }
+
+  /**
+   * Replay a journaled play.
+   * 
+   * @param sFileId 
+   * @param lDate 
+   */
+  void replayPlay(String sFileId, long lDate) {
+    if (FileManager.getInstance().getFileByID(sFileId) == null) {
+      return;
+    }
+    synchronized (items) {
+      addItemInternal(sFileId, lDate);
+    }
+  }
+
+  /**
+   * Replay a journaled file ID change.
+   * 
+   * @param sIDOld 
+   * @param sIDNew 
+   */
+  void replayIDChange(String sIDOld, String sIDNew) {
+    synchronized (items) {
+      changeIDInternal(sIDOld, sIDNew);
+    }
+  }
+
+  /**
+   * Replay a journaled history clearing.
+   */
+  void replayClear() {
+    synchronized (items) {
+      clearInternal();
     }
   }
 
@@ -235,6 +415,13 @@ public final class History extends DefaultHandler implements HighPriorityObserve
     if (lDateStart == 0) {
       lDateStart = System.currentTimeMillis();
     }
+    HistoryJournal journal = HistoryJournal.getInstance();
+    if (!journal.isCompactionRequired(lJournalId)) {
+      journal.flush();
+      return;
+    }
+    // Rewrite the history file with a new ID, the journal restarts from it
+    long newId = 1 + (UtilSystem.getRandom().nextLong() & (Long.MAX_VALUE - 1));
     java.io.File out = SessionService.getConfFileByPath(Const.FILE_HISTORY + "."
         + Const.FILE_SAVING_FILE_EXTENSION);
     BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out),
@@ -242,11 +429,13 @@ public final class History extends DefaultHandler implements HighPriorityObserve
     try {
       bw.write("<?xml version='1.0' encoding='UTF-8'?>\n");
       bw.write("<history JAJUK_VERSION='" + Const.JAJUK_VERSION + "' begin_date='"
-          + Long.toString(lDateStart) + "'>\n");
-      Iterator<HistoryItem> it = items.iterator();
-      while (it.hasNext()) {
-        HistoryItem hi = it.next();
-        bw.write("\t<play file='" + hi.getFileId() + "' date='" + hi.getDate() + "'/>\n");
+          + Long.toString(lDateStart) + "' journal='" + Long.toString(newId) + "'>\n");
+      synchronized (items) {
+        for (HistoryItem hi : items) {
+          bw.write("\t<play file='" + hi.getFileId() + "' date='" + hi.getDate() + "'/>\n");
+        }
+        // these changes are now in the history file
+        journal.discardPending();
       }
       bw.write("</history>");
       bw.flush();
@@ -255,6 +444,8 @@ public final class History extends DefaultHandler implements HighPriorityObserve
     }
     java.io.File finalFile = SessionService.getConfFileByPath(Const.FILE_HISTORY);
     UtilSystem.saveFileWithRecoverySupport(finalFile);
+    journal.restart(newId);
+    lJournalId = newId;
     Log.debug("History commited to : " + finalFile.getAbsolutePath());
   }
 
@@ -263,6 +454,12 @@ public final class History extends DefaultHandler implements HighPriorityObserve
    *
    */
   public static void load() {
+    synchronized (items) {
+      items.clear();
+      lastPlayed.clear();
+    }
+    lJournalId = 0;
+    HistoryJournal.getInstance().discardPending();
     try {
       File historyFile = SessionService.getConfFileByPath(Const.FILE_HISTORY);
       UtilSystem.recoverFileIfRequired(historyFile);
@@ -270,6 +467,8 @@ public final class History extends DefaultHandler implements HighPriorityObserve
       spf.setValidating(false);
       SAXParser saxParser = spf.newSAXParser();
       saxParser.parse(historyFile.toURI().toURL().toString(), getInstance());
+      // apply the changes done since this history file was written
+      HistoryJournal.getInstance().replay(lJournalId, getInstance());
       // delete old history items
       getInstance().clear(Integer.parseInt(Conf.getString(Const.CONF_HISTORY)));
     } catch (Exception e) {
@@ -345,6 +544,11 @@ public final class History extends DefaultHandler implements HighPriorityObserve
     if ("history".equals(sQName)) {
       setStartDate(UtilString
           .fastLongParser(attributes.getValue(attributes.getIndex("begin_date"))));
+      // no journal ID for history files written by previous releases
+      int index = attributes.getIndex("journal");
+      if (index >= 0) {
+        lJournalId = Long.parseLong(attributes.getValue(index));
+      }
     } else if ("play".equals(sQName)) {
       String sID = attributes.getValue(attributes.getIndex("file"));
       // check id has not been changed
@@ -358,6 +562,10 @@ public final class History extends DefaultHandler implements HighPriorityObserve
         HistoryItem hi = new HistoryItem(sID, UtilString.fastLongParser(attributes
             .getValue(attributes.getIndex("date"))));
         items.add(hi);
+        // newest first, so keep the first date found for each file
+        if (!lastPlayed.containsKey(sID)) {
+          lastPlayed.put(sID, hi.getDate());
+        }
       }
     }
   }
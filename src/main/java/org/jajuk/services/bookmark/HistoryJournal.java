@@ -0,0 +1,277 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.bookmark;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Const;
+import org.jajuk.util.JournalFile;
+import org.jajuk.util.log.Log;
+
+/**
+ * Append-only journal of the history changes.
+ * <p>
+ * The history file is a snapshot identified by a random ID, the journal file
+ * contains the changes (plays, file ID changes, clearings) performed since
+ * this snapshot. A history commit only appends the new changes, the history
+ * file is rewritten when the journal grows larger than it. Items older than the
+ * history duration or whose file is no more known are dropped at load, so
+ * clearing them doesn't require a rewrite either.
+ * </p>
+ * <p>
+ * Records are framed and checked by a {@link JournalFile} whose snapshot ID is
+ * the history file ID, so a journal left over by a crash during a rewrite is
+ * ignored.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+final class HistoryJournal {
+  /** Magic number ("JJKH"). */
+  private static final int MAGIC = 0x4A4A4B48;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Record type : a file has been played. */
+  private static final byte OP_PLAY = 1;
+  /** Record type : a file ID changed. */
+  private static final byte OP_CHANGE_ID = 2;
+  /** Record type : history cleared. */
+  private static final byte OP_CLEAR = 3;
+  /** Self instance. */
+  private static HistoryJournal self = new HistoryJournal();
+  /** Protects the pending changes list. */
+  private final Object pendingLock = new Object();
+  /** Changes not yet written to disk. */
+  private List<Entry> pending = new ArrayList<Entry>(10);
+  /** Entries payload writer. */
+  private final JournalFile.PayloadWriter<Entry> writer = new JournalFile.PayloadWriter<Entry>() {
+    @Override
+    public boolean write(Entry entry, DataOutputStream out) throws IOException {
+      out.writeByte(entry.op);
+      if (entry.op == OP_PLAY) {
+        out.writeUTF(entry.id);
+        out.writeLong(entry.date);
+      } else if (entry.op == OP_CHANGE_ID) {
+        out.writeUTF(entry.id);
+        out.writeUTF(entry.newId);
+      }
+      return true;
+    }
+  };
+
+  /**
+   * A journal entry.
+   */
+  private static final class Entry {
+    private final byte op;
+    /** Played or old file ID. */
+    private final String id;
+    /** New file ID for ID changes. */
+    private final String newId;
+    /** Play date. */
+    private final long date;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param op the record type
+     * @param id
+     * @param newId
+     * @param date
+     */
+    Entry(byte op, String id, String newId, long date) {
+      this.op = op;
+      this.id = id;
+      this.newId = newId;
+      this.date = date;
+    }
+  }
+
+  /**
+   * Instance getter.
+   *
+   * @return the instance
+   */
+  static HistoryJournal getInstance() {
+    return self;
+  }
+
+  /**
+   * Hidden constructor.
+   */
+  private HistoryJournal() {
+    super();
+  }
+
+  /**
+   * Gets the journal file.
+   *
+   * @return the journal file
+   */
+  private static JournalFile getJournalFile() {
+    return new JournalFile(SessionService.getConfFileByPath(Const.FILE_HISTORY_JOURNAL), MAGIC,
+        FORMAT_VERSION, "history journal");
+  }
+
+  /**
+   * Queue a play.
+   *
+   * @param id played file ID
+   * @param date play date
+   */
+  void played(String id, long date) {
+    queue(new Entry(OP_PLAY, id, null, date));
+  }
+
+  /**
+   * Queue a file ID change.
+   *
+   * @param oldId
+   * @param newId
+   */
+  void idChanged(String oldId, String newId) {
+    queue(new Entry(OP_CHANGE_ID, oldId, newId, 0));
+  }
+
+  /**
+   * Queue a history clearing.
+   */
+  void cleared() {
+    queue(new Entry(OP_CLEAR, null, null, 0));
+  }
+
+  /**
+   * Queue an entry.
+   *
+   * @param entry
+   */
+  private void queue(Entry entry) {
+    synchronized (pendingLock) {
+      pending.add(entry);
+    }
+  }
+
+  /**
+   * Drop the changes not yet written, called when the history is captured for
+   * a new snapshot or loaded.
+   */
+  void discardPending() {
+    synchronized (pendingLock) {
+      pending = new ArrayList<Entry>(10);
+    }
+  }
+
+  /**
+   * Return whether the history file must be rewritten : the journal doesn't
+   * apply to it or grew too large.
+   *
+   * @param snapshotId ID of the current history file, 0 if unknown
+   *
+   * @return whether the history file must be rewritten
+   */
+  synchronized boolean isCompactionRequired(long snapshotId) {
+    JournalFile journal = getJournalFile();
+    File snapshot = SessionService.getConfFileByPath(Const.FILE_HISTORY);
+    if (snapshotId == 0 || !snapshot.exists()
+        || journal.isCompactionRequired(snapshot.length())) {
+      return true;
+    }
+    try {
+      return journal.getSnapshotID() != snapshotId;
+    } catch (IOException e) {
+      Log.error(e);
+      return true;
+    }
+  }
+
+  /**
+   * Restart the journal for a new history file.
+   *
+   * @param snapshotId ID of the new history file
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void restart(long snapshotId) throws IOException {
+    getJournalFile().restart(snapshotId);
+  }
+
+  /**
+   * Append pending changes to the journal file and force them to disk.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void flush() throws IOException {
+    List<Entry> toWrite;
+    synchronized (pendingLock) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      toWrite = pending;
+      pending = new ArrayList<Entry>(10);
+    }
+    int count = getJournalFile().append(toWrite, writer);
+    Log.debug("History journal: " + count + " change(s) appended");
+  }
+
+  /**
+   * Replay the journal over the loaded history file. The journal is truncated
+   * after the last valid record.
+   *
+   * @param snapshotId ID of the loaded history file
+   * @param history the history to update
+   */
+  synchronized void replay(long snapshotId, final History history) {
+    JournalFile journal = getJournalFile();
+    if (snapshotId == 0 || !journal.hasRecords()) {
+      return;
+    }
+    try {
+      int count = journal.replay(snapshotId, new JournalFile.PayloadReader() {
+        @Override
+        public boolean read(DataInputStream in) throws IOException {
+          byte op = in.readByte();
+          if (op == OP_PLAY) {
+            history.replayPlay(in.readUTF(), in.readLong());
+          } else if (op == OP_CHANGE_ID) {
+            history.replayIDChange(in.readUTF(), in.readUTF());
+          } else if (op == OP_CLEAR) {
+            history.replayClear();
+          } else {
+            // Unknown record
+            return false;
+          }
+          return true;
+        }
+      });
+      Log.debug("History journal: " + count + " change(s) replayed");
+    } catch (Exception e) {
+      // We simply lose the latest plays
+      Log.error(e);
+    }
+  }
+}
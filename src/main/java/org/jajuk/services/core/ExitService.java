@@ -26,8 +26,10 @@ import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
 import org.jajuk.services.bookmark.History;
 import org.jajuk.services.dbus.DBusManager;
+import org.jajuk.services.players.PlaybackCheckpoint;
 import org.jajuk.services.players.Player;
 import org.jajuk.services.players.QueueModel;
+import org.jajuk.services.tags.TagMetadataCache;
 import org.jajuk.services.webradio.CustomRadiosPersistenceHelper;
 import org.jajuk.services.webradio.PresetRadiosPersistenceHelper;
 import org.jajuk.ui.actions.JajukAction;
@@ -59,6 +61,8 @@ public class ExitService extends Thread {
     Log.debug("Exit Hook begin");
     // Store webradio state
     Conf.setProperty(Const.CONF_WEBRADIO_WAS_PLAYING, Boolean.toString(QueueModel.isPlayingRadio()));
+    // Store the playing position before stopping, stopping resets it
+    PlaybackCheckpoint.getInstance().flush();
     // stop sound ASAP
     Player.stop(true);
     ObservationManager.notifySync(new JajukEvent(JajukEvents.EXITING));
@@ -71,6 +75,8 @@ public class ExitService extends Thread {
       PresetRadiosPersistenceHelper.commit();
       QueueModel.commit();
       History.commit();
+      // Apply the tag cache invalidations done since last refresh
+      TagMetadataCache.getInstance().release();
     } catch (Exception e1) {
       Log.error(e1);
     }
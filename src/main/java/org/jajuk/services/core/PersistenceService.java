@@ -26,12 +26,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.jajuk.base.Collection;
+import org.jajuk.base.CollectionJournal;
 import org.jajuk.base.DeviceManager;
 import org.jajuk.services.bookmark.History;
+import org.jajuk.services.players.PlaybackCheckpoint;
 import org.jajuk.services.players.QueueModel;
-import org.jajuk.services.players.StackItem;
 import org.jajuk.services.webradio.CustomRadiosPersistenceHelper;
 import org.jajuk.services.webradio.PresetRadiosPersistenceHelper;
 import org.jajuk.ui.perspectives.IPerspective;
@@ -41,6 +41,10 @@ import org.jajuk.util.log.Log;
  * This thread is responsible for commiting configuration or collection files on events. 
  * This allows to save files during Jajuk running and not only when exiting the app as before. 
  * <p>
+ * Collection items changes are appended to the collection journal (see {@link CollectionJournal}) 
+ * and the full collection file is only rewritten when the journal is compacted.
+ * </p>
+ * <p>
  * It is sometimes difficult to get clear events to check to so we also start a differential check 
  * on a regular basis through a thread
  * </p>
@@ -54,7 +58,8 @@ public final class PersistenceService extends Thread {
   }
 
   private static PersistenceService self = new PersistenceService();
-  private String lastCommitQueueCheckSum;
+  /** Queue modification count at last queue commit. */
+  private long lastCommitQueueModCount;
   private static final int HEART_BEAT_MS = 1000;
   private static final int MIN_DELAY_AFTER_PERSPECTIVE_CHANGE_MS = 5000;
   private static final int DELAY_HIGH_URGENCY_BEATS = 5;
@@ -120,6 +125,8 @@ public final class PersistenceService extends Thread {
     while (!ExitService.isExiting()) {
       try {
         Thread.sleep(HEART_BEAT_MS);
+        // Playing position, at most every few seconds or when paused/stopped
+        PlaybackCheckpoint.getInstance().flushIfRequired();
         if (comp % DELAY_HIGH_URGENCY_BEATS == 0) {
           performHighUrgencyActions();
         }
@@ -137,7 +144,7 @@ public final class PersistenceService extends Thread {
   }
 
   private void init() {
-    this.lastCommitQueueCheckSum = getQueueModelChecksum();
+    this.lastCommitQueueModCount = QueueModel.getModificationCount();
     collectionChanged.put(Urgency.LOW, false);
     collectionChanged.put(Urgency.MEDIUM, false);
     collectionChanged.put(Urgency.HIGH, false);
@@ -146,7 +153,11 @@ public final class PersistenceService extends Thread {
 
   private void performHighUrgencyActions() throws Exception {
     commitWebradiosIfRequired();
-    if (collectionChanged.get(Urgency.HIGH) && !DeviceManager.getInstance().isAnyDeviceRefreshing()) {
+    // Item changes are appended to the collection journal, a full collection commit is only 
+    // performed when explicitly required or when the journal grows too large
+    CollectionJournal.getInstance().flush();
+    if ((collectionChanged.get(Urgency.HIGH) || CollectionJournal.getInstance()
+        .isCompactionRequired()) && !DeviceManager.getInstance().isAnyDeviceRefreshing()) {
       try {
         Collection.commit();
       } finally {
@@ -213,12 +224,12 @@ public final class PersistenceService extends Thread {
   }
 
   private void commitQueueModelIfRequired() throws IOException {
-    String checksum = getQueueModelChecksum();
-    if (!checksum.equals(this.lastCommitQueueCheckSum)) {
+    long modCount = QueueModel.getModificationCount();
+    if (modCount != this.lastCommitQueueModCount) {
       try {
         QueueModel.commit();
       } finally {
-        this.lastCommitQueueCheckSum = checksum;
+        this.lastCommitQueueModCount = modCount;
       }
     }
   }
@@ -233,17 +244,6 @@ public final class PersistenceService extends Thread {
     }
   }
 
-  private String getQueueModelChecksum() {
-    StringBuilder sb = new StringBuilder();
-    for (StackItem item : QueueModel.getQueue()) {
-      sb.append(item.getFile().getID());
-    }
-    // Do not use MD5Processor class here to avoid the intern() method that 
-    // could create a permgen memory leak
-    byte[] checksum = DigestUtils.md5(sb.toString());
-    return new String(checksum);
-  }
-
   public static PersistenceService getInstance() {
     return self;
   }
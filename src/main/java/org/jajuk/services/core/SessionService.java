@@ -385,7 +385,7 @@ public class SessionService {
    */
   public static File getCachePath(final URL url) {
     File out = null;
-    out = getConfFileByPath(Const.FILE_CACHE + '/' + MD5Processor.hash(url.toString()));
+    out = getConfFileByPath(Const.FILE_CACHE + '/' + MD5Processor.digest(url.toString()));
     return out;
   }
 
@@ -21,7 +21,6 @@
 package org.jajuk.services.lastfm;
 
 import ext.services.lastfm.LastFmService;
-import ext.services.lastfm.ScrobblerException;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -95,23 +94,15 @@ public final class LastFmManager implements Observer, Const {
             + file.getTrack().getID());
         return;
       }
-      new Thread("LastFM Update Thread") {
-        @Override
-        public void run() {
-          long playedTime = (Long) event.getDetails().get(Const.DETAIL_CONTENT);
-          // Last.FM rule : only submit >= 30secs playbacks
-          if (playedTime >= 30000) {
-            try {
-              service.submit(file.getTrack(), playedTime);
-            } catch (ScrobblerException e) {
-              Log.error(e);
-            }
-          } else {
-            Log.info("Playback too short for this song (" + playedTime / 1000
-                + " secs), not submitted to LastFM");
-          }
-        }
-      }.start();
+      long playedTime = (Long) event.getDetails().get(Const.DETAIL_CONTENT);
+      // Last.FM rule : only submit >= 30secs playbacks
+      if (playedTime >= 30000) {
+        // Queued on disk, submitted asynchronously
+        service.submit(file.getTrack(), playedTime);
+      } else {
+        Log.info("Playback too short for this song (" + playedTime / 1000
+            + " secs), not submitted to LastFM");
+      }
     }
   }
 
@@ -21,8 +21,10 @@
 package org.jajuk.services.players;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
 
 import javazoom.jlgui.basicplayer.BasicController;
 import javazoom.jlgui.basicplayer.BasicPlayer;
@@ -140,9 +142,12 @@ public class JavaLayerPlayerImpl implements IPlayerImpl, Const, BasicPlayerListe
       player.stop();
     }
     // Update track rate
-    fCurrent.getTrack().updateRate();
+    Track track = fCurrent.getTrack();
+    track.updateRate();
     // Force immediate rating refresh (without using the rating manager)
-    ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+    Properties details = new Properties();
+    details.put(Const.DETAIL_CONTENT, Collections.singletonList(track));
+    ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
   }
 
   /*
@@ -301,7 +306,7 @@ public class JavaLayerPlayerImpl implements IPlayerImpl, Const, BasicPlayerListe
       Map mProperties) {
     if ((System.currentTimeMillis() - lDateLastUpdate) > PROGRESS_STEP) {
       lDateLastUpdate = System.currentTimeMillis();
-      this.iFadeDuration = 1000 * Conf.getInt(Const.CONF_FADE_DURATION);
+      this.iFadeDuration = 1000 * Conf.getSnapshot().getFadeDuration();
       if (bFading) {
         // computes the volume we have to sub to reach zero at last
         // progress()
@@ -333,7 +338,7 @@ public class JavaLayerPlayerImpl implements IPlayerImpl, Const, BasicPlayerListe
       if (mPlayingData.containsKey(AUDIO_LENGTH_BYTES)) {
         int byteslength = ((Integer) mPlayingData.get(AUDIO_LENGTH_BYTES)).intValue();
         fPos = (byteslength != 0) ? (float) iBytesread / (float) byteslength : 0;
-        UtilFeatures.storePersistedPlayingPosition(fPos);
+        PlaybackCheckpoint.getInstance().setPosition(fCurrent, fPos);
         lTime = (long) (lDuration * fPos);
         // update actually played duration
         if (lastPlayTimeUpdate > 0 && player.getStatus() != BasicPlayer.PAUSED) {
@@ -366,9 +371,12 @@ public class JavaLayerPlayerImpl implements IPlayerImpl, Const, BasicPlayerListe
             public void run() {
               QueueModel.finished();
               // Update track rate
-              fCurrent.getTrack().updateRate();
+              Track track = fCurrent.getTrack();
+              track.updateRate();
               // Force immediate rating refresh (without using the rating manager)
-              ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+              Properties details = new Properties();
+              details.put(Const.DETAIL_CONTENT, Collections.singletonList(track));
+              ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
             }
           }.start();
         }
@@ -381,9 +389,12 @@ public class JavaLayerPlayerImpl implements IPlayerImpl, Const, BasicPlayerListe
           @Override
           public void run() {
             QueueModel.finished();
-            fCurrent.getTrack().updateRate();
+            Track track = fCurrent.getTrack();
+            track.updateRate();
             // Force immediate rating refresh (without using the rating manager)
-            ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+            Properties details = new Properties();
+            details.put(Const.DETAIL_CONTENT, Collections.singletonList(track));
+            ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
           }
         }.start();
       }
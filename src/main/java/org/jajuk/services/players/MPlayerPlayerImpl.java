@@ -23,7 +23,9 @@ package org.jajuk.services.players;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.regex.Pattern;
 
@@ -36,7 +38,6 @@ import org.jajuk.ui.actions.ActionManager;
 import org.jajuk.ui.actions.JajukActions;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
-import org.jajuk.util.UtilFeatures;
 import org.jajuk.util.UtilSystem;
 import org.jajuk.util.error.JajukException;
 import org.jajuk.util.log.Log;
@@ -210,7 +211,7 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
               }
               lastPlayTimeUpdate = System.currentTimeMillis();
               // Store current position for use at next startup
-              UtilFeatures.storePersistedPlayingPosition(getCurrentPosition());
+              PlaybackCheckpoint.getInstance().setPosition(fCurrent, getCurrentPosition());
               // Cross-Fade test
               if (!bFading && iFadeDuration > 0
               // Length = 0 for some buggy audio headers
@@ -288,9 +289,12 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
               bEOF = true;
               // Update track rate if it has been opened
               if (!bOpening) {
-                fCurrent.getTrack().updateRate();
+                Track track = fCurrent.getTrack();
+                track.updateRate();
                 // Force immediate rating refresh (without using the rating manager)
-                ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+                Properties details = new Properties();
+                details.put(Const.DETAIL_CONTENT, Collections.singletonList(track));
+                ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
               }
               // Launch next track
               try {
@@ -338,9 +342,12 @@ public class MPlayerPlayerImpl extends AbstractMPlayerImpl {
     // Call generic stop
     super.stop();
     // Update track rate
-    fCurrent.getTrack().updateRate();
+    Track track = fCurrent.getTrack();
+    track.updateRate();
     // Force immediate rating refresh (without using the rating manager)
-    ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+    Properties details = new Properties();
+    details.put(Const.DETAIL_CONTENT, Collections.singletonList(track));
+    ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
   }
 
   /*
@@ -0,0 +1,219 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.players;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import java.util.List;
+
+import org.jajuk.base.File;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.log.Log;
+
+/**
+ * Playback state checkpoint : current playing position, file and queue index.
+ * <p>
+ * Players update the position in memory at each progress step, the state is
+ * written to the position file by the persistence service at most every
+ * {@link Const#CONF_PLAYING_POSITION_FLUSH_INTERVAL} seconds, after a
+ * pause or a stop and when exiting.
+ * </p>
+ * <p>
+ * The position file contains the position on its first line (as before), the
+ * file ID and the queue index on the next ones.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class PlaybackCheckpoint {
+  private static PlaybackCheckpoint self = new PlaybackCheckpoint();
+  /** Playing position as a float (0.1 = 10%). */
+  private volatile float position = 0f;
+  /** Played file ID, null if unknown. */
+  private volatile String fileID;
+  /** Queue index, -1 if unknown. */
+  private volatile int index = -1;
+  /** Whether the state changed since last flush. */
+  private volatile boolean bDirty = false;
+  /** Whether a flush has been requested for next persistence service heart beat. */
+  private volatile boolean bFlushRequested = false;
+  /** Whether the state has been read from disk or set already. */
+  private volatile boolean bLoaded = false;
+  /** Last flush date in ms. */
+  private volatile long lLastFlush = 0;
+
+  /**
+   * private constructor for singleton.
+   */
+  private PlaybackCheckpoint() {
+  }
+
+  /**
+   * Gets the single instance of PlaybackCheckpoint.
+   * 
+   * @return single instance of PlaybackCheckpoint
+   */
+  public static PlaybackCheckpoint getInstance() {
+    return self;
+  }
+
+  /**
+   * Set current playing position. This only changes the in-memory state and
+   * can be called at each player progress step.
+   * 
+   * @param file the played file, null if the position applies to any file
+   * @param position the playing position as a float. Example : 0.1
+   */
+  public void setPosition(File file, float position) {
+    this.fileID = (file == null) ? null : file.getID();
+    this.position = position;
+    bLoaded = true;
+    bDirty = true;
+  }
+
+  /**
+   * Reset the playing position and ask for an asynchronous flush (used when
+   * the player stops).
+   */
+  public void reset() {
+    setPosition(null, 0f);
+    requestFlush();
+  }
+
+  /**
+   * Ask the persistence service to flush the state at its next heart beat
+   * (used when the player is paused or stopped).
+   */
+  public void requestFlush() {
+    bFlushRequested = true;
+  }
+
+  /**
+   * Gets the last played position, read from the position file if not yet
+   * known in this session.
+   * 
+   * @return the last played position
+   */
+  public float getPosition() {
+    load();
+    return position;
+  }
+
+  /**
+   * Gets the ID of the file the position applies to.
+   * 
+   * @return the file ID or null if unknown
+   */
+  public String getFileID() {
+    load();
+    return fileID;
+  }
+
+  /**
+   * Gets the queue index of the played file.
+   * 
+   * @return the queue index or -1 if unknown
+   */
+  public int getIndex() {
+    load();
+    return index;
+  }
+
+  /**
+   * Return whether the stored position applies to a file. Positions written
+   * before the file ID was stored apply to any file.
+   * 
+   * @param file the file to play
+   * 
+   * @return whether the stored position applies to this file
+   */
+  public boolean isPositionFor(File file) {
+    String sID = getFileID();
+    return sID == null || (file != null && sID.equals(file.getID()));
+  }
+
+  /**
+   * Flush the state if a flush has been requested or if the position changed
+   * and the flush interval is elapsed. Called by the persistence service.
+   */
+  public void flushIfRequired() {
+    if (bFlushRequested
+        || (bDirty && System.currentTimeMillis() - lLastFlush >= Conf
+            .getInt(Const.CONF_PLAYING_POSITION_FLUSH_INTERVAL) * 1000L)) {
+      flush();
+    }
+  }
+
+  /**
+   * Write the state to the position file if it changed.
+   */
+  public synchronized void flush() {
+    bFlushRequested = false;
+    if (!bDirty) {
+      return;
+    }
+    bDirty = false;
+    lLastFlush = System.currentTimeMillis();
+    // Get the queue index here and not from the player thread
+    index = (fileID == null) ? -1 : QueueModel.getIndex();
+    StringBuilder sb = new StringBuilder();
+    sb.append(position).append('\n');
+    if (fileID != null) {
+      sb.append(fileID).append('\n').append(index).append('\n');
+    }
+    java.io.File positionFile = SessionService.getConfFileByPath(Const.FILE_PLAYING_POSITION);
+    try {
+      Files.write(sb.toString().getBytes(Charsets.UTF_8), positionFile);
+    } catch (Exception e) {
+      Log.error(e);
+    }
+  }
+
+  /**
+   * Read the state from the position file if not yet known.
+   */
+  private synchronized void load() {
+    if (bLoaded) {
+      return;
+    }
+    bLoaded = true;
+    java.io.File positionFile = SessionService.getConfFileByPath(Const.FILE_PLAYING_POSITION);
+    if (!positionFile.exists()) {
+      return;
+    }
+    try {
+      List<String> lines = Files.readLines(positionFile, Charsets.UTF_8);
+      if (lines.size() > 0) {
+        position = Float.parseFloat(lines.get(0));
+      }
+      if (lines.size() > 2) {
+        fileID = lines.get(1);
+        index = Integer.parseInt(lines.get(2));
+      }
+    } catch (Exception e) {
+      Log.error(e);
+    }
+  }
+}
@@ -0,0 +1,468 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.players;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Const;
+import org.jajuk.util.JournalFile;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.log.Log;
+
+/**
+ * Append-only journal of the queue operations.
+ * <p>
+ * The queue is stored as a snapshot (the fifo file, one file ID per line)
+ * followed by the operations performed since this snapshot. Operations are
+ * queued in memory by the {@link QueueList} and appended to the journal file
+ * by the persistence service, so huge queues don't have to be fully rewritten
+ * at each change. A new snapshot is written (compaction) at the first commit
+ * of a session and when the journal grows larger than the snapshot.
+ * </p>
+ * <p>
+ * Records are framed and checked by a {@link JournalFile} whose snapshot ID is
+ * the CRC32 of the snapshot content, so a journal left over by a crash during
+ * a compaction is ignored.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class QueueJournal {
+  /** Magic number ("JJKQ"). */
+  private static final int MAGIC = 0x4A4A4B51;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Record type : items inserted. */
+  private static final byte OP_INSERT = 1;
+  /** Record type : items removed. */
+  private static final byte OP_REMOVE = 2;
+  /** Record type : an item replaced. */
+  private static final byte OP_SET = 3;
+  /** Record type : two items swapped. */
+  private static final byte OP_SWAP = 4;
+  /** Record type : queue cleared. */
+  private static final byte OP_CLEAR = 5;
+  /** Record type : queue fully replaced. */
+  private static final byte OP_RESET = 6;
+  /** Self instance. */
+  private static QueueJournal self = new QueueJournal();
+  /** Protects the pending operations list. */
+  private final Object pendingLock = new Object();
+  /** Operations not yet written to disk. */
+  private List<Entry> pending = new ArrayList<Entry>(10);
+  /** Whether a snapshot has been written during this session. */
+  private boolean bCompacted = false;
+  /** Entries payload writer. */
+  private final JournalFile.PayloadWriter<Entry> writer = new JournalFile.PayloadWriter<Entry>() {
+    @Override
+    public boolean write(Entry entry, DataOutputStream out) throws IOException {
+      writePayload(entry, out);
+      return true;
+    }
+  };
+
+  /**
+   * A journal entry.
+   */
+  private static final class Entry {
+    private final byte op;
+    /** Position for inserts and sets, or indexes for removals and swaps. */
+    private final int[] positions;
+    /** File IDs, for inserts, sets and resets. */
+    private final String[] ids;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param op the record type
+     * @param positions
+     * @param ids
+     */
+    Entry(byte op, int[] positions, String[] ids) {
+      this.op = op;
+      this.positions = positions;
+      this.ids = ids;
+    }
+  }
+
+  /**
+   * Instance getter.
+   *
+   * @return the instance
+   */
+  public static QueueJournal getInstance() {
+    return self;
+  }
+
+  /**
+   * Hidden constructor.
+   */
+  private QueueJournal() {
+    super();
+  }
+
+  /**
+   * Gets the journal file.
+   *
+   * @return the journal file
+   */
+  private static JournalFile getJournalFile() {
+    return new JournalFile(SessionService.getConfFileByPath(Const.FILE_FIFO_JOURNAL), MAGIC,
+        FORMAT_VERSION, "queue journal");
+  }
+
+  /**
+   * Gets the snapshot file.
+   *
+   * @return the snapshot file
+   */
+  private static File getSnapshotFile() {
+    return SessionService.getConfFileByPath(Const.FILE_FIFO);
+  }
+
+  /**
+   * Queue an items insertion.
+   *
+   * @param pos insertion position
+   * @param ids inserted file IDs
+   */
+  void inserted(int pos, String[] ids) {
+    queue(new Entry(OP_INSERT, new int[] { pos }, ids));
+  }
+
+  /**
+   * Queue an items removal.
+   *
+   * @param indexes removed indexes, in ascending order
+   */
+  void removed(int[] indexes) {
+    queue(new Entry(OP_REMOVE, indexes, null));
+  }
+
+  /**
+   * Queue an item replacement.
+   *
+   * @param pos
+   * @param id the new file ID
+   */
+  void set(int pos, String id) {
+    queue(new Entry(OP_SET, new int[] { pos }, new String[] { id }));
+  }
+
+  /**
+   * Queue an items swap.
+   *
+   * @param i
+   * @param j
+   */
+  void swapped(int i, int j) {
+    queue(new Entry(OP_SWAP, new int[] { i, j }, null));
+  }
+
+  /**
+   * Queue a queue clearing.
+   */
+  void cleared() {
+    queue(new Entry(OP_CLEAR, null, null));
+  }
+
+  /**
+   * Queue a full queue replacement.
+   *
+   * @param ids the new queue file IDs
+   */
+  void reset(String[] ids) {
+    queue(new Entry(OP_RESET, null, ids));
+  }
+
+  /**
+   * Queue an entry.
+   *
+   * @param entry
+   */
+  private void queue(Entry entry) {
+    synchronized (pendingLock) {
+      pending.add(entry);
+    }
+  }
+
+  /**
+   * Drop the operations not yet written, called when the queue content is
+   * captured for a new snapshot.
+   */
+  void discardPending() {
+    synchronized (pendingLock) {
+      pending = new ArrayList<Entry>(10);
+    }
+  }
+
+  /**
+   * Store the queue operations : append them to the journal or write a new
+   * snapshot if required.
+   *
+   * @param queue the queue
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  synchronized void commit(QueueList queue) throws IOException {
+    JournalFile journal = getJournalFile();
+    File snapshot = getSnapshotFile();
+    if (!bCompacted || !snapshot.exists() || journal.length() < JournalFile.HEADER_LENGTH
+        || journal.isCompactionRequired(snapshot.length())) {
+      compact(queue);
+    } else {
+      flush();
+    }
+  }
+
+  /**
+   * Write a new snapshot of the queue and restart the journal.
+   *
+   * @param queue the queue
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void compact(QueueList queue) throws IOException {
+    long time = System.currentTimeMillis();
+    // Discards the pending operations, they are part of the snapshot
+    String[] ids = queue.snapshot();
+    ByteArrayOutputStream content = new ByteArrayOutputStream(ids.length * 40);
+    for (String id : ids) {
+      content.write(id.getBytes("UTF-8"));
+      content.write('\n');
+    }
+    File saving = SessionService.getConfFileByPath(Const.FILE_FIFO + "."
+        + Const.FILE_SAVING_FILE_EXTENSION);
+    FileOutputStream fos = new FileOutputStream(saving, false);
+    try {
+      content.writeTo(fos);
+    } finally {
+      fos.close();
+    }
+    UtilSystem.saveFileWithRecoverySupport(getSnapshotFile());
+    // A crash before this point leaves a journal whose header doesn't match the
+    // new snapshot, it is ignored at next startup
+    CRC32 crc = new CRC32();
+    crc.update(content.toByteArray());
+    getJournalFile().restart(crc.getValue());
+    bCompacted = true;
+    Log.debug("Queue snapshot of " + ids.length + " item(s) written in "
+        + (System.currentTimeMillis() - time) + " ms");
+  }
+
+  /**
+   * Append pending operations to the journal file and force them to disk.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void flush() throws IOException {
+    List<Entry> toWrite;
+    synchronized (pendingLock) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      toWrite = pending;
+      pending = new ArrayList<Entry>(10);
+    }
+    int count = getJournalFile().append(toWrite, writer);
+    Log.debug("Queue journal: " + count + " operation(s) appended");
+  }
+
+  /**
+   * Write an entry payload.
+   *
+   * @param entry
+   * @param out
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writePayload(Entry entry, DataOutputStream out) throws IOException {
+    out.writeByte(entry.op);
+    if (entry.positions == null) {
+      out.writeInt(0);
+    } else {
+      out.writeInt(entry.positions.length);
+      for (int pos : entry.positions) {
+        out.writeInt(pos);
+      }
+    }
+    if (entry.ids == null) {
+      out.writeInt(0);
+    } else {
+      out.writeInt(entry.ids.length);
+      for (String id : entry.ids) {
+        out.writeUTF(id);
+      }
+    }
+  }
+
+  /**
+   * Return whether a non void queue may have been stored.
+   *
+   * @return whether a non void queue may have been stored
+   */
+  public static boolean hasStoredQueue() {
+    return getSnapshotFile().length() > 0 || getJournalFile().hasRecords();
+  }
+
+  /**
+   * Read the stored queue : the snapshot with the journaled operations
+   * replayed over it.
+   *
+   * @return the stored queue file IDs
+   */
+  public static List<String> readStoredQueue() {
+    List<String> ids = new ArrayList<String>(100);
+    File snapshot = getSnapshotFile();
+    try {
+      UtilSystem.recoverFileIfRequired(snapshot);
+    } catch (IOException e) {
+      Log.error(e);
+    }
+    if (!snapshot.exists()) {
+      Log.debug("No fifo file");
+      return ids;
+    }
+    long snapshotCrc;
+    try {
+      CRC32 crc = new CRC32();
+      BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(snapshot),
+          "UTF-8"));
+      try {
+        for (String s = br.readLine(); s != null; s = br.readLine()) {
+          ids.add(s);
+          crc.update((s + '\n').getBytes("UTF-8"));
+        }
+      } finally {
+        br.close();
+      }
+      snapshotCrc = crc.getValue();
+    } catch (IOException e) {
+      Log.error(e);
+      return ids;
+    }
+    replay(ids, snapshotCrc);
+    return ids;
+  }
+
+  /**
+   * Replay the journal over the snapshot. The journal is truncated after the
+   * last valid record.
+   *
+   * @param ids the snapshot file IDs, updated
+   * @param snapshotCrc CRC32 of the snapshot content
+   */
+  private static void replay(final List<String> ids, long snapshotCrc) {
+    JournalFile journal = getJournalFile();
+    if (!journal.hasRecords()) {
+      return;
+    }
+    try {
+      int count = journal.replay(snapshotCrc, new JournalFile.PayloadReader() {
+        @Override
+        public boolean read(DataInputStream in) throws IOException {
+          return replayEntry(ids, in);
+        }
+      });
+      Log.debug("Queue journal: " + count + " operation(s) replayed");
+    } catch (Exception e) {
+      // We simply lose the latest queue changes
+      Log.error(e);
+    }
+  }
+
+  /**
+   * Replay a record.
+   *
+   * @param ids the queue file IDs, updated
+   * @param in the record payload
+   *
+   * @return whether the record is valid
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static boolean replayEntry(List<String> ids, DataInputStream in) throws IOException {
+    byte op = in.readByte();
+    int[] positions = new int[in.readInt()];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = in.readInt();
+    }
+    String[] read = new String[in.readInt()];
+    for (int i = 0; i < read.length; i++) {
+      read[i] = in.readUTF();
+    }
+    for (int pos : positions) {
+      // insert is allowed at the end
+      if (pos < 0 || pos > ids.size() || (pos == ids.size() && op != OP_INSERT)) {
+        return false;
+      }
+    }
+    switch (op) {
+    case OP_INSERT:
+      if (positions.length != 1) {
+        return false;
+      }
+      ids.addAll(positions[0], Arrays.asList(read));
+      break;
+    case OP_REMOVE:
+      for (int i = positions.length - 1; i >= 0; i--) {
+        ids.remove(positions[i]);
+      }
+      break;
+    case OP_SET:
+      if (positions.length != 1 || read.length != 1) {
+        return false;
+      }
+      ids.set(positions[0], read[0]);
+      break;
+    case OP_SWAP:
+      if (positions.length != 2) {
+        return false;
+      }
+      ids.set(positions[0], ids.set(positions[1], ids.get(positions[0])));
+      break;
+    case OP_CLEAR:
+      ids.clear();
+      break;
+    case OP_RESET:
+      ids.clear();
+      ids.addAll(Arrays.asList(read));
+      break;
+    default:
+      return false;
+    }
+    return true;
+  }
+}
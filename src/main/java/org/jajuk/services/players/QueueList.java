@@ -22,6 +22,7 @@ package org.jajuk.services.players;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
@@ -30,10 +31,19 @@ import org.jajuk.base.File;
 
 /**
  * Provides a container that encapsulates the normal queued items as well as the automatically planned items.
+ * <p>
+ * Each queue change increases a modification counter and is recorded in the
+ * {@link QueueJournal}, so checking or storing the queue changes doesn't
+ * require to go through the whole queue.
+ * </p>
  */
 public class QueueList implements List<StackItem> {
   /** Fifo itself, contains jajuk File objects. */
   private static volatile List<StackItem> alQueue = new ArrayList<StackItem>(50);
+  /** Protects queue changes, so changes and journaled operations are in the same order. */
+  private static final Object LOCK = new Object();
+  /** Number of queue changes since startup. */
+  private static volatile long modCount = 0;
   /** Planned tracks, played if the normal queue is exhausted. */
   private static volatile List<StackItem> alPlanned = new ArrayList<StackItem>(10);
 
@@ -44,7 +54,10 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public boolean add(StackItem e) {
-    return alQueue.add(e);
+    synchronized (LOCK) {
+      inserted(alQueue.size(), Collections.singletonList(e));
+      return alQueue.add(e);
+    }
   }
 
   /*
@@ -54,7 +67,10 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public void add(int index, StackItem element) {
-    alQueue.add(index, element);
+    synchronized (LOCK) {
+      alQueue.add(index, element);
+      inserted(index, Collections.singletonList(element));
+    }
   }
 
   /*
@@ -64,7 +80,10 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public boolean addAll(Collection<? extends StackItem> c) {
-    return alQueue.addAll(c);
+    synchronized (LOCK) {
+      inserted(alQueue.size(), c);
+      return alQueue.addAll(c);
+    }
   }
 
   /*
@@ -74,7 +93,11 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public boolean addAll(int index, Collection<? extends StackItem> c) {
-    return alQueue.addAll(index, c);
+    synchronized (LOCK) {
+      boolean changed = alQueue.addAll(index, c);
+      inserted(index, c);
+      return changed;
+    }
   }
 
   /*
@@ -84,7 +107,11 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public void clear() {
-    alQueue.clear();
+    synchronized (LOCK) {
+      alQueue.clear();
+      modCount++;
+      QueueJournal.getInstance().cleared();
+    }
   }
 
   /*
@@ -144,7 +171,7 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public Iterator<StackItem> iterator() {
-    return alQueue.iterator();
+    return listIterator(0);
   }
 
   /*
@@ -164,7 +191,7 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public ListIterator<StackItem> listIterator() {
-    return alQueue.listIterator();
+    return listIterator(0);
   }
 
   /*
@@ -174,7 +201,7 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public ListIterator<StackItem> listIterator(int index) {
-    return alQueue.listIterator(index);
+    return new JournaledIterator(alQueue.listIterator(index));
   }
 
   /*
@@ -184,7 +211,14 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public boolean remove(Object o) {
-    return alQueue.remove(o);
+    synchronized (LOCK) {
+      int index = alQueue.indexOf(o);
+      if (index < 0) {
+        return false;
+      }
+      remove(index);
+      return true;
+    }
   }
 
   /*
@@ -194,7 +228,52 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public StackItem remove(int index) {
-    return alQueue.remove(index);
+    synchronized (LOCK) {
+      StackItem removed = alQueue.remove(index);
+      modCount++;
+      QueueJournal.getInstance().removed(new int[] { index });
+      return removed;
+    }
+  }
+
+  /**
+   * Remove the items at given indexes in a single pass.
+   * 
+   * @param indexes indexes to remove, in strictly ascending order
+   */
+  public void remove(int[] indexes) {
+    if (indexes.length == 0) {
+      return;
+    }
+    synchronized (LOCK) {
+      int size = alQueue.size();
+      int to = indexes[0];
+      int next = 0;
+      for (int from = indexes[0]; from < size; from++) {
+        if (next < indexes.length && indexes[next] == from) {
+          next++;
+        } else {
+          alQueue.set(to++, alQueue.get(from));
+        }
+      }
+      alQueue.subList(to, size).clear();
+      modCount++;
+      QueueJournal.getInstance().removed(indexes.clone());
+    }
+  }
+
+  /**
+   * Swap two items.
+   * 
+   * @param i 
+   * @param j 
+   */
+  public void swap(int i, int j) {
+    synchronized (LOCK) {
+      alQueue.set(i, alQueue.set(j, alQueue.get(i)));
+      modCount++;
+      QueueJournal.getInstance().swapped(i, j);
+    }
   }
 
   /*
@@ -204,7 +283,13 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public boolean removeAll(Collection<?> c) {
-    return alQueue.removeAll(c);
+    synchronized (LOCK) {
+      boolean changed = alQueue.removeAll(c);
+      if (changed) {
+        reset();
+      }
+      return changed;
+    }
   }
 
   /*
@@ -214,7 +299,13 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public boolean retainAll(Collection<?> c) {
-    return alQueue.retainAll(c);
+    synchronized (LOCK) {
+      boolean changed = alQueue.retainAll(c);
+      if (changed) {
+        reset();
+      }
+      return changed;
+    }
   }
 
   /*
@@ -224,7 +315,12 @@ public class QueueList implements List<StackItem> {
    */
   @Override
   public StackItem set(int index, StackItem element) {
-    return alQueue.set(index, element);
+    synchronized (LOCK) {
+      StackItem previous = alQueue.set(index, element);
+      modCount++;
+      QueueJournal.getInstance().set(index, element.getFile().getID());
+      return previous;
+    }
   }
 
   /*
@@ -237,14 +333,14 @@ public class QueueList implements List<StackItem> {
     return alQueue.size();
   }
 
-  /*
-   * (non-Javadoc)
+  /**
+   * Gets a read-only view of a part of the queue.
    * 
    * @see java.util.List#subList(int, int)
    */
   @Override
   public List<StackItem> subList(int fromIndex, int toIndex) {
-    return alQueue.subList(fromIndex, toIndex);
+    return Collections.unmodifiableList(alQueue.subList(fromIndex, toIndex));
   }
 
   /*
@@ -274,7 +370,146 @@ public class QueueList implements List<StackItem> {
    */
   @SuppressWarnings("unchecked")
   public List<StackItem> getQueue() {
-    return (List<StackItem>) ((ArrayList<StackItem>) alQueue).clone();
+    synchronized (LOCK) {
+      return (List<StackItem>) ((ArrayList<StackItem>) alQueue).clone();
+    }
+  }
+
+  /**
+   * Gets the number of queue changes since startup.
+   * 
+   * @return the modification count
+   */
+  public long getModificationCount() {
+    return modCount;
+  }
+
+  /**
+   * Gets the queue file IDs and drop the operations not yet journaled as
+   * they are part of this snapshot.
+   * 
+   * @return the queue file IDs
+   */
+  String[] snapshot() {
+    synchronized (LOCK) {
+      QueueJournal.getInstance().discardPending();
+      return getIDs(alQueue);
+    }
+  }
+
+  /**
+   * Record an insertion. Must be called with the lock held.
+   * 
+   * @param index insertion index
+   * @param items inserted items
+   */
+  private static void inserted(int index, Collection<? extends StackItem> items) {
+    if (!items.isEmpty()) {
+      modCount++;
+      QueueJournal.getInstance().inserted(index, getIDs(items));
+    }
+  }
+
+  /**
+   * Record a full queue change. Must be called with the lock held.
+   */
+  private static void reset() {
+    modCount++;
+    QueueJournal.getInstance().reset(getIDs(alQueue));
+  }
+
+  /**
+   * Gets the file IDs of some items.
+   * 
+   * @param items 
+   * 
+   * @return the file IDs
+   */
+  private static String[] getIDs(Collection<? extends StackItem> items) {
+    String[] ids = new String[items.size()];
+    int i = 0;
+    for (StackItem item : items) {
+      ids[i++] = item.getFile().getID();
+    }
+    return ids;
+  }
+
+  /**
+   * Queue iterator recording the changes made through it.
+   */
+  private static final class JournaledIterator implements ListIterator<StackItem> {
+    /** Wrapped iterator. */
+    private final ListIterator<StackItem> it;
+    /** Index of the last returned item. */
+    private int last = -1;
+
+    /**
+     * Instantiates a new journaled iterator.
+     * 
+     * @param it the wrapped iterator
+     */
+    private JournaledIterator(ListIterator<StackItem> it) {
+      this.it = it;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return it.hasNext();
+    }
+
+    @Override
+    public StackItem next() {
+      last = it.nextIndex();
+      return it.next();
+    }
+
+    @Override
+    public boolean hasPrevious() {
+      return it.hasPrevious();
+    }
+
+    @Override
+    public StackItem previous() {
+      last = it.previousIndex();
+      return it.previous();
+    }
+
+    @Override
+    public int nextIndex() {
+      return it.nextIndex();
+    }
+
+    @Override
+    public int previousIndex() {
+      return it.previousIndex();
+    }
+
+    @Override
+    public void remove() {
+      synchronized (LOCK) {
+        it.remove();
+        modCount++;
+        QueueJournal.getInstance().removed(new int[] { last });
+      }
+    }
+
+    @Override
+    public void set(StackItem e) {
+      synchronized (LOCK) {
+        it.set(e);
+        modCount++;
+        QueueJournal.getInstance().set(last, e.getFile().getID());
+      }
+    }
+
+    @Override
+    public void add(StackItem e) {
+      synchronized (LOCK) {
+        int index = it.nextIndex();
+        it.add(e);
+        inserted(index, Collections.singletonList(e));
+      }
+    }
   }
 
   // ////////////////////////////////////////////////////////////
@@ -20,11 +20,9 @@
  */
 package org.jajuk.services.players;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -43,7 +41,6 @@ import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
 import org.jajuk.services.core.ExitService;
-import org.jajuk.services.core.SessionService;
 import org.jajuk.services.webradio.WebRadio;
 import org.jajuk.ui.helpers.JajukTimer;
 import org.jajuk.util.Conf;
@@ -427,16 +424,13 @@ public final class QueueModel {
         else if (bKeepPrevious && queue.size() > 0) {
           pos = queue.size();
         }
-        // add required tracks in the FIFO
-        for (StackItem item : alItems) {
-          if (pos >= queue.size()) {
-            queue.add(item);
-          } else {
-            queue.add(pos, item);
-          }
-          pos++;
-          JajukTimer.getInstance().addTrackTime(item.getFile());
+        // add required tracks in the FIFO at once
+        if (pos >= queue.size()) {
+          queue.addAll(alItems);
+        } else {
+          queue.addAll(pos, alItems);
         }
+        JajukTimer.getInstance().addTrackTime(alItems);
         // Apply repeat mode if required.
         if (Conf.getBoolean(Const.CONF_STATE_REPEAT_ALL)) {
           setRepeatModeToAll(true);
@@ -649,15 +643,15 @@ public final class QueueModel {
       boolean bPlayOK = false;
       // bfirstFile flag is used to set a offset (in %) if required (if we
       // are playing the last item at given position)
-      // Known limitation : if the last session's last played item is no
-      // more available, the offset is applied
-      // to another file. We think that it doesn't worth making things
-      // more complicated.
+      // The offset is applied only to the file it has been stored for (if
+      // known) so it is not applied to another file if the last session's
+      // last played item is no more available.
       if (bFirstFile && !Conf.getBoolean(Const.CONF_STATE_INTRO)
-          && Conf.getString(Const.CONF_STARTUP_MODE).equals(Const.STARTUP_MODE_LAST_KEEP_POS)) {
+          && Conf.getString(Const.CONF_STARTUP_MODE).equals(Const.STARTUP_MODE_LAST_KEEP_POS)
+          && PlaybackCheckpoint.getInstance().isPositionFor(toPlay)) {
         // if it is the first played file of the session and we are in
         // startup mode keep position
-        float fPos = UtilFeatures.readPersistedPlayingPosition();
+        float fPos = PlaybackCheckpoint.getInstance().getPosition();
         // play it
         bPlayOK = Player.play(toPlay, fPos, Const.TO_THE_END);
       } else {
@@ -1156,9 +1150,7 @@ public final class QueueModel {
       return;
     }
     if (lIndex < queue.size()) {
-      StackItem item = queue.get(lIndex);
-      queue.remove(lIndex); // remove the item
-      queue.add(lIndex - 1, item); // add it again above
+      queue.swap(lIndex, lIndex - 1);
       if (lIndex == index) {
         index--;
       }
@@ -1177,9 +1169,7 @@ public final class QueueModel {
       // ui behavior
       return;
     }
-    StackItem item = queue.get(lIndex);
-    queue.remove(lIndex); // remove the item
-    queue.add(lIndex + 1, item); // add it again above
+    queue.swap(lIndex, lIndex + 1);
     if (lIndex == index) {
       index++;
     }
@@ -1223,45 +1213,41 @@ public final class QueueModel {
    *            set of index to drop. We expect the array to contain integers sorted by ascendent order. The set may be void (a warning is then logged) but not null
    */
   public static void remove(final Set<Integer> initialIndexes) {
-    List<Integer> indexes = new ArrayList<Integer>(initialIndexes);
     // controls indexes
-    if (indexes.size() == 0) {
+    if (initialIndexes.size() == 0) {
       Log.warn("Removal required for a void list of indexes");
       return;
     }
-    for (int indexToRemove : indexes) {
+    int[] indexes = new int[initialIndexes.size()];
+    int comp = 0;
+    for (int indexToRemove : initialIndexes) {
       if (indexToRemove < 0 || indexToRemove >= queue.size()) {
         throw new IllegalStateException("Illegal removal index : " + index + " / " + queue.size()
             + " / " + queue.sizePlanned());
       }
+      indexes[comp++] = indexToRemove;
     }
+    Arrays.sort(indexes);
     boolean removePlayedTrack = isPlayingTrack() && initialIndexes.contains(QueueModel.index);
     boolean removePlayedTrackThatIsLastInQueue = removePlayedTrack
-        && indexes.get(indexes.size() - 1) == (queue.size() - 1);
+        && indexes[indexes.length - 1] == (queue.size() - 1);
     StackItem firstPlannedTrack = null;
     List<StackItem> plannedQueue = QueueModel.getPlanned();
     if (plannedQueue.size() > 0) {
       firstPlannedTrack = plannedQueue.get(0);
       firstPlannedTrack.setPlanned(false);
     }
+    // Remove these files from fifo in a single pass and recompute current index if required.
+    // We have to decrement current index for each dropped track prior current, or for
+    // each dropped track if we dropped the last item.
+    int nbRemovedBeforeIndex = 0;
     for (int indexToRemove : indexes) {
-      // Remove this file from fifo and recompute current index if required.
-      // We have to decrement current index if we drop tracks prior current or 
-      // if we dropped the last item.
-      queue.remove(indexToRemove);
       if (indexToRemove < index || removePlayedTrackThatIsLastInQueue) {
-        index--;
-      }
-      // Recompute indexes to remove to take into account the offset created by the removal.
-      // First indexes may become negative, this is not an issue as they are already processed.
-      int comp = 0;
-      for (int i : indexes) {
-        if (i >= indexToRemove) {
-          indexes.set(comp, i - 1);
-        }
-        comp++;
+        nbRemovedBeforeIndex++;
       }
     }
+    queue.remove(indexes);
+    index -= nbRemovedBeforeIndex;
     // Take launcher actions due to removals
     // If this is the playing track, stop it before dropping it
     // However, we have an issue if we remove the last file of the queue if it is playing : the new first 
@@ -1341,20 +1327,19 @@ public final class QueueModel {
    *             Signals that an I/O exception has occurred.
    */
   public static void commit() throws IOException {
-    java.io.File out = SessionService.getConfFileByPath(Const.FILE_FIFO + "."
-        + Const.FILE_SAVING_FILE_EXTENSION);
-    PrintWriter writer = new PrintWriter(new BufferedOutputStream(new FileOutputStream(out, false)));
-    for (StackItem st : queue) {
-      writer.println(st.getFile().getID());
-    }
-    writer.flush();
-    writer.close();
+    // Append the changes to the queue journal, or rewrite the whole queue if required
+    QueueJournal.getInstance().commit(queue);
     //Store index
     Conf.setProperty(Const.CONF_STARTUP_QUEUE_INDEX, Integer.toString(index));
-    // Override initial file
-    java.io.File finalFile = SessionService.getConfFileByPath(Const.FILE_FIFO);
-    UtilSystem.saveFileWithRecoverySupport(finalFile);
-    Log.debug("Queue commited to : " + finalFile.getAbsolutePath());
+  }
+
+  /**
+   * Gets the number of queue changes since startup, to check for changes cheaply.
+   * 
+   * @return the queue modification count
+   */
+  public static long getModificationCount() {
+    return queue.getModificationCount();
   }
 
   /**
@@ -1418,18 +1403,22 @@ public final class QueueModel {
    * Force FIFO cleanup, for example after files deletion.
    */
   public static synchronized void clean() {
-    Iterator<StackItem> it = queue.iterator();
+    List<Integer> toRemove = new ArrayList<Integer>();
     int i = 0;
-    while (it.hasNext()) {
-      StackItem si = it.next();
+    for (StackItem si : queue) {
       if (FileManager.getInstance().getFileByID(si.getFile().getID()) == null) {
-        it.remove();
+        toRemove.add(i);
         if (i <= index) {
           index--;
         }
       }
       i++;
     }
+    int[] indexes = new int[toRemove.size()];
+    for (i = 0; i < indexes.length; i++) {
+      indexes[i] = toRemove.get(i);
+    }
+    queue.remove(indexes);
     computesPlanned(true);
   }
 
@@ -0,0 +1,208 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.reporting;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.jajuk.util.log.Log;
+
+/**
+ * Render the independent parts of a report (a device, a genre...)
+ * concurrently, each into its own temporary chunk file, and append the chunks
+ * in order to the report.
+ * <p>
+ * Only the chunks rendered ahead of the one being appended are kept, on disk,
+ * so the memory used doesn't depend on the collection size. Progress is
+ * reported to the listener at each appended chunk.
+ * </p>
+ * <p>
+ * Not thread-safe, to be used from the exporting thread only and closed once
+ * done.
+ * </p>
+ */
+final class ChunkedExport {
+  /** Maximum number of chunks rendered concurrently. */
+  private static final int MAX_THREADS = 4;
+  /** Chunks copy buffer size. */
+  static final int BUFFER_SIZE = 65536;
+  /** Rendering threads. */
+  private final ExecutorService executor;
+  /** Chunks directory. */
+  private final File dir;
+  /** Progress listener, can be null. */
+  private final ExportProgressListener listener;
+  /** Chunk files not yet appended and deleted. */
+  private final Set<File> pending = Collections
+      .newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+  /** Number of submitted chunks. */
+  private int total;
+  /** Number of appended chunks. */
+  private int done;
+
+  /**
+   * Renders a part of the report.
+   *
+   * @param <T> the type of the rendered items
+   */
+  interface Renderer<T> {
+    /**
+     * Render an item. The stream is closed by the caller, buffered writers
+     * must only be flushed.
+     *
+     * @param item the item
+     * @param out the chunk stream
+     *
+     * @throws Exception the exception
+     */
+    void render(T item, OutputStream out) throws Exception;
+  }
+
+  /**
+   * Instantiates a new chunked export.
+   *
+   * @param dir the directory of the chunk files
+   * @param listener the progress listener, can be null
+   */
+  ChunkedExport(File dir, ExportProgressListener listener) {
+    this.dir = dir;
+    this.listener = listener;
+    int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+    executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private int count = 0;
+
+      @Override
+      public synchronized Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Report Thread " + (++count));
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Start rendering one chunk per item.
+   *
+   * @param items the items, in the report order
+   * @param renderer the items renderer
+   *
+   * @return the future chunk files, in the report order
+   */
+  <T> List<Future<File>> submit(List<? extends T> items, final Renderer<T> renderer) {
+    List<Future<File>> chunks = new ArrayList<Future<File>>(items.size());
+    for (final T item : items) {
+      chunks.add(executor.submit(new Callable<File>() {
+        @Override
+        public File call() throws Exception {
+          File chunk = File.createTempFile("report", ".part", dir);
+          pending.add(chunk);
+          OutputStream out = new BufferedOutputStream(new FileOutputStream(chunk), BUFFER_SIZE);
+          try {
+            renderer.render(item, out);
+          } finally {
+            out.close();
+          }
+          return chunk;
+        }
+      }));
+    }
+    total += chunks.size();
+    return chunks;
+  }
+
+  /**
+   * Append rendered chunks to the report, waiting for them if required.
+   *
+   * @param chunks the future chunk files, as returned by submit()
+   * @param out the report stream
+   *
+   * @throws Exception if a chunk rendering failed
+   */
+  void append(List<Future<File>> chunks, OutputStream out) throws Exception {
+    for (Future<File> future : chunks) {
+      File chunk;
+      try {
+        chunk = future.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+      InputStream in = new FileInputStream(chunk);
+      try {
+        IOUtils.copy(in, out);
+      } finally {
+        in.close();
+      }
+      delete(chunk);
+      done++;
+      if (listener != null) {
+        listener.progress(done, total);
+      }
+    }
+  }
+
+  /**
+   * Stop the rendering and delete the chunk files not yet appended.
+   */
+  void close() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (File chunk : new ArrayList<File>(pending)) {
+      delete(chunk);
+    }
+  }
+
+  /**
+   * Delete a chunk file.
+   *
+   * @param chunk the chunk file
+   */
+  private void delete(File chunk) {
+    pending.remove(chunk);
+    if (chunk.exists() && !chunk.delete()) {
+      Log.warn("Cannot delete report chunk: " + chunk.getAbsolutePath());
+    }
+  }
+}
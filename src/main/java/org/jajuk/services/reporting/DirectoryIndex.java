@@ -0,0 +1,105 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.reporting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jajuk.base.Directory;
+import org.jajuk.base.DirectoryManager;
+import org.jajuk.base.File;
+import org.jajuk.base.FileManager;
+
+/**
+ * Children directories and files of each directory, read once for a whole
+ * report.
+ * <p>
+ * Directory.getDirectories() and Directory.getFiles() walk the whole
+ * collection at each call, the index walks it only once. Children are kept in
+ * the managers order, like these methods do. The index is never changed after
+ * its creation so it can be read concurrently.
+ * </p>
+ */
+final class DirectoryIndex {
+  /** Directory -> children directories. */
+  private final Map<Directory, List<Directory>> directories =
+      new HashMap<Directory, List<Directory>>();
+  /** Directory -> children files. */
+  private final Map<Directory, List<File>> files = new HashMap<Directory, List<File>>();
+
+  /**
+   * Instantiates a new index of the current collection.
+   */
+  DirectoryIndex() {
+    for (Directory directory : DirectoryManager.getInstance().getDirectories()) {
+      Directory parent = directory.getParentDirectory();
+      if (parent != null) {
+        add(directories, parent, directory);
+      }
+    }
+    for (File file : FileManager.getInstance().getFiles()) {
+      add(files, file.getDirectory(), file);
+    }
+  }
+
+  /**
+   * Add a child to a directory.
+   *
+   * @param children the children map
+   * @param directory the directory
+   * @param child the child
+   */
+  private static <T> void add(Map<Directory, List<T>> children, Directory directory, T child) {
+    List<T> list = children.get(directory);
+    if (list == null) {
+      list = new ArrayList<T>(2);
+      children.put(directory, list);
+    }
+    list.add(child);
+  }
+
+  /**
+   * Gets the sub-directories of a directory.
+   *
+   * @param directory the directory
+   *
+   * @return the sub-directories
+   */
+  List<Directory> getDirectories(Directory directory) {
+    List<Directory> list = directories.get(directory);
+    return list == null ? Collections.<Directory> emptyList() : list;
+  }
+
+  /**
+   * Gets the files of a directory.
+   *
+   * @param directory the directory
+   *
+   * @return the files
+   */
+  List<File> getFiles(Directory directory) {
+    List<File> list = files.get(directory);
+    return list == null ? Collections.<File> emptyList() : list;
+  }
+}
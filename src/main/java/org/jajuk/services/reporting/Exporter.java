@@ -36,6 +36,8 @@ public abstract class Exporter {
   public static final int LOGICAL_COLLECTION = 1;
   /** Cache file (used to handle concurrency issues), set by child classes. */
   protected File cache;
+  /** Progress listener, can be null. */
+  private ExportProgressListener listener;
 
   /**
    * This method will export the content to the specified sPath.
@@ -79,4 +81,32 @@ public abstract class Exporter {
   public File getCacheFile() {
     return this.cache;
   }
+
+  /**
+   * Sets the progress listener.
+   * 
+   * @param listener the progress listener, null to remove it
+   */
+  public void setProgressListener(ExportProgressListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Gets the progress listener.
+   * 
+   * @return the progress listener, can be null
+   */
+  public ExportProgressListener getProgressListener() {
+    return this.listener;
+  }
+
+  /**
+   * Create a chunked export, its chunk files are stored next to the cache
+   * file. It must be closed once done.
+   * 
+   * @return the chunked export
+   */
+  ChunkedExport createChunkedExport() {
+    return new ChunkedExport(cache.getAbsoluteFile().getParentFile(), listener);
+  }
 }
@@ -16,28 +16,56 @@
  *  You should have received a copy of the GNU General Public License
  *  along with this program; if not, write to the Free Software
  *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
- *  
+ *
  */
 package org.jajuk.services.reporting;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
 
 import org.jajuk.base.Album;
+import org.jajuk.base.AlbumManager;
 import org.jajuk.base.Artist;
+import org.jajuk.base.ArtistManager;
 import org.jajuk.base.Device;
+import org.jajuk.base.DeviceManager;
 import org.jajuk.base.Directory;
+import org.jajuk.base.DirectoryManager;
 import org.jajuk.base.Genre;
+import org.jajuk.base.GenreManager;
 import org.jajuk.base.Item;
+import org.jajuk.base.Track;
+import org.jajuk.base.TrackManager;
 import org.jajuk.base.Year;
 import org.jajuk.services.core.SessionService;
 import org.jajuk.util.Const;
+import org.jajuk.util.Messages;
+import org.jajuk.util.UtilString;
 import org.jajuk.util.UtilSystem;
 
 /**
  * This class exports music contents to HTML.
+ * <p>
+ * Devices and full collection reports are rendered straight to HTML, the
+ * templates below mirror the device.xsl and logical_collection.xsl style
+ * sheets. Each device or genre is rendered concurrently into its own chunks.
+ * Other reports are small, they are still exported to XML then transformed.
+ * </p>
  */
 public class HTMLExporter extends Exporter {
+  /** Private Constants. */
+  private static final String NEWLINE = "\n";
+
   /**
    * PUBLIC METHODS.
    */
@@ -48,43 +76,48 @@ public class HTMLExporter extends Exporter {
 
   /**
    * Process collection.
-   * 
-   * @param type 
-   * 
+   *
+   * @param type
+   *
    * @throws Exception the exception
-   * 
+   *
    * @see Exporter.processColllection
    */
   @Override
+  @SuppressWarnings("unchecked")
   public void processCollection(int type) throws Exception {
-    // Get an instance of the XMLExporter.
-    XMLExporter xmlExporter = (XMLExporter) ExporterFactory.createExporter("xml");
     // If we are exporting the physical collection...
     if (type == PHYSICAL_COLLECTION) {
-      // Create an xml tagging of the collection.
-      xmlExporter.processCollection(PHYSICAL_COLLECTION);
-      XMLTransformer.xmlToHTML(xmlExporter.getCacheFile(), cache, Const.XSLT_DEVICE);
+      renderDevices((List<Device>) DeviceManager.getInstance().getItems());
       // Else if we are exporting the logical genre collection...
     } else if (type == LOGICAL_COLLECTION) {
-      // Create an xml tagging of the collection.
-      xmlExporter.setShowTracks(false);
-      xmlExporter.processCollection(LOGICAL_COLLECTION);
-      XMLTransformer.xmlToHTML(xmlExporter.getCacheFile(), cache, Const.XSLT_COLLECTION_LOGICAL);
+      renderGenres((List<Genre>) GenreManager.getInstance().getItems());
     }
   }
 
   /*
    * (non-Javadoc)
-   * 
+   *
    * @see org.jajuk.reporting.Exporter#process(java.util.List)
    */
   @Override
   public void process(List<Item> collection) throws Exception {
+    Item first = collection.get(0);
+    if (first instanceof Device) {
+      List<Device> devices = new ArrayList<Device>(collection.size());
+      for (Item item : collection) {
+        if (item instanceof Device) {
+          devices.add((Device) item);
+        }
+      }
+      renderDevices(devices);
+      return;
+    }
     // Get an instance of the XMLExporter.
     XMLExporter xmlExporter = (XMLExporter) ExporterFactory.createExporter("xml");
+    xmlExporter.setProgressListener(getProgressListener());
     // Create an xml tagging of this collection
     xmlExporter.process(collection);
-    Item first = collection.get(0);
     if (first instanceof Genre) {
       XMLTransformer.xmlToHTML(xmlExporter.getCacheFile(), cache, Const.XSLT_GENRE);
     } else if (first instanceof Artist) {
@@ -93,13 +126,331 @@ public class HTMLExporter extends Exporter {
       XMLTransformer.xmlToHTML(xmlExporter.getCacheFile(), cache, Const.XSLT_YEAR);
     } else if (first instanceof Album) {
       XMLTransformer.xmlToHTML(xmlExporter.getCacheFile(), cache, Const.XSLT_ALBUM);
-    } else if (first instanceof Device) {
-      XMLTransformer.xmlToHTML(xmlExporter.getCacheFile(), cache, Const.XSLT_DEVICE);
     } else if (first instanceof Directory) {
       XMLTransformer.xmlToHTML(xmlExporter.getCacheFile(), cache, Const.XSLT_DIRECTORY);
     }
   }
 
+  /**
+   * Render a devices report (device.xsl).
+   *
+   * @param selection the devices
+   *
+   * @throws Exception the exception
+   */
+  private void renderDevices(List<Device> selection) throws Exception {
+    final List<Device> devices = new ArrayList<Device>(new TreeSet<Device>(selection));
+    final DirectoryIndex index = new DirectoryIndex();
+    ChunkedExport export = createChunkedExport();
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(cache, false),
+        ChunkedExport.BUFFER_SIZE);
+    try {
+      // Directories per device
+      List<Future<File>> directories = export.submit(devices,
+          new ChunkedExport.Renderer<Device>() {
+            @Override
+            public void render(Device device, OutputStream chunk) throws Exception {
+              Writer writer = createWriter(chunk);
+              writer.write("<h2 id='a" + device.getID() + "'>" + format(device.getName())
+                  + "</h2>" + NEWLINE);
+              Directory root = getRootDirectory(device);
+              if (root != null) {
+                renderDirectoriesPerDevice(writer, index, root);
+              }
+              writer.flush();
+            }
+          });
+      // Directories/ files
+      List<Future<File>> files = export.submit(devices, new ChunkedExport.Renderer<Device>() {
+        @Override
+        public void render(Device device, OutputStream chunk) throws Exception {
+          Writer writer = createWriter(chunk);
+          Directory root = getRootDirectory(device);
+          if (root != null) {
+            for (Directory directory : index.getDirectories(root)) {
+              renderDirectory(writer, index, directory);
+            }
+          }
+          writer.flush();
+        }
+      });
+      Writer writer = createWriter(out);
+      renderHeader(writer, "ReportAction.14", "ReportAction.15", "ReportAction.16");
+      // Devices list
+      writer.write("<table border='0' cellspacing='5'>" + NEWLINE);
+      writer.write("<tr><th>" + label(Const.XML_NAME) + "</th><th>" + label(Const.XML_URL)
+          + "</th><th>" + label(Const.XML_TYPE) + "</th></tr>" + NEWLINE);
+      for (Device device : devices) {
+        writer.write("<tr><td><a href='#a" + device.getID() + "'>" + format(device.getName())
+            + "</a></td><td>" + format(device.getUrl()) + "</td><td>"
+            + format(device.getDeviceTypeS()) + "</td></tr>" + NEWLINE);
+      }
+      writer.write("</table>" + NEWLINE);
+      renderSection(writer, out, export, directories, "a2", "ReportAction.15");
+      renderSection(writer, out, export, files, "a3", "ReportAction.16");
+      writer.write("</body>" + NEWLINE + "</html>" + NEWLINE);
+      writer.flush();
+    } finally {
+      export.close();
+      out.close();
+    }
+  }
+
+  /**
+   * Render the full logical collection report (logical_collection.xsl).
+   *
+   * @param selection the genres
+   *
+   * @throws Exception the exception
+   */
+  private void renderGenres(List<Genre> selection) throws Exception {
+    final List<Genre> genres = new ArrayList<Genre>(new TreeSet<Genre>(selection));
+    ChunkedExport export = createChunkedExport();
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(cache, false),
+        ChunkedExport.BUFFER_SIZE);
+    try {
+      // Albums per genre
+      List<Future<File>> albums = export.submit(genres, new ChunkedExport.Renderer<Genre>() {
+        @Override
+        public void render(Genre genre, OutputStream chunk) throws Exception {
+          Writer writer = createWriter(chunk);
+          writer.write("<h3 id='a" + genre.getID() + "'>" + format(genre.getName2()) + "</h3>"
+              + NEWLINE);
+          writer.write("<table border='0' cellspacing='5'>" + NEWLINE);
+          writer.write("<tr><th>" + label(Const.XML_NAME) + "</th><th>"
+              + label(Const.XML_ARTIST) + "</th><th>" + label(Const.XML_YEAR) + "</th></tr>"
+              + NEWLINE);
+          for (Album album : AlbumManager.getInstance().getAssociatedAlbums(genre)) {
+            Track track = getFirstTrack(album);
+            writer.write("<tr><td width='50%'>" + format(album.getName2())
+                + "</td><td width='30%'>"
+                + (track == null ? "" : format(track.getArtist().getName2()))
+                + "</td><td width='5%'>"
+                + (track == null ? "" : format(track.getYear().getName2())) + "</td></tr>"
+                + NEWLINE);
+          }
+          writer.write("</table>" + NEWLINE);
+          writer.flush();
+        }
+      });
+      // Artists/ albums per genre
+      List<Future<File>> artists = export.submit(genres, new ChunkedExport.Renderer<Genre>() {
+        @Override
+        public void render(Genre genre, OutputStream chunk) throws Exception {
+          Writer writer = createWriter(chunk);
+          writer.write("<h3>" + format(genre.getName2()) + "</h3>" + NEWLINE);
+          for (Artist artist : ArtistManager.getInstance().getAssociatedArtists(genre)) {
+            writer.write("<h4>" + format(artist.getName2()) + "</h4>" + NEWLINE);
+            writer.write("<table border='0' cellspacing='5'>" + NEWLINE);
+            writer.write("<tr><th>" + label(Const.XML_NAME) + "</th><th>"
+                + label(Const.XML_YEAR) + "</th></tr>" + NEWLINE);
+            for (Album album : AlbumManager.getInstance().getAssociatedAlbums(artist)) {
+              Track track = getFirstTrack(album);
+              writer.write("<tr><td>" + format(album.getName2()) + "</td><td>"
+                  + (track == null ? "" : format(track.getYear().getName2())) + "</td></tr>"
+                  + NEWLINE);
+            }
+            writer.write("</table>" + NEWLINE);
+          }
+          writer.flush();
+        }
+      });
+      Writer writer = createWriter(out);
+      renderHeader(writer, "ReportAction.7", "ReportAction.8", "ReportAction.9");
+      // Genres list
+      writer.write("<table border='0' cellspacing='5'>" + NEWLINE);
+      for (Genre genre : genres) {
+        writer.write("<tr><td><a href='#a" + genre.getID() + "'>" + format(genre.getName2())
+            + "</a></td></tr>" + NEWLINE);
+      }
+      writer.write("</table>" + NEWLINE);
+      renderSection(writer, out, export, albums, "a2", "ReportAction.8");
+      renderSection(writer, out, export, artists, "a3", "ReportAction.9");
+      writer.write("</body>" + NEWLINE + "</html>" + NEWLINE);
+      writer.flush();
+    } finally {
+      export.close();
+      out.close();
+    }
+  }
+
+  /**
+   * Render the document header, the report title and the jump links to the
+   * three sections, then the first section title.
+   *
+   * @param writer
+   * @param sections the three sections titles keys
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void renderHeader(Writer writer, String... sections) throws IOException {
+    writer.write("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\" "
+        + "\"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">" + NEWLINE);
+    writer.write("<html xmlns='http://www.w3.org/1999/xhtml'>" + NEWLINE + "<head>" + NEWLINE);
+    writer.write("<meta http-equiv='Content-Type' content='text/html; charset=utf-8' />"
+        + NEWLINE);
+    writer.write("<title>Jajuk Music Report</title>" + NEWLINE);
+    writer.write("<link rel='stylesheet' href='" + Const.FILE_REPORTING_CSS_ALL_FILENAME
+        + "' type='text/css' media='all' />" + NEWLINE);
+    writer.write("<link rel='stylesheet' href='" + Const.FILE_REPORTING_CSS_PRINT_FILENAME
+        + "' type='text/css' media='print' />" + NEWLINE);
+    writer.write("</head>" + NEWLINE + "<body>" + NEWLINE);
+    writer.write("<h1>" + message("ReportAction.1") + "</h1>" + NEWLINE);
+    writer.write("<p class='notice'>" + message("ReportAction.2") + "</p>" + NEWLINE);
+    writer.write("<ul class='jumpto'>" + NEWLINE);
+    writer.write("<li class='.jumpto li'>" + message("ReportAction.19") + "</li>" + NEWLINE);
+    for (int i = 0; i < sections.length; i++) {
+      writer.write("<li><a href='#a" + (i + 1) + "'>" + message(sections[i]) + "</a></li>"
+          + NEWLINE);
+    }
+    writer.write("</ul>" + NEWLINE);
+    writer.write("<h2 id='a1'>" + message(sections[0]) + "</h2>" + NEWLINE);
+  }
+
+  /**
+   * Render a section title then append its chunks.
+   *
+   * @param writer the report writer
+   * @param out the report stream, under the writer
+   * @param export
+   * @param chunks the section chunks
+   * @param id the section anchor
+   * @param title the section title key
+   *
+   * @throws Exception the exception
+   */
+  private static void renderSection(Writer writer, OutputStream out, ChunkedExport export,
+      List<Future<File>> chunks, String id, String title) throws Exception {
+    writer.write("<h2 id='" + id + "'>" + message(title) + "</h2>" + NEWLINE);
+    writer.flush();
+    export.append(chunks, out);
+  }
+
+  /**
+   * Render the directories of a device or a directory, recursively, as links
+   * to the directories tables.
+   *
+   * @param writer
+   * @param index
+   * @param parent
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void renderDirectoriesPerDevice(Writer writer, DirectoryIndex index,
+      Directory parent) throws IOException {
+    for (Directory directory : index.getDirectories(parent)) {
+      writer.write("<p><a href='#a" + directory.getID() + "'>"
+          + format(directory.getAbsolutePath()) + "</a></p>" + NEWLINE);
+      renderDirectoriesPerDevice(writer, index, directory);
+    }
+  }
+
+  /**
+   * Render a directory files table, after the ones of its sub-directories.
+   *
+   * @param writer
+   * @param index
+   * @param directory
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void renderDirectory(Writer writer, DirectoryIndex index, Directory directory)
+      throws IOException {
+    writer.write("<h2 id='a" + directory.getID() + "'>" + format(directory.getAbsolutePath())
+        + "</h2>" + NEWLINE);
+    for (Directory child : index.getDirectories(directory)) {
+      renderDirectory(writer, index, child);
+    }
+    writer.write("<table border='0' cellspacing='5'>" + NEWLINE);
+    writer.write("<tr><th>" + message("ReportAction.12") + "</th><th>"
+        + label(Const.XML_TRACK_ORDER) + "</th><th>" + message("ReportAction.13") + "</th><th>"
+        + label(Const.XML_GENRE) + "</th><th>" + label(Const.XML_ARTIST) + "</th><th>"
+        + label(Const.XML_ALBUM) + "</th><th>" + label(Const.XML_TRACK_LENGTH) + "</th><th>"
+        + label(Const.XML_TRACK_RATE) + "</th><th>" + label(Const.XML_TRACK_COMMENT)
+        + "</th></tr>" + NEWLINE);
+    for (org.jajuk.base.File file : index.getFiles(directory)) {
+      Track track = file.getTrack();
+      writer.write("<tr><td>" + format(file.getName()) + "</td><td>"
+          + UtilString.padNumber(track.getOrder(), 2) + "</td><td class='track'>"
+          + format(track.getName()) + "</td><td class='style'>"
+          + format(track.getGenre().getName2()) + "</td><td class='author'>"
+          + format(track.getArtist().getName2()) + "</td><td class='album'>"
+          + format(track.getAlbum().getName2()) + "</td><td>"
+          + UtilString.formatTimeBySec(track.getDuration()) + "</td><td>" + track.getRate()
+          + "</td><td>" + format(track.getComment()) + "</td></tr>" + NEWLINE);
+    }
+    writer.write("</table>" + NEWLINE);
+  }
+
+  /**
+   * Create a writer.
+   *
+   * @param out the stream to write to, as UTF-8
+   *
+   * @return the writer, to be flushed once done
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static Writer createWriter(OutputStream out) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+  }
+
+  /**
+   * Gets the root directory of a device.
+   *
+   * @param device
+   *
+   * @return the root directory, null for a void device
+   */
+  private static Directory getRootDirectory(Device device) {
+    return DirectoryManager.getInstance().getDirectoryForIO(device.getFIO(), device);
+  }
+
+  /**
+   * Gets the first track of an album, that gives the album artist and year.
+   *
+   * @param album
+   *
+   * @return the first track or null if none
+   */
+  private static Track getFirstTrack(Album album) {
+    List<Track> tracks = TrackManager.getInstance().getAssociatedTracks(album, true);
+    return tracks.isEmpty() ? null : tracks.get(0);
+  }
+
+  /**
+   * Gets a message, escaped.
+   *
+   * @param key the message key
+   *
+   * @return the message
+   */
+  private static String message(String key) {
+    return format(Messages.getString(key));
+  }
+
+  /**
+   * Gets the human name of a property, escaped.
+   *
+   * @param property the property name
+   *
+   * @return the label
+   */
+  private static String label(String property) {
+    return format(Messages.getHumanPropertyName(property));
+  }
+
+  /**
+   * Escape a text.
+   *
+   * @param s the text, can be null
+   *
+   * @return the escaped text
+   */
+  private static String format(String s) {
+    return s == null ? "" : UtilString.formatXML(s);
+  }
+
   /* (non-Javadoc)
    * @see org.jajuk.services.reporting.Exporter#saveToFile(java.lang.String)
    */
@@ -16,17 +16,22 @@
  *  You should have received a copy of the GNU General Public License
  *  along with this program; if not, write to the Free Software
  *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
- *  
+ *
  */
 package org.jajuk.services.reporting;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.jajuk.base.Album;
 import org.jajuk.base.AlbumManager;
@@ -49,559 +54,470 @@ import org.jajuk.util.UtilString;
 
 /**
  * This class exports music contents to XML.
+ * <p>
+ * The document is streamed with a StAX writer. Each selected item (each
+ * device or genre for a full collection) is tagged concurrently into its own
+ * chunk, chunks are then appended in order to the document.
+ * </p>
  */
 public class XMLExporter extends Exporter {
   /** Private Constants. */
   private static final String NEWLINE = "\n";
-  /** The Constant XML_HEADER.   */
-  private static final String XML_HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
-  private final BufferedWriter writer;
+  /** StAX writers factory. */
+  private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
   /** Do we want to export tracks ?*. */
   private boolean showTracks = true;
 
   /**
    * PUBLIC METHODS.
-   * 
-   * @throws IOException Signals that an I/O exception has occurred.
    */
-  public XMLExporter() throws IOException {
+  public XMLExporter() {
     cache = SessionService.getConfFileByPath(Const.FILE_REPORTING_CACHE_FILE + "_XML_"
         + System.currentTimeMillis());
-    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cache, false), "UTF-8"));
   }
 
   /**
-   * This method will create a tagging of the specified item.
-   * 
-   * @param item The item to report (can be an album, a year, an artist, a genre, a
-   * directory or a device)
-   * 
-   * @return Returns a string containing the report, or null if an error
-   * occurred.
-   * 
-   * @throws Exception the exception
-   */
-  public void process(Item item) throws Exception {
-    if (item instanceof Album) {
-      process((Album) item);
-    } else if (item instanceof Artist) {
-      process((Artist) item);
-    } else if (item instanceof Genre) {
-      process((Genre) item);
-    } else if (item instanceof Year) {
-      process((Year) item);
-    } else if (item instanceof Directory) {
-      process((Directory) item);
-    } else if (item instanceof Device) {
-      process((Device) item);
-    }
-  }
-
-  /**
-   * This method will create a tagging of the specified album and its tracks.
-   * 
-   * @param album The album to tag.
-   * 
-   * @return Returns a string containing the tagging, or null if an error
-   * occurred.
-   * 
-   * @throws Exception the exception
-   */
-  public void process(Album album) throws Exception {
-    // Make sure we have an album.
-    if (album != null) {
-      tagAlbum(album, 0);
-    }
-  }
-
-  /**
-   * This method will create a reporting of the specified year and its albums
-   * and associated tracks.
-   * 
-   * @param year The year to report.
-   * 
-   * @return Returns a string containing the report, or null if an error
-   * occurred.
-   * 
-   * @throws Exception the exception
-   */
-  public void process(Year year) throws Exception {
-    if (year != null) {
-      tagYear(year, 0);
-    }
-  }
-
-  /**
-   * This method will create a tagging of the specified artist and its albums
-   * and associated tracks.
-   * 
-   * @param artist The artist to tag.
-   * 
-   * @return Returns a string containing the tagging, or null if an error
-   * occurred.
-   * 
-   * @throws Exception the exception
-   */
-  public void process(Artist artist) throws Exception {
-    if (artist != null) {
-      tagArtist(artist, 0);
-    }
-  }
-
-  /**
-   * This method will create a tagging of the specified genre.
-   * 
-   * @param genre The genre to tag.
-   * 
-   * @return Returns a string containing the tagging, or null is an error
-   * occurred.
-   * 
+   * Process collection.
+   *
+   * @param type
+   *
    * @throws Exception the exception
+   *
+   * @see Exporter.processColllection
    */
-  public void process(Genre genre) throws Exception {
-    if (genre != null) {
-      tagGenre(genre, 0);
+  @Override
+  @SuppressWarnings("unchecked")
+  public void processCollection(int type) throws Exception {
+    // If we are tagging the physical collection...
+    if (type == Exporter.PHYSICAL_COLLECTION) {
+      // Same effect than selecting all devices
+      process((List<Item>) DeviceManager.getInstance().getItems());
+    } else if (type == LOGICAL_COLLECTION) {
+      // Same effect than selecting all genres
+      process((List<Item>) GenreManager.getInstance().getItems());
     }
   }
 
-  /**
-   * This method will create a tagging of a directory and all its children files
-   * and directories.
-   * 
-   * @param directory The directory to start from.
-   * 
-   * @return Returns a string containing the tagging, or null if an error
-   * occurred.
-   * 
-   * @throws Exception the exception
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.reporting.Exporter#process(java.util.List)
    */
-  public void process(Directory directory) throws Exception {
-    if (directory != null) {
-      tagDirectory(directory);
+  @Override
+  public void process(List<Item> collection) throws Exception {
+    // Sort the collection thanks a tree set (we can't use Collections.sort()
+    // here due to generics)
+    List<Item> items = new ArrayList<Item>(new TreeSet<Item>(collection));
+    final DirectoryIndex index = new DirectoryIndex();
+    ChunkedExport export = createChunkedExport();
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(cache, false),
+        ChunkedExport.BUFFER_SIZE);
+    try {
+      List<Future<File>> chunks = export.submit(items, new ChunkedExport.Renderer<Item>() {
+        @Override
+        public void render(Item item, OutputStream chunk) throws Exception {
+          XMLStreamWriter writer = createWriter(chunk);
+          tagItem(writer, index, item);
+          writer.flush();
+        }
+      });
+      XMLStreamWriter writer = createWriter(out);
+      writer.writeStartDocument("UTF-8", "1.0");
+      writer.writeCharacters(NEWLINE);
+      writer.writeStartElement(Const.XML_COLLECTION);
+      writer.writeCharacters(NEWLINE);
+      // The chunks are written straight to the stream, between the collection
+      // start and end tags
+      writer.flush();
+      export.append(chunks, out);
+      tagI18n(writer);
+      writer.writeEndElement();
+      writer.writeEndDocument();
+      writer.flush();
+    } finally {
+      export.close();
+      out.close();
     }
   }
 
   /**
-   * This method will create a tagging of a device and all its children files
-   * and directories.
-   * 
-   * @param device The device to start from.
-   * 
-   * @return Returns a string containing the tagging, or null if an error
-   * occurred.
-   * 
-   * @throws Exception the exception
+   * Create a StAX writer.
+   *
+   * @param out the stream to write to, as UTF-8
+   *
+   * @return the writer
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  public void process(Device device) throws Exception {
-    if (device != null) {
-      tagDevice(device);
+  private static XMLStreamWriter createWriter(OutputStream out) throws XMLStreamException {
+    // The factory is not specified as thread-safe
+    synchronized (FACTORY) {
+      return FACTORY.createXMLStreamWriter(out, "UTF-8");
     }
   }
 
   /**
-   * Process collection.
-   * 
-   * @param type 
-   * 
-   * @throws Exception the exception
-   * 
-   * @see Exporter.processColllection
+   * Tag an item.
+   *
+   * @param writer
+   * @param index
+   * @param item The item to report (can be an album, a year, an artist, a
+   * genre, a directory or a device)
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  @Override
-  @SuppressWarnings("unchecked")
-  public void processCollection(int type) throws Exception {
-    // If we are tagging the physical collection...
-    if (type == Exporter.PHYSICAL_COLLECTION) {
-      // Same effect than selecting all devices
-      process((List<Item>) DeviceManager.getInstance().getItems());
-    } else if (type == LOGICAL_COLLECTION) {
-      // Same effect than selecting all genres
-      process((List<Item>) GenreManager.getInstance().getItems());
+  private void tagItem(XMLStreamWriter writer, DirectoryIndex index, Item item)
+      throws XMLStreamException {
+    if (item instanceof Album) {
+      tagAlbum(writer, (Album) item, 0);
+    } else if (item instanceof Artist) {
+      tagArtist(writer, (Artist) item, 0);
+    } else if (item instanceof Genre) {
+      tagGenre(writer, (Genre) item, 0);
+    } else if (item instanceof Year) {
+      tagYear(writer, (Year) item, 0);
+    } else if (item instanceof Directory) {
+      tagDirectory(writer, index, (Directory) item, 0);
+    } else if (item instanceof Device) {
+      tagDevice(writer, index, (Device) item);
     }
   }
 
   /**
-   * PRIVATE HELPER METHODS.
-   * 
-   * @param level 
-   * @param directory 
-   * 
-   * @throws Exception the exception
+   * Tag a directory and all its children files and directories.
+   *
+   * @param writer
+   * @param index
+   * @param directory
+   * @param level
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private void exportDirectoryHelper(int level, Directory directory) throws Exception {
-    // Get the children
-    List<Directory> children = new ArrayList<Directory>(directory.getDirectories());
-    writer.write(addTabs(level) + Tag.openTag(Const.XML_DIRECTORY) + NEWLINE);
-    String sName = UtilString.formatXML(directory.getName());
-    String sID = UtilString.formatXML(directory.getID());
-    String sPath = UtilString.formatXML(directory.getAbsolutePath());
+  private void tagDirectory(XMLStreamWriter writer, DirectoryIndex index, Directory directory,
+      int level) throws XMLStreamException {
+    openTag(writer, level, Const.XML_DIRECTORY);
     // Tag directory data.
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_ID, sID) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_NAME, sName) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_PATH, sPath) + NEWLINE);
+    tagData(writer, level + 1, Const.XML_ID, directory.getID());
+    tagData(writer, level + 1, Const.XML_NAME, directory.getName());
+    tagData(writer, level + 1, Const.XML_PATH, directory.getAbsolutePath());
     // Tag children directories
-    for (Directory d : children) {
-      exportDirectoryHelper(level + 1, d);
+    for (Directory d : index.getDirectories(directory)) {
+      tagDirectory(writer, index, d, level + 1);
     }
     // Tag children files
-    for (org.jajuk.base.File file : directory.getFiles()) {
-      tagFile(file, level + 1);
+    for (org.jajuk.base.File file : index.getFiles(directory)) {
+      tagFile(writer, file, level + 1);
     }
-    writer.write(addTabs(level) + Tag.closeTag(Const.XML_DIRECTORY) + NEWLINE);
+    closeTag(writer, level);
   }
 
   /**
    * Tag file.
-   * 
-   * 
-   * @param file 
-   * @param level 
-   * 
-   * @throws Exception the exception
+   *
+   * @param writer
+   * @param file
+   * @param level
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private void tagFile(org.jajuk.base.File file, int level) throws Exception {
-    String sFileID = file.getID();
-    String sName = UtilString.formatXML(file.getName());
-    String sPath = UtilString.formatXML(file.getAbsolutePath());
-    long lSize = file.getSize();
-    writer.write(addTabs(level) + Tag.openTag(Const.XML_FILE) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_ID, sFileID) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_NAME, sName) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_PATH, sPath) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_SIZE, lSize) + NEWLINE);
-    tagTrack(file.getTrack(), level + 1);
-    writer.write(addTabs(level) + Tag.closeTag(Const.XML_FILE) + NEWLINE);
-  }
-
-  /**
-   * Tag directory.
-   * 
-   * 
-   * @param directory 
-   * 
-   * @throws Exception the exception
-   */
-  private void tagDirectory(Directory directory) throws Exception {
-    // Make sure we have a directory.
-    if (directory != null) {
-      writer.write(Tag.openTag(Const.XML_DIRECTORY) + NEWLINE);
-      String sName = UtilString.formatXML(directory.getName());
-      String sPath = UtilString.formatXML(directory.getAbsolutePath());
-      String sID = directory.getID();
-      // Tag directory data.
-      writer.write(addTabs(1) + Tag.tagData(Const.XML_ID, sID) + NEWLINE);
-      writer.write(addTabs(1) + Tag.tagData(Const.XML_NAME, sName) + NEWLINE);
-      writer.write(addTabs(1) + Tag.tagData(Const.XML_PATH, sPath) + NEWLINE);
-      // Tag directory children data.
-      for (Directory d : new ArrayList<Directory>(directory.getDirectories())) {
-        exportDirectoryHelper(1, d);
-      }
-      // Tag directory file children data.
-      for (org.jajuk.base.File file : directory.getFiles()) {
-        tagFile(file, 1);
-      }
-      writer.write(Tag.closeTag(Const.XML_DIRECTORY) + NEWLINE);
-    }
+  private void tagFile(XMLStreamWriter writer, org.jajuk.base.File file, int level)
+      throws XMLStreamException {
+    openTag(writer, level, Const.XML_FILE);
+    tagData(writer, level + 1, Const.XML_ID, file.getID());
+    tagData(writer, level + 1, Const.XML_NAME, file.getName());
+    tagData(writer, level + 1, Const.XML_PATH, file.getAbsolutePath());
+    tagData(writer, level + 1, Const.XML_SIZE, Long.toString(file.getSize()));
+    tagTrack(writer, file.getTrack(), level + 1);
+    closeTag(writer, level);
   }
 
   /**
    * Tag device.
-   * 
-   * 
-   * @param device 
-   * 
-   * @throws Exception the exception
+   *
+   * @param writer
+   * @param index
+   * @param device
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private void tagDevice(Device device) throws Exception {
-    String sID = device.getID();
-    writer.write(Tag.openTag(Const.XML_DEVICE) + NEWLINE);
-    writer.write(addTabs(1) + Tag.tagData(Const.XML_ID, sID) + NEWLINE);
-    writer.write(addTabs(1) + Tag.tagData(Const.XML_NAME, UtilString.formatXML(device.getName()))
-        + NEWLINE);
-    writer.write(addTabs(1)
-        + Tag.tagData(Const.XML_TYPE, UtilString.formatXML(device.getDeviceTypeS())) + NEWLINE);
-    writer.write(addTabs(1) + Tag.tagData(Const.XML_URL, UtilString.formatXML(device.getUrl()))
-        + NEWLINE);
+  private void tagDevice(XMLStreamWriter writer, DirectoryIndex index, Device device)
+      throws XMLStreamException {
+    openTag(writer, 0, Const.XML_DEVICE);
+    tagData(writer, 1, Const.XML_ID, device.getID());
+    tagData(writer, 1, Const.XML_NAME, device.getName());
+    tagData(writer, 1, Const.XML_TYPE, device.getDeviceTypeS());
+    tagData(writer, 1, Const.XML_URL, device.getUrl());
     Directory dir = DirectoryManager.getInstance().getDirectoryForIO(device.getFIO(), device);
     // check void devices
     if (dir != null) {
       // Tag children directories of device.
-      for (Directory directory : new ArrayList<Directory>(dir.getDirectories())) {
-        exportDirectoryHelper(1, directory);
+      for (Directory directory : index.getDirectories(dir)) {
+        tagDirectory(writer, index, directory, 1);
       }
       // Tag children files of device.
-      for (org.jajuk.base.File file : DirectoryManager.getInstance()
-          .getDirectoryForIO(device.getFIO(), device).getFiles()) {
-        tagFile(file, 1);
+      for (org.jajuk.base.File file : index.getFiles(dir)) {
+        tagFile(writer, file, 1);
       }
     }
-    writer.write(Tag.closeTag(Const.XML_DEVICE) + NEWLINE);
+    closeTag(writer, 0);
   }
 
   /**
    * Tag track.
-   * 
-   * 
-   * @param track 
-   * @param level 
-   * 
-   * @throws Exception the exception
+   *
+   * @param writer
+   * @param track
+   * @param level
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private void tagTrack(Track track, int level) throws Exception {
-    String sTrackID = track.getID();
-    String sTrackName = UtilString.formatXML(track.getName());
-    String sTrackGenre = UtilString.formatXML(track.getGenre().getName2());
-    String sTrackArtist = UtilString.formatXML(track.getArtist().getName2());
-    String sTrackAlbum = UtilString.formatXML(track.getAlbum().getName2());
-    long lTrackLength = track.getDuration();
-    long lTrackRate = track.getRate();
-    String sTrackComment = UtilString.formatXML(track.getComment());
-    long lTrackOrder = track.getOrder();
-    long lTrackDiscNumber = track.getDiscNumber();
-    writer.write(addTabs(level) + Tag.openTag(Const.XML_TRACK) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_ID, sTrackID) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_TRACK_NAME, sTrackName) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_TRACK_GENRE, sTrackGenre) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_TRACK_ARTIST, sTrackArtist) + NEWLINE);
-    writer.write(addTabs(level + 1)
-        + Tag.tagData(Const.XML_TRACK_LENGTH, UtilString.formatTimeBySec(lTrackLength)) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_TRACK_RATE, lTrackRate) + NEWLINE);
-    writer
-        .write(addTabs(level + 1) + Tag.tagData(Const.XML_TRACK_COMMENT, sTrackComment) + NEWLINE);
-    writer.write(addTabs(level + 1)
-        + Tag.tagData(Const.XML_TRACK_ORDER, UtilString.padNumber(lTrackOrder, 2)) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_TRACK_ALBUM, sTrackAlbum) + NEWLINE);
-    writer.write(addTabs(level + 1)
-        + Tag.tagData(Const.XML_TRACK_DISC_NUMBER, UtilString.padNumber(lTrackDiscNumber, 2))
-        + NEWLINE);
-    writer.write(addTabs(level) + Tag.closeTag(Const.XML_TRACK) + NEWLINE);
+  private void tagTrack(XMLStreamWriter writer, Track track, int level)
+      throws XMLStreamException {
+    openTag(writer, level, Const.XML_TRACK);
+    tagData(writer, level + 1, Const.XML_ID, track.getID());
+    tagData(writer, level + 1, Const.XML_TRACK_NAME, track.getName());
+    tagData(writer, level + 1, Const.XML_TRACK_GENRE, track.getGenre().getName2());
+    tagData(writer, level + 1, Const.XML_TRACK_ARTIST, track.getArtist().getName2());
+    tagData(writer, level + 1, Const.XML_TRACK_LENGTH,
+        UtilString.formatTimeBySec(track.getDuration()));
+    tagData(writer, level + 1, Const.XML_TRACK_RATE, Long.toString(track.getRate()));
+    tagData(writer, level + 1, Const.XML_TRACK_COMMENT, track.getComment());
+    tagData(writer, level + 1, Const.XML_TRACK_ORDER, UtilString.padNumber(track.getOrder(), 2));
+    tagData(writer, level + 1, Const.XML_TRACK_ALBUM, track.getAlbum().getName2());
+    tagData(writer, level + 1, Const.XML_TRACK_DISC_NUMBER,
+        UtilString.padNumber(track.getDiscNumber(), 2));
+    closeTag(writer, level);
   }
 
   /**
    * Tag album.
-   * 
-   * 
-   * @param album 
-   * @param level 
-   * 
-   * @throws Exception the exception
+   *
+   * @param writer
+   * @param album
+   * @param level
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private void tagAlbum(Album album, int level) throws Exception {
-    String sAlbumID = album.getID();
-    String sAlbumName = UtilString.formatXML(album.getName2());
+  private void tagAlbum(XMLStreamWriter writer, Album album, int level)
+      throws XMLStreamException {
     String sGenreName = "";
     String sArtistName = "";
     String sYear = "";
     List<Track> tracks = TrackManager.getInstance().getAssociatedTracks(album, true);
     if (tracks.size() > 0) {
-      sGenreName = UtilString.formatXML(tracks.iterator().next().getGenre().getName2());
-      sArtistName = UtilString.formatXML(tracks.iterator().next().getArtist().getName2());
-      sYear = tracks.iterator().next().getYear().getName2();
+      Track first = tracks.get(0);
+      sGenreName = first.getGenre().getName2();
+      sArtistName = first.getArtist().getName2();
+      sYear = first.getYear().getName2();
     }
-    writer.write(addTabs(level) + Tag.openTag(Const.XML_ALBUM) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_ID, sAlbumID) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_NAME, sAlbumName) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_ARTIST, sArtistName) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_GENRE, sGenreName) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_YEAR, sYear) + NEWLINE);
+    openTag(writer, level, Const.XML_ALBUM);
+    tagData(writer, level + 1, Const.XML_ID, album.getID());
+    tagData(writer, level + 1, Const.XML_NAME, album.getName2());
+    tagData(writer, level + 1, Const.XML_ARTIST, sArtistName);
+    tagData(writer, level + 1, Const.XML_GENRE, sGenreName);
+    tagData(writer, level + 1, Const.XML_YEAR, sYear);
     // For full collection, we don't show detailed tracks for performance
     // reasons
     if (showTracks) {
       for (Track track : tracks) {
-        tagTrack(track, level + 1);
+        tagTrack(writer, track, level + 1);
       }
     }
-    writer.write(addTabs(level) + Tag.closeTag(Const.XML_ALBUM) + NEWLINE);
+    closeTag(writer, level);
   }
 
   /**
    * Tag artist.
-   * 
-   * 
-   * @param artist 
-   * @param level 
-   * 
-   * @throws Exception the exception
+   *
+   * @param writer
+   * @param artist
+   * @param level
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private void tagArtist(Artist artist, int level) throws Exception {
-    String sArtistID = artist.getID();
-    String sArtistName = UtilString.formatXML(artist.getName2());
-    writer.write(addTabs(level) + Tag.openTag(Const.XML_ARTIST) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_ID, sArtistID) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_NAME, sArtistName) + NEWLINE);
-    List<Album> albums = AlbumManager.getInstance().getAssociatedAlbums(artist);
-    for (Album album : albums) {
-      tagAlbum(album, level + 1);
+  private void tagArtist(XMLStreamWriter writer, Artist artist, int level)
+      throws XMLStreamException {
+    openTag(writer, level, Const.XML_ARTIST);
+    tagData(writer, level + 1, Const.XML_ID, artist.getID());
+    tagData(writer, level + 1, Const.XML_NAME, artist.getName2());
+    for (Album album : AlbumManager.getInstance().getAssociatedAlbums(artist)) {
+      tagAlbum(writer, album, level + 1);
     }
-    writer.write(addTabs(level) + Tag.closeTag(Const.XML_ARTIST) + NEWLINE);
+    closeTag(writer, level);
   }
 
   /**
    * Tag year.
-   * 
-   * 
-   * @param year 
-   * @param level 
-   * 
-   * @throws Exception the exception
+   *
+   * @param writer
+   * @param year
+   * @param level
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private void tagYear(Year year, int level) throws Exception {
-    String sYearID = year.getID();
-    String sYearName = year.getName();
-    writer.write(addTabs(level) + Tag.openTag(Const.XML_YEAR) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_ID, sYearID) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_NAME, sYearName) + NEWLINE);
-    List<Album> albums = AlbumManager.getInstance().getAssociatedAlbums(year);
-    for (Album album : albums) {
-      tagAlbum(album, level + 1);
+  private void tagYear(XMLStreamWriter writer, Year year, int level) throws XMLStreamException {
+    openTag(writer, level, Const.XML_YEAR);
+    tagData(writer, level + 1, Const.XML_ID, year.getID());
+    tagData(writer, level + 1, Const.XML_NAME, year.getName());
+    for (Album album : AlbumManager.getInstance().getAssociatedAlbums(year)) {
+      tagAlbum(writer, album, level + 1);
     }
-    writer.write(addTabs(level) + Tag.closeTag(Const.XML_YEAR) + NEWLINE);
+    closeTag(writer, level);
   }
 
   /**
    * Tag genre.
-   * 
-   * 
-   * @param genre 
-   * @param level 
-   * 
-   * @throws Exception the exception
+   *
+   * @param writer
+   * @param genre
+   * @param level
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private void tagGenre(Genre genre, int level) throws Exception {
-    String sGenreID = genre.getID();
-    String sGenreName = UtilString.formatXML(genre.getName2());
-    writer.write(addTabs(level) + Tag.openTag(Const.XML_GENRE) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_ID, sGenreID) + NEWLINE);
-    writer.write(addTabs(level + 1) + Tag.tagData(Const.XML_NAME, sGenreName) + NEWLINE);
-    List<Album> albums = AlbumManager.getInstance().getAssociatedAlbums(genre);
-    for (Album album : albums) {
-      tagAlbum(album, level + 1);
+  private void tagGenre(XMLStreamWriter writer, Genre genre, int level)
+      throws XMLStreamException {
+    openTag(writer, level, Const.XML_GENRE);
+    tagData(writer, level + 1, Const.XML_ID, genre.getID());
+    tagData(writer, level + 1, Const.XML_NAME, genre.getName2());
+    for (Album album : AlbumManager.getInstance().getAssociatedAlbums(genre)) {
+      tagAlbum(writer, album, level + 1);
     }
-    List<Artist> artists = ArtistManager.getInstance().getAssociatedArtists(genre);
-    for (Artist artist : artists) {
-      tagArtist(artist, level + 1);
+    for (Artist artist : ArtistManager.getInstance().getAssociatedArtists(genre)) {
+      tagArtist(writer, artist, level + 1);
     }
-    writer.write(addTabs(level) + Tag.closeTag(Const.XML_GENRE) + NEWLINE);
+    closeTag(writer, level);
   }
 
   /**
-   * Adds the tabs.
-   * 
-   * 
-   * @param num 
-   * 
-   * @return the string
+   * Tag the I18N nodes used by the XSL style sheets.
+   *
+   * @param writer
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private String addTabs(int num) {
-    StringBuilder sb = new StringBuilder();
-    int i = 0;
-    while (i < num) {
-      sb.append('\t');
+  private void tagI18n(XMLStreamWriter writer) throws XMLStreamException {
+    openTag(writer, 0, "i18n");
+    int i = 1;
+    while (Messages.contains("ReportAction." + i)) {
+      tagData(writer, 1, "ReportAction." + i, Messages.getString("ReportAction." + i));
       i++;
     }
-    return sb.toString();
+    tagData(writer, 1, "ReportAction.name", Messages.getHumanPropertyName(Const.XML_NAME));
+    tagData(writer, 1, "ReportAction.artist", Messages.getHumanPropertyName(Const.XML_ARTIST));
+    tagData(writer, 1, "ReportAction.genre", Messages.getHumanPropertyName(Const.XML_GENRE));
+    tagData(writer, 1, "ReportAction.order",
+        Messages.getHumanPropertyName(Const.XML_TRACK_ORDER));
+    tagData(writer, 1, "ReportAction.track", Messages.getHumanPropertyName(Const.XML_TRACK));
+    tagData(writer, 1, "ReportAction.album", Messages.getHumanPropertyName(Const.XML_ALBUM));
+    tagData(writer, 1, "ReportAction.length",
+        Messages.getHumanPropertyName(Const.XML_TRACK_LENGTH));
+    tagData(writer, 1, "ReportAction.year", Messages.getHumanPropertyName(Const.XML_YEAR));
+    tagData(writer, 1, "ReportAction.rate", Messages.getHumanPropertyName(Const.XML_TRACK_RATE));
+    tagData(writer, 1, "ReportAction.url", Messages.getHumanPropertyName(Const.XML_URL));
+    tagData(writer, 1, "ReportAction.type", Messages.getHumanPropertyName(Const.XML_TYPE));
+    tagData(writer, 1, "ReportAction.comment",
+        Messages.getHumanPropertyName(Const.XML_TRACK_COMMENT));
+    closeTag(writer, 0);
   }
 
-  /*
-   * (non-Javadoc)
-   * 
-   * @see org.jajuk.reporting.Exporter#process(java.util.List)
+  /**
+   * Write an open tag on its own line.
+   *
+   * @param writer
+   * @param level
+   * @param tagname
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  @Override
-  public void process(List<Item> collection) throws Exception {
-    try {
-      writer.write(XML_HEADER + NEWLINE + Tag.openTag(Const.XML_COLLECTION) + NEWLINE);
-      // Sort the collection thanks a tree set (we can't use Collections.sort()
-      // here due to generics)
-      TreeSet<Item> ts = new TreeSet<Item>();
-      for (Item item : collection) {
-        ts.add(item);
-      }
-      for (Item item : ts) {
-        process(item);
-      }
-      // Add I18N nodes
-      writer.write(Tag.openTag("i18n"));
-      int i = 1;
-      while (Messages.contains("ReportAction." + i)) {
-        writer.write('\t' + Tag.tagData("ReportAction." + i,
-            Messages.getString("ReportAction." + i)));
-        i++;
-      }
-      writer.write('\t' + Tag.tagData("ReportAction.name",
-          Messages.getHumanPropertyName(Const.XML_NAME)));
-      writer.write('\t' + Tag.tagData("ReportAction.artist",
-          Messages.getHumanPropertyName(Const.XML_ARTIST)));
-      writer.write('\t' + Tag.tagData("ReportAction.genre",
-          Messages.getHumanPropertyName(Const.XML_GENRE)));
-      writer.write('\t' + Tag.tagData("ReportAction.order",
-          Messages.getHumanPropertyName(Const.XML_TRACK_ORDER)));
-      writer.write('\t' + Tag.tagData("ReportAction.track",
-          Messages.getHumanPropertyName(Const.XML_TRACK)));
-      writer.write('\t' + Tag.tagData("ReportAction.album",
-          Messages.getHumanPropertyName(Const.XML_ALBUM)));
-      writer.write('\t' + Tag.tagData("ReportAction.length",
-          Messages.getHumanPropertyName(Const.XML_TRACK_LENGTH)));
-      writer.write('\t' + Tag.tagData("ReportAction.year",
-          Messages.getHumanPropertyName(Const.XML_YEAR)));
-      writer.write('\t' + Tag.tagData("ReportAction.rate",
-          Messages.getHumanPropertyName(Const.XML_TRACK_RATE)));
-      writer.write('\t' + Tag.tagData("ReportAction.url",
-          Messages.getHumanPropertyName(Const.XML_URL)));
-      writer.write('\t' + Tag.tagData("ReportAction.type",
-          Messages.getHumanPropertyName(Const.XML_TYPE)));
-      writer.write('\t' + Tag.tagData("ReportAction.comment",
-          Messages.getHumanPropertyName(Const.XML_TRACK_COMMENT)));
-      writer.write(Tag.closeTag("i18n"));
-      writer.write(Tag.closeTag(Const.XML_COLLECTION));
-    } finally {
-      writer.flush();
-      writer.close();
-    }
+  private static void openTag(XMLStreamWriter writer, int level, String tagname)
+      throws XMLStreamException {
+    writer.writeCharacters(addTabs(level));
+    writer.writeStartElement(tagname);
+    writer.writeCharacters(NEWLINE);
   }
 
   /**
-   * Sets the show tracks.
-   * 
-   * @param showTracks the new show tracks
+   * Write the close tag of the last open tag on its own line.
+   *
+   * @param writer
+   * @param level
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  protected void setShowTracks(boolean showTracks) {
-    this.showTracks = showTracks;
+  private static void closeTag(XMLStreamWriter writer, int level) throws XMLStreamException {
+    writer.writeCharacters(addTabs(level));
+    writer.writeEndElement();
+    writer.writeCharacters(NEWLINE);
   }
-}
 
-/**
- * This class will create taggings. It will create either open tags, closed
- * tags, or full tagging with data.
- */
-final class Tag {
   /**
-   * private constructor to avoid instantiating utility class
+   * Write a full tagging with data on its own line. Reserved characters are
+   * escaped by the writer, characters not allowed in XML are dropped.
+   *
+   * @param writer
+   * @param level
+   * @param tagname
+   * @param data the data, can be null
+   *
+   * @throws XMLStreamException the XML stream exception
    */
-  private Tag() {
-  }
-
-  public static String openTag(String tagname) {
-    return "<" + tagname + ">";
-  }
-
-  public static String closeTag(String tagname) {
-    return "</" + tagname + ">";
-  }
-
-  public static String tagData(String tagname, String data) {
-    return Tag.openTag(tagname) + data + Tag.closeTag(tagname);
+  private static void tagData(XMLStreamWriter writer, int level, String tagname, String data)
+      throws XMLStreamException {
+    writer.writeCharacters(addTabs(level));
+    writer.writeStartElement(tagname);
+    if (data != null) {
+      writer.writeCharacters(toXMLChars(data));
+    }
+    writer.writeEndElement();
+    writer.writeCharacters(NEWLINE);
   }
 
-  public static String tagData(String tagname, long data) {
-    return Tag.openTag(tagname) + data + Tag.closeTag(tagname);
+  /**
+   * Drop the characters not allowed in XML.
+   *
+   * @param s
+   *
+   * @return the string
+   */
+  private static String toXMLChars(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (!UtilString.isChar(s.charAt(i))) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int j = 0; j < s.length(); j++) {
+          char c = s.charAt(j);
+          if (UtilString.isChar(c)) {
+            sb.append(c);
+          }
+        }
+        return sb.toString();
+      }
+    }
+    return s;
   }
 
-  public static String tagData(String tagname, int data) {
-    return Tag.openTag(tagname) + data + Tag.closeTag(tagname);
+  /**
+   * Adds the tabs.
+   *
+   * @param num
+   *
+   * @return the string
+   */
+  private static String addTabs(int num) {
+    StringBuilder sb = new StringBuilder();
+    int i = 0;
+    while (i < num) {
+      sb.append('\t');
+      i++;
+    }
+    return sb.toString();
   }
 
-  public static String tagData(String tagname, double data) {
-    return Tag.openTag(tagname) + data + Tag.closeTag(tagname);
+  /**
+   * Sets the show tracks.
+   *
+   * @param showTracks the new show tracks
+   */
+  protected void setShowTracks(boolean showTracks) {
+    this.showTracks = showTracks;
   }
 }
@@ -23,7 +23,7 @@ package org.jajuk.services.startup;
 import org.jajuk.base.AlbumManager;
 import org.jajuk.base.Device;
 import org.jajuk.base.DeviceManager;
-import org.jajuk.base.ItemManager;
+import org.jajuk.base.TrackSearchIndex;
 import org.jajuk.services.alarm.AlarmManager;
 import org.jajuk.services.core.CleanupService;
 import org.jajuk.services.core.ExitService;
@@ -54,7 +54,9 @@ public final class StartupAsyncService {
   }
 
   /**
-   * Asynchronous tasks executed at startup at the same time (for perf).
+   * Asynchronous tasks executed at startup at the same time (for perf). Items
+   * managers must be switched to sorted mode before as the auto-refresh thread
+   * is started.
    * 
    * @param bCollectionLoadRecover 
    */
@@ -96,9 +98,8 @@ public final class StartupAsyncService {
           PersistenceService.getInstance().start();
           // Startup cleanup thread
           CleanupService.getInstance().start();
-          // Switch to sorted mode, must be done before starting auto-refresh
-          // thread !
-          ItemManager.switchAllManagersToOrderState();
+          // Build the search index so the first search is immediate
+          TrackSearchIndex.getInstance().refresh();
           // Refresh any new device from first Time Wizard
           Device newDevice = FirstTimeWizard.getNewDevice();
           try {
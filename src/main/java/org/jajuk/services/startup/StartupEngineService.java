@@ -20,9 +20,7 @@
  */
 package org.jajuk.services.startup;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -42,6 +40,7 @@ import org.jajuk.events.ObservationManager;
 import org.jajuk.services.core.SessionService;
 import org.jajuk.services.dj.Ambience;
 import org.jajuk.services.dj.AmbienceManager;
+import org.jajuk.services.players.QueueJournal;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.services.webradio.WebRadio;
 import org.jajuk.services.webradio.WebRadioManager;
@@ -91,7 +90,7 @@ public final class StartupEngineService {
           // Void collection
           || FileManager.getInstance().getElementCount() == 0
           // FIFO void or not exists
-          || (!fifo.exists() || fifo.length() == 0);
+          || !QueueJournal.hasStoredQueue();
       // Populate item to be started and load the stored queue
       populateStartupItems();
       // Check that the file to play is not null and try to mount its device if required 
@@ -159,35 +158,10 @@ public final class StartupEngineService {
    * Restore the queue we got at last session exit.
    */
   private static void restoreQueue() {
-    final File fifo = SessionService.getConfFileByPath(Const.FILE_FIFO);
-    try {
-      UtilSystem.recoverFileIfRequired(fifo);
-    } catch (IOException e) {
-      Log.error(e);
-    }
-    if (!fifo.exists()) {
-      Log.debug("No fifo file");
-    } else {
-      try {
-        final BufferedReader br = new BufferedReader(new FileReader(
-            SessionService.getConfFileByPath(Const.FILE_FIFO)));
-        try {
-          String s = null;
-          for (;;) {
-            s = br.readLine();
-            if (s == null) {
-              break;
-            }
-            final org.jajuk.base.File file = FileManager.getInstance().getFileByID(s);
-            if ((file != null) && file.isReady()) {
-              alToPlay.add(file);
-            }
-          }
-        } finally {
-          br.close();
-        }
-      } catch (final IOException ioe) {
-        Log.error(ioe);
+    for (String id : QueueJournal.readStoredQueue()) {
+      final org.jajuk.base.File file = FileManager.getInstance().getFileByID(id);
+      if ((file != null) && file.isReady()) {
+        alToPlay.add(file);
       }
     }
   }
@@ -23,6 +23,7 @@ package org.jajuk.services.startup;
 import ext.JSplash;
 
 import java.awt.SystemTray;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 
 import javax.swing.SwingUtilities;
@@ -208,6 +209,9 @@ public final class StartupGUIService {
             JajukSystray tray = JajukSystray.getInstance();
             tray.getWindowStateDecorator().display(true);
           }
+          Log.debug("First window displayed "
+              + (System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime())
+              + " ms after JVM start");
           // Display simple device wizard if user didn't yet created any device
           if (DeviceManager.getInstance().getDevices().size() == 0
               && !UpgradeManager.isFirstSession()) {
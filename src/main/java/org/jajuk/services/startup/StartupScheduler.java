@@ -0,0 +1,299 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.startup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jajuk.util.log.Log;
+
+/**
+ * Runs startup tasks as soon as their prerequisites are done, on a small pool
+ * of threads, so independent startup phases overlap.
+ * <p>
+ * Tasks must be added after their prerequisites, the graph is thus acyclic.
+ * The first task failure cancels the tasks not yet started and is thrown back
+ * by {@link #run()}. A scheduler runs only once.
+ * </p>
+ * <p>
+ * Each task start and duration are logged once all tasks are done.
+ * </p>
+ */
+public final class StartupScheduler {
+  /** Default number of threads. */
+  private static final int DEFAULT_THREADS = Math.max(2,
+      Math.min(3, Runtime.getRuntime().availableProcessors()));
+  /** Name -> task, in adding order. */
+  private final Map<String, Task> tasks = new LinkedHashMap<String, Task>(20);
+  /** Max number of tasks running at the same time. */
+  private final int nbThreads;
+  /** Number of tasks not yet done. */
+  private int nbRemaining;
+  /** First task failure, if any. */
+  private Throwable failure;
+  /** Start date of the run (ms). */
+  private long runStart;
+  /** Executor running the tasks, set during a run. */
+  private ThreadPoolExecutor executor;
+
+  /**
+   * A startup task.
+   */
+  private final class Task implements Runnable {
+    /** Task name. */
+    private final String name;
+    /** Task action. */
+    private final Runnable action;
+    /** Tasks depending on this one. */
+    private final List<Task> dependents = new ArrayList<Task>(2);
+    /** Number of prerequisites not yet done. */
+    private int nbPending;
+    /** Start offset since the run start (ms). */
+    private long start = -1;
+    /** Duration (ms). */
+    private long duration = -1;
+    /** Name of the thread that ran the task. */
+    private String threadName;
+
+    /**
+     * Instantiates a new task.
+     *
+     * @param name
+     * @param action
+     */
+    private Task(String name, Runnable action) {
+      this.name = name;
+      this.action = action;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      synchronized (StartupScheduler.this) {
+        if (failure != null) {
+          return;
+        }
+      }
+      long time = System.currentTimeMillis();
+      Throwable error = null;
+      try {
+        action.run();
+      } catch (Throwable t) {
+        error = t;
+      }
+      long end = System.currentTimeMillis();
+      synchronized (StartupScheduler.this) {
+        start = time - runStart;
+        duration = end - time;
+        threadName = Thread.currentThread().getName();
+        if (error != null) {
+          if (failure == null) {
+            failure = error;
+          }
+          StartupScheduler.this.notifyAll();
+          return;
+        }
+        done(this);
+      }
+    }
+  }
+
+  /**
+   * Instantiates a new startup scheduler using the default number of threads.
+   */
+  public StartupScheduler() {
+    this(DEFAULT_THREADS);
+  }
+
+  /**
+   * Instantiates a new startup scheduler.
+   *
+   * @param nbThreads max number of tasks running at the same time
+   */
+  public StartupScheduler(int nbThreads) {
+    this.nbThreads = nbThreads;
+  }
+
+  /**
+   * Add a task.
+   *
+   * @param name task name, unique
+   * @param action the task action
+   * @param prerequisites names of the tasks to be done before this one, they
+   * must be already added
+   *
+   * @throws IllegalArgumentException if the name is already used or a
+   * prerequisite is unknown
+   */
+  public synchronized void add(String name, Runnable action, String... prerequisites) {
+    if (tasks.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate startup task: " + name);
+    }
+    Task task = new Task(name, action);
+    for (String prerequisite : prerequisites) {
+      Task before = tasks.get(prerequisite);
+      if (before == null) {
+        throw new IllegalArgumentException("Unknown prerequisite: " + prerequisite + " for "
+            + name);
+      }
+      before.dependents.add(task);
+      task.nbPending++;
+    }
+    tasks.put(name, task);
+  }
+
+  /**
+   * Run all the tasks and wait for them.
+   *
+   * @throws Exception the first task failure, wrapped if not an exception
+   * @throws Error the first task failure if an error
+   */
+  public void run() throws Exception {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(nbThreads, nbThreads, 1,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          private int count = 0;
+
+          @Override
+          public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Startup Thread " + (++count));
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    try {
+      synchronized (this) {
+        executor = pool;
+        runStart = System.currentTimeMillis();
+        nbRemaining = tasks.size();
+        failure = null;
+        for (Task task : tasks.values()) {
+          if (task.nbPending == 0) {
+            submit(task);
+          }
+        }
+        while (nbRemaining > 0 && failure == null) {
+          wait();
+        }
+        logReport();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    Throwable error = failure;
+    if (error instanceof Exception) {
+      throw (Exception) error;
+    } else if (error instanceof Error) {
+      throw (Error) error;
+    } else if (error != null) {
+      throw new Exception(error);
+    }
+  }
+
+  /**
+   * Submit a task whose prerequisites are done. Must be called with the
+   * scheduler lock held.
+   *
+   * @param task
+   */
+  private void submit(Task task) {
+    executor.execute(task);
+  }
+
+  /**
+   * Mark a task done and submit the tasks it unlocks. Must be called with the
+   * scheduler lock held.
+   *
+   * @param task
+   */
+  private void done(Task task) {
+    nbRemaining--;
+    for (Task dependent : task.dependents) {
+      dependent.nbPending--;
+      if (dependent.nbPending == 0) {
+        submit(dependent);
+      }
+    }
+    notifyAll();
+  }
+
+  /**
+   * Gets the report of the last run, one line per task : name, start offset,
+   * duration and thread, or "not run".
+   *
+   * @return the report
+   */
+  public synchronized String getReport() {
+    StringBuilder sb = new StringBuilder("Startup tasks (start/duration in ms):");
+    for (Task task : tasks.values()) {
+      sb.append('\n').append(task.name).append(": ");
+      if (task.duration < 0) {
+        sb.append("not run");
+      } else {
+        sb.append(task.start).append('/').append(task.duration).append(" (")
+            .append(task.threadName).append(')');
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Gets the duration of a task during the last run.
+   *
+   * @param name task name
+   *
+   * @return the duration in ms or -1 if the task didn't run
+   */
+  public synchronized long getDuration(String name) {
+    Task task = tasks.get(name);
+    return (task == null) ? -1 : task.duration;
+  }
+
+  /**
+   * Gets the start offset of a task during the last run.
+   *
+   * @param name task name
+   *
+   * @return the start offset since the run start in ms or -1 if the task didn't
+   * run
+   */
+  public synchronized long getStart(String name) {
+    Task task = tasks.get(name);
+    return (task == null || task.duration < 0) ? -1 : task.start;
+  }
+
+  /**
+   * Log the report of the run.
+   */
+  private void logReport() {
+    Log.debug(getReport());
+    Log.debug("Startup tasks done in " + (System.currentTimeMillis() - runStart) + " ms");
+  }
+}
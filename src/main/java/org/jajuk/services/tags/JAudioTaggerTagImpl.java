@@ -401,7 +401,7 @@ public class JAudioTaggerTagImpl implements ITagImpl, Const {
     File fio = audioFile.getFile();
     String absolutePath = fio.getAbsolutePath();
     long lastChange = fio.lastModified();
-    String hash = MD5Processor.hash(absolutePath + lastChange);
+    String hash = MD5Processor.digest(absolutePath + lastChange);
     File coverFile = SessionService.getConfFileByPath(Const.FILE_CACHE + '/' + hash + "_" + index
         + "_" + Const.TAG_COVER_FILE);
     return coverFile;
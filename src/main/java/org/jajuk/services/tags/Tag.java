@@ -51,7 +51,7 @@ public class Tag {
   /** Is this tag corrupted ?. */
   private boolean bCorrupted = false;
   /** File -> tag cache This is required by the autocommit=false operations. */
-  static private Map<File, Tag> tagsCache = new HashMap<File, Tag>(10);
+  static private final Map<File, Tag> tagsCache = new HashMap<File, Tag>(10);
   private static List<String> supportedTagFields = null;
 
   /**
@@ -598,6 +598,9 @@ public class Tag {
       // reset information panel to avoid leaving with a "writting xxx message"
       InformationJPanel.getInstance().setMessage("", InformationJPanel.MessageType.INFORMATIVE);
       throw new JajukException(104, fio.getName() + "\n" + e.getMessage(), e);
+    } finally {
+      // The file date may have been preserved, the size unchanged
+      TagMetadataCache.getInstance().invalidate(fio);
     }
   }
 
@@ -682,11 +685,21 @@ public class Tag {
    * @bIgnoreError : ignore any error and keep instance in cache
    */
   public static Tag getTagForFio(File fio, boolean bIgnoreErrors) throws JajukException {
-    Tag tag = tagsCache.get(fio);
+    Tag tag;
+    synchronized (tagsCache) {
+      tag = tagsCache.get(fio);
+    }
     if (tag == null) {
+      // Read the tag outside the lock, tags are read by several threads during refreshes
       tag = new Tag(fio, bIgnoreErrors);
       // Cache the tag
-      tagsCache.put(fio, tag);
+      synchronized (tagsCache) {
+        Tag cached = tagsCache.get(fio);
+        if (cached != null) {
+          return cached;
+        }
+        tagsCache.put(fio, tag);
+      }
     }
     return tag;
   }
@@ -695,7 +708,9 @@ public class Tag {
    * Clear the tags cache.
    */
   public static void clearCache() {
-    tagsCache.clear();
+    synchronized (tagsCache) {
+      tagsCache.clear();
+    }
   }
 
   /**
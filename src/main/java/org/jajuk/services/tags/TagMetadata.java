@@ -0,0 +1,287 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.tags;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values read from a music file tag by a refresh, as returned by the
+ * {@link Tag} getters. Immutable.
+ */
+public final class TagMetadata {
+  /** Max length in bytes of a string written with writeUTF(). */
+  private static final int MAX_UTF_LENGTH = 65535;
+  private final String trackName;
+  private final String albumName;
+  private final String artistName;
+  private final String albumArtist;
+  private final String genreName;
+  private final long length;
+  private final String year;
+  private final long quality;
+  private final String comment;
+  private final long order;
+  private final long discNumber;
+  /** Whether the tag is corrupted. */
+  private final boolean bCorrupted;
+  /** Activated extra tag field -> value. */
+  private final Map<String, String> extraTags;
+
+  /**
+   * Instantiates a new tag metadata.
+   *
+   * @param tag the tag to read
+   * @param extraTagFields the activated extra tag fields to read
+   */
+  TagMetadata(Tag tag, List<String> extraTagFields) {
+    this.trackName = tag.getTrackName();
+    this.albumName = tag.getAlbumName();
+    this.artistName = tag.getArtistName();
+    this.albumArtist = tag.getAlbumArtist();
+    this.genreName = tag.getGenreName();
+    this.length = tag.getLength();
+    this.year = tag.getYear();
+    this.quality = tag.getQuality();
+    this.comment = tag.getComment();
+    this.order = tag.getOrder();
+    this.discNumber = tag.getDiscNumber();
+    this.bCorrupted = tag.isCorrupted();
+    Map<String, String> extra = new HashMap<String, String>(extraTagFields.size() * 2);
+    for (String field : extraTagFields) {
+      extra.put(field, tag.getTagField(field));
+    }
+    this.extraTags = Collections.unmodifiableMap(extra);
+  }
+
+  /**
+   * Read a tag metadata written by {@link #write(DataOutputStream)}.
+   *
+   * @param in
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  TagMetadata(DataInputStream in) throws IOException {
+    this.trackName = in.readUTF();
+    // Names are internalized by the tag reading, do the same
+    this.albumName = in.readUTF().intern();
+    this.artistName = in.readUTF().intern();
+    this.albumArtist = in.readUTF().intern();
+    this.genreName = in.readUTF().intern();
+    this.length = in.readLong();
+    this.year = in.readUTF().intern();
+    this.quality = in.readLong();
+    this.comment = in.readUTF().intern();
+    this.order = in.readLong();
+    this.discNumber = in.readLong();
+    this.bCorrupted = in.readBoolean();
+    int nbExtra = in.readInt();
+    Map<String, String> extra = new HashMap<String, String>(nbExtra * 2);
+    for (int i = 0; i < nbExtra; i++) {
+      extra.put(in.readUTF(), in.readUTF());
+    }
+    this.extraTags = Collections.unmodifiableMap(extra);
+  }
+
+  /**
+   * Return whether this tag metadata can be written : strings are written
+   * using the modified UTF-8 format, limited to 65535 bytes.
+   *
+   * @return whether this tag metadata can be written
+   */
+  boolean isWritable() {
+    if (!isWritable(trackName) || !isWritable(albumName) || !isWritable(artistName)
+        || !isWritable(albumArtist) || !isWritable(genreName) || !isWritable(year)
+        || !isWritable(comment)) {
+      return false;
+    }
+    for (Map.Entry<String, String> entry : extraTags.entrySet()) {
+      if (!isWritable(entry.getKey()) || !isWritable(entry.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Return whether a string can be written, assuming the worst case of
+   * three bytes per char.
+   *
+   * @param s
+   *
+   * @return whether the string can be written
+   */
+  private static boolean isWritable(String s) {
+    return s.length() <= MAX_UTF_LENGTH / 3;
+  }
+
+  /**
+   * Write this tag metadata.
+   *
+   * @param out
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  void write(DataOutputStream out) throws IOException {
+    out.writeUTF(trackName);
+    out.writeUTF(albumName);
+    out.writeUTF(artistName);
+    out.writeUTF(albumArtist);
+    out.writeUTF(genreName);
+    out.writeLong(length);
+    out.writeUTF(year);
+    out.writeLong(quality);
+    out.writeUTF(comment);
+    out.writeLong(order);
+    out.writeLong(discNumber);
+    out.writeBoolean(bCorrupted);
+    out.writeInt(extraTags.size());
+    for (Map.Entry<String, String> entry : extraTags.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeUTF(entry.getValue());
+    }
+  }
+
+  /**
+   * Gets the track name.
+   *
+   * @return the track name
+   */
+  public String getTrackName() {
+    return trackName;
+  }
+
+  /**
+   * Gets the album name.
+   *
+   * @return the album name
+   */
+  public String getAlbumName() {
+    return albumName;
+  }
+
+  /**
+   * Gets the artist name.
+   *
+   * @return the artist name
+   */
+  public String getArtistName() {
+    return artistName;
+  }
+
+  /**
+   * Gets the album artist.
+   *
+   * @return the album artist
+   */
+  public String getAlbumArtist() {
+    return albumArtist;
+  }
+
+  /**
+   * Gets the genre name.
+   *
+   * @return the genre name
+   */
+  public String getGenreName() {
+    return genreName;
+  }
+
+  /**
+   * Gets the length.
+   *
+   * @return the length in sec
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Gets the year.
+   *
+   * @return the year
+   */
+  public String getYear() {
+    return year;
+  }
+
+  /**
+   * Gets the quality.
+   *
+   * @return the quality
+   */
+  public long getQuality() {
+    return quality;
+  }
+
+  /**
+   * Gets the comment.
+   *
+   * @return the comment
+   */
+  public String getComment() {
+    return comment;
+  }
+
+  /**
+   * Gets the order.
+   *
+   * @return the order
+   */
+  public long getOrder() {
+    return order;
+  }
+
+  /**
+   * Gets the disc number.
+   *
+   * @return the disc number
+   */
+  public long getDiscNumber() {
+    return discNumber;
+  }
+
+  /**
+   * Checks if the tag is corrupted.
+   *
+   * @return true, if the tag is corrupted
+   */
+  public boolean isCorrupted() {
+    return bCorrupted;
+  }
+
+  /**
+   * Gets an activated extra tag field value.
+   *
+   * @param tagFieldKey
+   *
+   * @return the tag field value, empty if none
+   */
+  public String getTagField(String tagFieldKey) {
+    String value = extraTags.get(tagFieldKey);
+    return (value == null) ? "" : value;
+  }
+}
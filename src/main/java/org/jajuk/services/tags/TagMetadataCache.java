@@ -0,0 +1,373 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.tags;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jajuk.base.FileManager;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.ui.helpers.RefreshReporter;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.UtilSystem;
+import org.jajuk.util.error.JajukException;
+import org.jajuk.util.log.Log;
+
+/**
+ * Persistent cache of the tags read by the devices refreshes.
+ * <p>
+ * Entries are keyed by the music file path and stamped with the file size and
+ * date : a refresh only parses the tags of new or changed files, others are
+ * read from this cache. Corrupted tags are not cached. Tags written by jajuk
+ * invalidate the entry (the file date may be preserved by the commit). Entries
+ * of files removed from the collection are dropped when the cache is written.
+ * </p>
+ * <p>
+ * The values read depend on some options (language, use of the parent
+ * directory as album name, activated extra tags) : the whole cache is dropped
+ * when they change.
+ * </p>
+ * <p>
+ * The cache is loaded by the first read of a refresh and written then released
+ * once no device is refreshing anymore, so it doesn't use memory between
+ * refreshes. Reads are thread-safe.
+ * </p>
+ * <p>
+ * Format (version 1) : magic, format version, options stamp, entries count,
+ * then for each entry : path, size, date and the tag metadata.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class TagMetadataCache {
+  /** Magic number ("JJKT"). */
+  private static final int MAGIC = 0x4A4A4B54;
+  /** Format version, to be increased at each format change. */
+  private static final int FORMAT_VERSION = 1;
+  /** Self instance. */
+  private static TagMetadataCache self = new TagMetadataCache();
+  /**
+   * Protects the entries map reference : held for reading by reads, for
+   * writing by load and release.
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  /** Path -> cached tag, null if not loaded. */
+  private Map<String, Entry> entries;
+  /** Options the cached values have been read with. */
+  private String stamp;
+  /** Paths invalidated while the cache was not loaded. */
+  private final Set<String> pendingInvalidations = Collections
+      .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  /** Whether the cache changed since it has been loaded. */
+  private volatile boolean bChanged = false;
+
+  /**
+   * A cached tag.
+   */
+  private static final class Entry {
+    /** File size when read. */
+    private final long size;
+    /** File date when read. */
+    private final long date;
+    /** Read values. */
+    private final TagMetadata metadata;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param size
+     * @param date
+     * @param metadata
+     */
+    private Entry(long size, long date, TagMetadata metadata) {
+      this.size = size;
+      this.date = date;
+      this.metadata = metadata;
+    }
+  }
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  public static TagMetadataCache getInstance() {
+    return self;
+  }
+
+  /**
+   * private constructor for singleton.
+   */
+  private TagMetadataCache() {
+    super();
+  }
+
+  /**
+   * Gets the cache file.
+   *
+   * @return the cache file
+   */
+  static File getCacheFile() {
+    return SessionService.getConfFileByPath(Const.FILE_TAG_CACHE);
+  }
+
+  /**
+   * Compute the stamp of the options the values depend on.
+   *
+   * @param extraTagFields activated extra tag fields
+   *
+   * @return the options stamp
+   */
+  private static String getStamp(List<String> extraTagFields) {
+    return Conf.getString(Const.CONF_OPTIONS_LANGUAGE) + '/'
+        + Conf.getBoolean(Const.CONF_TAGS_USE_PARENT_DIR) + '/' + extraTagFields;
+  }
+
+  /**
+   * Read the tag of a music file, from the cache if the file didn't change
+   * since it has been cached. Tag errors are ignored (the returned tag
+   * metadata is flagged as corrupted).
+   *
+   * @param music the music file
+   * @param reporter the refresh reporter to notify of the read, can be null
+   *
+   * @return the tag metadata
+   *
+   * @throws JajukException if the tag cannot be read
+   */
+  public TagMetadata read(File music, RefreshReporter reporter) throws JajukException {
+    List<String> extraTagFields = Tag.getActivatedExtraTags();
+    String currentStamp = getStamp(extraTagFields);
+    String path = music.getAbsolutePath();
+    long size = music.length();
+    long date = music.lastModified();
+    Map<String, Entry> map = acquire(currentStamp);
+    try {
+      Entry entry = map.get(path);
+      if (entry != null && entry.size == size && entry.date == date) {
+        if (reporter != null) {
+          reporter.notifyTagRead(true, 0);
+        }
+        return entry.metadata;
+      }
+      long time = System.currentTimeMillis();
+      TagMetadata metadata = new TagMetadata(Tag.getTagForFio(music, true), extraTagFields);
+      if (reporter != null) {
+        reporter.notifyTagRead(false, System.currentTimeMillis() - time);
+      }
+      // Corrupted tags are read again at next refresh, they may be fixed meanwhile
+      if (!metadata.isCorrupted() && metadata.isWritable()) {
+        map.put(path, new Entry(size, date, metadata));
+        bChanged = true;
+      }
+      return metadata;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Forget the cached tag of a file, call it before writing its tag. If the
+   * cache is not loaded, the entry is dropped by the next load or release.
+   *
+   * @param music the music file
+   */
+  public void invalidate(File music) {
+    String path = music.getAbsolutePath();
+    lock.readLock().lock();
+    try {
+      if (entries != null) {
+        if (entries.remove(path) != null) {
+          bChanged = true;
+        }
+      } else {
+        pendingInvalidations.add(path);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the entries, loading them if required, and hold the read lock. The
+   * caller must release the read lock.
+   *
+   * @param currentStamp current options stamp, null to keep any loaded stamp
+   *
+   * @return the entries
+   */
+  private Map<String, Entry> acquire(String currentStamp) {
+    lock.readLock().lock();
+    if (entries != null && (currentStamp == null || currentStamp.equals(stamp))) {
+      return entries;
+    }
+    lock.readLock().unlock();
+    lock.writeLock().lock();
+    try {
+      if (entries == null) {
+        load();
+      }
+      if (currentStamp != null && !currentStamp.equals(stamp)) {
+        if (!entries.isEmpty()) {
+          Log.debug("Tag options changed, tag cache dropped");
+          bChanged = true;
+        }
+        entries.clear();
+        stamp = currentStamp;
+      }
+      // Downgrade to the read lock
+      lock.readLock().lock();
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return entries;
+  }
+
+  /**
+   * Read the cache file. A missing or unreadable cache file is ignored. Must
+   * be called with the write lock held.
+   */
+  private void load() {
+    entries = new ConcurrentHashMap<String, Entry>(1000);
+    stamp = null;
+    bChanged = false;
+    File file = getCacheFile();
+    if (!file.exists()) {
+      pendingInvalidations.clear();
+      return;
+    }
+    long time = System.currentTimeMillis();
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+          1000000));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+          Log.debug("Unknown tag cache format, ignored");
+          return;
+        }
+        stamp = in.readUTF();
+        int nbEntries = in.readInt();
+        for (int i = 0; i < nbEntries; i++) {
+          String path = in.readUTF();
+          long size = in.readLong();
+          long date = in.readLong();
+          entries.put(path, new Entry(size, date, new TagMetadata(in)));
+        }
+      } finally {
+        in.close();
+      }
+      for (String path : pendingInvalidations) {
+        if (entries.remove(path) != null) {
+          bChanged = true;
+        }
+      }
+      Log.debug("Tag cache loaded in " + (System.currentTimeMillis() - time) + " ms");
+    } catch (IOException e) {
+      Log.error(e);
+      entries.clear();
+      stamp = null;
+    } finally {
+      pendingInvalidations.clear();
+    }
+  }
+
+  /**
+   * Write the cache file if it changed, then free the cache memory. It is
+   * loaded again by the next read.
+   */
+  public void release() {
+    lock.writeLock().lock();
+    try {
+      if (entries == null) {
+        if (pendingInvalidations.isEmpty()) {
+          return;
+        }
+        // Apply the invalidations to the cache file
+        load();
+      }
+      if (bChanged && stamp != null) {
+        try {
+          write();
+        } catch (IOException e) {
+          // Not fatal, the tags are just read again
+          Log.error(e);
+        }
+      }
+      entries = null;
+      stamp = null;
+      bChanged = false;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Write the cache file, entries of files no more in the collection are
+   * dropped. Must be called with the write lock held.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void write() throws IOException {
+    Iterator<String> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      if (FileManager.getInstance().getFileByPath(it.next()) == null) {
+        it.remove();
+      }
+    }
+    File saving = SessionService.getConfFileByPath(Const.FILE_TAG_CACHE + "."
+        + Const.FILE_SAVING_FILE_EXTENSION);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+        saving), 1000000));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(stamp);
+      out.writeInt(entries.size());
+      for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+        Entry entry = mapEntry.getValue();
+        out.writeUTF(mapEntry.getKey());
+        out.writeLong(entry.size);
+        out.writeLong(entry.date);
+        entry.metadata.write(out);
+      }
+      out.flush();
+    } finally {
+      out.close();
+    }
+    UtilSystem.saveFileWithRecoverySupport(getCacheFile());
+  }
+}
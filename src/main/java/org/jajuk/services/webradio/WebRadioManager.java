@@ -20,6 +20,7 @@
  */
 package org.jajuk.services.webradio;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -182,7 +183,7 @@ public final class WebRadioManager extends ItemManager {
   */
   public List<WebRadio> getWebRadiosByOrigin(WebRadioOrigin origin) {
     @SuppressWarnings("unchecked")
-    List<WebRadio> radios = (List<WebRadio>) getItems();
+    List<WebRadio> radios = new ArrayList<WebRadio>((List<WebRadio>) getItems());
     Iterator<WebRadio> itRadios = radios.iterator();
     while (itRadios.hasNext()) {
       WebRadio radio = itRadios.next();
@@ -22,12 +22,14 @@ package org.jajuk.ui.actions;
 
 import java.awt.event.ActionEvent;
 import java.util.List;
+import java.util.Properties;
 
 import org.jajuk.base.Track;
 import org.jajuk.base.TrackManager;
 import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
+import org.jajuk.util.Const;
 import org.jajuk.util.IconLoader;
 import org.jajuk.util.JajukIcons;
 import org.jajuk.util.Messages;
@@ -73,7 +75,9 @@ public class AverageSelectionAction extends SelectionAction {
             track.setPreference(-1l);
           }
           // Request a GUI refresh
-          ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+          Properties details = new Properties();
+          details.put(Const.DETAIL_CONTENT, tracks);
+          ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
         } catch (Exception e) {
           Log.error(e);
         }
@@ -21,6 +21,8 @@
 package org.jajuk.ui.actions;
 
 import java.awt.event.ActionEvent;
+import java.util.Collections;
+import java.util.Properties;
 
 import org.jajuk.base.File;
 import org.jajuk.base.Track;
@@ -60,7 +62,9 @@ public class BanCurrentAction extends SelectionAction {
       boolean alreadyBanned = track.getBooleanValue(Const.XML_TRACK_BANNED);
       track.setProperty(Const.XML_TRACK_BANNED, !alreadyBanned);
       // Request a GUI refresh
-      ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+      Properties details = new Properties();
+      details.put(Const.DETAIL_CONTENT, Collections.singletonList(track));
+      ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
       // Alert GUI so we can switch buttons from ban icon to unban one
       ObservationManager.notify(new JajukEvent(JajukEvents.BANNED));
       // Go to next track if it is banned
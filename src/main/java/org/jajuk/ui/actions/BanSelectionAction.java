@@ -22,6 +22,7 @@ package org.jajuk.ui.actions;
 
 import java.awt.event.ActionEvent;
 import java.util.List;
+import java.util.Properties;
 
 import org.jajuk.base.Track;
 import org.jajuk.base.TrackManager;
@@ -74,7 +75,9 @@ public class BanSelectionAction extends SelectionAction {
             track.setProperty(Const.XML_TRACK_BANNED, true);
           }
           // Request a GUI refresh
-          ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+          Properties details = new Properties();
+          details.put(Const.DETAIL_CONTENT, tracks);
+          ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
         } catch (Exception e) {
           Log.error(e);
         }
@@ -21,6 +21,8 @@
 package org.jajuk.ui.actions;
 
 import java.awt.event.ActionEvent;
+import java.util.Collections;
+import java.util.Properties;
 
 import org.jajuk.base.File;
 import org.jajuk.base.Track;
@@ -61,12 +63,15 @@ public class ChangeTrackPreferenceAction extends JajukAction {
       public void run() {
         try {
           File file = QueueModel.getPlayingFile();
+          Properties details = null;
           if (file != null) {
             Track track = file.getTrack();
             track.setPreference(Conf.getInt(Const.CONF_INC_RATING));
+            details = new Properties();
+            details.put(Const.DETAIL_CONTENT, Collections.singletonList(track));
           }
           // Force immediate rating refresh (without using the rating manager)
-          ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+          ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
         } catch (Exception e) {
           Log.error(e);
         }
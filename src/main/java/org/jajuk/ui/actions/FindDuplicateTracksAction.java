@@ -135,7 +135,7 @@ public class FindDuplicateTracksAction extends JajukAction {
     duplicateTracksList = new ArrayList<List<File>>();
     // Use a tree map so footprints are sorted
     mapTrackDups = new TreeMap<String, Set<File>>();
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getTracks());
     // For finding duplicate files, we don't just rely on the number of files associated with
     // a track (>1), we also find almost-identical tracks, ie based on album name, not its ID
     // because then, we can't detect identical files located in several directories with a
@@ -27,8 +27,10 @@ import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 
 import org.jajuk.base.Item;
+import org.jajuk.services.reporting.ExportProgressListener;
 import org.jajuk.services.reporting.Exporter;
 import org.jajuk.services.reporting.ExporterFactory;
+import org.jajuk.ui.widgets.InformationJPanel;
 import org.jajuk.ui.widgets.JajukFileChooser;
 import org.jajuk.util.Const;
 import org.jajuk.util.IconLoader;
@@ -105,6 +107,14 @@ public class ReportAction extends JajukAction {
             final String filetypename = chooser.getFileFilter().getDescription();
             // Create an exporter according to file extension
             final Exporter exporter = ExporterFactory.createExporter(filetypename);
+            exporter.setProgressListener(new ExportProgressListener() {
+              @Override
+              public void progress(int done, int total) {
+                InformationJPanel.getInstance().setMessage(
+                    Messages.getString("ReportAction.20") + " " + done + "/" + total,
+                    InformationJPanel.MessageType.INFORMATIVE);
+              }
+            });
             // Full logical collection report
             if (Const.COLLECTION_LOGICAL.equals(type)) {
               exporter.processCollection(Exporter.LOGICAL_COLLECTION);
@@ -20,6 +20,7 @@
  */
 package org.jajuk.ui.helpers;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -107,9 +108,12 @@ public class AlbumsTableModel extends JajukTableModel {
    */
   @Override
   public void populateModel(String sPropertyName, String sPattern, List<String> columnsToShow) {
-    List<Album> alToShow = AlbumManager.getInstance().getAlbums();
+    // Don't wait for a refresh to display the table
+    @SuppressWarnings("unchecked")
+    List<Album> albums = (List<Album>) AlbumManager.getInstance().getItemsWithoutWaiting();
+    List<Album> alToShow = new ArrayList<Album>(albums);
     // OK, begin by filtering using any provided pattern
-    Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
+    Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getSnapshot().isRegexp());
     alToShow = Filter.filterItems(alToShow, filter, Album.class);
     // Filter unmounted files if required
     if (Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED)) {
@@ -20,10 +20,11 @@
  */
 package org.jajuk.ui.helpers;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
@@ -31,9 +32,9 @@ import org.jajuk.base.File;
 import org.jajuk.base.FileManager;
 import org.jajuk.base.Item;
 import org.jajuk.base.PropertyMetaInformation;
+import org.jajuk.base.Track;
 import org.jajuk.base.TrackManager;
 import org.jajuk.base.Type;
-import org.jajuk.ui.widgets.IconLabel;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.Filter;
@@ -42,11 +43,15 @@ import org.jajuk.util.Messages;
 /**
  * Table model used for physical table view.
  */
-public class FilesTableModel extends JajukTableModel {
+public class FilesTableModel extends VirtualTableModel {
   /** Generated serialVersionUID. */
   private static final long serialVersionUID = 1L;
   /** Associated view ID. */
   private String viewID;
+  /** Files custom properties displayed after the standard columns. */
+  private List<PropertyMetaInformation> fileCustomProperties = new ArrayList<PropertyMetaInformation>();
+  /** Tracks custom properties displayed after the files ones. */
+  private List<PropertyMetaInformation> trackCustomProperties = new ArrayList<PropertyMetaInformation>();
 
   /**
    * Model constructor.
@@ -127,11 +132,13 @@ public class FilesTableModel extends JajukTableModel {
   @Override
   public void populateModel(String sPropertyName, String sPattern, List<String> columnsToShow) {
     // This should be monitor file manager to avoid NPE when changing items
-    List<File> alToShow = FileManager.getInstance().getFiles();
+    // Don't wait for a refresh to display the table
+    @SuppressWarnings("unchecked")
+    List<File> files = (List<File>) FileManager.getInstance().getItemsWithoutWaiting();
+    List<File> alToShow = new ArrayList<File>(files);
     // Filter mounted files if needed and apply sync table with tree
     // option if needed
     final boolean syncTreeTable = Conf.getBoolean(Const.CONF_SYNC_TABLE_TREE + "." + viewID);
-    oItems = new Item[iRowNum];
     CollectionUtils.filter(alToShow, new Predicate() {
       @Override
       public boolean evaluate(Object o) {
@@ -147,232 +154,131 @@ public class FilesTableModel extends JajukTableModel {
       }
     });
     // Filter files
-    Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
+    Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getSnapshot().isRegexp());
     alToShow = Filter.filterItems(alToShow, filter, File.class);
-    Iterator<File> it = alToShow.iterator();
-    int iColNum = iNumberStandardCols + FileManager.getInstance().getCustomProperties().size()
-        + TrackManager.getInstance().getCustomProperties().size();
-    iRowNum = alToShow.size();
-    it = alToShow.iterator();
-    oValues = new Object[iRowNum][iColNum];
-    oItems = new Item[iRowNum];
-    bCellEditable = new boolean[iRowNum][iColNum];
-    // For perfs, prepare columns visibility
-    boolean bTrackName = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK));
-    boolean bAlbum = (columnsToShow != null && columnsToShow.contains(Const.XML_ALBUM));
-    boolean bArtist = (columnsToShow != null && columnsToShow.contains(Const.XML_ARTIST));
-    boolean bAlbumArtist = (columnsToShow != null && columnsToShow.contains(Const.XML_ALBUM_ARTIST));
-    boolean bGenre = (columnsToShow != null && columnsToShow.contains(Const.XML_GENRE));
-    boolean bRate = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_RATE));
-    boolean bLength = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_LENGTH));
-    boolean bDevice = (columnsToShow != null && columnsToShow.contains(Const.XML_DEVICE));
-    boolean bFileName = (columnsToShow != null && columnsToShow.contains(Const.XML_NAME));
-    boolean bComment = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_COMMENT));
-    boolean bQuality = (columnsToShow != null && columnsToShow.contains(Const.XML_QUALITY));
-    boolean bSize = (columnsToShow != null && columnsToShow.contains(Const.XML_SIZE));
-    boolean bDiscovery = (columnsToShow != null && columnsToShow
-        .contains(Const.XML_TRACK_DISCOVERY_DATE));
-    boolean bOrder = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_ORDER));
-    boolean bDiscNumber = (columnsToShow != null && columnsToShow
-        .contains(Const.XML_TRACK_DISC_NUMBER));
-    boolean bYear = (columnsToShow != null && columnsToShow.contains(Const.XML_YEAR));
-    boolean bDirectory = (columnsToShow != null && columnsToShow.contains(Const.XML_DIRECTORY));
-    boolean bFileDate = (columnsToShow != null && columnsToShow.contains(Const.XML_FILE_DATE));
-    boolean bHits = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_HITS));
-    for (int iRow = 0; it.hasNext(); iRow++) {
-      File file = it.next();
-      setItemAt(iRow, file);
-      // Id
-      oItems[iRow] = file;
-      // Play
-      IconLabel il = null;
-      if (file.isReady()) {
-        il = getIcon(false);
-      } else {
-        il = getIcon(true);
-      }
-      oValues[iRow][0] = il;
-      bCellEditable[iRow][0] = false;
-      // check track has an associated tag editor (not null)
-      boolean bHasATagEditor = false;
-      Type type = file.getType();
-      if (type != null) {
-        bHasATagEditor = (type.getTaggerClass() != null);
-      }
-      // Track name
-      if (bTrackName) {
-        oValues[iRow][1] = file.getTrack().getName();
-      } else {
-        oValues[iRow][1] = "";
-      }
-      bCellEditable[iRow][1] = bHasATagEditor;
-      // Album
-      if (bAlbum) {
-        oValues[iRow][2] = file.getTrack().getAlbum().getName2();
-      } else {
-        oValues[iRow][2] = "";
-      }
-      bCellEditable[iRow][2] = bHasATagEditor;
-      // Artist
-      if (bArtist) {
-        oValues[iRow][3] = file.getTrack().getArtist().getName2();
-      } else {
-        oValues[iRow][3] = "";
-      }
-      bCellEditable[iRow][3] = bHasATagEditor;
-      // AlbumArtist
-      if (bAlbumArtist) {
-        oValues[iRow][4] = file.getTrack().getAlbumArtist().getName2();
-      } else {
-        oValues[iRow][4] = "";
-      }
-      bCellEditable[iRow][4] = bHasATagEditor;
-      // Genre
-      if (bGenre) {
-        oValues[iRow][5] = file.getTrack().getGenre().getName2();
-      } else {
-        oValues[iRow][5] = "";
-      }
-      bCellEditable[iRow][5] = bHasATagEditor;
-      // Rate
-      if (bRate) {
-        oValues[iRow][6] = StarsHelper.getStarIconLabel(file.getTrack());
-      } else {
-        oValues[iRow][6] = "";
-      }
-      bCellEditable[iRow][6] = false;
-      // Length
-      if (bLength) {
-        oValues[iRow][7] = new Duration(file.getTrack().getDuration());
-      } else {
-        oValues[iRow][7] = "";
-      }
-      bCellEditable[iRow][7] = false;
-      // Device
-      if (bDevice) {
-        oValues[iRow][8] = file.getDirectory().getDevice().getName();
-      } else {
-        oValues[iRow][8] = "";
-      }
-      bCellEditable[iRow][8] = false;
-      // File name
-      if (bFileName) {
-        oValues[iRow][9] = file.getName();
-      } else {
-        oValues[iRow][9] = "";
-      }
-      bCellEditable[iRow][9] = true;
-      // Comment
-      if (bComment) {
-        oValues[iRow][10] = file.getTrack().getValue(Const.XML_TRACK_COMMENT);
-      } else {
-        oValues[iRow][10] = "";
-      }
-      bCellEditable[iRow][10] = bHasATagEditor;
-      // Quality
-      if (bQuality) {
-        long lQuality = file.getQuality();
-        oValues[iRow][11] = lQuality;
-      } else {
-        oValues[iRow][11] = 0l;
-      }
-      bCellEditable[iRow][11] = false;
-      // Size, we want to keep 2 decimals to the value in MB
-      if (bSize) {
-        oValues[iRow][12] = Math.round(file.getSize() / 10485.76) / 100f;
-      } else {
-        oValues[iRow][12] = 0l;
-      }
-      bCellEditable[iRow][12] = false;
-      // Order
-      if (bOrder) {
-        oValues[iRow][13] = file.getTrack().getOrder();
-      } else {
-        oValues[iRow][13] = "";
-      }
-      bCellEditable[iRow][13] = bHasATagEditor;
-      // Disc number
-      if (bDiscNumber) {
-        oValues[iRow][14] = file.getTrack().getDiscNumber();
-      } else {
-        oValues[iRow][14] = "";
-      }
-      bCellEditable[iRow][14] = bHasATagEditor;
-      // year
-      if (bYear) {
-        oValues[iRow][15] = file.getTrack().getYear().getValue();
-      } else {
-        oValues[iRow][15] = "";
-      }
-      bCellEditable[iRow][15] = bHasATagEditor;
-      // directory full path
-      if (bDirectory) {
-        oValues[iRow][16] = file.getDirectory().getAbsolutePath();
-      } else {
-        oValues[iRow][16] = "";
+    // Cells are computed on demand
+    fileCustomProperties = new ArrayList<PropertyMetaInformation>(FileManager.getInstance()
+        .getCustomProperties());
+    trackCustomProperties = new ArrayList<PropertyMetaInformation>(TrackManager.getInstance()
+        .getCustomProperties());
+    setRows(alToShow, columnsToShow);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.VirtualTableModel#computeValue(org.jajuk.base.Item, int)
+   */
+  @Override
+  protected Object computeValue(Item item, int columnIndex) {
+    File file = (File) item;
+    Track track = file.getTrack();
+    switch (columnIndex) {
+    case 0: // Play
+      return getIcon(!file.isReady());
+    case 1: // Track name
+      return isShown(Const.XML_TRACK) ? track.getName() : "";
+    case 2: // Album
+      return isShown(Const.XML_ALBUM) ? track.getAlbum().getName2() : "";
+    case 3: // Artist
+      return isShown(Const.XML_ARTIST) ? track.getArtist().getName2() : "";
+    case 4: // AlbumArtist
+      return isShown(Const.XML_ALBUM_ARTIST) ? track.getAlbumArtist().getName2() : "";
+    case 5: // Genre
+      return isShown(Const.XML_GENRE) ? track.getGenre().getName2() : "";
+    case 6: // Rate
+      return isShown(Const.XML_TRACK_RATE) ? StarsHelper.getStarIconLabel(track) : "";
+    case 7: // Length
+      return isShown(Const.XML_TRACK_LENGTH) ? new Duration(track.getDuration()) : "";
+    case 8: // Device
+      return isShown(Const.XML_DEVICE) ? file.getDirectory().getDevice().getName() : "";
+    case 9: // File name
+      return isShown(Const.XML_NAME) ? file.getName() : "";
+    case 10: // Comment
+      return isShown(Const.XML_TRACK_COMMENT) ? track.getValue(Const.XML_TRACK_COMMENT) : "";
+    case 11: // Quality
+      return isShown(Const.XML_QUALITY) ? file.getQuality() : 0l;
+    case 12: // Size, we want to keep 2 decimals to the value in MB
+      if (isShown(Const.XML_SIZE)) {
+        return Math.round(file.getSize() / 10485.76) / 100f;
       }
-      bCellEditable[iRow][16] = false;
-      // file date
-      if (bFileDate) {
-        oValues[iRow][17] = file.getDateValue(Const.XML_FILE_DATE);
+      return 0l;
+    case 13: // Order
+      return isShown(Const.XML_TRACK_ORDER) ? track.getOrder() : "";
+    case 14: // Disc number
+      return isShown(Const.XML_TRACK_DISC_NUMBER) ? track.getDiscNumber() : "";
+    case 15: // year
+      return isShown(Const.XML_YEAR) ? track.getYear().getValue() : "";
+    case 16: // directory full path
+      return isShown(Const.XML_DIRECTORY) ? file.getDirectory().getAbsolutePath() : "";
+    case 17: // file date
+      return isShown(Const.XML_FILE_DATE) ? file.getDateValue(Const.XML_FILE_DATE) : "";
+    case 18: // Hits
+      return isShown(Const.XML_TRACK_HITS) ? track.getHits() : "";
+    case 19: // Discovery date
+      return isShown(Const.XML_TRACK_DISCOVERY_DATE) ? track.getDiscoveryDate() : "";
+    default: // Custom properties, files custom tags first
+      int index = columnIndex - iNumberStandardCols;
+      Object o;
+      PropertyMetaInformation meta;
+      if (index < fileCustomProperties.size()) {
+        meta = fileCustomProperties.get(index);
+        o = file.getProperties().get(meta.getName());
       } else {
-        oValues[iRow][17] = "";
+        meta = trackCustomProperties.get(index - fileCustomProperties.size());
+        o = track.getProperties().get(meta.getName());
       }
-      bCellEditable[iRow][17] = false;
-      // Hits
-      if (bHits) {
-        oValues[iRow][18] = file.getTrack().getHits();
-      } else {
-        oValues[iRow][18] = "";
+      return (o != null) ? o : meta.getDefaultValue();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.VirtualTableModel#isItemCellEditable(org.jajuk.base.Item, int)
+   */
+  @Override
+  protected boolean isItemCellEditable(Item item, int columnIndex) {
+    switch (columnIndex) {
+    case 1: // track name
+    case 2: // album
+    case 3: // artist
+    case 4: // album artist
+    case 5: // genre
+    case 10: // comment
+    case 13: // order
+    case 14: // disc number
+    case 15: // year
+      // check track has an associated tag editor (not null)
+      Type type = ((File) item).getType();
+      return type != null && type.getTaggerClass() != null;
+    case 9: // file name
+      return true;
+    default:
+      if (columnIndex < iNumberStandardCols) {
+        return false;
       }
-      bCellEditable[iRow][18] = false;
-      // Discovery date
-      if (bDiscovery) {
-        oValues[iRow][19] = file.getTrack().getDiscoveryDate();
+      // Date values not editable, use properties panel instead to
+      // edit
+      int index = columnIndex - iNumberStandardCols;
+      PropertyMetaInformation meta;
+      if (index < fileCustomProperties.size()) {
+        meta = fileCustomProperties.get(index);
       } else {
-        oValues[iRow][19] = "";
-      }
-      bCellEditable[iRow][19] = false;
-      // -- Custom properties now --
-      Map<String, Object> properties = file.getProperties();
-      // files custom tags
-      Iterator<PropertyMetaInformation> it2 = FileManager.getInstance().getCustomProperties()
-          .iterator();
-      for (int i = 0; it2.hasNext(); i++) {
-        PropertyMetaInformation meta = it2.next();
-        Object o = properties.get(meta.getName());
-        if (o != null) {
-          oValues[iRow][iNumberStandardCols + i] = o;
-        } else {
-          oValues[iRow][iNumberStandardCols + i] = meta.getDefaultValue();
-        }
-        // Date values not editable, use properties panel instead to
-        // edit
-        if (meta.getType().equals(Date.class)) {
-          bCellEditable[iRow][iNumberStandardCols + i] = false;
-        } else {
-          bCellEditable[iRow][iNumberStandardCols + i] = true;
-        }
-      }
-      // tracks custom properties
-      properties = file.getTrack().getProperties();
-      it2 = TrackManager.getInstance().getCustomProperties().iterator();
-      for (int i = FileManager.getInstance().getCustomProperties().size(); it2.hasNext(); i++) {
-        PropertyMetaInformation meta = it2.next();
-        Object o = properties.get(meta.getName());
-        if (o != null) {
-          oValues[iRow][iNumberStandardCols + i] = properties.get(meta.getName());
-        } else {
-          oValues[iRow][iNumberStandardCols + i] = meta.getDefaultValue();
-        }
-        // Date values not editable, use properties panel instead to
-        // edit
-        if (meta.getType().equals(Date.class)) {
-          bCellEditable[iRow][iNumberStandardCols + i] = false;
-        } else {
-          bCellEditable[iRow][iNumberStandardCols + i] = true;
-        }
+        meta = trackCustomProperties.get(index - fileCustomProperties.size());
       }
+      return !(meta.getType().equals(Date.class));
     }
   }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.VirtualTableModel#isAffectedBy(org.jajuk.base.Item, java.util.Set)
+   */
+  @Override
+  protected boolean isAffectedBy(Item rowItem, Set<Item> changed) {
+    // Files display their track values
+    return changed.contains(rowItem) || changed.contains(((File) rowItem).getTrack());
+  }
 }
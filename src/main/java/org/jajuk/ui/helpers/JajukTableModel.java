@@ -21,6 +21,7 @@
 package org.jajuk.ui.helpers;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -291,6 +292,20 @@ public abstract class JajukTableModel extends DefaultTableModel {
     this.treeSelection = treeSelection;
   }
 
+  /**
+   * Refresh the rows displaying some changed items without populating the
+   * model again. Only changes that can't add, remove or move rows are
+   * supported.
+   * 
+   * @param items the changed items
+   * 
+   * @return whether the rows have been refreshed, false if the model doesn't
+   * support it and must be populated again
+   */
+  public boolean refreshItems(Collection<? extends Item> items) {
+    return false;
+  }
+
   /**
    * Clear the model.
    */
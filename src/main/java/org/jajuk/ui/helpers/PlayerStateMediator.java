@@ -43,6 +43,7 @@ import org.jajuk.events.ObservationManager;
 import org.jajuk.events.Observer;
 import org.jajuk.services.notification.INotificator;
 import org.jajuk.services.notification.NotificatorFactory;
+import org.jajuk.services.players.PlaybackCheckpoint;
 import org.jajuk.services.players.Player;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.services.webradio.WebRadio;
@@ -134,7 +135,7 @@ public class PlayerStateMediator implements Observer {
           ActionManager.getAction(FORWARD_TRACK).setEnabled(false);
           ActionManager.getAction(FINISH_ALBUM).setEnabled(false);
           // reset startup position
-          UtilFeatures.storePersistedPlayingPosition(0f);
+          PlaybackCheckpoint.getInstance().reset();
         } else if (JajukEvents.ZERO.equals(subject)) {
           ActionManager.getAction(PREVIOUS_TRACK).setEnabled(false);
           ActionManager.getAction(NEXT_TRACK).setEnabled(false);
@@ -147,7 +148,7 @@ public class PlayerStateMediator implements Observer {
           ActionManager.getAction(FINISH_ALBUM).setEnabled(false);
           setToPlay();
           // reset startup position
-          UtilFeatures.storePersistedPlayingPosition(0f);
+          PlaybackCheckpoint.getInstance().reset();
           ActionManager.getAction(FINISH_ALBUM).setEnabled(true);
         } else if (JajukEvents.PLAYER_PLAY.equals(subject)) {
           ActionManager.getAction(PREVIOUS_TRACK).setEnabled(true);
@@ -178,6 +179,8 @@ public class PlayerStateMediator implements Observer {
         } else if (JajukEvents.PLAYER_PAUSE.equals(subject)) {
           ActionManager.getAction(REWIND_TRACK).setEnabled(false);
           ActionManager.getAction(FORWARD_TRACK).setEnabled(false);
+          // Save the position now, the player may not progress for a while
+          PlaybackCheckpoint.getInstance().requestFlush();
           // We need to set the icon here because the event can be
           // thrown by the information panel, not directly the
           // PlayPauseAction
@@ -90,11 +90,11 @@ public class PlaylistRepositoryTableModel extends JajukTableModel {
   @Override
   public void populateModel(final String sPropertyName, final String sPattern,
       final List<String> columnsToShow) {
-    List<Playlist> alToShow = PlaylistManager.getInstance().getPlaylists();
+    List<Playlist> alToShow = new ArrayList<Playlist>(PlaylistManager.getInstance().getPlaylists());
     // OK, begin by filtering using any provided pattern
     // Regular filtering for natural properties registrated as a playlist intern property
     if (PlaylistManager.getInstance().getMetaInformation(sPropertyName) != null) {
-      Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
+      Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getSnapshot().isRegexp());
       alToShow = Filter.filterItems(alToShow, filter, Playlist.class);
       // Filter against the device attribute
     } else if (Const.XML_DEVICE.equals(sPropertyName)) {
@@ -44,6 +44,12 @@ public class RefreshReporter {
   protected int iNbCorruptedFiles;
   /** Number of files or playlists removed during refresh */
   protected int droppedFileOrPlaylist;
+  /** Number of tags read from the tag cache during refresh for stats. */
+  protected int iNbCachedTags;
+  /** Number of tags parsed during refresh for stats. */
+  protected int iNbParsedTags;
+  /** Time spent parsing tags during refresh (ms, summed over all readers). */
+  protected long lTagParseTime;
 
   /**
    * Instantiates a new refresh reporter.
@@ -71,6 +77,9 @@ public class RefreshReporter {
     this.dirCount = 0;
     this.iNbNewFiles = 0;
     this.iNbCorruptedFiles = 0;
+    this.iNbCachedTags = 0;
+    this.iNbParsedTags = 0;
+    this.lTagParseTime = 0;
     this.lRefreshDateStart = System.currentTimeMillis();
     List<Directory> dirs = DirectoryManager.getInstance().getDirectories();
     for (Directory dir : dirs) {
@@ -107,6 +116,21 @@ public class RefreshReporter {
     iNbNewFiles++;
   }
 
+  /**
+   * Notify a tag read. Called concurrently by the tag readers.
+   * 
+   * @param bCached whether the tag has been read from the tag cache
+   * @param parseTime the tag parsing time in ms (0 if cached)
+   */
+  public synchronized void notifyTagRead(boolean bCached, long parseTime) {
+    if (bCached) {
+      iNbCachedTags++;
+    } else {
+      iNbParsedTags++;
+      lTagParseTime += parseTime;
+    }
+  }
+
   /**
    * Refresh started.
    * 
@@ -134,6 +158,16 @@ public class RefreshReporter {
     if (droppedFileOrPlaylist > 0) {
       sbOut.append(" - ").append(droppedFileOrPlaylist).append(Messages.getString("Device.48"));
     }
+    int nbTags;
+    synchronized (this) {
+      nbTags = iNbCachedTags + iNbParsedTags;
+      if (nbTags > 0) {
+        Log.debug("Tags read: " + nbTags + ", from cache: " + iNbCachedTags + ", parsed: "
+            + iNbParsedTags + " in " + lTagParseTime + " ms");
+        sbOut.append(" - ").append(iNbCachedTags * 100 / nbTags)
+            .append(Messages.getString("Device.49"));
+      }
+    }
     return sbOut.toString();
   }
 
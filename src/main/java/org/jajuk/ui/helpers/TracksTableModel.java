@@ -20,11 +20,10 @@
  */
 package org.jajuk.ui.helpers;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.Predicate;
@@ -36,7 +35,6 @@ import org.jajuk.base.TrackComparator;
 import org.jajuk.base.TrackComparator.TrackComparatorType;
 import org.jajuk.base.TrackManager;
 import org.jajuk.base.Type;
-import org.jajuk.ui.widgets.IconLabel;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.Filter;
@@ -45,11 +43,13 @@ import org.jajuk.util.Messages;
 /**
  * Table model used for logical table view.
  */
-public class TracksTableModel extends JajukTableModel {
+public class TracksTableModel extends VirtualTableModel {
   /** Generated serialVersionUID. */
   private static final long serialVersionUID = 1L;
   /** Associated view ID. */
   private String viewID;
+  /** Custom properties displayed after the standard columns. */
+  private List<PropertyMetaInformation> customProperties = new ArrayList<PropertyMetaInformation>();
 
   /**
    * Model constructor.
@@ -109,7 +109,10 @@ public class TracksTableModel extends JajukTableModel {
   @Override
   public void populateModel(String property, String sPattern, List<String> columnsToShow) {
     // This should be monitor file manager to avoid NPE when changing items
-    List<Track> alToShow = TrackManager.getInstance().getTracks();
+    // Don't wait for a refresh to display the table
+    @SuppressWarnings("unchecked")
+    List<Track> tracks = (List<Track>) TrackManager.getInstance().getItemsWithoutWaiting();
+    List<Track> alToShow = new ArrayList<Track>(tracks);
     // / Filter mounted files if needed and apply sync table with tree
     // option if needed
     final boolean syncTreeTable = Conf.getBoolean(Const.CONF_SYNC_TABLE_TREE + "." + viewID);
@@ -128,187 +131,109 @@ public class TracksTableModel extends JajukTableModel {
       }
     });
     // Filter values using given pattern
-    Filter filter = new Filter(property, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
+    Filter filter = new Filter(property, sPattern, true, Conf.getSnapshot().isRegexp());
     alToShow = Filter.filterItems(alToShow, filter, Track.class);
     // sort by album
     Collections.sort(alToShow, new TrackComparator(TrackComparatorType.ALBUM));
-    Iterator<Track> it = alToShow.iterator();
-    int iColNum = iNumberStandardCols + TrackManager.getInstance().getCustomProperties().size();
-    iRowNum = alToShow.size();
-    it = alToShow.iterator();
-    oValues = new Object[iRowNum][iColNum];
-    oItems = new Item[iRowNum];
-    bCellEditable = new boolean[iRowNum][iColNum];
-    // For perfs, prepare columns visibility
-    boolean bName = (columnsToShow != null && columnsToShow.contains(Const.XML_NAME));
-    boolean bAlbum = (columnsToShow != null && columnsToShow.contains(Const.XML_ALBUM));
-    boolean bArtist = (columnsToShow != null && columnsToShow.contains(Const.XML_ARTIST));
-    boolean bAlbumArtist = (columnsToShow != null && columnsToShow.contains(Const.XML_ALBUM_ARTIST));
-    boolean bGenre = (columnsToShow != null && columnsToShow.contains(Const.XML_GENRE));
-    boolean bRate = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_RATE));
-    boolean bLength = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_LENGTH));
-    boolean bComment = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_COMMENT));
-    boolean bDiscovery = (columnsToShow != null && columnsToShow
-        .contains(Const.XML_TRACK_DISCOVERY_DATE));
-    boolean bOrder = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_ORDER));
-    boolean bDiscNumber = (columnsToShow != null && columnsToShow
-        .contains(Const.XML_TRACK_DISC_NUMBER));
-    boolean bYear = (columnsToShow != null && columnsToShow.contains(Const.XML_YEAR));
-    boolean bHits = (columnsToShow != null && columnsToShow.contains(Const.XML_TRACK_HITS));
-    boolean bFiles = (columnsToShow != null && columnsToShow.contains(Const.XML_FILES));
-    for (int iRow = 0; it.hasNext(); iRow++) {
-      Track track = it.next();
-      setItemAt(iRow, track);
-      // Id
-      oItems[iRow] = track;
-      // Play
-      IconLabel il = null;
-      if (track.getBestFile(true) != null) {
-        il = getIcon(false);
-      } else {
-        il = getIcon(true);
-      }
+    // Cells are computed on demand
+    customProperties = new ArrayList<PropertyMetaInformation>(TrackManager.getInstance()
+        .getCustomProperties());
+    setRows(alToShow, columnsToShow);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.VirtualTableModel#computeValue(org.jajuk.base.Item, int)
+   */
+  @Override
+  protected Object computeValue(Item item, int columnIndex) {
+    Track track = (Track) item;
+    switch (columnIndex) {
+    case 0: // Play
       // Note: if you want to add an image, use an ImageIcon class and
       // change
-      oValues[iRow][0] = il;
-      bCellEditable[iRow][0] = false;
-      // check track has an associated tag editor (not null)
-      boolean bHasATagEditor = false;
-      File file = track.getFiles().get(0);
-      // all files have the same type
-      Type type = file.getType();
-      if (type != null) {
-        bHasATagEditor = (type.getTaggerClass() != null);
-      }
-      // Track name
-      if (bName) {
-        oValues[iRow][1] = track.getName();
-      } else {
-        oValues[iRow][1] = "";
-      }
-      bCellEditable[iRow][1] = bHasATagEditor;
-      // Album
-      if (bAlbum) {
-        oValues[iRow][2] = track.getAlbum().getName2();
-      } else {
-        oValues[iRow][2] = "";
-      }
-      bCellEditable[iRow][2] = bHasATagEditor;
-      // Artist
-      if (bArtist) {
-        oValues[iRow][3] = track.getArtist().getName2();
-      } else {
-        oValues[iRow][3] = "";
-      }
-      bCellEditable[iRow][3] = bHasATagEditor;
-      // Album Artist
-      if (bAlbumArtist) {
-        oValues[iRow][4] = track.getAlbumArtist().getName2();
-      } else {
-        oValues[iRow][4] = "";
-      }
-      bCellEditable[iRow][4] = bHasATagEditor;
-      // Genre
-      if (bGenre) {
-        oValues[iRow][5] = track.getGenre().getName2();
-      } else {
-        oValues[iRow][5] = "";
-      }
-      bCellEditable[iRow][5] = bHasATagEditor;
-      // Rate
-      if (bRate) {
-        oValues[iRow][6] = StarsHelper.getStarIconLabel(track);
-      } else {
-        oValues[iRow][6] = "";
-      }
-      bCellEditable[iRow][6] = false;
-      // Length
-      if (bLength) {
-        oValues[iRow][7] = new Duration(track.getDuration());
-      } else {
-        oValues[iRow][7] = "";
-      }
-      bCellEditable[iRow][7] = false;
-      // Comment
-      if (bComment) {
-        oValues[iRow][8] = track.getValue(Const.XML_TRACK_COMMENT);
-      } else {
-        oValues[iRow][8] = "";
-      }
-      bCellEditable[iRow][8] = bHasATagEditor;
-      // Date discovery
-      if (bDiscovery) {
-        oValues[iRow][9] = track.getDiscoveryDate(); // show date using
-        // default local format
-        // and not technical
-        // representation
-        bCellEditable[iRow][9] = false;
-      } else {
-        oValues[iRow][9] = "";
-      }
-      // Order
-      if (bOrder) {
-        oValues[iRow][10] = track.getOrder();
-      } else {
-        oValues[iRow][10] = "";
-      }
-      bCellEditable[iRow][10] = bHasATagEditor;
-      // Disc number
-      if (bDiscNumber) {
-        oValues[iRow][11] = track.getDiscNumber();
-      } else {
-        oValues[iRow][11] = "";
-      }
-      bCellEditable[iRow][11] = bHasATagEditor;
-      // Year
-      if (bYear) {
-        oValues[iRow][12] = track.getYear().getValue();
-      } else {
-        oValues[iRow][12] = "";
-      }
-      bCellEditable[iRow][12] = bHasATagEditor;
-      // Hits
-      if (bHits) {
-        oValues[iRow][13] = track.getHits();
-      } else {
-        oValues[iRow][13] = "";
-      }
-      bCellEditable[iRow][13] = false;
-      // Files
-      if (bFiles) {
-        List<File> alFiles = track.getFiles();
-        StringBuilder files = new StringBuilder(50);
-        // for perfs, we manage differently single file tracks and multi-files
-        // tracks
-        if (alFiles.size() == 1) {
-          files.append(alFiles.get(0).getAbsolutePath());
-        } else {
-          for (File file2 : alFiles) {
-            files.append(file2.getAbsolutePath()).append(',');
-          }
-          files.deleteCharAt(files.length() - 1);
-        }
-        oValues[iRow][14] = files.toString();
-      } else {
-        oValues[iRow][14] = "";
-      }
-      bCellEditable[iRow][14] = false;
-      // Custom properties now
-      Map<String, Object> properties = track.getProperties();
-      Iterator<PropertyMetaInformation> it2 = TrackManager.getInstance().getCustomProperties()
-          .iterator();
-      for (int i = 0; it2.hasNext(); i++) {
-        PropertyMetaInformation meta = it2.next();
-        Object o = properties.get(meta.getName());
-        if (o != null) {
-          oValues[iRow][iNumberStandardCols + i] = o;
-        } else {
-          oValues[iRow][iNumberStandardCols + i] = meta.getDefaultValue();
-        }
-        // Date values not editable, use properties panel instead to
-        // edit
-        bCellEditable[iRow][iNumberStandardCols + i] = !(meta.getType().equals(Date.class));
-      }
+      return getIcon(track.getBestFile(true) == null);
+    case 1: // Track name
+      return isShown(Const.XML_NAME) ? track.getName() : "";
+    case 2: // Album
+      return isShown(Const.XML_ALBUM) ? track.getAlbum().getName2() : "";
+    case 3: // Artist
+      return isShown(Const.XML_ARTIST) ? track.getArtist().getName2() : "";
+    case 4: // Album Artist
+      return isShown(Const.XML_ALBUM_ARTIST) ? track.getAlbumArtist().getName2() : "";
+    case 5: // Genre
+      return isShown(Const.XML_GENRE) ? track.getGenre().getName2() : "";
+    case 6: // Rate
+      return isShown(Const.XML_TRACK_RATE) ? StarsHelper.getStarIconLabel(track) : "";
+    case 7: // Length
+      return isShown(Const.XML_TRACK_LENGTH) ? new Duration(track.getDuration()) : "";
+    case 8: // Comment
+      return isShown(Const.XML_TRACK_COMMENT) ? track.getValue(Const.XML_TRACK_COMMENT) : "";
+    case 9: // Date discovery, show date using default local format and not
+      // technical representation
+      return isShown(Const.XML_TRACK_DISCOVERY_DATE) ? track.getDiscoveryDate() : "";
+    case 10: // Order
+      return isShown(Const.XML_TRACK_ORDER) ? track.getOrder() : "";
+    case 11: // Disc number
+      return isShown(Const.XML_TRACK_DISC_NUMBER) ? track.getDiscNumber() : "";
+    case 12: // Year
+      return isShown(Const.XML_YEAR) ? track.getYear().getValue() : "";
+    case 13: // Hits
+      return isShown(Const.XML_TRACK_HITS) ? track.getHits() : "";
+    case 14: // Files
+      if (!isShown(Const.XML_FILES)) {
+        return "";
+      }
+      List<File> alFiles = track.getFiles();
+      // for perfs, we manage differently single file tracks and multi-files
+      // tracks
+      if (alFiles.size() == 1) {
+        return alFiles.get(0).getAbsolutePath();
+      }
+      StringBuilder files = new StringBuilder(50);
+      for (File file2 : alFiles) {
+        files.append(file2.getAbsolutePath()).append(',');
+      }
+      files.deleteCharAt(files.length() - 1);
+      return files.toString();
+    default: // Custom properties
+      PropertyMetaInformation meta = customProperties.get(columnIndex - iNumberStandardCols);
+      Object o = track.getProperties().get(meta.getName());
+      return (o != null) ? o : meta.getDefaultValue();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.VirtualTableModel#isItemCellEditable(org.jajuk.base.Item, int)
+   */
+  @Override
+  protected boolean isItemCellEditable(Item item, int columnIndex) {
+    switch (columnIndex) {
+    case 1: // name
+    case 2: // album
+    case 3: // artist
+    case 4: // album artist
+    case 5: // genre
+    case 8: // comment
+    case 10: // order
+    case 11: // disc number
+    case 12: // year
+      // check track has an associated tag editor (not null), all files have
+      // the same type
+      Type type = ((Track) item).getFiles().get(0).getType();
+      return type != null && type.getTaggerClass() != null;
+    default:
+      if (columnIndex < iNumberStandardCols) {
+        // play, rate, length, discovery date, hits and files
+        return false;
+      }
+      // Date values not editable, use properties panel instead to
+      // edit
+      PropertyMetaInformation meta = customProperties.get(columnIndex - iNumberStandardCols);
+      return !(meta.getType().equals(Date.class));
     }
   }
 }
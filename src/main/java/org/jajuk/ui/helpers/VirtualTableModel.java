@@ -0,0 +1,317 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.ui.helpers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jajuk.base.Item;
+
+/**
+ * Table model whose cells are computed on demand.
+ * <p>
+ * Populating the model only stores the sorted and filtered items, a cell is
+ * computed the first time the table asks for it and is then cached, per column
+ * for all rows, until the rows are set again or refreshed. This way, rows the
+ * user never scrolls to never cost anything, and sorting a column computes
+ * this column cells only, and only once.
+ * </p>
+ * <p>
+ * Like other models, all calls but populating (done by a worker) have to be
+ * done in the EDT.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public abstract class VirtualTableModel extends JajukTableModel {
+  /** Marks the cells not yet computed. */
+  private static final Object NOT_COMPUTED = new Object();
+  /** Computed cells of the current rows. */
+  private volatile Cells cells = new Cells(new Item[0], 0);
+  /** Identifiers of the columns to fill, other columns get a void value. */
+  private volatile Set<String> columnsToShow = new HashSet<String>();
+  /** Last value used for undo. */
+  private Object oLast = null;
+
+  /**
+   * Computed cells of a set of rows. The rows items are kept along with their
+   * cells so a reader never mixes the cells of previous rows with new ones.
+   */
+  private static final class Cells {
+    /** Rows items. */
+    private final Item[] items;
+    /** Cells by column then row, a column is allocated when first accessed. */
+    private final Object[][] columns;
+
+    /**
+     * Instantiates new rows cells.
+     *
+     * @param items rows items
+     * @param columnCount number of columns to cache
+     */
+    private Cells(Item[] items, int columnCount) {
+      this.items = items;
+      this.columns = new Object[columnCount][];
+    }
+
+    /**
+     * Gets the cells of a column.
+     *
+     * @param columnIndex
+     *
+     * @return the column cells or null if the column has been added since the
+     * rows have been set
+     */
+    private Object[] getColumn(int columnIndex) {
+      if (columnIndex >= columns.length) {
+        return null;
+      }
+      Object[] column = columns[columnIndex];
+      if (column == null) {
+        column = new Object[items.length];
+        Arrays.fill(column, NOT_COMPUTED);
+        columns[columnIndex] = column;
+      }
+      return column;
+    }
+
+    /**
+     * Drop the computed cells of a row.
+     *
+     * @param rowIndex
+     */
+    private void invalidate(int rowIndex) {
+      for (Object[] column : columns) {
+        if (column != null) {
+          column[rowIndex] = NOT_COMPUTED;
+        }
+      }
+    }
+  }
+
+  /**
+   * The Constructor.
+   *
+   * @param iNumberStandardCols Number of columns of this model (without custom properties)
+   */
+  public VirtualTableModel(int iNumberStandardCols) {
+    super(iNumberStandardCols);
+  }
+
+  /**
+   * Set the model rows. Cells are not computed here. This may be called out
+   * of the EDT (populating is done by a worker) so the cells are replaced, not
+   * cleared.
+   *
+   * @param items sorted and filtered items to display
+   * @param columnsToShow identifiers of the columns to fill
+   */
+  protected void setRows(List<? extends Item> items, List<String> columnsToShow) {
+    this.columnsToShow = (columnsToShow == null) ? new HashSet<String>() : new HashSet<String>(
+        columnsToShow);
+    Item[] rows = items.toArray(new Item[items.size()]);
+    cells = new Cells(rows, getColumnCount());
+    oItems = rows;
+    iRowNum = rows.length;
+  }
+
+  /**
+   * Return whether a column is displayed and so its values must be computed.
+   *
+   * @param id column identifier
+   *
+   * @return whether the column is displayed
+   */
+  protected boolean isShown(String id) {
+    return columnsToShow.contains(id);
+  }
+
+  /**
+   * Compute the value of a cell.
+   *
+   * @param item the row item
+   * @param columnIndex
+   *
+   * @return the cell value
+   */
+  protected abstract Object computeValue(Item item, int columnIndex);
+
+  /**
+   * Return whether a cell of a row can be edited, regardless of the model
+   * editable state.
+   *
+   * @param item the row item
+   * @param columnIndex
+   *
+   * @return whether the cell is editable
+   */
+  protected abstract boolean isItemCellEditable(Item item, int columnIndex);
+
+  /**
+   * Return whether a row displays a changed item. Override it when rows
+   * display values of other items (like the track of a file).
+   *
+   * @param rowItem the row item
+   * @param changed changed items
+   *
+   * @return whether the row must be refreshed
+   */
+  protected boolean isAffectedBy(Item rowItem, Set<Item> changed) {
+    return changed.contains(rowItem);
+  }
+
+  /**
+   * Gets the value of a cell, computing it if not in cache.
+   *
+   * @param cells the rows cells
+   * @param rowIndex
+   * @param columnIndex
+   *
+   * @return the cell value
+   */
+  private Object getValue(Cells cells, int rowIndex, int columnIndex) {
+    Item item = cells.items[rowIndex];
+    Object[] column = cells.getColumn(columnIndex);
+    if (column == null) {
+      return computeValue(item, columnIndex);
+    }
+    Object value = column[rowIndex];
+    if (value == NOT_COMPUTED) {
+      value = computeValue(item, columnIndex);
+      column[rowIndex] = value;
+    }
+    return value;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#getValueAt(int, int)
+   */
+  @Override
+  public Object getValueAt(int rowIndex, int columnIndex) {
+    // We need to test this as UI may request it before table is populated
+    Cells cells = this.cells;
+    if (rowIndex < 0 || rowIndex >= cells.items.length) {
+      return null;
+    }
+    return getValue(cells, rowIndex, columnIndex);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#setValueAt(java.lang.Object, int, int)
+   */
+  @Override
+  public void setValueAt(Object oValue, int rowIndex, int columnIndex) {
+    Cells cells = this.cells;
+    oLast = getValue(cells, rowIndex, columnIndex);
+    Object[] column = cells.getColumn(columnIndex);
+    if (column != null) {
+      column[rowIndex] = oValue;
+    }
+    fireTableCellUpdated(rowIndex, columnIndex);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#undo(int, int)
+   */
+  @Override
+  public void undo(int rowIndex, int columnIndex) {
+    Object[] column = cells.getColumn(columnIndex);
+    if (oLast != null && column != null) {
+      column[rowIndex] = oLast;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#setItemAt(int, org.jajuk.base.Item)
+   */
+  @Override
+  public void setItemAt(int iRow, Item item) {
+    // the item may be a new one (after a rename for ie), its row is computed
+    // again
+    super.setItemAt(iRow, item);
+    cells.invalidate(iRow);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#isCellEditable(int, int)
+   */
+  @Override
+  public boolean isCellEditable(int rowIndex, int columnIndex) {
+    Item[] items = oItems;
+    return bEditable && items != null && rowIndex < items.length && isItemCellEditable(items[rowIndex], columnIndex);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#refreshItems(java.util.Collection)
+   */
+  @Override
+  public boolean refreshItems(Collection<? extends Item> items) {
+    if (oItems == null) {
+      return false;
+    }
+    Cells cells = this.cells;
+    Set<Item> changed = new HashSet<Item>(items);
+    // Fire an update event for each range of consecutive changed rows
+    int first = -1;
+    for (int i = 0; i < cells.items.length; i++) {
+      if (isAffectedBy(cells.items[i], changed)) {
+        cells.invalidate(i);
+        if (first < 0) {
+          first = i;
+        }
+      } else if (first >= 0) {
+        fireTableRowsUpdated(first, i - 1);
+        first = -1;
+      }
+    }
+    if (first >= 0) {
+      fireTableRowsUpdated(first, cells.items.length - 1);
+    }
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.ui.helpers.JajukTableModel#clear()
+   */
+  @Override
+  public void clear() {
+    Item[] rows = new Item[0];
+    cells = new Cells(rows, 0);
+    oItems = rows;
+    super.clear();
+  }
+}
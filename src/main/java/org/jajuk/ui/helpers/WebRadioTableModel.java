@@ -83,7 +83,7 @@ public class WebRadioTableModel extends JajukTableModel {
     List<WebRadio> alToShow = new ArrayList<WebRadio>(WebRadioManager.getInstance().getWebRadios());
     oItems = new Item[iRowNum];
     // Filter radios if required
-    Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getBoolean(Const.CONF_REGEXP));
+    Filter filter = new Filter(sPropertyName, sPattern, true, Conf.getSnapshot().isRegexp());
     alToShow = Filter.filterItems(alToShow, filter, WebRadio.class);
     Iterator<WebRadio> it = alToShow.iterator();
     int iColNum = iNumberStandardCols;
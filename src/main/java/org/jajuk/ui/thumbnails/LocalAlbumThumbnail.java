@@ -104,7 +104,8 @@ public class LocalAlbumThumbnail extends AbstractThumbnail {
     if (!album.isThumbAvailable(size)) {
       // create the thumbnail if it doesn't exist
       boolean thumbCreated = ThumbnailManager.refreshThumbnail(album, size);
-      if (!thumbCreated) {
+      // The thumb may have been created by a concurrent request
+      if (!thumbCreated && !album.isThumbAvailable(size)) {
         this.fCover = null;
       }
     }
@@ -25,10 +25,16 @@ import java.awt.MediaTracker;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.ImageIcon;
 
 import org.jajuk.base.Album;
@@ -116,6 +122,10 @@ public final class ThumbnailManager {
    * created if necessary. the thumbnail must be maxDim pixels or less. Thanks
    * Marco Schmidt
    * http://schmidt.devlib.org/java/save-jpeg-thumbnail.html#source
+   * <p>
+   * The image is decoded with subsampling so large covers are never fully
+   * decoded.
+   * </p>
    *
    * @param orig source image
    * @param thumb destination file
@@ -125,13 +135,26 @@ public final class ThumbnailManager {
    */
   public static void createThumbnail(final File orig, final File thumb, final int maxDim)
       throws InterruptedException, IOException {
-    // do not use URL object has it can corrupt special paths
-    ImageIcon ii = new ImageIcon(orig.getAbsolutePath());
-    if (ii.getImageLoadStatus() != MediaTracker.COMPLETE) {
-      throw new JajukRuntimeException("Cannot load image: " + orig.getAbsolutePath()
-          + ", load status is: " + ii.getImageLoadStatus());
+    BufferedImage image = null;
+    try {
+      image = readImage(orig, maxDim);
+    } catch (IOException e) {
+      // Some images (like CMYK jpegs) are not supported by ImageIO readers
+      Log.debug("Cannot read image with ImageIO: " + orig.getAbsolutePath() + " : "
+          + e.getMessage());
     }
-    createThumbnail(ii, thumb, maxDim);
+    if (image == null) {
+      // do not use URL object has it can corrupt special paths
+      ImageIcon ii = new ImageIcon(orig.getAbsolutePath());
+      if (ii.getImageLoadStatus() != MediaTracker.COMPLETE) {
+        throw new JajukRuntimeException("Cannot load image: " + orig.getAbsolutePath()
+            + ", load status is: " + ii.getImageLoadStatus());
+      }
+      createThumbnail(ii, thumb, maxDim);
+      return;
+    }
+    writeThumbnail(image, thumb, maxDim);
+    image.flush();
   }
 
   /**
@@ -149,52 +172,134 @@ public final class ThumbnailManager {
    */
   public static void createThumbnail(final ImageIcon ii, final File thumb, final int maxDim)
       throws InterruptedException, IOException {
-    // Synchronize the file to avoid any concurrency between several threads refreshing the thumb
-    // like the catalog view and the artist view.
-    // Don't lock the thumb file itself because we have to write in in this method and
-    // Windows doesn't support share mode for locks but only exclusive
-    File thumbLock = new File(thumb.getAbsolutePath() + ".lock");
-    thumbLock.createNewFile();
-    synchronized (thumbLock.getAbsolutePath().intern()) {
-      // Note that at this point, the image is fully loaded (done in the ImageIcon constructor)
-      final Image image = ii.getImage();
-      // determine thumbnail size from WIDTH and HEIGHT
-      int thumbWidth = maxDim;
-      int thumbHeight = maxDim;
-      final double thumbRatio = (double) thumbWidth / (double) thumbHeight;
-      final int imageWidth = image.getWidth(null);
-      final int imageHeight = image.getHeight(null);
-      final double imageRatio = (double) imageWidth / (double) imageHeight;
-      if (thumbRatio < imageRatio) {
-        thumbHeight = (int) (thumbWidth / imageRatio);
-      } else {
-        thumbWidth = (int) (thumbHeight * imageRatio);
+    // Note that at this point, the image is fully loaded (done in the ImageIcon constructor)
+    writeThumbnail(ii.getImage(), thumb, maxDim);
+  }
+
+  /**
+   * Decode an image, skipping pixels when it is much larger than the
+   * required size.
+   *
+   * @param file image file
+   * @param maxDim required size
+   *
+   * @return the decoded image, at least twice as large as the required size
+   * when possible so the final scaling is still smooth
+   *
+   * @throws IOException if the image cannot be read by ImageIO
+   */
+  static BufferedImage readImage(File file, int maxDim) throws IOException {
+    ImageInputStream iis = ImageIO.createImageInputStream(file);
+    if (iis == null) {
+      throw new IOException("Cannot open image: " + file.getAbsolutePath());
+    }
+    try {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+      if (!readers.hasNext()) {
+        throw new IOException("No reader for image: " + file.getAbsolutePath());
       }
-      // draw original image to thumbnail image object and
-      // scale it to the new size on-the-fly
-      final BufferedImage thumbImage = UtilGUI.toBufferedImage(image, thumbWidth, thumbHeight);
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(iis, true, true);
+        int largest = Math.max(reader.getWidth(0), reader.getHeight(0));
+        ImageReadParam param = reader.getDefaultReadParam();
+        int step = Math.max(1, largest / (2 * maxDim));
+        param.setSourceSubsampling(step, step, 0, 0);
+        return reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    } finally {
+      iis.close();
+    }
+  }
+
+  /**
+   * Scale an image and write it to the thumb file.
+   * <p>
+   * The thumb is written to a temporary file first and then renamed, so other
+   * threads never read a partially written thumb.
+   * </p>
+   *
+   * @param image the loaded image
+   * @param thumb destination file
+   * @param maxDim required size
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeThumbnail(Image image, File thumb, int maxDim) throws IOException {
+    // determine thumbnail size from WIDTH and HEIGHT
+    int thumbWidth = maxDim;
+    int thumbHeight = maxDim;
+    final double thumbRatio = (double) thumbWidth / (double) thumbHeight;
+    final int imageWidth = image.getWidth(null);
+    final int imageHeight = image.getHeight(null);
+    final double imageRatio = (double) imageWidth / (double) imageHeight;
+    if (thumbRatio < imageRatio) {
+      thumbHeight = (int) (thumbWidth / imageRatio);
+    } else {
+      thumbWidth = (int) (thumbHeight * imageRatio);
+    }
+    // draw original image to thumbnail image object and
+    // scale it to the new size on-the-fly
+    final BufferedImage thumbImage = UtilGUI.toBufferedImage(image, thumbWidth, thumbHeight);
+    File tmp = File.createTempFile(thumb.getName(), ".tmp", thumb.getParentFile());
+    try {
       // save thumbnail image to OUTFILE
-      ImageIO.write(thumbImage, UtilSystem.getExtension(thumb), thumb);
+      ImageIO.write(thumbImage, UtilSystem.getExtension(thumb), tmp);
+      // renameTo doesn't replace existing files under Windows
+      if (thumb.exists() && !thumb.delete()) {
+        Log.warn("Cannot delete thumb: " + thumb.getAbsolutePath());
+      }
+      if (!tmp.renameTo(thumb)) {
+        throw new IOException("Cannot rename " + tmp.getAbsolutePath() + " to "
+            + thumb.getAbsolutePath());
+      }
+    } finally {
+      if (tmp.exists() && !tmp.delete()) {
+        Log.warn("Cannot delete temporary thumb: " + tmp.getAbsolutePath());
+      }
       // Free thumb memory
       thumbImage.flush();
     }
   }
 
   /**
-   * Check all thumbs existence for performance reasons.
+   * Check all thumbs existence for performance reasons. The thumbs directory
+   * is listed once instead of checking each album thumb file existence.
    * 
    * @param size size of thumbs to be checked
    */
   public static void populateCache(final int size) {
+    File dir = SessionService.getConfFileByPath(Const.FILE_THUMBS + '/' + size + 'x' + size);
+    String[] names = dir.list();
+    Set<String> thumbs = new HashSet<String>((names == null) ? 0 : names.length * 2);
+    if (names != null) {
+      for (String name : names) {
+        // Thumbs used to be written under a lock file, drop the leftovers
+        if (name.endsWith(".lock")) {
+          if (!new File(dir, name).delete()) {
+            Log.warn("Cannot delete thumb lock: " + name);
+          }
+        } else {
+          thumbs.add(name);
+        }
+      }
+    }
     for (Album album : AlbumManager.getInstance().getAlbums()) {
-      File fThumb = ThumbnailManager.getThumbBySize(album, size);
-      album.setAvailableThumb(size, fThumb.exists() && fThumb.length() > 0);
+      String name = album.getID() + '.' + Const.EXT_THUMB;
+      // Empty thumbs are corrupted and must be created again
+      album.setAvailableThumb(size, thumbs.contains(name) && new File(dir, name).length() > 0);
     }
   }
 
   /**
    * Make thumbnail file exists (album id.jpg or.gif or .png) in thumbs
    * directory if it doesn't exist yet
+   * <p>
+   * The thumb is created by the {@link ThumbnailService} decoders, this method
+   * waits for it.
+   * </p>
    * 
    * @param album 
    * @param size 
@@ -206,6 +311,24 @@ public final class ThumbnailManager {
     if (album.isThumbAvailable(size)) {
       return false;
     }
+    ThumbnailService service = ThumbnailService.getInstance();
+    return service.waitFor(service.request(album, size, true));
+  }
+
+  /**
+   * Create an album thumb if it doesn't exist yet. Called by the
+   * {@link ThumbnailService} decoders.
+   * 
+   * @param album 
+   * @param size 
+   * 
+   * @return whether a new cover has been created
+   */
+  static boolean buildThumbnail(final Album album, final int size) {
+    // The thumb may have been created since the request
+    if (album.isThumbAvailable(size)) {
+      return false;
+    }
     final File fThumb = getThumbBySize(album, size);
     final File fCover = album.findCover();
     if (fCover != null) {
@@ -0,0 +1,221 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.ui.thumbnails;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jajuk.base.Album;
+import org.jajuk.util.log.Log;
+
+/**
+ * Background thumbnails creation.
+ * <p>
+ * Covers are decoded and scaled by a small pool of decoder threads so opening
+ * a view on a large collection never decodes more than a few covers at once.
+ * Requests for visible albums are served before background (prefetch)
+ * requests, and a thumb requested several times while pending is built only
+ * once : all requesters share the same result.
+ * </p>
+ * <p>
+ * Singleton
+ * </p>
+ */
+public final class ThumbnailService {
+  /** Maximal number of decoder threads, decoding large covers takes a lot of memory. */
+  private static final int MAX_DECODERS = 2;
+  /** Self instance. */
+  private static ThumbnailService self = new ThumbnailService();
+  /** Requests ordering sequence, older requests first for a given priority. */
+  private final AtomicLong sequence = new AtomicLong();
+  /** Pending or running thumbs creations : album id/size -> creation. */
+  private final ConcurrentMap<String, FutureTask<Boolean>> inFlight = new ConcurrentHashMap<String, FutureTask<Boolean>>();
+  /** Decoder threads. */
+  private final ThreadPoolExecutor decoders;
+
+  /**
+   * A queued thumb creation. The same creation can be queued several times
+   * with different priorities, it is run only once.
+   */
+  private static final class QueuedRequest implements Runnable, Comparable<QueuedRequest> {
+    /** The thumb creation. */
+    private final FutureTask<Boolean> task;
+    /** Whether the album is visible. */
+    private final boolean bVisible;
+    /** Request order. */
+    private final long order;
+
+    /**
+     * Instantiates a new queued request.
+     *
+     * @param task the thumb creation
+     * @param bVisible whether the album is visible
+     * @param order request order
+     */
+    private QueuedRequest(FutureTask<Boolean> task, boolean bVisible, long order) {
+      this.task = task;
+      this.bVisible = bVisible;
+      this.order = order;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      // Does nothing if already run from another queued request
+      task.run();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(QueuedRequest other) {
+      if (bVisible != other.bVisible) {
+        return bVisible ? -1 : 1;
+      }
+      return order < other.order ? -1 : (order == other.order ? 0 : 1);
+    }
+  }
+
+  /**
+   * Gets the instance.
+   *
+   * @return singleton
+   */
+  public static ThumbnailService getInstance() {
+    return self;
+  }
+
+  /**
+   * private constructor for singleton.
+   */
+  private ThumbnailService() {
+    int nbDecoders = Math.max(1,
+        Math.min(MAX_DECODERS, Runtime.getRuntime().availableProcessors() - 1));
+    decoders = new ThreadPoolExecutor(nbDecoders, nbDecoders, 0L, TimeUnit.MILLISECONDS,
+        new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Thumbnail Decoder Thread");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+          }
+        });
+  }
+
+  /**
+   * Request the creation of an album thumb. If the same thumb is already
+   * pending, no new creation is queued and the pending one is returned
+   * (bumped to the visible priority if required).
+   *
+   * @param album the album
+   * @param size the thumb size (like 50)
+   * @param bVisible whether the album is displayed right now, visible albums
+   * thumbs are created first
+   *
+   * @return the thumb creation, its result tells whether a new thumb has been
+   * created
+   */
+  public Future<Boolean> request(final Album album, final int size, boolean bVisible) {
+    final String key = album.getID() + '/' + size;
+    FutureTask<Boolean> task = inFlight.get(key);
+    if (task == null) {
+      FutureTask<Boolean> newTask = new FutureTask<Boolean>(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          try {
+            return ThumbnailManager.buildThumbnail(album, size);
+          } finally {
+            inFlight.remove(key);
+          }
+        }
+      });
+      task = inFlight.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        decoders.execute(new QueuedRequest(task, bVisible, sequence.getAndIncrement()));
+        return task;
+      }
+    }
+    if (bVisible && !task.isDone()) {
+      // Queue it again with the visible priority, the first of both queued
+      // requests runs it
+      decoders.execute(new QueuedRequest(task, true, sequence.getAndIncrement()));
+    }
+    return task;
+  }
+
+  /**
+   * Request the creation of several albums thumbs and wait for them.
+   *
+   * @param albums the albums
+   * @param size the thumbs size (like 50)
+   */
+  public void requestAndWait(Collection<Album> albums, int size) {
+    List<Future<Boolean>> creations = new ArrayList<Future<Boolean>>(albums.size());
+    for (Album album : albums) {
+      if (!album.isThumbAvailable(size)) {
+        creations.add(request(album, size, true));
+      }
+    }
+    for (Future<Boolean> creation : creations) {
+      waitFor(creation);
+    }
+  }
+
+  /**
+   * Wait for a thumb creation.
+   *
+   * @param creation the thumb creation
+   *
+   * @return whether a new thumb has been created
+   */
+  public boolean waitFor(Future<Boolean> creation) {
+    try {
+      return creation.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      Log.error(e);
+      return false;
+    }
+  }
+}
@@ -32,6 +32,7 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -91,6 +92,7 @@ import org.jajuk.util.JajukIcons;
 import org.jajuk.util.Messages;
 import org.jajuk.util.UtilFeatures;
 import org.jajuk.util.UtilGUI;
+import org.jajuk.util.UtilString;
 import org.jajuk.util.error.CannotRenameException;
 import org.jajuk.util.error.JajukException;
 import org.jajuk.util.error.NoneAccessibleFileException;
@@ -472,6 +474,16 @@ public abstract class AbstractTableView extends ViewAdapter implements ActionLis
               applyFilter(sAppliedCriteria, sAppliedFilter);
             }
           } else if (JajukEvents.RATE_CHANGED.equals(subject)) {
+            // Only refresh the rows of the changed tracks if they are given :
+            // rates are not used to sort rows nor to filter them (unless the
+            // user filters rows)
+            Properties details = event.getDetails();
+            Collection<Item> changed = (details == null) ? null : (Collection<Item>) details
+                .get(Const.DETAIL_CONTENT);
+            if (changed != null && UtilString.isEmpty(sAppliedFilter)
+                && model.refreshItems(changed)) {
+              return;
+            }
             // Keep current selection and nb of rows
             int[] selection = jtable.getSelectedRows();
             // force filter to refresh
@@ -22,6 +22,7 @@ package org.jajuk.ui.views;
 
 import ext.services.lastfm.ArtistInfo;
 import ext.services.lastfm.LastFmService;
+import ext.services.lastfm.SimilarArtistsInfo;
 
 import java.awt.Dimension;
 import java.awt.Insets;
@@ -29,6 +30,7 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
@@ -201,13 +203,16 @@ public class ArtistView extends SuggestionView implements TwoStepsDisplayable {
    */
   @Override
   public Object longCall() {
+    // Start the similar artists lookup, it runs concurrently with the other calls
+    Future<SimilarArtistsInfo> similarArtists = LastFmService.getInstance()
+        .getSimilarArtistsAsync(artist);
     // Call last.fm wiki
     bio = LastFmService.getInstance().getWikiText(artist);
     artistInfo = LastFmService.getInstance().getArtist(artist);
     // Prefetch artist thumbs
     try {
       preFetchOthersAlbum();
-      preFetchSimilarArtists();
+      preFetchSimilarArtists(similarArtists);
     } catch (UnknownHostException e) {
       Log.warn("Could not contact host for loading album information: {{" + e.getMessage() + "}}");
     } catch (IOException e) {
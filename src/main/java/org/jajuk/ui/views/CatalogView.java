@@ -74,7 +74,7 @@ import org.jajuk.ui.helpers.FontManager;
 import org.jajuk.ui.helpers.FontManager.JajukFont;
 import org.jajuk.ui.helpers.TwoStepsDisplayable;
 import org.jajuk.ui.thumbnails.LocalAlbumThumbnail;
-import org.jajuk.ui.thumbnails.ThumbnailManager;
+import org.jajuk.ui.thumbnails.ThumbnailService;
 import org.jajuk.ui.widgets.InformationJPanel;
 import org.jajuk.ui.widgets.JajukJToolbar;
 import org.jajuk.ui.widgets.SteppedComboBox;
@@ -494,11 +494,16 @@ public class CatalogView extends ViewAdapter implements ActionListener, TwoSteps
         // items to display
         max = (page + 1) * Conf.getInt(Const.CONF_CATALOG_PAGE_SIZE);
       }
-      // Populate each thumb if required (THIS IS LOOOOOONG)
-      for (int i = page * Conf.getInt(Const.CONF_CATALOG_PAGE_SIZE); i < max; i++) {
-        Album album = albums.get(i);
-        pageAlbums.add(album);
-        ThumbnailManager.refreshThumbnail(album, getSelectedSize());
+      pageAlbums.addAll(albums.subList(page * Conf.getInt(Const.CONF_CATALOG_PAGE_SIZE), max));
+      // Populate each thumb if required (THIS IS LOOOOOONG), thumbs are
+      // created by the thumbnail service decoders
+      ThumbnailService.getInstance().requestAndWait(pageAlbums, getSelectedSize());
+      // Prefetch next page thumbs, they are created once visible thumbs are done
+      int nextMax = Math.min(albums.size(), max + Conf.getInt(Const.CONF_CATALOG_PAGE_SIZE));
+      for (Album album : albums.subList(max, nextMax)) {
+        if (!album.isThumbAvailable(getSelectedSize())) {
+          ThumbnailService.getInstance().request(album, getSelectedSize(), false);
+        }
       }
     } finally {
       // Make sure to reset the populating flag in case of problem
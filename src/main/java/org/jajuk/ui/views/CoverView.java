@@ -61,6 +61,7 @@ import net.miginfocom.swing.MigLayout;
 
 import org.apache.commons.lang.StringUtils;
 import org.jajuk.base.Album;
+import org.jajuk.base.CoverIndex;
 import org.jajuk.base.Artist;
 import org.jajuk.base.Directory;
 import org.jajuk.base.Track;
@@ -91,7 +92,6 @@ import org.jajuk.util.UtilGUI;
 import org.jajuk.util.UtilSystem;
 import org.jajuk.util.error.JajukException;
 import org.jajuk.util.filters.GIFFilter;
-import org.jajuk.util.filters.ImageFilter;
 import org.jajuk.util.filters.JPGFilter;
 import org.jajuk.util.filters.PNGFilter;
 import org.jajuk.util.log.Log;
@@ -414,6 +414,9 @@ public class CoverView extends ViewAdapter implements ActionListener {
       Messages.showErrorMessage(131);
       return;
     }
+    if (dirReference != null) {
+      CoverIndex.getInstance().invalidate(dirReference);
+    }
     // If this was the absolute cover, remove the reference in the
     // collection
     if (cover.getType() == CoverType.SELECTED_COVER) {
@@ -498,6 +501,8 @@ public class CoverView extends ViewAdapter implements ActionListener {
     if (fCurrent == null) {
       fCurrent = QueueModel.getPlayingFile();
     }
+    // The directory images changed
+    CoverIndex.getInstance().invalidate(fCurrent.getDirectory());
     Set<Album> albums = fCurrent.getDirectory().getAlbums();
     // If we cached NO_COVER for this album, make sure to reset this value
     for (Album album : albums) {
@@ -648,6 +653,10 @@ public class CoverView extends ViewAdapter implements ActionListener {
             return;
           }
         }
+        // A cover may have been copied to the directory
+        if (dirReference != null) {
+          CoverIndex.getInstance().invalidate(dirReference);
+        }
         // Remove previous thumbs to avoid using outdated images
         // Reset cached cover
         ThumbnailManager.cleanThumbs(fCurrent.getTrack().getAlbum());
@@ -1373,25 +1382,22 @@ public class CoverView extends ViewAdapter implements ActionListener {
           // if the device is not ready, just ignore it
           continue;
         }
-        // Now search for regular or standard local covers
-        // null if none file found
-        final java.io.File[] files = dirScanned.getFio().listFiles();
-        for (int i = 0; (files != null) && (i < files.length); i++) {
+        // Now search for regular or standard local covers in the directory
+        // cover candidates
+        for (CoverIndex.Candidate candidate : CoverIndex.getInstance().getCandidates(dirScanned)) {
           // check size to avoid out of memory errors
-          if (files[i].length() > Const.MAX_COVER_SIZE * 1024) {
+          if (candidate.getSize() > Const.MAX_COVER_SIZE * 1024) {
             continue;
           }
-          final JajukFileFilter filter = ImageFilter.getInstance();
-          if (filter.accept(files[i])) {
-            Cover cover = null;
-            if (UtilFeatures.isStandardCover(files[i])) {
-              cover = new Cover(files[i], CoverType.STANDARD_COVER);
-            } else {
-              cover = new Cover(files[i], CoverType.LOCAL_COVER);
-            }
-            if (!alCovers.contains(cover)) {
-              alCovers.add(cover);
-            }
+          final File coverFile = candidate.getFile(dirScanned);
+          Cover cover = null;
+          if (UtilFeatures.isStandardCover(coverFile)) {
+            cover = new Cover(coverFile, CoverType.STANDARD_COVER);
+          } else {
+            cover = new Cover(coverFile, CoverType.LOCAL_COVER);
+          }
+          if (!alCovers.contains(cover)) {
+            alCovers.add(cover);
           }
         }
       }
@@ -20,11 +20,9 @@
  */
 package org.jajuk.ui.views;
 
-import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -35,22 +33,16 @@ import javax.swing.SwingUtilities;
 
 import net.miginfocom.swing.MigLayout;
 
+import org.jajuk.base.CollectionStatistics;
 import org.jajuk.base.Device;
 import org.jajuk.base.DeviceManager;
-import org.jajuk.base.File;
-import org.jajuk.base.FileManager;
 import org.jajuk.base.Genre;
-import org.jajuk.base.GenreManager;
-import org.jajuk.base.Track;
-import org.jajuk.base.TrackManager;
 import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Messages;
-import org.jajuk.util.ReadOnlyIterator;
 import org.jajuk.util.UtilGUI;
-import org.jajuk.util.UtilString;
 import org.jajuk.util.log.Log;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
@@ -121,22 +113,11 @@ public class StatView extends ViewAdapter {
       JFreeChart jfchart = null;
       // data
       pdata = new DefaultPieDataset();
-      int iTotal = TrackManager.getInstance().getElementCount();
+      CollectionStatistics stats = CollectionStatistics.getInstance();
+      int iTotal = stats.getTrackCount();
       double dOthers = 0;
-      // Prepare a map genre -> nb tracks
-      Map<Genre, Integer> genreNbTracks = new HashMap<Genre, Integer>(GenreManager.getInstance()
-          .getElementCount());
-      ReadOnlyIterator<Track> it = TrackManager.getInstance().getTracksIterator();
-      while (it.hasNext()) {
-        Track track = it.next();
-        Genre genre = track.getGenre();
-        Integer nbTracks = genreNbTracks.get(genre);
-        if (nbTracks == null) {
-          genreNbTracks.put(genre, 1);
-        } else {
-          genreNbTracks.put(genre, nbTracks + 1);
-        }
-      }
+      // Map genre -> nb tracks
+      Map<Genre, Integer> genreNbTracks = stats.getTracksByGenre();
       // Cleanup genre with weight < 5 %
       for (Map.Entry<Genre, Integer> entry : genreNbTracks.entrySet()) {
         double d = entry.getValue();
@@ -182,18 +163,14 @@ public class StatView extends ViewAdapter {
       // data
       pdata = new DefaultPieDataset();
       // prepare devices
-      long lTotalSize = 0;
+      CollectionStatistics stats = CollectionStatistics.getInstance();
+      long lTotalSize = stats.getTotalSize();
       double dOthers = 0;
       List<Device> devices = DeviceManager.getInstance().getDevices();
-      long[] lSizes = new long[DeviceManager.getInstance().getElementCount()];
-      ReadOnlyIterator<File> it = FileManager.getInstance().getFilesIterator();
-      while (it.hasNext()) {
-        File file = it.next();
-        lTotalSize += file.getSize();
-        lSizes[devices.indexOf(file.getDirectory().getDevice())] += file.getSize();
-      }
+      Map<Device, Long> sizes = stats.getSizeByDevice();
       for (Device device : devices) {
-        long lSize = lSizes[devices.indexOf(device)];
+        Long size = sizes.get(device);
+        long lSize = (size == null) ? 0 : size;
         if (lTotalSize > 0 && (double) lSize / lTotalSize < 0.05) {
           // less than 5% -> go to others
           dOthers += lSize;
@@ -231,7 +208,6 @@ public class StatView extends ViewAdapter {
    */
   private ChartPanel createCollectionSize() {
     try {
-      final DateFormat additionFormatter = UtilString.getAdditionDateFormatter();
       CategoryDataset cdata = null;
       JFreeChart jfchart = null;
       int iMonthsNumber = 5; // number of mounts we show, mounts
@@ -240,15 +216,8 @@ public class StatView extends ViewAdapter {
       // contains size ( in Go ) for each month, first cell is before
       // data
       int[] iMonths = getMonths(iMonthsNumber);
-      ReadOnlyIterator<Track> tracks = TrackManager.getInstance().getTracksIterator();
-      while (tracks.hasNext()) {
-        Track track = tracks.next();
-        int i = Integer.parseInt(additionFormatter.format(track.getDiscoveryDate())) / 100;
-        for (int j = 0; j < iMonthsNumber + 1; j++) {
-          if (i <= iMonths[j]) {
-            lSizeByMonth[j] += track.getTotalSize();
-          }
-        }
+      for (int j = 0; j < iMonthsNumber + 1; j++) {
+        lSizeByMonth[j] = CollectionStatistics.getInstance().getSizeUntil(iMonths[j]);
       }
       double[][] data = new double[1][iMonthsNumber + 1];
       for (int i = 0; i < iMonthsNumber + 1; i++) {
@@ -335,7 +304,6 @@ public class StatView extends ViewAdapter {
    */
   private ChartPanel createTrackNumber() {
     try {
-      final DateFormat additionFormatter = UtilString.getAdditionDateFormatter();
       CategoryDataset cdata = null;
       JFreeChart jfchart = null;
       // number of months we show, mounts
@@ -345,15 +313,8 @@ public class StatView extends ViewAdapter {
       // data
       int iTracksByMonth[] = new int[iMonthsNumber + 1];
       int[] iMounts = getMonths(iMonthsNumber);
-      ReadOnlyIterator<Track> tracks = TrackManager.getInstance().getTracksIterator();
-      while (tracks.hasNext()) {
-        Track track = tracks.next();
-        int i = Integer.parseInt(additionFormatter.format(track.getDiscoveryDate())) / 100;
-        for (int j = 0; j < iMonthsNumber + 1; j++) {
-          if (i <= iMounts[j]) {
-            iTracksByMonth[j]++;
-          }
-        }
+      for (int j = 0; j < iMonthsNumber + 1; j++) {
+        iTracksByMonth[j] = CollectionStatistics.getInstance().getTracksUntil(iMounts[j]);
       }
       double[][] data = new double[1][iMonthsNumber + 1];
       // cannot use System.arraycopy() here because we have different types in
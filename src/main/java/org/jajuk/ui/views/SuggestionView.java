@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import javax.swing.BoxLayout;
 import javax.swing.JEditorPane;
@@ -65,7 +66,7 @@ import org.jajuk.ui.thumbnails.AbstractThumbnail;
 import org.jajuk.ui.thumbnails.LastFmAlbumThumbnail;
 import org.jajuk.ui.thumbnails.LastFmArtistThumbnail;
 import org.jajuk.ui.thumbnails.LocalAlbumThumbnail;
-import org.jajuk.ui.thumbnails.ThumbnailManager;
+import org.jajuk.ui.thumbnails.ThumbnailService;
 import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.DownloadManager;
@@ -246,12 +247,8 @@ public class SuggestionView extends ViewAdapter {
         albums.addAll(albumsPrefered);
         albums.addAll(albumsNewest);
         albums.addAll(albumsRare);
-        if (albums.size() > 0) {
-          for (Album album : albums) {
-            // Try creating the thumbnail
-            ThumbnailManager.refreshThumbnail(album, 100);
-          }
-        }
+        // Try creating the thumbnails
+        ThumbnailService.getInstance().requestAndWait(albums, 100);
       }
 
       @Override
@@ -322,9 +319,11 @@ public class SuggestionView extends ViewAdapter {
       @Override
       public Void doInBackground() {
         try {
-          // Fetch last.fm calls and downloads covers
+          // Fetch last.fm calls and downloads covers, both lookups run concurrently
+          Future<SimilarArtistsInfo> similarArtists = LastFmService.getInstance()
+              .getSimilarArtistsAsync(artist);
           preFetchOthersAlbum();
-          preFetchSimilarArtists();
+          preFetchSimilarArtists(similarArtists);
         } catch (Exception e) {
           Log.error(e);
         }
@@ -370,13 +369,15 @@ public class SuggestionView extends ViewAdapter {
   }
 
   /**
-   * Pre-load other album (done outside the EDT).
-     *
+   * Pre-load similar artists (done outside the EDT).
+   *
+   * @param similarArtists the similar artists lookup
+   *
    * @throws Exception the exception
    */
-  void preFetchSimilarArtists() throws Exception {
-    // Perform last.fm calls
-    similar = LastFmService.getInstance().getSimilarArtists(artist);
+  void preFetchSimilarArtists(Future<SimilarArtistsInfo> similarArtists) throws Exception {
+    // Wait for the last.fm calls
+    similar = similarArtists.get();
     // artists is null for void (unknown) similar artists
     if (similar != null && similar.getArtists() != null) {
       List<ArtistInfo> artists = similar.getArtists();
@@ -235,7 +235,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
    */
   @SuppressWarnings("unchecked")
   public void populateTreeByGenre() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getTracks());
     Collections.sort(tracks, TrackManager.getInstance().getComparator());
     for (Track track : tracks) {
       if (!track.shouldBeHidden()) {
@@ -314,7 +314,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
    */
   @SuppressWarnings("unchecked")
   public void populateTreeByArtist() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getTracks());
     Collections.sort(tracks, TrackManager.getInstance().getComparator());
     for (Track track : tracks) {
       if (!track.shouldBeHidden()) {
@@ -372,7 +372,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
    */
   @SuppressWarnings("unchecked")
   public void populateTreeByYear() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getTracks());
     Collections.sort(tracks, TrackManager.getInstance().getComparator());
     for (Track track : tracks) {
       if (!track.shouldBeHidden()) {
@@ -429,7 +429,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
    * Fill the tree.
    */
   public void populateTreeByAlbum() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getTracks());
     Collections.sort(tracks, TrackManager.getInstance().getComparator());
     for (Track track : tracks) {
       if (!track.shouldBeHidden()) {
@@ -442,7 +442,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
    * Fill the tree by discovery.
    */
   public void populateTreeByDiscovery() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getTracks());
     Collections.sort(tracks, TrackManager.getInstance().getComparator());
     // Create separator nodes
     DefaultMutableTreeNode nodeWeekly = new DiscoveryDateNode(
@@ -507,7 +507,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
    * Fill the tree by Rate.
    */
   public void populateTreeByRate() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getTracks());
     Collections.sort(tracks, TrackManager.getInstance().getComparator());
     for (Track track : tracks) {
       if (!track.shouldBeHidden()) {
@@ -520,7 +520,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
    * Fill the tree by Hits.
    */
   public void populateTreeByHits() {
-    List<Track> tracks = TrackManager.getInstance().getTracks();
+    List<Track> tracks = new ArrayList<Track>(TrackManager.getInstance().getTracks());
     Collections.sort(tracks, TrackManager.getInstance().getComparator());
     for (Track track : tracks) {
       if (!track.shouldBeHidden()) {
@@ -911,8 +911,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
           }
         } else if (o instanceof TrackNode) {
           Track tested = ((TrackNode) o).getTrack();
-          // == here thanks to .intern optimization
-          if (tested.getID() == track.getID()) {
+          if (tested.equals(track)) {
             jtree.expandRow(i);
             jtree.scrollPathToVisible(jtree.getPathForRow(i));
           }
@@ -966,8 +965,7 @@ public class TracksTreeView extends AbstractTreeView implements ActionListener {
             }
           } else if (o instanceof TrackNode) {
             Track tested = ((TrackNode) o).getTrack();
-            // == here thanks to .intern optimization
-            if (tested.getID() == track.getID()) {
+              if (tested.equals(track)) {
               jtree.expandRow(i);
               jtree.getSelectionModel().addSelectionPath(jtree.getPathForRow(i));
             }
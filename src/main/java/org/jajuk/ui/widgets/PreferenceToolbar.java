@@ -24,7 +24,9 @@ import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Properties;
 import java.util.Set;
 
 import javax.swing.JComboBox;
@@ -97,12 +99,15 @@ public class PreferenceToolbar extends JajukJToolbar implements Observer {
       @Override
       public void actionPerformed(ActionEvent e) {
         File file = QueueModel.getPlayingFile();
+        Properties details = null;
         if (file != null) {
           Track track = file.getTrack();
           track.setPreference(3 - jcbPreference.getSelectedIndex());
+          details = new Properties();
+          details.put(Const.DETAIL_CONTENT, Collections.singletonList(track));
         }
         // Force immediate rating refresh (without using the rating manager)
-        ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED));
+        ObservationManager.notify(new JajukEvent(JajukEvents.RATE_CHANGED, details));
       }
     };
     jcbPreference.addActionListener(listener);
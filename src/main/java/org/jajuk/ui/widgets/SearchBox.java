@@ -36,7 +36,6 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.Collections;
 import java.util.List;
 
 import javax.swing.ActionMap;
@@ -244,11 +243,10 @@ public class SearchBox extends JTextField implements KeyListener, ListSelectionL
         public Void doInBackground() {
           try {
             UtilGUI.waiting();
+            // Tracks are returned by relevance
             resu = TrackManager.getInstance().search(sTyped);
-            // Add web radio names
+            // Add web radio names (already sorted)
             resu.addAll(WebRadioHelper.search(sTyped));
-            // Sort the whole list
-            Collections.sort(resu);
           } catch (Exception e) {
             Log.error(e);
           }
@@ -28,6 +28,7 @@ import java.awt.event.WindowEvent;
 import java.io.File;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.BorderFactory;
@@ -84,6 +85,8 @@ public class DeviceWizard extends JajukJDialog implements ActionListener, Const
   private final JCheckBox jcbRefresh;
   /** Auto-mount checkbox. */
   private final JCheckBox jcbAutoMount;
+  /** Watch checkbox. */
+  private final JCheckBox jcbWatch;
   /** Auto-refresh interval. */
   private final JTextField jtfAutoRefresh;
   /** Device sync checkbox. */
@@ -114,7 +117,7 @@ public class DeviceWizard extends JajukJDialog implements ActionListener, Const
   @SuppressWarnings({ "rawtypes", "unchecked" })
   public DeviceWizard() {
     super(JajukMainWindow.getInstance(), true);
-    devices = DeviceManager.getInstance().getDevices();
+    devices = new ArrayList<Device>(DeviceManager.getInstance().getDevices());
     addWindowListener(new WindowAdapter() {
       @Override
       public void windowActivated(final WindowEvent e) {
@@ -149,6 +152,8 @@ public class DeviceWizard extends JajukJDialog implements ActionListener, Const
     jcbAutoMount = new JCheckBox(Messages.getString("DeviceWizard.8"));
     jcbAutoMount.setToolTipText(Messages.getString("DeviceWizard.49"));
     jcbAutoMount.addActionListener(this);
+    jcbWatch = new JCheckBox(Messages.getString("DeviceWizard.56"));
+    jcbWatch.setToolTipText(Messages.getString("DeviceWizard.57"));
     JLabel jlAutoRefresh = new JLabel(Messages.getString("DeviceWizard.53"));
     jlAutoRefresh.setToolTipText(Messages.getString("DeviceWizard.50"));
     JLabel jlMinutes = new JLabel(Messages.getString("DeviceWizard.54"));
@@ -195,6 +200,7 @@ public class DeviceWizard extends JajukJDialog implements ActionListener, Const
     add(jlAutoRefresh);
     add(jtfAutoRefresh, "grow,split 2");
     add(jlMinutes, WRAP);
+    add(jcbWatch, WRAP);
     add(jcbRefresh, WRAP);
     add(jcbAutoMount, WRAP);
     add(jcboxSynchronized);
@@ -357,6 +363,7 @@ public class DeviceWizard extends JajukJDialog implements ActionListener, Const
               jtfUrl.getText());
         }
         device.setProperty(Const.XML_DEVICE_AUTO_MOUNT, jcbAutoMount.isSelected());
+        device.setProperty(Const.XML_DEVICE_WATCH, jcbWatch.isSelected());
         try {
           device.setProperty(Const.XML_DEVICE_AUTO_REFRESH, nformat.parse(jtfAutoRefresh.getText())
               .doubleValue());
@@ -470,6 +477,7 @@ public class DeviceWizard extends JajukJDialog implements ActionListener, Const
       jcbAutoMount.setSelected(false);
     }
     jtfAutoRefresh.setText(nformat.format(device1.getDoubleValue(Const.XML_DEVICE_AUTO_REFRESH)));
+    jcbWatch.setSelected(device1.getBooleanValue(Const.XML_DEVICE_WATCH));
     if (jcbSynchronized.getItemCount() == 0) {
       jcboxSynchronized.setEnabled(false);
       jcbSynchronized.setEnabled(false);
@@ -499,6 +507,7 @@ public class DeviceWizard extends JajukJDialog implements ActionListener, Const
     jcbRefresh.setSelected(true);
     jcbAutoMount.setSelected(true);
     jtfAutoRefresh.setText(nformat.format(Const.DEFAULT_REFRESH_INTERVAL_DIRECTORY));
+    jcbWatch.setSelected(false);
     jcboxSynchronized.setSelected(false);
     jrbUnidirSynchro.setSelected(true);// default synchro mode
     jrbBidirSynchro.setEnabled(false);
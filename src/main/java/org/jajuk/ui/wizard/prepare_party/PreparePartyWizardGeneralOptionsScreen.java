@@ -27,6 +27,7 @@ import java.awt.event.MouseListener;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -172,7 +173,7 @@ public class PreparePartyWizardGeneralOptionsScreen extends Screen implements Ac
       jcbOneMedia = new JCheckBox(Messages.getString("PreparePartyWizard.16"));
       jcbOneMedia.setToolTipText(Messages.getString("PreparePartyWizard.17"));
       jcbMedia = new JComboBox();
-      List<Type> types = TypeManager.getInstance().getTypes();
+      List<Type> types = new ArrayList<Type>(TypeManager.getInstance().getTypes());
       // sort the list on extension here
       Collections.sort(types, new TypeComparator());
       for (Type type : types) {
@@ -27,7 +27,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jajuk.services.core.SessionService;
 import org.jajuk.services.notification.NotificatorTypes;
@@ -38,6 +40,11 @@ import org.jajuk.util.log.Log;
 /**
  * Manage all the configuration and user preferences of jajuk.
  * <p>
+ * Typed getters read an immutable {@link ConfSnapshot} of the parsed values,
+ * swapped at each change done through this class, so they never lock nor
+ * parse. Hot code can read the snapshot fields directly.
+ * </p>
+ * <p>
  * Singleton
  */
 public final class Conf implements Const {
@@ -45,9 +52,14 @@ public final class Conf implements Const {
   private static volatile Properties properties = new Properties();
   /** Default properties cache. */
   private static volatile Properties defaults = new Properties();
+  /** Parsed values of the current properties. */
+  private static volatile ConfSnapshot snapshot;
+  /** Configuration change listeners. */
+  private static List<ConfListener> listeners = new CopyOnWriteArrayList<ConfListener>();
   static {
     setDefaultProperties();
     properties = (Properties) properties.clone();
+    refresh();
   }
 
   /**
@@ -77,15 +89,7 @@ public final class Conf implements Const {
    * @return boolean value of the property named pName.
    */
   public static boolean getBoolean(String pName) {
-    boolean out = false;
-    try {
-      out = Boolean.parseBoolean(properties.getProperty(pName));
-    } catch (Exception e) {
-      out = Boolean.parseBoolean(defaults.getProperty(pName));
-      Log.debug("Cannot parse property: " + pName);
-      Log.debug(e);
-    }
-    return out;
+    return snapshot.getBoolean(pName);
   }
 
   /**
@@ -107,15 +111,7 @@ public final class Conf implements Const {
    * @return float value of the property named pName.
    */
   public static float getFloat(String pName) {
-    float out = 0f;
-    try {
-      out = Float.parseFloat(properties.getProperty(pName));
-    } catch (Exception e) {
-      out = Float.parseFloat(defaults.getProperty(pName));
-      Log.debug("Cannot parse property: " + pName);
-      Log.debug(e);
-    }
-    return out;
+    return snapshot.getFloat(pName);
   }
 
   /**
@@ -127,15 +123,59 @@ public final class Conf implements Const {
    * @return int value of the property named pName.
    */
   public static int getInt(String pName) {
-    int out = 0;
-    try {
-      out = Integer.parseInt(properties.getProperty(pName));
-    } catch (NumberFormatException e) {
-      out = Integer.parseInt(defaults.getProperty(pName));
-      Log.debug("Cannot parse property: " + pName);
-      Log.debug(e);
+    return snapshot.getInt(pName);
+  }
+
+  /**
+   * Gets the parsed values of the current configuration.
+   * 
+   * @return the current snapshot, never changed
+   */
+  public static ConfSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Register a configuration change listener.
+   * 
+   * @param listener 
+   */
+  public static void addListener(ConfListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Unregister a configuration change listener.
+   * 
+   * @param listener 
+   */
+  public static void removeListener(ConfListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Parse the current properties into a new snapshot and notify the listeners.
+   */
+  private static void refresh() {
+    ConfSnapshot previous;
+    ConfSnapshot current;
+    synchronized (Conf.class) {
+      // Work on copies : properties are still changed directly by some code
+      current = new ConfSnapshot((Properties) properties.clone(),
+          (Properties) defaults.clone());
+      previous = snapshot;
+      snapshot = current;
+    }
+    if (previous == null) {
+      return;
+    }
+    for (ConfListener listener : listeners) {
+      try {
+        listener.confChanged(previous, current);
+      } catch (Exception e) {
+        Log.error(e);
+      }
     }
-    return out;
   }
 
   /**
@@ -147,6 +187,7 @@ public final class Conf implements Const {
     String defaultValue = (String) defaults.get(property);
     if (defaultValue != null) {
       properties.put(property, defaultValue);
+      refresh();
     } else {
       Log.debug("Cannot reset thsi property: " + property);
     }
@@ -211,6 +252,10 @@ public final class Conf implements Const {
     defaults.put(CONF_BACKUP_SIZE, "40");
     defaults.put(CONF_PATTERN_REFACTOR, PATTERN_DEFAULT_REORG);
     defaults.put(CONF_COLLECTION_CHARSET, "UTF-8");
+    defaults.put(CONF_COLLECTION_JOURNAL_MAX_SIZE, "4096");
+    defaults.put(CONF_COLLECTION_BINARY_SNAPSHOT, TRUE);
+    defaults.put(CONF_REFRESH_THREADS, "4");
+    defaults.put(CONF_PLAYING_POSITION_FLUSH_INTERVAL, "10");
     defaults.put(CONF_NETWORK_USE_PROXY, FALSE);
     defaults.put(CONF_NETWORK_NONE_INTERNET_ACCESS, FALSE);
     // default proxy name, just a guess
@@ -323,6 +368,9 @@ public final class Conf implements Const {
     defaults.put(CONF_TARGET_WORKSPACE_PATH, UtilSystem.getUserHome());
     // Make a copy of default values
     properties = (Properties) defaults.clone();
+    if (snapshot != null) {
+      refresh();
+    }
   }
 
   /**
@@ -367,6 +415,7 @@ public final class Conf implements Const {
       return;
     }
     properties.setProperty(sName, sValue);
+    refresh();
     try {
       commit();
     } catch (IOException e) {
@@ -383,6 +432,7 @@ public final class Conf implements Const {
     for (String propertyName : properties.keySet()) {
       Conf.properties.setProperty(propertyName, properties.get(propertyName));
     }
+    refresh();
     try {
       commit();
     } catch (IOException e) {
@@ -439,6 +489,7 @@ public final class Conf implements Const {
         } finally {
           str.close();
         }
+        refresh();
       }
     } catch (Exception e) {
       Log.error(e);
@@ -448,6 +499,8 @@ public final class Conf implements Const {
 
   /**
    * Gets the properties.
+   * <br/>Changes done directly on them are not seen by the typed getters until
+   * the next change done through this class.
    * 
    * @return Returns the properties.
    */
@@ -462,5 +515,6 @@ public final class Conf implements Const {
    */
   public static void removeProperty(String sKey) {
     properties.remove(sKey);
+    refresh();
   }
 }
@@ -0,0 +1,36 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+/**
+ * Listener of the configuration changes, see
+ * {@link Conf#addListener(ConfListener)}.
+ */
+public interface ConfListener {
+  /**
+   * Called synchronously, in the changing thread, once a new configuration
+   * snapshot is in place.
+   *
+   * @param previous the snapshot before the change
+   * @param current the snapshot after the change
+   */
+  void confChanged(ConfSnapshot previous, ConfSnapshot current);
+}
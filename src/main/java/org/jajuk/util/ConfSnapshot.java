@@ -0,0 +1,207 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.jajuk.util.log.Log;
+
+/**
+ * Immutable view of the configuration with already parsed values.
+ * <p>
+ * A new snapshot is built by {@link Conf} at each configuration change, so
+ * reading a value doesn't lock nor parse anything. Values read very often are
+ * also available as plain fields.
+ * </p>
+ * <p>
+ * Like {@link Conf}, a value that cannot be parsed is replaced by the parsed
+ * default value.
+ * </p>
+ */
+public final class ConfSnapshot {
+  /** Names of the properties whose value is "true". */
+  private final Set<String> trueProperties;
+  /** Name -> value of the properties parsable as an integer. */
+  private final Map<String, Integer> ints;
+  /** Name -> value of the properties parsable as a float. */
+  private final Map<String, Float> floats;
+  /** Cross fade duration (sec). */
+  private final int fadeDuration;
+  /** Whether items located on unmounted devices are hidden. */
+  private final boolean hideUnmounted;
+  /** Whether filters patterns are regular expressions. */
+  private final boolean regexp;
+
+  /**
+   * Instantiates a new snapshot, parsing all the values.
+   *
+   * @param properties the properties, not changed during the call
+   * @param defaults the default properties, not changed during the call
+   */
+  ConfSnapshot(Properties properties, Properties defaults) {
+    int size = properties.size() * 2;
+    trueProperties = new HashSet<String>(size);
+    ints = new HashMap<String, Integer>(size);
+    floats = new HashMap<String, Float>(size);
+    for (String name : properties.stringPropertyNames()) {
+      String value = properties.getProperty(name);
+      if (Boolean.parseBoolean(value)) {
+        trueProperties.add(name);
+      }
+      Integer intValue = parseInt(value);
+      if (intValue == null) {
+        intValue = parseInt(defaults.getProperty(name));
+      }
+      if (intValue != null) {
+        ints.put(name, intValue);
+      }
+      Float floatValue = parseFloat(value);
+      if (floatValue == null) {
+        floatValue = parseFloat(defaults.getProperty(name));
+      }
+      if (floatValue != null) {
+        floats.put(name, floatValue);
+      }
+    }
+    Integer duration = ints.get(Const.CONF_FADE_DURATION);
+    fadeDuration = (duration == null) ? 0 : duration;
+    hideUnmounted = trueProperties.contains(Const.CONF_OPTIONS_HIDE_UNMOUNTED);
+    regexp = trueProperties.contains(Const.CONF_REGEXP);
+  }
+
+  /**
+   * Parse an integer.
+   *
+   * @param value
+   *
+   * @return the integer or null if the value cannot be parsed
+   */
+  private static Integer parseInt(String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parse a float.
+   *
+   * @param value
+   *
+   * @return the float or null if the value cannot be parsed
+   */
+  private static Float parseFloat(String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Float.valueOf(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Return the value of a property as a boolean.
+   *
+   * @param pName Name of the property.
+   *
+   * @return boolean value of the property named pName, false if unknown.
+   */
+  public boolean getBoolean(String pName) {
+    return trueProperties.contains(pName);
+  }
+
+  /**
+   * Return the value of a property as an integer or default value if value
+   * cannot be parsed.
+   *
+   * @param pName Name of the property.
+   *
+   * @return int value of the property named pName.
+   *
+   * @throws NumberFormatException if neither the value nor the default value
+   * can be parsed
+   */
+  public int getInt(String pName) {
+    Integer value = ints.get(pName);
+    if (value == null) {
+      Log.debug("Cannot parse property: " + pName);
+      throw new NumberFormatException("Cannot parse property: " + pName);
+    }
+    return value;
+  }
+
+  /**
+   * Return the value of a property as a float or default value if value
+   * cannot be parsed.
+   *
+   * @param pName Name of the property.
+   *
+   * @return float value of the property named pName.
+   *
+   * @throws NumberFormatException if neither the value nor the default value
+   * can be parsed
+   */
+  public float getFloat(String pName) {
+    Float value = floats.get(pName);
+    if (value == null) {
+      Log.debug("Cannot parse property: " + pName);
+      throw new NumberFormatException("Cannot parse property: " + pName);
+    }
+    return value;
+  }
+
+  /**
+   * Gets the cross fade duration.
+   *
+   * @return the {@link Const#CONF_FADE_DURATION} value (sec)
+   */
+  public int getFadeDuration() {
+    return fadeDuration;
+  }
+
+  /**
+   * Checks whether items located on unmounted devices are hidden.
+   *
+   * @return the {@link Const#CONF_OPTIONS_HIDE_UNMOUNTED} value
+   */
+  public boolean isHideUnmounted() {
+    return hideUnmounted;
+  }
+
+  /**
+   * Checks whether filters patterns are regular expressions.
+   *
+   * @return the {@link Const#CONF_REGEXP} value
+   */
+  public boolean isRegexp() {
+    return regexp;
+  }
+}
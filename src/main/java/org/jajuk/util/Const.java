@@ -60,6 +60,8 @@ public interface Const {
   int INC_RATE_TIME = 20;
   /** Max number of concurrent executions by observation manager for a given event. */
   int MAX_EVENT_EXECUTIONS = 15;
+  /** Observers taking more time than this to handle an event are reported, in ms. */
+  int SLOW_OBSERVER_DELAY = 1000;
   /** Min number of tracks in a DJ selection without track unicity. */
   int MIN_TRACKS_NUMBER_WITHOUT_UNICITY = 100;
   /** Default number of tracks in a transition. */
@@ -125,12 +127,18 @@ public interface Const {
   String FILE_SAVING_FILE_EXTENSION = "saving";
   String FILE_SAVED_PROOF_FILE_EXTENSION = "proof";
   String FILE_COLLECTION = "collection.xml";
+  String FILE_COLLECTION_JOURNAL = "collection.journal";
+  String FILE_COLLECTION_BINARY = "collection.bin";
+  String FILE_COVER_INDEX = "covers.bin";
+  String FILE_TAG_CACHE = "tags.bin";
+  String FILE_DUPLICATE_INDEX = "duplicates.bin";
   String FILE_REPORTING_CACHE_FILE = "cache/report";
   /** The Constant XML_EXT.   */
   String FILE_XML_EXT = ".xml";
   /** Name of the preferences property file. */
   String FILE_CONFIGURATION = "conf.properties";
   String FILE_HISTORY = "history.xml";
+  String FILE_HISTORY_JOURNAL = "history.journal";
   String FILE_DEFAULT_COVER = "jajuk.file.default.cover";
   String FILE_ABSOLUTE_DEFAULT_COVER = "default-cover.";
   // langpack name : jajuk_<locale>.properties
@@ -163,6 +171,10 @@ public interface Const {
   String LAST_FM_ARTIST_WIKI_CACHE_DIR = "artist_wiki";
   /** Last.fm artist submission cache dir. */
   String LAST_FM_SUBMISSION_CACHE_DIR = "submission";
+  /** Last.fm infos store, in the Last.fm cache dir. */
+  String LAST_FM_INFO_STORE = "info.store";
+  /** Last.fm pending submissions queue, in the submission cache dir. */
+  String LAST_FM_SUBMISSION_QUEUE = "submissions.queue";
   String FILE_INTERNAL_CACHE = "internal";
   String FILE_THUMBS = "thumbs";
   String FILE_THUMB_NO_COVER = "nocover.png";
@@ -177,6 +189,7 @@ public interface Const {
   /** Preset web radios file. */
   String FILE_WEB_RADIOS_PRESET = "preset_radios.xml";
   String FILE_FIFO = "fifo.lst";
+  String FILE_FIFO_JOURNAL = "fifo.journal";
   /** Bootstrap file name. */
   String FILE_BOOTSTRAP = ".jajuk_bootstrap.xml";
   /** Old (pre-1.9) bootstrap file name */
@@ -371,6 +384,14 @@ public interface Const {
   String CONF_BACKUP_SIZE = "jajuk.backup_size";
   /** Collection file charset (utf-8 or utf-16). */
   String CONF_COLLECTION_CHARSET = "jajuk.collection_charset";
+  /** Collection journal size in KB over which the full collection file is rewritten. */
+  String CONF_COLLECTION_JOURNAL_MAX_SIZE = "jajuk.collection_journal_max_size";
+  /** Write and load a binary snapshot of the collection to speed up startup. */
+  String CONF_COLLECTION_BINARY_SNAPSHOT = "jajuk.collection_binary_snapshot";
+  /** Number of threads reading tags during a device refresh. */
+  String CONF_REFRESH_THREADS = "jajuk.refresh_threads";
+  /** Max delay between two writes of the playing position, in secs. */
+  String CONF_PLAYING_POSITION_FLUSH_INTERVAL = "jajuk.playing_position_flush_interval";
   /** Path of workspace the user wants to use but may be unavailable */
   String CONF_TARGET_WORKSPACE_PATH = "jajuk.target_workspace";
   String CONF_NETWORK_USE_PROXY = "jajuk.network.use_proxy";
@@ -596,6 +617,7 @@ public interface Const {
   String XML_DEVICE_MOUNT_POINT = "mount_point";
   String XML_DEVICE_AUTO_REFRESH = "auto_refresh";
   String XML_DEVICE_AUTO_MOUNT = "auto_mount";
+  String XML_DEVICE_WATCH = "watch";
   String XML_DEVICE_SYNCHRO_SOURCE = "synchro_source";
   String XML_DEVICE_SYNCHRO_MODE = "synchro_mode";
   String XML_EXPANDED = "exp"; // can be 'y' or 'n'
@@ -667,7 +689,7 @@ public interface Const {
       XML_PLAYLIST_FILES, XML_TRACK_COMMENT, XML_ANY, XML_TRACK_ORDER, XML_DEVICE_SYNCHRO_MODE,
       XML_DEVICE_SYNCHRO_SOURCE, XML_FILE_DATE, XML_TRACK_TOTAL_PLAYTIME, XML_TRACK_PREFERENCE,
       XML_TRACK_BANNED, XML_TRACK_DISC_NUMBER, XML_ALBUM_ARTIST, XML_ALBUM_DISC_ID,
-      XML_TRACK_SCROBBLE, XML_ORIGIN };
+      XML_TRACK_SCROBBLE, XML_ORIGIN, XML_DEVICE_WATCH };
   /** Option name. */
   String PROPERTY_SEPARATOR = "Property_";
   // Formats
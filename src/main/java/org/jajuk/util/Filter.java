@@ -22,8 +22,12 @@ package org.jajuk.util;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -36,6 +40,10 @@ import org.jajuk.util.log.Log;
  * Filter on meta information.
  */
 public class Filter {
+  /** Lists of at least this size are filtered in parallel. */
+  private static final int PARALLEL_THRESHOLD = 10000;
+  /** Size of the list chunks filtered in parallel. */
+  private static final int CHUNK_SIZE = 2000;
   /** Key. */
   String key;
   /** Value*. */
@@ -100,14 +108,15 @@ public class Filter {
   /**
    * Filter a list.
    * <p>
-   * Work on the input collection (for performance reasons and to save memory we
-   * don't create a new list)
+   * The filter expression is compiled once, then matched against each item.
+   * Large lists are split into chunks filtered in parallel.
    * </p>
    * <p>
-   * This filter is not thread safe.
+   * The input list is not changed, a new list is returned (except if there is
+   * nothing to filter).
    * </p>
    *
-   * @param list The input list to filter. Filtering is done in-place on this list.
+   * @param list The input list to filter.
    * @param filter The filter to apply on the list.
    */
   public static <T extends Item> List<T> filterItems(List<T> list, Filter filter,
@@ -116,62 +125,180 @@ public class Filter {
     if (filter == null || filter.getValue() == null) {
       return list;
     }
-    // Check if property is not the "fake" any property
-    boolean bAny = (filter.getProperty() == null || "any".equals(filter.getProperty()));
-    String comparator = null;
-    String checked = filter.getValue();
     // If checked is void, return the list as it
-    if (StringUtils.isBlank(checked)) {
+    if (StringUtils.isBlank(filter.getValue())) {
       return list;
     }
     // If pattern is wrong, return a void list
+    ItemMatcher matcher;
     try {
-      Pattern.compile(checked);
+      matcher = filter.compile();
     } catch (PatternSyntaxException e) {
-      Log.debug("Wrong regexp pattern: " + checked);
+      Log.debug("Wrong regexp pattern: " + filter.getValue());
       return Collections.emptyList();
     }
-    List<T> newList = new ArrayList<T>();
-    Iterator<T> it = list.iterator();
-    while (it.hasNext()) {
-      T item = it.next();
-      // If none property set, the search if global "any"
-      if (bAny) {
-        comparator = item.getAny();
-      } else {
-        if (filter.isHuman()) {
-          comparator = item.getHumanValue(filter.getProperty());
-        } else {
-          comparator = item.getStringValue(filter.getProperty());
+    if (list.size() < PARALLEL_THRESHOLD) {
+      return filterRange(list, matcher, 0, list.size());
+    }
+    if (!(list instanceof RandomAccess)) {
+      list = new ArrayList<T>(list);
+    }
+    return PoolHolder.POOL.invoke(new FilterTask<T>(list, matcher, 0, list.size()));
+  }
+
+  /**
+   * Compile the filter expression into a reusable matcher.
+   *
+   * @return the matcher
+   *
+   * @throws PatternSyntaxException if the expression is not a valid regexp
+   */
+  private ItemMatcher compile() {
+    // The expression is also a regexp in non exact mode, check it anyway
+    final Pattern pattern = Pattern.compile(sValue);
+    if (bExact) {
+      return new ItemMatcher() {
+        @Override
+        public boolean matches(Item item) {
+          // Check every item property (no not use getAny() string will not match
+          // as it is a concatenation of all properties)
+          for (String propertyName : item.getProperties().keySet()) {
+            // Ignore technical/invisible property (id for instance)
+            PropertyMetaInformation meta = item.getMeta(propertyName);
+            if (!meta.isVisible()) {
+              continue;
+            }
+            String value = item.getHumanValue(propertyName);
+            // Escape the string so regexp ignore special characters
+            value = UtilString.escapeString(value);
+            if (pattern.matcher(value).matches()) {
+              return true;
+            }
+          }
+          return false;
         }
-      }
-      // perform the test
-      boolean bMatch = false;
-      if (filter.isExact()) {
-        // Check every item property (no not use getAny() string will not match
-        // as it is a concatenation of all properties)
-        for (String propertyName : item.getProperties().keySet()) {
-          // Ignore technical/invisible property (id for instance)
-          PropertyMetaInformation meta = item.getMeta(propertyName);
-          if (!meta.isVisible()) {
-            continue;
+      };
+    }
+    // Same semantic than UtilString.matchesIgnoreCaseAndOrder() but the
+    // expression is tokenized once
+    List<String> tokenList = new ArrayList<String>();
+    StringTokenizer st = new StringTokenizer(sValue.toLowerCase(Locale.getDefault()), " ");
+    while (st.hasMoreTokens()) {
+      tokenList.add(st.nextToken());
+    }
+    final String[] tokens = tokenList.toArray(new String[tokenList.size()]);
+    // Check if property is not the "fake" any property
+    final boolean bAny = (key == null || "any".equals(key));
+    return new ItemMatcher() {
+      @Override
+      public boolean matches(Item item) {
+        String comparator;
+        // If none property set, the search if global "any"
+        if (bAny) {
+          comparator = item.getAnySearchKey();
+        } else {
+          if (bHuman) {
+            comparator = item.getHumanValue(key);
+          } else {
+            comparator = item.getStringValue(key);
           }
-          String value = item.getHumanValue(propertyName);
-          // Escape the string so regexp ignore special characters
-          value = UtilString.escapeString(value);
-          if (value.matches(checked)) {
-            bMatch = true;
-            break;
+          comparator = comparator.toLowerCase(Locale.getDefault());
+        }
+        for (String token : tokens) {
+          if (comparator.indexOf(token) == -1) {
+            return false;
           }
         }
-      } else {
-        // Do not use Regexp matches() method, too costly
-        bMatch = UtilString.matchesIgnoreCaseAndOrder(checked, comparator);
+        return true;
       }
-      if (bMatch) {
+    };
+  }
+
+  /**
+   * Filter a range of a list.
+   *
+   * @param list the list to filter
+   * @param matcher the compiled filter
+   * @param from first index (inclusive)
+   * @param to last index (exclusive)
+   *
+   * @return the matching items of the range, in the list order
+   */
+  private static <T extends Item> List<T> filterRange(List<T> list, ItemMatcher matcher,
+      int from, int to) {
+    List<T> newList = new ArrayList<T>();
+    for (int i = from; i < to; i++) {
+      T item = list.get(i);
+      if (matcher.matches(item)) {
         newList.add(item);
       }
     }
     return newList;
   }
+
+  /**
+   * Compiled filter expression.
+   */
+  private interface ItemMatcher {
+    /**
+     * Return whether an item matches the filter.
+     *
+     * @param item the item to test
+     *
+     * @return whether the item matches
+     */
+    boolean matches(Item item);
+  }
+
+  /**
+   * Filtering pool, created at first parallel filtering.
+   */
+  private static class PoolHolder {
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+  }
+
+  /**
+   * Filtering of a list range, split in two sub-tasks while the range is
+   * larger than a chunk.
+   */
+  private static class FilterTask<T extends Item> extends RecursiveTask<List<T>> {
+    private static final long serialVersionUID = 1L;
+    private final List<T> list;
+    private final ItemMatcher matcher;
+    private final int from;
+    private final int to;
+
+    /**
+     * Instantiates a new filter task.
+     *
+     * @param list the list to filter
+     * @param matcher the compiled filter
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     */
+    FilterTask(List<T> list, ItemMatcher matcher, int from, int to) {
+      this.list = list;
+      this.matcher = matcher;
+      this.from = from;
+      this.to = to;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.concurrent.RecursiveTask#compute()
+     */
+    @Override
+    protected List<T> compute() {
+      if (to - from <= CHUNK_SIZE) {
+        return filterRange(list, matcher, from, to);
+      }
+      int middle = (from + to) >>> 1;
+      FilterTask<T> right = new FilterTask<T>(list, matcher, middle, to);
+      right.fork();
+      List<T> out = new FilterTask<T>(list, matcher, from, middle).compute();
+      out.addAll(right.join());
+      return out;
+    }
+  }
 }
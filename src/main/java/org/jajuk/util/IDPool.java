@@ -0,0 +1,60 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Canonical item IDs pool.
+ * <p>
+ * All item IDs (computed or read from the collection files) are stored once
+ * here so that every reference to a given ID shares the same String instance.
+ * This saves memory and allows the fast reference comparison made by
+ * <code>Item.equals()</code>. Unlike <code>String.intern()</code>, lookups
+ * don't contend on the JVM string table. Like it, the pool only keeps weak
+ * references so the IDs of removed or renamed items can be garbage collected.
+ * </p>
+ */
+public final class IDPool {
+  /** Weak ID interner. */
+  private static final Interner<String> POOL = Interners.newWeakInterner();
+
+  /**
+   * private constructor to avoid instantiating utility class.
+   */
+  private IDPool() {
+  }
+
+  /**
+   * Return the canonical instance of an ID.
+   * 
+   * @param sID the ID, can be null
+   * 
+   * @return the canonical ID instance, null if the ID is null
+   */
+  public static String canonical(String sID) {
+    if (sID == null) {
+      return null;
+    }
+    return POOL.intern(sID);
+  }
+}
@@ -41,6 +41,16 @@ final public class IconLoader {
   private IconLoader() {
   }
 
+  /**
+   * Load all the icons in the cache. Icons are used by the EDT, call it from
+   * the EDT.
+   */
+  public static void preloadIcons() {
+    for (JajukIcons icon : JajukIcons.values()) {
+      getIcon(icon);
+    }
+  }
+
   /**
    * Gets the no cover icon.
    * 
@@ -0,0 +1,418 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.util.log.Log;
+
+/**
+ * Append-only file of checksummed records, shared by the journals.
+ * <p>
+ * The file starts with a header : [magic (int)][format version (int)][snapshot
+ * ID (long)]. The snapshot ID identifies the snapshot the records apply to, so
+ * records left over by a crash during a snapshot writing are ignored ; it is 0
+ * for files without snapshot. Record format : [payload length (int)][payload]
+ * [CRC32 of the payload (long)].
+ * </p>
+ * <p>
+ * A truncated or corrupted record (typically after a crash during an append)
+ * ends the replay and the file is truncated there, so the next appends can be
+ * read back. A file with an unknown header or applying to another snapshot is
+ * emptied the same way. Users only define the payloads.
+ * </p>
+ */
+public final class JournalFile {
+  /** Header length in bytes : magic, version and snapshot ID. */
+  public static final int HEADER_LENGTH = 16;
+  /** Journal size in bytes under which no compaction is performed. */
+  public static final long MIN_COMPACTION_SIZE = 64 * 1024;
+  /** I/O buffers size. */
+  private static final int BUFFER_SIZE = 65536;
+  /** Journal file. */
+  private final File file;
+  /** Magic number. */
+  private final int magic;
+  /** Format version. */
+  private final int version;
+  /** Journal name, for logs. */
+  private final String name;
+
+  /**
+   * Writes a record payload.
+   *
+   * @param <T> the entries type
+   */
+  public interface PayloadWriter<T> {
+    /**
+     * Write an entry payload.
+     *
+     * @param entry
+     * @param out
+     *
+     * @return whether the entry has been written, false if it is skipped
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    boolean write(T entry, DataOutputStream out) throws IOException;
+  }
+
+  /**
+   * Replays a record payload.
+   */
+  public interface PayloadReader {
+    /**
+     * Replay a record payload.
+     *
+     * @param in the payload
+     *
+     * @return whether the record is valid, an invalid record ends the replay
+     * like a corrupted one
+     *
+     * @throws Exception the exception, an I/O exception means an invalid
+     * record
+     */
+    boolean read(DataInputStream in) throws Exception;
+  }
+
+  /**
+   * Instantiates a new journal file.
+   *
+   * @param file the file
+   * @param magic the magic number
+   * @param version the format version, to be increased at each format change
+   * @param name the journal name, for logs
+   */
+  public JournalFile(File file, int magic, int version, String name) {
+    this.file = file;
+    this.magic = magic;
+    this.version = version;
+    this.name = name;
+  }
+
+  /**
+   * Gets the file.
+   *
+   * @return the file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Gets the file length.
+   *
+   * @return the file length, 0 if it doesn't exist
+   */
+  public long length() {
+    return file.length();
+  }
+
+  /**
+   * Return whether the journal has records.
+   *
+   * @return whether the journal has records
+   */
+  public boolean hasRecords() {
+    return file.length() > HEADER_LENGTH;
+  }
+
+  /**
+   * Return whether the journal is large enough to rewrite its snapshot.
+   *
+   * @param snapshotLength the snapshot file length
+   *
+   * @return whether the journal should be compacted
+   */
+  public boolean isCompactionRequired(long snapshotLength) {
+    return file.length() > Math.max(MIN_COMPACTION_SIZE, snapshotLength);
+  }
+
+  /**
+   * Gets the snapshot ID the journal applies to.
+   *
+   * @return the snapshot ID, -1 if the header is missing or unknown
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public long getSnapshotID() throws IOException {
+    if (file.length() < HEADER_LENGTH) {
+      return -1;
+    }
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      return readHeader(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Read the header.
+   *
+   * @param in
+   *
+   * @return the snapshot ID, -1 if the header is unknown
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private long readHeader(DataInputStream in) throws IOException {
+    if (in.readInt() != magic || in.readInt() != version) {
+      return -1;
+    }
+    return in.readLong();
+  }
+
+  /**
+   * Restart the journal : drop all the records and write a new header.
+   *
+   * @param snapshotID the snapshot ID the next records apply to
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized void restart(long snapshotID) throws IOException {
+    FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+    FileOutputStream fos = new FileOutputStream(file, false);
+    try {
+      DataOutputStream out = new DataOutputStream(fos);
+      writeHeader(out, snapshotID);
+      out.flush();
+      fos.getChannel().force(false);
+    } finally {
+      fos.close();
+    }
+  }
+
+  /**
+   * Write the header.
+   *
+   * @param out
+   * @param snapshotID
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeHeader(DataOutputStream out, long snapshotID) throws IOException {
+    out.writeInt(magic);
+    out.writeInt(version);
+    out.writeLong(snapshotID);
+  }
+
+  /**
+   * Append records and force them to disk. A journal without header is
+   * restarted for the snapshot 0 first.
+   *
+   * @param <T> the entries type
+   * @param entries the entries
+   * @param writer the payload writer
+   *
+   * @return the number of records written
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized <T> int append(List<T> entries, PayloadWriter<T> writer)
+      throws IOException {
+    if (file.length() < HEADER_LENGTH) {
+      restart(0);
+    }
+    FileOutputStream fos = new FileOutputStream(file, true);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+      int count = writeRecords(out, entries, writer);
+      out.flush();
+      fos.getChannel().force(false);
+      return count;
+    } finally {
+      fos.close();
+    }
+  }
+
+  /**
+   * Replace the journal by the given records, with recovery support.
+   *
+   * @param <T> the entries type
+   * @param snapshotID the snapshot ID the records apply to
+   * @param entries the entries
+   * @param writer the payload writer
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized <T> void rewrite(long snapshotID, List<T> entries,
+      PayloadWriter<T> writer) throws IOException {
+    File saving = new File(file.getAbsolutePath() + "." + Const.FILE_SAVING_FILE_EXTENSION);
+    FileOutputStream fos = new FileOutputStream(saving, false);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE));
+      writeHeader(out, snapshotID);
+      writeRecords(out, entries, writer);
+      out.flush();
+      fos.getChannel().force(false);
+    } finally {
+      fos.close();
+    }
+    UtilSystem.saveFileWithRecoverySupport(file);
+  }
+
+  /**
+   * Write records.
+   *
+   * @param <T> the entries type
+   * @param out
+   * @param entries
+   * @param writer
+   *
+   * @return the number of records written
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static <T> int writeRecords(DataOutputStream out, List<T> entries,
+      PayloadWriter<T> writer) throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+    DataOutputStream payloadOut = new DataOutputStream(payload);
+    CRC32 crc = new CRC32();
+    int count = 0;
+    for (T entry : entries) {
+      payload.reset();
+      if (!writer.write(entry, payloadOut)) {
+        continue;
+      }
+      payloadOut.flush();
+      crc.reset();
+      crc.update(payload.toByteArray());
+      out.writeInt(payload.size());
+      payload.writeTo(out);
+      out.writeLong(crc.getValue());
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Replay the records applying to the given snapshot, oldest first. The file
+   * is truncated after the last valid record.
+   *
+   * @param snapshotID the snapshot ID
+   * @param reader the payload reader
+   *
+   * @return the number of records replayed
+   *
+   * @throws Exception the exception thrown by the reader
+   */
+  public synchronized int replay(long snapshotID, PayloadReader reader) throws Exception {
+    long length = file.length();
+    if (length == 0) {
+      return 0;
+    }
+    long end = 0;
+    int count = 0;
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file),
+        BUFFER_SIZE));
+    try {
+      if (length < HEADER_LENGTH || readHeader(in) != snapshotID) {
+        Log.debug("The " + name + " doesn't apply to the current snapshot, ignored");
+      } else {
+        end = HEADER_LENGTH;
+        CRC32 crc = new CRC32();
+        while (end < length) {
+          byte[] payload;
+          long checksum;
+          try {
+            int payloadLength = in.readInt();
+            if (payloadLength <= 0 || payloadLength > length - end) {
+              break;
+            }
+            payload = new byte[payloadLength];
+            in.readFully(payload);
+            checksum = in.readLong();
+          } catch (EOFException e) {
+            // Partial last record after a crash
+            break;
+          }
+          crc.reset();
+          crc.update(payload);
+          if (crc.getValue() != checksum || !readRecord(reader, payload)) {
+            break;
+          }
+          end += 4 + payload.length + 8;
+          count++;
+        }
+      }
+    } finally {
+      in.close();
+    }
+    if (end < length) {
+      if (end > 0) {
+        Log.warn("Corrupted " + name + " record, truncated after " + count + " record(s)");
+      }
+      truncate(end);
+    }
+    return count;
+  }
+
+  /**
+   * Replay a record.
+   *
+   * @param reader
+   * @param payload
+   *
+   * @return whether the record is valid
+   *
+   * @throws Exception the exception
+   */
+  private static boolean readRecord(PayloadReader reader, byte[] payload) throws Exception {
+    try {
+      return reader.read(new DataInputStream(new ByteArrayInputStream(payload)));
+    } catch (IOException e) {
+      // Payload shorter than expected
+      return false;
+    }
+  }
+
+  /**
+   * Truncate the file.
+   *
+   * @param length the new length
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void truncate(long length) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(length);
+      raf.getChannel().force(false);
+    } finally {
+      raf.close();
+    }
+  }
+}
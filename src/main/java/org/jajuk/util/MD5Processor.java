@@ -20,8 +20,9 @@
  */
 package org.jajuk.util;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -30,16 +31,36 @@ import org.jajuk.util.log.Log;
 /**
  * Convenient class to compute MD5 hashcodes and return them using predefined
  * base.
+ * <p>
+ * Hashes are the base 36 representation of the absolute value of the signed
+ * 128 bits MD5 digest, they are stored as item IDs in the collection file and
+ * must not change. This class is thread-safe.
+ * </p>
  */
 public final class MD5Processor {
-  private static MessageDigest msgDigest;
-  static {
-    try {
-      msgDigest = MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      Log.error(e);
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  /** Digits of the base 36 representation. */
+  private static final char[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+  /** 36^5, the largest power of 36 we can divide an unsigned int by using longs. */
+  private static final long CHUNK = 36L * 36 * 36 * 36 * 36;
+  /** Digits per chunk. */
+  private static final int CHUNK_DIGITS = 5;
+  /** 36^25 > 2^128 so a hash is 25 digits at most. */
+  private static final int MAX_DIGITS = 25;
+  /** Streams read buffer size. */
+  private static final int BUFFER_SIZE = 65536;
+  /** MessageDigest instances are not thread-safe, we use one per thread. */
+  private static final ThreadLocal<MessageDigest> DIGESTS = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      try {
+        return MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        Log.error(e);
+        return null;
+      }
     }
-  }
+  };
 
   /**
    * private constructor to avoid instantiating utility class.
@@ -48,24 +69,115 @@ public final class MD5Processor {
   }
 
   /**
-   * MD5 hashcoding, return a hashcode.
+   * MD5 hashcoding, return a hashcode to be used as an item ID.
    * 
    * @param sIn input String
    * 
    * @return hashed output
    */
   public static final String hash(String sIn) {
-    try {
-      msgDigest.update(sIn.getBytes("UTF-8"));
-    } catch (UnsupportedEncodingException e) {
-      // This should not happen
-      Log.error(e);
-      return null;
-    }
-    byte[] digest = msgDigest.digest();
-    // Important : we internalize the result of this computation
+    // Important : we pool the result of this computation
     // because all equals between items is done with '==' operator
     // against strings and new discovered items call this method
-    return new BigInteger(digest).abs().toString(36).intern();
+    return IDPool.canonical(digest(sIn));
+  }
+
+  /**
+   * MD5 hashcoding, return a hashcode not stored into the IDs pool. Use it for
+   * one-shot hashes like checksums or cache file names.
+   * 
+   * @param sIn input String
+   * 
+   * @return hashed output
+   */
+  public static final String digest(String sIn) {
+    return toBase36(DIGESTS.get().digest(sIn.getBytes(UTF8)));
+  }
+
+  /**
+   * MD5 hashcoding of bytes, return a hashcode not stored into the IDs pool.
+   * 
+   * @param bytes input bytes
+   * @param offset offset of the first byte to hash
+   * @param length number of bytes to hash
+   * 
+   * @return hashed output
+   */
+  public static final String digest(byte[] bytes, int offset, int length) {
+    MessageDigest md = DIGESTS.get();
+    md.reset();
+    md.update(bytes, offset, length);
+    return toBase36(md.digest());
+  }
+
+  /**
+   * MD5 hashcoding of a whole stream, return a hashcode not stored into the
+   * IDs pool. The stream is not closed.
+   * 
+   * @param in input stream
+   * 
+   * @return hashed output
+   * 
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static final String digest(InputStream in) throws IOException {
+    MessageDigest md = DIGESTS.get();
+    md.reset();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = in.read(buffer)) >= 0) {
+      md.update(buffer, 0, read);
+    }
+    return toBase36(md.digest());
+  }
+
+  /**
+   * Return the base 36 representation of the absolute value of a signed big
+   * endian 128 bits number, this is what
+   * <code>new BigInteger(digest).abs().toString(36)</code> returns without the
+   * intermediate objects.
+   * 
+   * @param digest the 16 bytes digest
+   * 
+   * @return the base 36 representation
+   */
+  static String toBase36(byte[] digest) {
+    int[] mag = new int[4];
+    for (int i = 0; i < 16; i++) {
+      mag[i >> 2] = (mag[i >> 2] << 8) | (digest[i] & 0xff);
+    }
+    if (mag[0] < 0) {
+      // Negative number, take its two's complement
+      long carry = 1;
+      for (int i = 3; i >= 0; i--) {
+        long value = (~mag[i] & 0xffffffffL) + carry;
+        mag[i] = (int) value;
+        carry = value >>> 32;
+      }
+    }
+    char[] buf = new char[MAX_DIGITS];
+    int pos = MAX_DIGITS;
+    int start = 0;
+    while (start < 4) {
+      // Divide the magnitude by 36^5, the remainder gives the next 5 digits
+      long rem = 0;
+      for (int i = start; i < 4; i++) {
+        long current = (rem << 32) | (mag[i] & 0xffffffffL);
+        mag[i] = (int) (current / CHUNK);
+        rem = current % CHUNK;
+      }
+      while (start < 4 && mag[start] == 0) {
+        start++;
+      }
+      for (int j = 0; j < CHUNK_DIGITS; j++) {
+        buf[--pos] = DIGITS[(int) (rem % 36)];
+        rem /= 36;
+        // No leading zeros
+        if (start == 4 && rem == 0) {
+          break;
+        }
+      }
+    }
+    return new String(buf, pos, MAX_DIGITS - pos);
   }
 }
@@ -20,9 +20,6 @@
  */
 package org.jajuk.util;
 
-import com.google.common.base.Charsets;
-import com.google.common.io.Files;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -46,8 +43,8 @@ import org.jajuk.events.JajukEvent;
 import org.jajuk.events.JajukEvents;
 import org.jajuk.events.ObservationManager;
 import org.jajuk.events.Observer;
-import org.jajuk.services.core.SessionService;
 import org.jajuk.services.dj.Ambience;
+import org.jajuk.services.players.PlaybackCheckpoint;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.services.players.StackItem;
 import org.jajuk.services.webradio.WebRadio;
@@ -194,11 +191,11 @@ public final class UtilFeatures {
     for (Item item : selection) {
       // computes logical selection if any
       if (item instanceof Track) {
-        files.add(((Track) item).getBestFile(Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED)));
+        files.add(((Track) item).getBestFile(Conf.getSnapshot().isHideUnmounted()));
       } else if (item instanceof LogicalItem) {
         List<Track> tracks = TrackManager.getInstance().getAssociatedTracks(item, true);
         for (Track track : tracks) {
-          files.add(track.getBestFile(Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED)));
+          files.add(track.getBestFile(Conf.getSnapshot().isHideUnmounted()));
         }
       }
       // computes physical selection if any
@@ -489,34 +486,19 @@ public final class UtilFeatures {
   }
 
   /**
-   * Return the last played track position as read from the position file from disk
+   * Return the last played track position.
    * @return the last played track position
    */
   public static float readPersistedPlayingPosition() {
-    float out = 0.0f;
-    java.io.File positionFile = SessionService.getConfFileByPath(Const.FILE_PLAYING_POSITION);
-    // Note that the position file is written by the player during playing
-    if (positionFile.exists()) {
-      try {
-        String content = Files.readFirstLine(positionFile, Charsets.UTF_8);
-        out = Float.parseFloat(content);
-      } catch (Exception e) {
-        Log.error(e);
-      }
-    }
-    return out;
+    return PlaybackCheckpoint.getInstance().getPosition();
   }
 
   /**
-   * Store the current played track position as a float to the position file
+   * Store the current played track position, it is written to disk
+   * asynchronously by the {@link PlaybackCheckpoint}.
    * @param position the playing position as a float. Example : 0.1
    */
   public static void storePersistedPlayingPosition(float position) {
-    java.io.File positionFile = SessionService.getConfFileByPath(Const.FILE_PLAYING_POSITION);
-    try {
-      Files.write(Float.toString(position).getBytes(), positionFile);
-    } catch (Exception e) {
-      Log.error(e);
-    }
+    PlaybackCheckpoint.getInstance().setPosition(null, position);
   }
 }
@@ -520,7 +520,9 @@ public final class UtilGUI {
    */
   public static BufferedImage toBufferedImage(final Image image, final int targetWidth,
       final int targetHeight, boolean forcedAlpha) {
-    if (image instanceof BufferedImage) {
+    // Buffered images (like images decoded by ImageIO) are scaled only if required
+    if (image instanceof BufferedImage && image.getWidth(null) == targetWidth
+        && image.getHeight(null) == targetHeight) {
       return ((BufferedImage) image);
     } else {
       // This code ensures that all the pixels in the image are loaded
@@ -596,7 +596,7 @@ public final class UtilSystem {
       } finally {
         fc.close();
       }
-      return MD5Processor.hash(sOut);
+      return MD5Processor.digest(sOut);
     } catch (final IOException e) {
       throw new JajukException(103, e);
     }
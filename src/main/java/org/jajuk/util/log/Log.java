@@ -221,7 +221,9 @@ public final class Log {
     // collection commit problem in initialCheckups)
     if (logger == null) {
       System.out.println("[ERROR] " + code + " / " + sInfosup);
-      stack(t);
+      if (t != null) {
+        stack(t);
+      }
       return;
     }
     String sOut;
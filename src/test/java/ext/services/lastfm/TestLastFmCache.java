@@ -301,21 +301,13 @@ public class TestLastFmCache extends TestCase {
    * .
    */
   public void testGetSubmissionData() {
-    // TODO: currently this fails because library xpp3 is not found for XML Pull
-    // Parsing, not sure why that is not part of
-    // Jajuk distribution. Are these methods used at all??
-    /*
-     * LastFmCache cache = new LastFmCache();
-     * 
-     * FullSubmissionData data = new FullSubmissionData("Red Hot Chili Peppers",
-     * "title", "By The Way", 10, 1, "Source", 10);
-     * 
-     * cache.addSubmissionData(data);
-     * 
-     * assertEquals(1, cache.getSubmissionData().size());
-     * assertEquals(data.getArtist(),
-     * cache.getSubmissionData().get(0).getArtist());
-     */
+    LastFmCache cache = new LastFmCache();
+    FullSubmissionData data = new FullSubmissionData("Red Hot Chili Peppers", "title",
+        "By The Way", 10, 1, "Source", 10);
+    cache.addSubmissionData(data);
+    assertEquals(1, cache.getSubmissionData().size());
+    assertEquals(data.getArtist(), cache.getSubmissionData().get(0).getArtist());
+    assertEquals(data.getStartTime(), cache.getSubmissionData().get(0).getStartTime());
   }
 
   /**
@@ -324,24 +316,62 @@ public class TestLastFmCache extends TestCase {
    * {@link ext.services.lastfm.LastFmCache#removeSubmissionData()}.
    */
   public void testRemoveSubmissionData() {
-    // TODO: currently this fails because library xpp3 is not found for XML Pull
-    // Parsing, not sure why that is not part of
-    // Jajuk distribution. Are these methods used at all??
-    /*
-     * LastFmCache cache = new LastFmCache();
-     * 
-     * FullSubmissionData data = new FullSubmissionData("Red Hot Chili Peppers",
-     * "title", "By The Way", 10, 1, "Source", 10);
-     * 
-     * cache.addSubmissionData(data);
-     * 
-     * assertEquals(1, cache.getSubmissionData().size());
-     * assertEquals(data.getArtist(),
-     * cache.getSubmissionData().get(0).getArtist());
-     * 
-     * cache.removeSubmissionData();
-     * 
-     * assertEquals(0, cache.getSubmissionData().size());
-     */
+    LastFmCache cache = new LastFmCache();
+    FullSubmissionData data = new FullSubmissionData("Red Hot Chili Peppers", "title",
+        "By The Way", 10, 1, "Source", 10);
+    cache.addSubmissionData(data);
+    assertEquals(1, cache.getSubmissionData().size());
+    cache.removeSubmissionData();
+    assertEquals(0, cache.getSubmissionData().size());
+  }
+
+  /**
+   * Test method for.
+   *
+   * {@link ext.services.lastfm.LastFmCache#removeSubmissionData(int)}.
+   */
+  public void testRemoveSubmissionDataCount() {
+    LastFmCache cache = new LastFmCache();
+    for (int i = 0; i < 5; i++) {
+      cache.addSubmissionData(new FullSubmissionData("artist", "title" + i, "album", 10, i,
+          "Source", i));
+    }
+    assertEquals(5, cache.getSubmissionDataCount());
+    assertEquals(2, cache.getSubmissionData(2).size());
+    assertEquals("title0", cache.getSubmissionData(2).get(0).getTitle());
+    cache.removeSubmissionData(2);
+    assertEquals(3, cache.getSubmissionDataCount());
+    assertEquals("title2", cache.getSubmissionData(1).get(0).getTitle());
+  }
+
+  /**
+   * The store index is rebuilt from the file, latest values win.
+   *
+   * @throws Exception the exception
+   */
+  public void testStoreReopen() throws Exception {
+    java.io.File file = java.io.File.createTempFile("jajuk", ".store");
+    assertTrue(file.delete());
+    LastFmCacheStore store = new LastFmCacheStore(file);
+    try {
+      store.put("a", "1".getBytes("UTF-8"));
+      store.put("b", "2".getBytes("UTF-8"));
+      store.put("a", "3".getBytes("UTF-8"));
+      store.close();
+      assertEquals(2, store.size());
+      assertEquals("3", new String(store.get("a"), "UTF-8"));
+      assertEquals("2", new String(store.get("b"), "UTF-8"));
+      assertNull(store.get("c"));
+      // A partial last record is dropped
+      store.close();
+      java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw");
+      raf.setLength(raf.length() - 3);
+      raf.close();
+      assertEquals("1", new String(store.get("a"), "UTF-8"));
+      assertEquals("2", new String(store.get("b"), "UTF-8"));
+    } finally {
+      store.clear();
+    }
+    assertFalse(file.exists());
   }
 }
@@ -0,0 +1,266 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package ext.services.lastfm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+import org.jajuk.util.UtilString;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import de.umass.lastfm.Caller;
+
+/**
+ * Test the Last.fm service against a local stub server.
+ */
+public class TestLastFmService extends TestCase {
+  private static final Pattern SUBMISSION = Pattern.compile("(^|&)a\\[\\d+\\]=");
+  private HttpServer server;
+  private String root;
+  /** Size of each submitted batch. */
+  private final List<Integer> batches = new ArrayList<Integer>();
+  /** Number of web service calls. */
+  private final AtomicInteger calls = new AtomicInteger();
+  private volatile String submitResponse = "OK";
+  private String user;
+  private String password;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    new LastFmCache().clearCache();
+    user = Conf.getString(Const.CONF_LASTFM_USER);
+    password = Conf.getString(Const.CONF_LASTFM_PASSWORD);
+    Conf.setProperty(Const.CONF_LASTFM_USER, "jajuk");
+    Conf.setProperty(Const.CONF_LASTFM_PASSWORD, UtilString.rot13("secret"));
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    root = "http://127.0.0.1:" + server.getAddress().getPort();
+    server.createContext("/handshake", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        respond(exchange, "OK\nsession\n" + root + "/np\n" + root + "/submit\n");
+      }
+    });
+    server.createContext("/submit", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        Matcher matcher = SUBMISSION.matcher(read(exchange));
+        int count = 0;
+        while (matcher.find()) {
+          count++;
+        }
+        synchronized (batches) {
+          batches.add(count);
+        }
+        respond(exchange, submitResponse + "\n");
+      }
+    });
+    server.createContext("/2.0/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        read(exchange);
+        calls.incrementAndGet();
+        try {
+          // Leave time to the other callers to wait for this request
+          Thread.sleep(300);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        respond(exchange, "<?xml version=\"1.0\" encoding=\"utf-8\"?><lfm status=\"ok\">"
+            + "<artist><name>Stub</name><bio><published>Thu, 18 Oct 2012 10:00:00 +0000"
+            + "</published><summary>Stub wiki</summary></bio></artist></lfm>");
+      }
+    });
+    server.start();
+    LastFmService.getInstance().setHandshakeURL(root + "/handshake");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop(0);
+    LastFmService.getInstance().setHandshakeURL("http://post.audioscrobbler.com/");
+    Caller.getInstance().setApiRootUrl("http://ws.audioscrobbler.com/2.0/");
+    Conf.setProperty(Const.CONF_LASTFM_USER, user);
+    Conf.setProperty(Const.CONF_LASTFM_PASSWORD, password);
+    new LastFmCache().clearCache();
+    super.tearDown();
+  }
+
+  private static String read(HttpExchange exchange) throws IOException {
+    InputStream in = exchange.getRequestBody();
+    try {
+      return IOUtils.toString(in, "UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void respond(HttpExchange exchange, String response) throws IOException {
+    byte[] bytes = response.getBytes("UTF-8");
+    exchange.sendResponseHeaders(200, bytes.length);
+    OutputStream out = exchange.getResponseBody();
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void queue(LastFmCache cache, int count) {
+    for (int i = 0; i < count; i++) {
+      cache.addSubmissionData(new FullSubmissionData("artist", "title" + i, "album", 200, i,
+          "USER", 1000 + i));
+    }
+  }
+
+  /**
+   * Test method for {@link ext.services.lastfm.LastFmService#flushSubmissions()}.
+   *
+   * @throws Exception the exception
+   */
+  public void testFlushSubmissions() throws Exception {
+    LastFmCache cache = new LastFmCache();
+    queue(cache, 60);
+    LastFmService.getInstance().flushSubmissions();
+    assertEquals("[50, 10]", batches.toString());
+    assertEquals(0, cache.getSubmissionDataCount());
+  }
+
+  /**
+   * Test method for {@link ext.services.lastfm.LastFmService#flushSubmissions()}.
+   *
+   * @throws Exception the exception
+   */
+  public void testFlushSubmissionsFailure() throws Exception {
+    LastFmCache cache = new LastFmCache();
+    queue(cache, 60);
+    submitResponse = "FAILED stub";
+    try {
+      LastFmService.getInstance().flushSubmissions();
+      fail("Submission should fail");
+    } catch (ScrobblerException e) {
+      // expected
+    }
+    // Nothing lost, submitted later
+    assertEquals(1, batches.size());
+    assertEquals(60, cache.getSubmissionDataCount());
+    submitResponse = "OK";
+    LastFmService.getInstance().flushSubmissions();
+    assertEquals("[50, 50, 10]", batches.toString());
+    assertEquals(0, cache.getSubmissionDataCount());
+  }
+
+  /**
+   * Test method for {@link ext.services.lastfm.LastFmService#flushSubmissions()}.
+   *
+   * @throws Exception the exception
+   */
+  public void testFlushSubmissionsRejected() throws Exception {
+    LastFmCache cache = new LastFmCache();
+    queue(cache, 3);
+    submitResponse = "FAILED stub";
+    for (int i = 0; i < 6; i++) {
+      try {
+        LastFmService.getInstance().flushSubmissions();
+        fail("Submission should fail");
+      } catch (ScrobblerException e) {
+        // expected
+      }
+    }
+    // The batch is split after 3 rejections, the single rejected submission is
+    // dropped after 3 more ones
+    assertEquals("[3, 3, 3, 1, 1, 1, 1]", batches.toString());
+    assertEquals(2, cache.getSubmissionDataCount());
+    assertEquals("title1", cache.getSubmissionData(1).get(0).getTitle());
+    // Batches are restored once a submission is accepted
+    submitResponse = "OK";
+    LastFmService.getInstance().flushSubmissions();
+    assertEquals("[3, 3, 3, 1, 1, 1, 1, 1, 1]", batches.toString());
+    assertEquals(0, cache.getSubmissionDataCount());
+  }
+
+  /**
+   * Test method for {@link ext.services.lastfm.LastFmService#submitCache()}.
+   *
+   * @throws Exception the exception
+   */
+  public void testSubmitCache() throws Exception {
+    LastFmCache cache = new LastFmCache();
+    queue(cache, 3);
+    LastFmService.getInstance().submitCache();
+    long timeout = System.currentTimeMillis() + 10000;
+    while (cache.getSubmissionDataCount() > 0 && System.currentTimeMillis() < timeout) {
+      Thread.sleep(50);
+    }
+    assertEquals(0, cache.getSubmissionDataCount());
+    assertEquals("[3]", batches.toString());
+  }
+
+  /**
+   * Concurrent lookups of the same information share a single request.
+   *
+   * @throws Exception the exception
+   */
+  public void testInFlightDeduplication() throws Exception {
+    Caller.getInstance().setApiRootUrl(root + "/2.0/");
+    final List<String> results = new ArrayList<String>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 5; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          String wiki = LastFmService.getInstance().getWikiText("Stub");
+          synchronized (results) {
+            results.add(wiki);
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1, calls.get());
+    assertEquals(5, results.size());
+    for (String wiki : results) {
+      assertEquals("Stub wiki", wiki);
+    }
+    // Now cached
+    assertEquals("Stub wiki", LastFmService.getInstance().getWikiText("Stub"));
+    assertEquals(1, calls.get());
+  }
+}
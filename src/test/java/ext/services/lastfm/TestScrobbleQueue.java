@@ -0,0 +1,119 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *  
+ */
+package ext.services.lastfm;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Test methods for {@link ext.services.lastfm.ScrobbleQueue}.
+ */
+public class TestScrobbleQueue extends TestCase {
+  private File file;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see junit.framework.TestCase#setUp()
+   */
+  @Override
+  protected void setUp() throws Exception {
+    file = File.createTempFile("scrobble", ".queue");
+    file.delete();
+    file.deleteOnExit();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see junit.framework.TestCase#tearDown()
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+  }
+
+  private static FullSubmissionData getData(int i) {
+    return new FullSubmissionData("artist", "title" + i, "album", 120, i, "P", i);
+  }
+
+  public void testAddAndRemove() {
+    ScrobbleQueue queue = new ScrobbleQueue(file);
+    queue.add(getData(1));
+    queue.add(getData(2));
+    queue.add(getData(3));
+    // Read back from the file
+    queue = new ScrobbleQueue(file);
+    assertEquals(3, queue.size());
+    assertEquals("title1", queue.peek(1).get(0).getTitle());
+    queue.remove(2);
+    queue = new ScrobbleQueue(file);
+    assertEquals(1, queue.size());
+    assertEquals("title3", queue.peek(10).get(0).getTitle());
+    queue.remove(1);
+    assertFalse(file.exists());
+  }
+
+  public void testCorruptedTail() throws Exception {
+    ScrobbleQueue queue = new ScrobbleQueue(file);
+    queue.add(getData(1));
+    queue.add(getData(2));
+    // Crash during the last append : a partial record
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(raf.length() - 3);
+    } finally {
+      raf.close();
+    }
+    queue = new ScrobbleQueue(file);
+    assertEquals(1, queue.size());
+    // The partial record is dropped so next submissions are read back
+    queue.add(getData(3));
+    queue = new ScrobbleQueue(file);
+    assertEquals(2, queue.size());
+    assertEquals("title1", queue.peek(2).get(0).getTitle());
+    assertEquals("title3", queue.peek(2).get(1).getTitle());
+  }
+
+  public void testMaxSize() {
+    ScrobbleQueue queue = new ScrobbleQueue(file, 20);
+    for (int i = 0; i < 21; i++) {
+      queue.add(getData(i));
+    }
+    // The 2 oldest submissions are dropped to make room
+    queue = new ScrobbleQueue(file, 20);
+    assertEquals(19, queue.size());
+    assertEquals("title2", queue.peek(1).get(0).getTitle());
+  }
+
+  public void testUnknownFormat() throws Exception {
+    FileUtils.writeStringToFile(file, "not a submissions queue");
+    ScrobbleQueue queue = new ScrobbleQueue(file);
+    assertEquals(0, queue.size());
+    queue.add(getData(1));
+    queue = new ScrobbleQueue(file);
+    assertEquals(1, queue.size());
+  }
+}
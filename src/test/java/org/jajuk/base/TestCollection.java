@@ -26,6 +26,7 @@ import org.jajuk.JajukTestCase;
 import org.jajuk.TestHelpers;
 import org.jajuk.services.core.SessionService;
 import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.UtilString;
 import org.jajuk.util.error.JajukException;
@@ -105,6 +106,48 @@ public class TestCollection extends JajukTestCase {
     // loading...
   }
 
+  /**
+   * Test the binary snapshot written along with the collection file.
+   *
+   * @throws Exception the exception
+   */
+  public final void testCommitBinarySnapshot() throws Exception {
+    StartupCollectionService.registerItemManagers();
+    Conf.setProperty(Const.CONF_COLLECTION_BINARY_SNAPSHOT, Const.TRUE);
+    // The file type must be registered for the file to be loaded back
+    TestHelpers.getFile("test.mp3", true);
+    TestHelpers.getTrack(5);
+    java.io.File binary = SessionService.getConfFileByPath(Const.FILE_COLLECTION_BINARY);
+    binary.delete();
+    Collection.commit();
+    assertTrue(binary.exists());
+    assertTrue(binary.length() > 0);
+    int files = FileManager.getInstance().getElementCount();
+    int tracks = TrackManager.getInstance().getElementCount();
+    // Make collection.xml unparsable without changing its size and date, so
+    // only the binary snapshot can be loaded
+    java.io.File xml = SessionService.getConfFileByPath(Const.FILE_COLLECTION);
+    long date = xml.lastModified();
+    FileUtils.writeStringToFile(xml, StringUtils.repeat("x", (int) xml.length()));
+    assertTrue(xml.setLastModified(date));
+    // Load it back
+    Collection.clearCollection();
+    Collection.load(xml);
+    assertEquals(1, files);
+    assertEquals(files, FileManager.getInstance().getElementCount());
+    // Orphan tracks are cleaned up as when loading collection.xml
+    assertEquals(tracks - 1, TrackManager.getInstance().getElementCount());
+    // An out of date snapshot is ignored, collection.xml is parsed
+    assertTrue(xml.setLastModified(date - 10000));
+    Collection.clearCollection();
+    try {
+      Collection.load(xml);
+      fail("Should fail to parse collection.xml");
+    } catch (SAXException e) {
+      // expected
+    }
+  }
+
   /**
    * Test method for {@link org.jajuk.base.Collection#load(java.io.File)}.
    */
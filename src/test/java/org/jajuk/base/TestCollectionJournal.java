@@ -0,0 +1,183 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.RandomAccessFile;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * Test methods for {@link org.jajuk.base.CollectionJournal}.
+ */
+public class TestCollectionJournal extends JajukTestCase {
+  private CollectionJournal journal;
+  private java.io.File journalFile;
+  private java.io.File collectionFile;
+
+  @Override
+  protected void specificSetUp() throws Exception {
+    StartupCollectionService.registerItemManagers();
+    Conf.setProperty(Const.CONF_COLLECTION_BINARY_SNAPSHOT, Const.FALSE);
+    journal = CollectionJournal.getInstance();
+    journalFile = SessionService.getConfFileByPath(Const.FILE_COLLECTION_JOURNAL);
+    collectionFile = SessionService.getConfFileByPath(Const.FILE_COLLECTION);
+    // The file type must be registered for the file to be loaded back
+    TestHelpers.getFile("test.mp3", true);
+    Collection.commit();
+  }
+
+  /**
+   * Simulate a crash : reload the collection file, then the journal.
+   *
+   * @throws Exception the exception
+   */
+  private void restart() throws Exception {
+    Collection.clearCollection();
+    Collection.load(collectionFile);
+  }
+
+  /**
+   * Gets the test track, once reloaded.
+   *
+   * @return the test track
+   */
+  private static Track getTrack() {
+    return FileManager.getInstance().getFiles().get(0).getTrack();
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.CollectionJournal#replay(Collection)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testReplay() throws Exception {
+    Track track = getTrack();
+    track.setProperty(Const.XML_TRACK_COMMENT, "journaled");
+    journal.propertySet(track, Const.XML_TRACK_COMMENT);
+    Genre genre = GenreManager.getInstance().registerGenre("journaled genre");
+    journal.itemRegistered(genre);
+    journal.flush();
+    assertTrue(journalFile.length() > 0);
+    restart();
+    assertEquals("journaled", getTrack().getComment());
+    assertNotNull(GenreManager.getInstance().getGenreByName("journaled genre"));
+    // removals
+    journal.itemRemoved(GenreManager.getInstance().getGenreByName("journaled genre"));
+    journal.propertyRemoved(getTrack(), Const.XML_TRACK_COMMENT);
+    journal.flush();
+    restart();
+    assertEquals("", getTrack().getComment());
+    assertNull(GenreManager.getInstance().getGenreByName("journaled genre"));
+  }
+
+  /**
+   * Test that a truncated or corrupted tail is dropped and doesn't hide the
+   * next changes.
+   *
+   * @throws Exception the exception
+   */
+  public void testCorruptedTail() throws Exception {
+    Track track = getTrack();
+    track.setProperty(Const.XML_TRACK_COMMENT, "first");
+    journal.propertySet(track, Const.XML_TRACK_COMMENT);
+    journal.flush();
+    long valid = journalFile.length();
+    track.setProperty(Const.XML_TRACK_COMMENT, "second");
+    journal.propertySet(track, Const.XML_TRACK_COMMENT);
+    journal.flush();
+    // Crash during the second append : a partial record
+    RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+    try {
+      raf.setLength(raf.length() - 3);
+    } finally {
+      raf.close();
+    }
+    restart();
+    assertEquals("first", getTrack().getComment());
+    assertEquals(valid, journalFile.length());
+    // Next changes are appended after the last valid record
+    track = getTrack();
+    track.setProperty(Const.XML_TRACK_COMMENT, "third");
+    journal.propertySet(track, Const.XML_TRACK_COMMENT);
+    journal.flush();
+    restart();
+    assertEquals("third", getTrack().getComment());
+  }
+
+  /**
+   * Test that a record with a wrong checksum ends the replay.
+   *
+   * @throws Exception the exception
+   */
+  public void testCorruptedRecord() throws Exception {
+    Track track = getTrack();
+    track.setProperty(Const.XML_TRACK_COMMENT, "first");
+    journal.propertySet(track, Const.XML_TRACK_COMMENT);
+    journal.flush();
+    long valid = journalFile.length();
+    track.setProperty(Const.XML_TRACK_COMMENT, "second");
+    journal.propertySet(track, Const.XML_TRACK_COMMENT);
+    journal.flush();
+    // Flip a byte of the second record checksum
+    RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+    try {
+      raf.seek(raf.length() - 1);
+      int b = raf.read();
+      raf.seek(raf.length() - 1);
+      raf.write(b ^ 0xFF);
+    } finally {
+      raf.close();
+    }
+    restart();
+    assertEquals("first", getTrack().getComment());
+    assertEquals(valid, journalFile.length());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.CollectionJournal#compacted()}.
+   *
+   * @throws Exception the exception
+   */
+  public void testCompaction() throws Exception {
+    Conf.setProperty(Const.CONF_COLLECTION_JOURNAL_MAX_SIZE, "1");
+    Track track = getTrack();
+    assertFalse(journal.isCompactionRequired());
+    StringBuilder comment = new StringBuilder();
+    while (comment.length() < 2048) {
+      comment.append("comment ");
+    }
+    track.setProperty(Const.XML_TRACK_COMMENT, comment.toString());
+    journal.propertySet(track, Const.XML_TRACK_COMMENT);
+    journal.flush();
+    assertTrue(journal.isCompactionRequired());
+    // The change is now part of the collection file
+    Collection.commit();
+    assertFalse(journal.isCompactionRequired());
+    assertTrue(journalFile.length() < 100);
+    restart();
+    assertEquals(comment.toString(), getTrack().getComment());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.util.Calendar;
+import java.util.Date;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.util.Const;
+
+public class TestCollectionStatistics extends JajukTestCase {
+  /**
+   * Test counters after registrations.
+   */
+  public void testCounters() {
+    CollectionStatistics stats = CollectionStatistics.getInstance();
+    File file1 = TestHelpers.getFile("file1", true);
+    File file2 = TestHelpers.getFile("file2", true);
+    assertEquals(2, stats.getTrackCount());
+    assertEquals(2, stats.getFileCount());
+    assertEquals(file1.getSize() + file2.getSize(), stats.getTotalSize());
+    assertEquals(file1.getTrack().getDuration() + file2.getTrack().getDuration(),
+        stats.getTotalDuration());
+    assertEquals(Integer.valueOf(2), stats.getTracksByGenre().get(file1.getTrack().getGenre()));
+    assertEquals(Integer.valueOf(2), stats.getTracksByYear().get(file1.getTrack().getYear()));
+    assertEquals(Integer.valueOf(2), stats.getTracksByArtist().get(file1.getTrack().getArtist()));
+    assertEquals(Long.valueOf(stats.getTotalSize()),
+        stats.getSizeByDevice().get(file1.getDevice()));
+    int month = CollectionStatistics.getMonth(new Date());
+    assertEquals(2, stats.getTracksUntil(month));
+    assertEquals(stats.getTotalSize(), stats.getSizeUntil(month));
+    assertEquals(0, stats.getTracksUntil(month - 1));
+  }
+
+  /**
+   * Test that the counters follow properties changes.
+   */
+  public void testChanges() {
+    CollectionStatistics stats = CollectionStatistics.getInstance();
+    File file = TestHelpers.getFile("file1", true);
+    TestHelpers.getFile("file2", true);
+    file.setProperty(Const.XML_SIZE, 1000L);
+    assertEquals(1120, stats.getTotalSize());
+    Calendar cal = Calendar.getInstance();
+    cal.set(2000, Calendar.JANUARY, 15);
+    file.getTrack().setDiscoveryDate(cal.getTime());
+    assertEquals(Integer.valueOf(1), stats.getTracksByMonth().get(200001));
+    assertEquals(1, stats.getTracksUntil(200001));
+    assertEquals(1000, stats.getSizeUntil(200001));
+    assertEquals(1000, stats.getSizeUntil(200012));
+  }
+
+  /**
+   * Test that removed items are no more counted.
+   */
+  public void testRemoval() {
+    CollectionStatistics stats = CollectionStatistics.getInstance();
+    File file = TestHelpers.getFile("file1", true);
+    File file2 = TestHelpers.getFile("file2", true);
+    FileManager.getInstance().removeItem(file);
+    assertEquals(1, stats.getFileCount());
+    assertEquals(file2.getSize(), stats.getTotalSize());
+    TrackManager.getInstance().removeItem(file.getTrack());
+    assertEquals(1, stats.getTrackCount());
+    assertEquals(Integer.valueOf(1), stats.getTracksByGenre().get(file2.getTrack().getGenre()));
+    Collection.clearCollection();
+    assertEquals(0, stats.getTrackCount());
+    assertEquals(0, stats.getFileCount());
+    assertEquals(0, stats.getTotalSize());
+    assertEquals(0, stats.getTotalDuration());
+    assertTrue(stats.getTracksByGenre().isEmpty());
+    assertTrue(stats.getSizeByDevice().isEmpty());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.CollectionStatistics#getMonth(java.util.Date)}.
+   */
+  public void testGetMonth() {
+    Calendar cal = Calendar.getInstance();
+    cal.set(2012, Calendar.DECEMBER, 31);
+    assertEquals(201212, CollectionStatistics.getMonth(cal.getTime()));
+    assertEquals(0, CollectionStatistics.getMonth(null));
+  }
+}
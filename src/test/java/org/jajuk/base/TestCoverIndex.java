@@ -0,0 +1,130 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.util.Const;
+
+/**
+ * Test methods for {@link org.jajuk.base.CoverIndex}.
+ */
+public class TestCoverIndex extends JajukTestCase {
+  private Directory dir;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    dir = TestHelpers.getFile("file1.tst", true).getDirectory();
+    for (java.io.File file : dir.getFio().listFiles()) {
+      if (file.getName().endsWith(".png") || file.getName().endsWith(".jpg")) {
+        file.delete();
+      }
+    }
+    CoverIndex.getInstance().invalidate(dir);
+  }
+
+  /**
+   * Write an image in the test directory.
+   *
+   * @param name file name
+   * @param width 
+   * @param height 
+   * @return the image file
+   * @throws Exception the exception
+   */
+  private java.io.File writeImage(String name, int width, int height) throws Exception {
+    java.io.File file = new java.io.File(dir.getFio(), name);
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file);
+    return file;
+  }
+
+  public void testGetCandidates() throws Exception {
+    writeImage("front.png", 300, 200);
+    FileUtils.writeStringToFile(new java.io.File(dir.getFio(), "broken.jpg"), "not an image");
+    List<CoverIndex.Candidate> candidates = CoverIndex.getInstance().getCandidates(dir);
+    assertEquals(2, candidates.size());
+    for (CoverIndex.Candidate candidate : candidates) {
+      if (candidate.getName().equals("front.png")) {
+        assertTrue(candidate.isValid());
+        assertEquals(300, candidate.getWidth());
+        assertEquals(200, candidate.getHeight());
+        assertEquals(candidate.getFile(dir).length(), candidate.getSize());
+      } else {
+        assertEquals("broken.jpg", candidate.getName());
+        assertFalse(candidate.isValid());
+      }
+    }
+    // Lookups don't list the directory again
+    writeImage("back.png", 100, 100);
+    assertEquals(2, CoverIndex.getInstance().getCandidates(dir).size());
+    CoverIndex.getInstance().invalidate(dir);
+    assertEquals(3, CoverIndex.getInstance().getCandidates(dir).size());
+  }
+
+  public void testRefresh() throws Exception {
+    writeImage("front.png", 300, 200);
+    dir.getFio().setLastModified(10000);
+    CoverIndex.getInstance().refresh(dir, dir.getFio().listFiles());
+    assertEquals(1, CoverIndex.getInstance().getCandidates(dir).size());
+    // Same directory date : kept as is
+    writeImage("back.png", 100, 100);
+    dir.getFio().setLastModified(10000);
+    CoverIndex.getInstance().refresh(dir, dir.getFio().listFiles());
+    assertEquals(1, CoverIndex.getInstance().getCandidates(dir).size());
+    // Directory changed
+    dir.getFio().setLastModified(20000);
+    CoverIndex.getInstance().refresh(dir, dir.getFio().listFiles());
+    assertEquals(2, CoverIndex.getInstance().getCandidates(dir).size());
+  }
+
+  public void testCommit() throws Exception {
+    writeImage("front.png", 300, 200);
+    assertEquals(1, CoverIndex.getInstance().getCandidates(dir).size());
+    CoverIndex.getInstance().commit();
+    assertTrue(CoverIndex.getIndexFile().exists());
+    // Read back from the index file, the directory is not listed again
+    CoverIndex.getInstance().clear();
+    writeImage("back.png", 100, 100);
+    List<CoverIndex.Candidate> candidates = CoverIndex.getInstance().getCandidates(dir);
+    assertEquals(1, candidates.size());
+    assertEquals(300, candidates.get(0).getWidth());
+  }
+
+  public void testFindCover() throws Exception {
+    Album album = TestHelpers.getFile("file1.tst", true).getTrack().getAlbum();
+    album.removeProperty(Const.XML_ALBUM_DISCOVERED_COVER);
+    writeImage("front.png", 300, 200);
+    java.io.File cover = album.findCover();
+    assertNotNull(cover);
+    assertEquals("front.png", cover.getName());
+  }
+}
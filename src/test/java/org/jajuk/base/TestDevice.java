@@ -34,6 +34,7 @@ import org.jajuk.services.players.IPlayerImpl;
 import org.jajuk.services.players.QueueModel;
 import org.jajuk.services.players.StackItem;
 import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.error.JajukException;
 import org.jajuk.util.log.Log;
@@ -464,6 +465,72 @@ public class TestDevice extends JajukTestCase {
     device.refreshCommand(false, false, null);
   }
 
+  /**
+   * Test method for {@link org.jajuk.base.Device#refreshCommand(boolean)} with
+   * several refresh tag readers.
+   *
+   * @throws Exception the exception
+   */
+  public void testRefreshCommandParallel() throws Exception {
+    StartupCollectionService.registerItemManagers();
+    StartupCollectionService.registerTypes();
+    java.io.File top = new java.io.File(ConstTest.DEVICES_BASE_PATH + "/parallel");
+    // the device contains a first audio1.mp3 file
+    Device device = TestHelpers.getDevice("parallel", Device.Type.DIRECTORY,
+        top.getAbsolutePath());
+    int nbFiles = 1;
+    for (int i = 0; i < 5; i++) {
+      java.io.File dir = new java.io.File(top, "dir" + i + "/sub" + i);
+      dir.mkdirs();
+      for (int j = 0; j < 10; j++) {
+        new java.io.File(dir, "file" + j + ".mp3").createNewFile();
+        nbFiles++;
+      }
+    }
+    device.mount(false);
+    Conf.setProperty(Const.CONF_REFRESH_THREADS, "4");
+    device.refreshCommand(false, false, null);
+    assertEquals(nbFiles, device.getFilesRecursively().size());
+    // five directories and their sub-directory
+    assertEquals(10, device.getRootDirectory().getDirectoriesRecursively().size());
+    // Refreshing again doesn't register anything new
+    device.refreshCommand(true, false, null);
+    assertEquals(nbFiles, device.getFilesRecursively().size());
+    assertEquals(10, device.getRootDirectory().getDirectoriesRecursively().size());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.Device#refreshCommand(boolean, boolean, java.util.List, boolean)}
+   * not refreshing known sub-directories.
+   *
+   * @throws Exception the exception
+   */
+  public void testRefreshCommandNotRecursive() throws Exception {
+    StartupCollectionService.registerItemManagers();
+    StartupCollectionService.registerTypes();
+    java.io.File top = new java.io.File(ConstTest.DEVICES_BASE_PATH + "/notrecursive");
+    // the device contains a first audio1.mp3 file
+    Device device = TestHelpers.getDevice("notrecursive", Device.Type.DIRECTORY,
+        top.getAbsolutePath());
+    java.io.File known = new java.io.File(top, "known");
+    known.mkdirs();
+    new java.io.File(known, "file1.mp3").createNewFile();
+    device.mount(false);
+    device.refreshCommand(false, false, null);
+    assertEquals(2, device.getFilesRecursively().size());
+    // New files in the known sub-directory are ignored, new directories are
+    // refreshed with their content
+    new java.io.File(known, "file2.mp3").createNewFile();
+    java.io.File added = new java.io.File(top, "added/sub");
+    added.mkdirs();
+    new java.io.File(added, "file3.mp3").createNewFile();
+    List<Directory> dirs = new ArrayList<Directory>(1);
+    dirs.add(device.getRootDirectory());
+    device.refreshCommand(false, false, dirs, false);
+    assertEquals(3, device.getFilesRecursively().size());
+    assertEquals(3, device.getRootDirectory().getDirectoriesRecursively().size());
+  }
+
   // test for a regression that was added
   /**
    * Test refresh command dont readd top directory.
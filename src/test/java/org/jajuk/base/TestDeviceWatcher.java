@@ -0,0 +1,107 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import org.jajuk.ConstTest;
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.services.startup.StartupCollectionService;
+import org.jajuk.util.Const;
+
+/**
+ * Test methods for {@link org.jajuk.base.DeviceWatcher}.
+ */
+public class TestDeviceWatcher extends JajukTestCase {
+  /** Maximal time to wait for the watcher (ms). */
+  private static final int TIMEOUT = 5000 + DeviceWatcher.DEBOUNCE_DELAY;
+  private Device device;
+  private java.io.File top;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    StartupCollectionService.registerItemManagers();
+    StartupCollectionService.registerTypes();
+    top = new java.io.File(ConstTest.DEVICES_BASE_PATH + "/watched");
+    // the device contains a first audio1.mp3 file
+    device = TestHelpers.getDevice("watched", Device.Type.DIRECTORY, top.getAbsolutePath());
+    device.setProperty(Const.XML_DEVICE_WATCH, true);
+    device.mount(false);
+    device.refreshCommand(false, false, null);
+    DeviceWatcher.getInstance().start();
+    DeviceWatcher.getInstance().update();
+    long start = System.currentTimeMillis();
+    while (!DeviceWatcher.getInstance().isWatched(device)
+        && System.currentTimeMillis() - start < TIMEOUT) {
+      Thread.sleep(50);
+    }
+  }
+
+  /**
+   * Wait for the device to contain a given number of files.
+   *
+   * @param nbFiles the expected number of files
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  private void waitForFiles(int nbFiles) throws InterruptedException {
+    long start = System.currentTimeMillis();
+    while (device.getFilesRecursively().size() != nbFiles
+        && System.currentTimeMillis() - start < TIMEOUT) {
+      Thread.sleep(50);
+    }
+    assertEquals(nbFiles, device.getFilesRecursively().size());
+  }
+
+  public void testIsWatched() throws Exception {
+    assertTrue(DeviceWatcher.getInstance().isWatched(device));
+    device.setProperty(Const.XML_DEVICE_WATCH, false);
+    DeviceWatcher.getInstance().update();
+    long start = System.currentTimeMillis();
+    while (DeviceWatcher.getInstance().isWatched(device)
+        && System.currentTimeMillis() - start < TIMEOUT) {
+      Thread.sleep(50);
+    }
+    assertFalse(DeviceWatcher.getInstance().isWatched(device));
+  }
+
+  public void testChanges() throws Exception {
+    assertEquals(1, device.getFilesRecursively().size());
+    // New file
+    java.io.File file = new java.io.File(top, "audio2.mp3");
+    file.createNewFile();
+    waitForFiles(2);
+    // New directory, then a new file in it once watched
+    java.io.File dir = new java.io.File(top, "dir");
+    dir.mkdirs();
+    new java.io.File(dir, "audio3.mp3").createNewFile();
+    waitForFiles(3);
+    new java.io.File(dir, "audio4.mp3").createNewFile();
+    waitForFiles(4);
+    // Removed file
+    file.delete();
+    waitForFiles(3);
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.base;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.JajukTestCase;
+import org.jajuk.MockPlayer;
+import org.jajuk.TestHelpers;
+import org.jajuk.util.Const;
+
+/**
+ * Test methods for {@link org.jajuk.base.DuplicateIndex}.
+ */
+public class TestDuplicateIndex extends JajukTestCase {
+  /** Large enough to be sampled. */
+  private static final int SIZE = DuplicateIndex.BLOCKS * DuplicateIndex.BLOCK_SIZE * 4;
+  private File file1;
+  private File copy;
+  private File other;
+  private Device device;
+
+  @Override
+  protected void specificSetUp() throws Exception {
+    device = TestHelpers.getDevice();
+    // Two copies of the same track in two directories
+    Directory dir1 = TestHelpers.getDirectory("dir1");
+    Directory dir2 = TestHelpers.getDirectory("dir2");
+    file1 = TestHelpers.getFile("song", dir1, true, MockPlayer.class);
+    // The helper IDs only depend on the name
+    copy = FileManager.getInstance().registerFile(FileManager.createID("song", dir2), "song",
+        dir2, file1.getTrack(), 120, 70);
+    // Same sampled blocks, different content
+    other = TestHelpers.getFile("other", dir1, true, MockPlayer.class);
+    byte[] content = new byte[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      content[i] = (byte) i;
+    }
+    write(file1, content);
+    write(copy, content);
+    content[SIZE / 4] = (byte) (content[SIZE / 4] + 1);
+    write(other, content);
+  }
+
+  private static void write(File file, byte[] content) throws IOException {
+    FileUtils.writeByteArrayToFile(file.getFIO(), content);
+    file.setProperty(Const.XML_SIZE, (long) content.length);
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.DuplicateIndex#getDuplicates()}.
+   */
+  public void testGetDuplicates() {
+    DuplicateIndex index = DuplicateIndex.getInstance();
+    assertTrue(index.getDuplicates().isEmpty());
+    index.index(device);
+    List<List<File>> duplicates = index.getDuplicates();
+    assertEquals(1, duplicates.size());
+    assertEquals(Arrays.asList(file1, copy), duplicates.get(0));
+    assertEquals(Arrays.asList(copy), index.getDuplicates(file1));
+    assertTrue(index.getDuplicates(other).isEmpty());
+    // Sampled blocks collision resolved by a full hash
+    assertNotNull(index.getContentHash(other));
+    assertFalse(index.getContentHash(other).equals(index.getContentHash(file1)));
+  }
+
+  /**
+   * Test that indexing only some files resolves the groups they join.
+   */
+  public void testIndexFiles() {
+    DuplicateIndex index = DuplicateIndex.getInstance();
+    index.index(Arrays.asList(file1));
+    // Alone in its group, not fully hashed
+    assertNull(index.getContentHash(file1));
+    // The copy joins the group of file1
+    index.index(Arrays.asList(copy));
+    assertEquals(Arrays.asList(copy), index.getDuplicates(file1));
+  }
+
+  /**
+   * Test that changed files are fingerprinted again.
+   *
+   * @throws Exception the exception
+   */
+  public void testChangedFile() throws Exception {
+    DuplicateIndex index = DuplicateIndex.getInstance();
+    index.index(device);
+    assertEquals(1, index.getDuplicates().size());
+    byte[] content = FileUtils.readFileToByteArray(copy.getFIO());
+    content[SIZE / 4] = 42;
+    write(copy, content);
+    assertTrue(copy.getFIO().setLastModified(copy.getFIO().lastModified() - 10000));
+    index.index(device);
+    assertTrue(index.getDuplicates().isEmpty());
+  }
+
+  /**
+   * Test that small files are fully hashed at once.
+   *
+   * @throws Exception the exception
+   */
+  public void testSmallFiles() throws Exception {
+    write(file1, new byte[] { 1, 2, 3 });
+    write(copy, new byte[] { 1, 2, 3 });
+    write(other, new byte[] { 1, 2, 4 });
+    DuplicateIndex index = DuplicateIndex.getInstance();
+    index.index(device);
+    assertEquals(Arrays.asList(copy), index.getDuplicates(file1));
+    assertNotNull(index.getContentHash(other));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.DuplicateIndex#commit()}.
+   *
+   * @throws Exception the exception
+   */
+  public void testCommit() throws Exception {
+    DuplicateIndex index = DuplicateIndex.getInstance();
+    index.index(device);
+    index.commit();
+    assertTrue(DuplicateIndex.getIndexFile().exists());
+    index.clear();
+    // Read back from the index file
+    assertEquals(1, index.getDuplicates().size());
+    // Removed files are dropped
+    FileManager.getInstance().removeFile(copy);
+    assertTrue(index.getDuplicates().isEmpty());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.base.Track#getBestFile(boolean)}.
+   */
+  public void testGetBestFile() {
+    Track track = file1.getTrack();
+    assertEquals(2, track.getFiles().size());
+    // Same quality, the last one wins
+    assertEquals(copy, track.getBestFile(true));
+    DuplicateIndex.getInstance().index(device);
+    // The copy is skipped
+    assertEquals(file1, track.getBestFile(true));
+    assertEquals(file1, track.getBestFile(false));
+  }
+}
@@ -26,8 +26,10 @@ import java.util.Date;
 import java.util.List;
 
 import org.jajuk.JajukTestCase;
+import org.jajuk.MockPlayer;
 import org.jajuk.TestHelpers;
 import org.jajuk.services.bookmark.History;
+import org.jajuk.util.Conf;
 import org.jajuk.util.Const;
 import org.jajuk.util.error.JajukException;
 import org.junit.Test;
@@ -90,6 +92,54 @@ public class TestFileManager extends JajukTestCase {
     testWithFile(TestHelpers.getFile("0123234327\"§$%!§\"()432ABC-.,_:;#+*'*~\\}][{.tst", true));
   }
 
+  @Test
+  public void testGetFileByPathFollowsChanges() throws Exception {
+    File file1 = TestHelpers.getFile("file1.tst", true);
+    // Build the path index
+    assertEquals(file1, FileManager.getInstance().getFileByPath(file1.getAbsolutePath()));
+    // Registered files are indexed
+    File file2 = TestHelpers.getFile("file2.tst", true);
+    assertEquals(file2, FileManager.getInstance().getFileByPath(file2.getAbsolutePath()));
+    // Renamed files are indexed with their new path
+    String oldPath = file1.getAbsolutePath();
+    File renamed = FileManager.getInstance().changeFileName(file1, "file3.tst");
+    assertNull(FileManager.getInstance().getFileByPath(oldPath));
+    assertEquals(renamed, FileManager.getInstance().getFileByPath(renamed.getAbsolutePath()));
+    // Removed files are no more indexed
+    FileManager.getInstance().removeFile(file2);
+    assertNull(FileManager.getInstance().getFileByPath(file2.getAbsolutePath()));
+    assertNull(FileManager.getInstance().getFileByPath(file2.getAbsolutePath().toUpperCase()));
+  }
+
+  @Test
+  public void testGetFileByPathCaseCollision() throws Exception {
+    Directory dir = TestHelpers.getDirectory();
+    File lower = TestHelpers.getFile("collision.tst", dir, true, MockPlayer.class);
+    File upper = TestHelpers.getFile("COLLISION.tst", dir, true, MockPlayer.class);
+    String folded = lower.getAbsolutePath().toUpperCase();
+    assertNotNull(FileManager.getInstance().getFileByPath(folded));
+    // The case-folded entry still resolves the remaining file
+    FileManager.getInstance().removeFile(lower);
+    assertEquals(upper, FileManager.getInstance().getFileByPath(folded));
+    assertEquals(upper, FileManager.getInstance().getFileByPath(upper.getAbsolutePath()));
+    FileManager.getInstance().removeFile(upper);
+    assertNull(FileManager.getInstance().getFileByPath(folded));
+  }
+
+  @Test
+  public void testSetFileName() throws Exception {
+    File file = TestHelpers.getFile("case.tst", true);
+    String oldPath = file.getAbsolutePath();
+    // Like a Windows refresh finding the file name with another case
+    FileManager.getInstance().setFileName(file, "CASE.tst");
+    assertEquals("CASE.tst", file.getName());
+    assertEquals(file, FileManager.getInstance().getFileByPath(file.getAbsolutePath()));
+    // The old path is no more indexed once the file is removed
+    FileManager.getInstance().removeFile(file);
+    assertNull(FileManager.getInstance().getFileByPath(oldPath));
+    assertNull(FileManager.getInstance().getFileByPath(file.getAbsolutePath()));
+  }
+
   private void testWithFile(File file) {
     assertNotNull("file " + file.getFIO() + " is not found if we look for the actual file name",
         FileManager.getInstance().getFileByPath(file.getFIO().getAbsolutePath()));
@@ -122,6 +172,60 @@ public class TestFileManager extends JajukTestCase {
     assertEquals(Const.NB_TRACKS_ON_ACTION, files.size());
   }
 
+  public void testBestOfFilesFollowRates() {
+    Conf.setProperty(Const.CONF_BESTOF_TRACKS_SIZE, "2");
+    File file1 = TestHelpers.getFile("best1", true);
+    File file2 = TestHelpers.getFile("best2", true);
+    File file3 = TestHelpers.getFile("best3", true);
+    file1.getTrack().setRate(10);
+    file2.getTrack().setRate(30);
+    file3.getTrack().setRate(20);
+    FileManager.getInstance().refreshBestOfFiles();
+    List<File> best = FileManager.getInstance().getBestOfFiles();
+    assertEquals(2, best.size());
+    assertEquals(file2, best.get(0));
+    assertEquals(file3, best.get(1));
+    // rate and ban changes are taken into account at next refresh
+    file1.getTrack().setRate(40);
+    file2.getTrack().setProperty(Const.XML_TRACK_BANNED, true);
+    FileManager.getInstance().refreshBestOfFiles();
+    best = FileManager.getInstance().getBestOfFiles();
+    assertEquals(file1, best.get(0));
+    assertEquals(file3, best.get(1));
+    // removed tracks are no more candidates
+    FileManager.getInstance().removeFile(file1);
+    FileManager.getInstance().refreshBestOfFiles();
+    assertEquals(file3, FileManager.getInstance().getBestOfFiles().get(0));
+  }
+
+  public void testNoveltiesNewestFirst() {
+    Conf.setProperty(Const.CONF_OPTIONS_NOVELTIES_AGE, "30");
+    long now = System.currentTimeMillis();
+    File recent = TestHelpers.getFile("recent", true);
+    recent.getTrack().setDiscoveryDate(new Date(now - Const.MILLISECONDS_IN_A_DAY));
+    File newest = TestHelpers.getFile("newest", true);
+    newest.getTrack().setDiscoveryDate(new Date(now));
+    File old = TestHelpers.getFile("old", true);
+    old.getTrack().setDiscoveryDate(new Date(now - 100L * Const.MILLISECONDS_IN_A_DAY));
+    List<File> novelties = FileManager.getInstance().getGlobalNoveltiesPlaylist();
+    assertEquals(2, novelties.size());
+    assertEquals(newest, novelties.get(0));
+    assertEquals(recent, novelties.get(1));
+  }
+
+  public void testShuffleFileFollowsMountAndBan() throws Exception {
+    File file = TestHelpers.getFile("shuffle", true);
+    assertEquals(file, FileManager.getInstance().getShuffleFile());
+    assertEquals(1, FileManager.getInstance().getGlobalShufflePlaylist().size());
+    file.getDirectory().getDevice().unmount(false, false);
+    assertNull(FileManager.getInstance().getShuffleFile());
+    file.getDirectory().getDevice().mount(true);
+    assertEquals(file, FileManager.getInstance().getShuffleFile());
+    file.getTrack().setProperty(Const.XML_TRACK_BANNED, true);
+    assertNull(FileManager.getInstance().getShuffleFile());
+    assertEquals(0, FileManager.getInstance().getGlobalShufflePlaylist().size());
+  }
+
   private List<File> populateHistory(int totalTracksNb) {
     long now = new Date().getTime();
     // create 500 items in collection and add them into history, 
@@ -22,8 +22,12 @@ package org.jajuk.base;
 
 import ext.services.xml.XMLUtils;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import javax.swing.ImageIcon;
 
@@ -65,6 +69,30 @@ public class TestItemManager extends JajukTestCase {
     man.switchToOrderState();
   }
 
+  /**
+   * Test switching to ordered state with items loaded in order or not.
+   */
+  public final void testSwitchToOrderStateContent() {
+    // IDs are compared as strings
+    String[][] loads = { { "1", "2", "3" }, { "2", "3", "1" }, { "1", "2", "2", "3" } };
+    for (String[] ids : loads) {
+      ItemManager man = new LocalIM();
+      for (String id : ids) {
+        man.registerItem(new TestItem(id, "name" + id));
+      }
+      man.switchToOrderState();
+      assertEquals(3, man.getElementCount());
+      Iterator<? extends Item> it = man.getItemsIterator();
+      assertEquals("1", it.next().getID());
+      assertEquals("2", it.next().getID());
+      assertEquals("3", it.next().getID());
+      // the ordered state is still usable
+      man.registerItem(new TestItem("0", "name0"));
+      assertEquals("0", man.getItemsIterator().next().getID());
+      assertEquals(4, man.getElementCount());
+    }
+  }
+
   /**
    * Test method for.
    *
@@ -336,6 +364,97 @@ public class TestItemManager extends JajukTestCase {
     assertEquals(man.getItems().toString(), 2, man.getItems().size());
   }
 
+  /**
+   * Test that getItems() returns a shared immutable snapshot rebuilt after
+   * changes only.
+   */
+  public final void testGetItemsSnapshot() {
+    ItemManager man = new LocalIM();
+    man.registerItem(new TestItem("7", "name7"));
+    List<? extends Item> snapshot = man.getItems();
+    // No copy while nothing changed
+    assertSame(snapshot, man.getItems());
+    try {
+      snapshot.remove(0);
+      fail("Snapshot should be immutable");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    man.registerItem(new TestItem("8", "name8"));
+    // Previous snapshot is not affected by the change
+    assertEquals(1, snapshot.size());
+    assertEquals(2, man.getItems().size());
+    man.removeItem(man.getItemByID("7"));
+    assertEquals(1, man.getItems().size());
+    assertNull(man.getItemByID(null));
+  }
+
+  /**
+   * Test that getItems() waits for the writers, and that a snapshot never
+   * built is not returned without waiting either.
+   *
+   * @throws Exception the exception
+   */
+  public final void testGetItemsWaitsForWriters() throws Exception {
+    final ItemManager man = new LocalIM();
+    man.registerItem(new TestItem("7", "name7"));
+    // Never built snapshot : not returned even without waiting
+    final List<List<? extends Item>> read = new ArrayList<List<? extends Item>>();
+    man.lock.writeLock().lock();
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        read.add(man.getItemsWithoutWaiting());
+        read.add(man.getItems());
+      }
+    };
+    try {
+      reader.start();
+      Thread.sleep(200);
+      assertTrue(read.isEmpty());
+      man.registerItem(new TestItem("8", "name8"));
+    } finally {
+      man.lock.writeLock().unlock();
+    }
+    reader.join(5000);
+    assertEquals(2, read.get(0).size());
+    assertEquals(2, read.get(1).size());
+  }
+
+  /**
+   * Test that UI readers are not blocked by a writer holding the lock.
+   *
+   * @throws Exception the exception
+   */
+  public final void testGetItemsDuringWrite() throws Exception {
+    final ItemManager man = new LocalIM();
+    man.registerItem(new TestItem("7", "name7"));
+    assertEquals(1, man.getItems().size());
+    man.getLock().writeLock().lock();
+    try {
+      man.registerItem(new TestItem("8", "name8"));
+      final List<Integer> sizes = new ArrayList<Integer>();
+      Thread reader = new Thread() {
+        @Override
+        public void run() {
+          sizes.add(man.getItemsWithoutWaiting().size());
+          sizes.add(man.getItemByID("8") == null ? 0 : 1);
+        }
+      };
+      reader.start();
+      reader.join(5000);
+      assertFalse(reader.isAlive());
+      // last snapshot, but up to date ID lookup
+      assertEquals(Integer.valueOf(1), sizes.get(0));
+      assertEquals(Integer.valueOf(1), sizes.get(1));
+      // The writer itself sees its changes
+      assertEquals(2, man.getItems().size());
+    } finally {
+      man.getLock().writeLock().unlock();
+    }
+    assertEquals(2, man.getItems().size());
+  }
+
   /**
    * Test method for {@link org.jajuk.base.ItemManager#getItemsIterator()}.
    */
@@ -401,6 +520,34 @@ public class TestItemManager extends JajukTestCase {
     runSortingTest(man, false);
   }
 
+  /**
+   * Test the sorted set views used to build the ordered items in linear time.
+   */
+  public final void testOrderedItems() {
+    List<Item> list = new ArrayList<Item>();
+    for (int i = 1; i <= 7; i += 2) {
+      list.add(new TestItem(Integer.toString(i), "name" + i));
+    }
+    SortedSet<Item> ordered = new ItemManager.OrderedItems(list);
+    assertEquals("1", ordered.first().getID());
+    assertEquals("7", ordered.last().getID());
+    SortedSet<Item> sub = ordered.subSet(new TestItem("2", "name2"), new TestItem("7", "name7"));
+    assertEquals(2, sub.size());
+    assertEquals("3", sub.first().getID());
+    assertEquals("5", sub.last().getID());
+    assertEquals(2, ordered.headSet(new TestItem("5", "name5")).size());
+    assertEquals(1, ordered.tailSet(new TestItem("6", "name6")).size());
+    assertTrue(ordered.tailSet(new TestItem("8", "name8")).isEmpty());
+    try {
+      ordered.subSet(new TestItem("5", "name5"), new TestItem("3", "name3"));
+      fail("Should throw an exception");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    // Views are built in linear time into a tree set
+    assertEquals(list, new ArrayList<Item>(new TreeSet<Item>(ordered)));
+  }
+
   /**
    * Run sorting test.
    * 
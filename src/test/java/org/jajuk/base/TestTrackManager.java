@@ -21,6 +21,8 @@
 package org.jajuk.base;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jajuk.JajukTestCase;
 import org.jajuk.TestHelpers;
@@ -184,7 +186,23 @@ public class TestTrackManager extends JajukTestCase {
    */
   @Test
   public void testGetAssociatedTracksItemBoolean() {
-    //TODO To be implemented
+    Track track1 = TestHelpers.getTrack(1);
+    Track track2 = TestHelpers.getTrack(2);
+    TrackManager tm = TrackManager.getInstance();
+    assertEquals(1, tm.getAssociatedTracks(track1.getArtist(), true).size());
+    assertEquals(2, tm.getAssociatedTracks(track1.getGenre(), true).size());
+    assertEquals(2, tm.getAssociatedTracks(track1.getYear(), false).size());
+    assertEquals(2, tm.getAssociatedTracks(track1.getAlbum(), true).size());
+    // album-artist
+    AlbumArtist albumArtist = AlbumArtistManager.getInstance().registerAlbumArtist("myalbumartist");
+    track2.setAlbumArtist(albumArtist);
+    assertEquals(track2, tm.getAssociatedTracks(albumArtist, true).get(0));
+    // removed tracks are no more associated
+    tm.removeItem(track1);
+    assertEquals(0, tm.getAssociatedTracks(track1.getArtist(), true).size());
+    assertEquals(track2, tm.getAssociatedTracks(track1.getGenre(), true).get(0));
+    tm.removeItem(track2);
+    assertEquals(0, tm.getAssociatedTracks(albumArtist, true).size());
   }
 
   /**
@@ -192,7 +210,17 @@ public class TestTrackManager extends JajukTestCase {
    */
   @Test
   public void testGetAssociatedTracksListOfItemBoolean() {
-    //TODO To be implemented
+    Track track1 = TestHelpers.getTrack(1);
+    Track track2 = TestHelpers.getTrack(2);
+    List<Item> artists = new ArrayList<Item>();
+    artists.add(track1.getArtist());
+    artists.add(track2.getArtist());
+    // dups are ignored
+    artists.add(track2.getArtist());
+    List<Track> tracks = TrackManager.getInstance().getAssociatedTracks(artists, true);
+    assertEquals(2, tracks.size());
+    assertTrue(tracks.contains(track1));
+    assertTrue(tracks.contains(track2));
   }
 
   /**
@@ -232,7 +260,13 @@ public class TestTrackManager extends JajukTestCase {
    */
   @Test
   public void testSearch() {
-    //TODO To be implemented
+    File file = TestHelpers.getFile("abbeyroad.mp3", true);
+    List<SearchResult> results = TrackManager.getInstance().search("abbey");
+    assertEquals(1, results.size());
+    assertEquals(file, results.get(0).getFile());
+    // criteria found inside a word
+    assertEquals(1, TrackManager.getInstance().search("BEYROA").size());
+    assertEquals(0, TrackManager.getInstance().search("zzzz").size());
   }
 
   /**
@@ -0,0 +1,102 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *  
+ */
+package org.jajuk.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.util.Const;
+
+public class TestTrackSearchIndex extends JajukTestCase {
+  /**
+   * Test method for {@link org.jajuk.base.TrackSearchIndex#search(java.lang.String)}.
+   */
+  public void testSearchRanking() {
+    Track lovely = TestHelpers.getFile("lovely rita", true).getTrack();
+    Track love = TestHelpers.getFile("love me do", true).getTrack();
+    List<Track> tracks = TrackSearchIndex.getInstance().search("love");
+    assertEquals(2, tracks.size());
+    // whole word matches first
+    assertEquals(love, tracks.get(0));
+    assertEquals(lovely, tracks.get(1));
+    // all criteria words must match
+    tracks = TrackSearchIndex.getInstance().search("love rita");
+    assertEquals(1, tracks.size());
+    assertEquals(lovely, tracks.get(0));
+    // short criteria only match words start
+    assertEquals(2, TrackSearchIndex.getInstance().search("lo").size());
+    assertEquals(0, TrackSearchIndex.getInstance().search("ov").size());
+  }
+
+  /**
+   * Test that the index follows properties changes.
+   */
+  public void testSearchPropertyChange() {
+    Track track = TestHelpers.getTrack(1);
+    assertEquals(0, TrackSearchIndex.getInstance().search("strawberry").size());
+    track.setProperty(Const.XML_TRACK_COMMENT, "Strawberry fields");
+    assertEquals(1, TrackSearchIndex.getInstance().search("strawberry").size());
+    track.setProperty(Const.XML_TRACK_COMMENT, "Penny lane");
+    assertEquals(0, TrackSearchIndex.getInstance().search("strawberry").size());
+    assertEquals(1, TrackSearchIndex.getInstance().search("penny").size());
+  }
+
+  /**
+   * Test that removed tracks are no more found.
+   */
+  public void testSearchRemovedTrack() {
+    Track track = TestHelpers.getTrack(1);
+    TestHelpers.getTrack(2);
+    assertEquals(2, TrackSearchIndex.getInstance().search("track").size());
+    TrackManager.getInstance().removeItem(track);
+    List<Track> tracks = TrackSearchIndex.getInstance().search("track");
+    assertEquals(1, tracks.size());
+    assertNotSame(track, tracks.get(0));
+    Collection.clearCollection();
+    assertEquals(0, TrackSearchIndex.getInstance().search("track").size());
+  }
+
+  /**
+   * Test that the words of removed tracks are eventually dropped.
+   */
+  public void testDictionaryCompaction() {
+    TrackSearchIndex index = TrackSearchIndex.getInstance();
+    Track kept = TestHelpers.getTrack(-1);
+    for (int round = 0; round < 5; round++) {
+      List<Track> tracks = new ArrayList<Track>();
+      for (int i = 0; i < 1000; i++) {
+        tracks.add(TestHelpers.getTrack(round * 1000 + i));
+      }
+      assertEquals(1001, index.search("track").size());
+      for (Track track : tracks) {
+        TrackManager.getInstance().removeItem(track);
+      }
+    }
+    // Every round adds 1000 unique words
+    assertTrue(Integer.toString(index.getWordCount()), index.getWordCount() < 2000);
+    List<Track> tracks = index.search("track");
+    assertEquals(1, tracks.size());
+    assertEquals(kept, tracks.get(0));
+    assertEquals(0, index.search("4999").size());
+  }
+}
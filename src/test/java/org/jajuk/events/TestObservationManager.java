@@ -20,12 +20,19 @@
  */
 package org.jajuk.events;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jajuk.JajukTestCase;
 import org.jajuk.TestHelpers;
+import org.jajuk.util.Const;
 
 /**
  * .
@@ -205,4 +212,225 @@ public class TestObservationManager extends JajukTestCase {
     ObservationManager.notifySync(new JajukEvent(JajukEvents.ALBUM_CHANGED));
     ObservationManager.unregister(observer);
   }
+
+  /**
+   * Observer recording the events it gets, optionally blocking on the first
+   * one.
+   */
+  private static class RecordingObserver implements Observer {
+    final List<JajukEvent> events = Collections.synchronizedList(new ArrayList<JajukEvent>());
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release;
+
+    RecordingObserver(boolean block) {
+      release = new CountDownLatch(block ? 1 : 0);
+    }
+
+    @Override
+    public void update(JajukEvent event) {
+      events.add(event);
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public Set<JajukEvents> getRegistrationKeys() {
+      return EnumSet.of(JajukEvents.VOLUME_CHANGED, JajukEvents.DEVICE_REFRESH,
+          JajukEvents.FILE_LAUNCHED);
+    }
+  }
+
+  /**
+   * Wait for all asynchronous events to be handled.
+   */
+  private void waitForEvents() throws InterruptedException {
+    for (int i = 0; i < 100 && ObservationManager.getPendingEventsCount() > 0; i++) {
+      Thread.sleep(50);
+    }
+    // let the last update finish
+    Thread.sleep(100);
+  }
+
+  /**
+   * An observer gets asynchronous events in notification order.
+   *
+   * @throws Exception the exception
+   */
+  public void testNotifyOrderPerObserver() throws Exception {
+    RecordingObserver observer = new RecordingObserver(false);
+    ObservationManager.register(observer);
+    try {
+      for (int i = 0; i < 100; i++) {
+        Properties details = new Properties();
+        details.put("index", i);
+        ObservationManager.notify(new JajukEvent(JajukEvents.VOLUME_CHANGED, details));
+      }
+      waitForEvents();
+      assertEquals(100, observer.events.size());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(i, ObservationManager.getDetail(observer.events.get(i), "index"));
+      }
+      assertEquals(0, ObservationManager.getPendingEventsCount());
+      assertTrue(ObservationManager.getMaxDispatchLatency() >= ObservationManager
+          .getAverageDispatchLatency());
+    } finally {
+      ObservationManager.unregister(observer);
+    }
+  }
+
+  /**
+   * Pending device refreshes and launched files are coalesced for a late
+   * observer, the launched file keeps the previous file known by the observer.
+   *
+   * @throws Exception the exception
+   */
+  public void testCoalescing() throws Exception {
+    RecordingObserver observer = new RecordingObserver(true);
+    ObservationManager.register(observer);
+    try {
+      ObservationManager.notify(new JajukEvent(JajukEvents.VOLUME_CHANGED));
+      assertTrue(observer.started.await(10, TimeUnit.SECONDS));
+      for (int i = 0; i < 10; i++) {
+        ObservationManager.notify(new JajukEvent(JajukEvents.DEVICE_REFRESH));
+        Properties details = new Properties();
+        details.put(Const.DETAIL_CURRENT_FILE_ID, "file" + i);
+        if (i > 0) {
+          details.put(Const.DETAIL_OLD, "file" + (i - 1));
+        }
+        ObservationManager.notify(new JajukEvent(JajukEvents.FILE_LAUNCHED, details));
+      }
+      // wait for the events to reach the observer lane
+      for (int i = 0; i < 100 && !ObservationManager.queue.isEmpty(); i++) {
+        Thread.sleep(50);
+      }
+      Thread.sleep(100);
+      observer.release.countDown();
+      waitForEvents();
+      assertEquals(3, observer.events.size());
+      assertEquals(JajukEvents.DEVICE_REFRESH, observer.events.get(1).getSubject());
+      JajukEvent launched = observer.events.get(2);
+      assertEquals(JajukEvents.FILE_LAUNCHED, launched.getSubject());
+      assertEquals("file9",
+          ObservationManager.getDetail(launched, Const.DETAIL_CURRENT_FILE_ID));
+      // the first launched file has no previous file
+      assertNull(ObservationManager.getDetail(launched, Const.DETAIL_OLD));
+    } finally {
+      ObservationManager.unregister(observer);
+    }
+  }
+
+  /**
+   * A slow observer doesn't delay the other ones.
+   *
+   * @throws Exception the exception
+   */
+  public void testSlowObserverDoesntBlockOthers() throws Exception {
+    RecordingObserver slow = new RecordingObserver(true);
+    RecordingObserver fast = new RecordingObserver(false);
+    ObservationManager.register(slow);
+    ObservationManager.register(fast);
+    try {
+      for (int i = 0; i < 5; i++) {
+        ObservationManager.notify(new JajukEvent(JajukEvents.VOLUME_CHANGED));
+      }
+      for (int i = 0; i < 100 && fast.events.size() < 5; i++) {
+        Thread.sleep(50);
+      }
+      assertEquals(5, fast.events.size());
+      assertEquals(1, slow.events.size());
+      slow.release.countDown();
+      waitForEvents();
+      assertEquals(5, slow.events.size());
+    } finally {
+      ObservationManager.unregister(slow);
+      ObservationManager.unregister(fast);
+    }
+  }
+
+  /**
+   * Lanes are executed by a bounded pool, the lanes of observers that don't
+   * get a thread wait for one.
+   *
+   * @throws Exception the exception
+   */
+  public void testPoolIsBounded() throws Exception {
+    List<RecordingObserver> blocked = new ArrayList<RecordingObserver>();
+    for (int i = 0; i < EventDispatcher.POOL_SIZE + 5; i++) {
+      RecordingObserver observer = new RecordingObserver(true);
+      blocked.add(observer);
+      ObservationManager.register(observer);
+    }
+    try {
+      ObservationManager.notify(new JajukEvent(JajukEvents.VOLUME_CHANGED));
+      int started = 0;
+      for (int i = 0; i < 100 && started < EventDispatcher.POOL_SIZE; i++) {
+        Thread.sleep(50);
+        started = countStarted(blocked);
+      }
+      Thread.sleep(200);
+      assertEquals(EventDispatcher.POOL_SIZE, countStarted(blocked));
+      for (RecordingObserver observer : blocked) {
+        observer.release.countDown();
+      }
+      for (RecordingObserver observer : blocked) {
+        assertTrue(observer.started.await(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      for (RecordingObserver observer : blocked) {
+        observer.release.countDown();
+        ObservationManager.unregister(observer);
+      }
+    }
+  }
+
+  /**
+   * Count the observers that got an event.
+   *
+   * @param observers 
+   *
+   * @return the number of observers updated or being updated
+   */
+  private int countStarted(List<RecordingObserver> observers) {
+    int started = 0;
+    for (RecordingObserver observer : observers) {
+      if (observer.started.getCount() == 0) {
+        started++;
+      }
+    }
+    return started;
+  }
+
+  /**
+   * The executions of a given event are limited as for synchronous
+   * notifications.
+   *
+   * @throws Exception the exception
+   */
+  public void testEventCanals() throws Exception {
+    RecordingObserver observer = new RecordingObserver(true);
+    ObservationManager.register(observer);
+    try {
+      for (int i = 0; i < Const.MAX_EVENT_EXECUTIONS + 10; i++) {
+        ObservationManager.notify(new JajukEvent(JajukEvents.VOLUME_CHANGED));
+      }
+      assertTrue(observer.started.await(10, TimeUnit.SECONDS));
+      for (int i = 0; i < 100 && !ObservationManager.queue.isEmpty(); i++) {
+        Thread.sleep(50);
+      }
+      Thread.sleep(100);
+      observer.release.countDown();
+      waitForEvents();
+      assertEquals(Const.MAX_EVENT_EXECUTIONS + 1, observer.events.size());
+      // Canals are released once executed
+      ObservationManager.notify(new JajukEvent(JajukEvents.VOLUME_CHANGED));
+      waitForEvents();
+      assertEquals(Const.MAX_EVENT_EXECUTIONS + 2, observer.events.size());
+    } finally {
+      ObservationManager.unregister(observer);
+    }
+  }
 }
@@ -20,6 +20,8 @@
  */
 package org.jajuk.services.bookmark;
 
+import java.io.RandomAccessFile;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.commons.io.FileUtils;
@@ -316,6 +318,110 @@ public class TestHistory extends JajukTestCase {
     assertEquals(date, History.getInstance().getHistoryItem(0).getDate());
   }
 
+  /**
+   * Test method for {@link org.jajuk.services.bookmark.History#getItems(long, long)}.
+   *
+   * @throws Exception the exception
+   */
+  public final void testGetItemsRange() throws Exception {
+    for (int i = 1; i <= 5; i++) {
+      addHistoryItem(i, i * 100);
+    }
+    List<HistoryItem> range = History.getInstance().getItems(200, 400);
+    assertEquals(2, range.size());
+    // newest first
+    assertEquals(300, range.get(0).getDate());
+    assertEquals(200, range.get(1).getDate());
+    assertEquals(5, History.getInstance().getItems(0, Long.MAX_VALUE).size());
+    assertTrue(History.getInstance().getItems(600, 700).isEmpty());
+  }
+
+  /**
+   * Test method for.
+   *
+   * {@link org.jajuk.services.bookmark.History#isPlayedSince(String, long)}
+   * .
+   *
+   * @throws Exception the exception
+   */
+  public final void testIsPlayedSince() throws Exception {
+    addHistoryItem(1, 100);
+    addHistoryItem(2, 200);
+    addHistoryItem(1, 300);
+    String id1 = TestHelpers.getFile("file_1", false).getID();
+    String id2 = TestHelpers.getFile("file_2", false).getID();
+    assertEquals(300, History.getInstance().getLastPlayedDate(id1));
+    assertTrue(History.getInstance().isPlayedSince(id1, 250));
+    assertFalse(History.getInstance().isPlayedSince(id2, 250));
+    assertEquals(-1, History.getInstance().getLastPlayedDate("unknown"));
+    History.getInstance().changeID(id1, id2);
+    assertEquals(-1, History.getInstance().getLastPlayedDate(id1));
+    assertEquals(300, History.getInstance().getLastPlayedDate(id2));
+    History.getInstance().clear();
+    assertFalse(History.getInstance().isPlayedSince(id2, 0));
+  }
+
+  /**
+   * Test the journal replay at load.
+   *
+   * @throws Exception the exception
+   */
+  public final void testJournalReplay() throws Exception {
+    long date = System.currentTimeMillis();
+    addHistoryItem(1, date - 2000);
+    History.commit();
+    long snapshotSize = SessionService.getConfFileByPath(Const.FILE_HISTORY).length();
+    // next changes only go to the journal
+    addHistoryItem(2, date - 1000);
+    addHistoryItem(3, date);
+    History.commit();
+    assertEquals(snapshotSize, SessionService.getConfFileByPath(Const.FILE_HISTORY).length());
+    History.load();
+    assertEquals(3, History.getInstance().getItems().size());
+    assertEquals(date, History.getInstance().getHistoryItem(0).getDate());
+    // a clearing is journaled as well
+    History.getInstance().clear();
+    addHistoryItem(4, date);
+    History.commit();
+    History.load();
+    assertEquals(1, History.getInstance().getItems().size());
+    assertEquals(TestHelpers.getFile("file_4", false).getID(), History.getInstance()
+        .getHistoryItem(0).getFileId());
+  }
+
+  /**
+   * Test that a corrupted journal tail is dropped and doesn't hide the next
+   * changes.
+   *
+   * @throws Exception the exception
+   */
+  public final void testJournalCorruptedTail() throws Exception {
+    long date = System.currentTimeMillis();
+    addHistoryItem(1, date - 3000);
+    History.commit();
+    addHistoryItem(2, date - 2000);
+    History.commit();
+    java.io.File journal = SessionService.getConfFileByPath(Const.FILE_HISTORY_JOURNAL);
+    long valid = journal.length();
+    addHistoryItem(3, date - 1000);
+    History.commit();
+    // Crash during the last append : a partial record
+    RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+    try {
+      raf.setLength(raf.length() - 3);
+    } finally {
+      raf.close();
+    }
+    History.load();
+    assertEquals(2, History.getInstance().getItems().size());
+    assertEquals(valid, journal.length());
+    addHistoryItem(4, date);
+    History.commit();
+    History.load();
+    assertEquals(3, History.getInstance().getItems().size());
+    assertEquals(date, History.getInstance().getHistoryItem(0).getDate());
+  }
+
   /**
    * Adds the history item.
    * 
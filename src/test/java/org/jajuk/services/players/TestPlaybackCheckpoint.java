@@ -0,0 +1,129 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *  
+ */
+package org.jajuk.services.players;
+
+import java.lang.reflect.Field;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.File;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Conf;
+import org.jajuk.util.Const;
+
+/**
+ * .
+ */
+public class TestPlaybackCheckpoint extends JajukTestCase {
+  private java.io.File positionFile;
+
+  @Override
+  protected void specificSetUp() throws Exception {
+    positionFile = SessionService.getConfFileByPath(Const.FILE_PLAYING_POSITION);
+    positionFile.delete();
+    Conf.setProperty(Const.CONF_PLAYING_POSITION_FLUSH_INTERVAL, "10");
+    // Make sure no previous test left a pending flush
+    PlaybackCheckpoint.getInstance().setPosition(null, 0f);
+    PlaybackCheckpoint.getInstance().flush();
+    positionFile.delete();
+  }
+
+  /**
+   * Force next read to come from the position file.
+   *
+   * @throws Exception the exception
+   */
+  private void unload() throws Exception {
+    Field loaded = PlaybackCheckpoint.class.getDeclaredField("bLoaded");
+    loaded.setAccessible(true);
+    loaded.set(PlaybackCheckpoint.getInstance(), false);
+  }
+
+  /**
+   * Test that positions are kept in memory until flushed.
+   *
+   * @throws Exception the exception
+   */
+  public void testSetPositionIsInMemory() throws Exception {
+    File file = TestHelpers.getFile("checkpoint.mp3", true);
+    PlaybackCheckpoint.getInstance().setPosition(file, 0.3f);
+    assertEquals(0.3f, PlaybackCheckpoint.getInstance().getPosition());
+    assertEquals(file.getID(), PlaybackCheckpoint.getInstance().getFileID());
+    // Flushed at set up so the interval is not elapsed : nothing is written
+    PlaybackCheckpoint.getInstance().flushIfRequired();
+    assertFalse(positionFile.exists());
+    // Once elapsed, the position is written
+    Conf.setProperty(Const.CONF_PLAYING_POSITION_FLUSH_INTERVAL, "0");
+    PlaybackCheckpoint.getInstance().flushIfRequired();
+    assertTrue(positionFile.exists());
+  }
+
+  /**
+   * Test flush and reload.
+   *
+   * @throws Exception the exception
+   */
+  public void testFlushAndLoad() throws Exception {
+    File file = TestHelpers.getFile("checkpoint.mp3", true);
+    PlaybackCheckpoint.getInstance().setPosition(file, 0.25f);
+    PlaybackCheckpoint.getInstance().requestFlush();
+    PlaybackCheckpoint.getInstance().flushIfRequired();
+    assertTrue(positionFile.exists());
+    // Forget the in-memory state and read it back
+    PlaybackCheckpoint.getInstance().setPosition(null, 0f);
+    unload();
+    assertEquals(0.25f, PlaybackCheckpoint.getInstance().getPosition());
+    assertEquals(file.getID(), PlaybackCheckpoint.getInstance().getFileID());
+    assertTrue(PlaybackCheckpoint.getInstance().isPositionFor(file));
+    assertFalse(PlaybackCheckpoint.getInstance().isPositionFor(TestHelpers.getFile(
+        "other.mp3", true)));
+  }
+
+  /**
+   * Test that a position without file (old position file format) applies to
+   * any file.
+   *
+   * @throws Exception the exception
+   */
+  public void testPositionWithoutFile() throws Exception {
+    PlaybackCheckpoint.getInstance().setPosition(null, 0.5f);
+    PlaybackCheckpoint.getInstance().flush();
+    unload();
+    assertEquals(0.5f, PlaybackCheckpoint.getInstance().getPosition());
+    assertNull(PlaybackCheckpoint.getInstance().getFileID());
+    assertTrue(PlaybackCheckpoint.getInstance().isPositionFor(TestHelpers.getFile(
+        "checkpoint.mp3", true)));
+  }
+
+  /**
+   * Test reset.
+   *
+   * @throws Exception the exception
+   */
+  public void testReset() throws Exception {
+    File file = TestHelpers.getFile("checkpoint.mp3", true);
+    PlaybackCheckpoint.getInstance().setPosition(file, 0.7f);
+    PlaybackCheckpoint.getInstance().reset();
+    PlaybackCheckpoint.getInstance().flushIfRequired();
+    unload();
+    assertEquals(0f, PlaybackCheckpoint.getInstance().getPosition());
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.players;
+
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.services.core.SessionService;
+import org.jajuk.util.Const;
+
+/**
+ * Test methods for {@link org.jajuk.services.players.QueueJournal}.
+ */
+public class TestQueueJournal extends JajukTestCase {
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    QueueModel.reset();
+    SessionService.getConfFileByPath(Const.FILE_FIFO).delete();
+    SessionService.getConfFileByPath(Const.FILE_FIFO_JOURNAL).delete();
+  }
+
+  /**
+   * Gets the queue file IDs.
+   *
+   * @return the queue file IDs
+   */
+  private static List<String> getQueueIDs() {
+    List<String> ids = new ArrayList<String>();
+    for (StackItem item : QueueModel.getQueue()) {
+      ids.add(item.getFile().getID());
+    }
+    return ids;
+  }
+
+  /**
+   * Add some items to the queue.
+   *
+   * @param from first file number
+   * @param count
+   *
+   * @throws Exception the exception
+   */
+  private static void addItems(int from, int count) throws Exception {
+    List<StackItem> items = new ArrayList<StackItem>();
+    for (int i = from; i < from + count; i++) {
+      items.add(new StackItem(TestHelpers.getFile("file" + i, false)));
+    }
+    QueueModel.insert(items, QueueModel.getQueueSize());
+  }
+
+  public void testReplay() throws Exception {
+    addItems(0, 5);
+    // first commit writes a snapshot
+    QueueModel.commit();
+    long snapshotSize = SessionService.getConfFileByPath(Const.FILE_FIFO).length();
+    assertEquals(getQueueIDs(), QueueJournal.readStoredQueue());
+    // next changes are appended to the journal
+    addItems(5, 3);
+    QueueModel.up(3);
+    QueueModel.down(0);
+    Set<Integer> indexes = new HashSet<Integer>();
+    indexes.add(1);
+    indexes.add(6);
+    QueueModel.remove(indexes);
+    QueueModel.insert(new StackItem(TestHelpers.getFile("file9", false)), 2);
+    QueueModel.commit();
+    assertEquals(snapshotSize, SessionService.getConfFileByPath(Const.FILE_FIFO).length());
+    assertEquals(getQueueIDs(), QueueJournal.readStoredQueue());
+    QueueModel.clear();
+    addItems(10, 1);
+    QueueModel.commit();
+    assertEquals(getQueueIDs(), QueueJournal.readStoredQueue());
+  }
+
+  public void testStaleJournalIgnored() throws Exception {
+    addItems(0, 3);
+    QueueModel.commit();
+    addItems(3, 2);
+    QueueModel.commit();
+    // The fifo file is replaced, the journal doesn't apply to it anymore
+    java.io.File fifo = SessionService.getConfFileByPath(Const.FILE_FIFO);
+    FileUtils.writeStringToFile(fifo, "foo\nbar\n");
+    List<String> expected = new ArrayList<String>();
+    expected.add("foo");
+    expected.add("bar");
+    assertEquals(expected, QueueJournal.readStoredQueue());
+  }
+
+  public void testCorruptedTail() throws Exception {
+    addItems(0, 3);
+    QueueModel.commit();
+    addItems(3, 2);
+    QueueModel.commit();
+    List<String> expected = getQueueIDs();
+    java.io.File journal = SessionService.getConfFileByPath(Const.FILE_FIFO_JOURNAL);
+    long valid = journal.length();
+    addItems(5, 1);
+    QueueModel.commit();
+    // Crash during the last append : a partial record
+    RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+    try {
+      raf.setLength(raf.length() - 3);
+    } finally {
+      raf.close();
+    }
+    assertEquals(expected, QueueJournal.readStoredQueue());
+    // The partial record is dropped so next appends are read back
+    assertEquals(valid, journal.length());
+  }
+
+  public void testNoSnapshot() throws Exception {
+    addItems(0, 2);
+    QueueModel.commit();
+    SessionService.getConfFileByPath(Const.FILE_FIFO).delete();
+    assertTrue(QueueJournal.readStoredQueue().isEmpty());
+    // the next commit writes a new snapshot
+    addItems(2, 1);
+    QueueModel.commit();
+    assertTrue(SessionService.getConfFileByPath(Const.FILE_FIFO).exists());
+    assertEquals(getQueueIDs(), QueueJournal.readStoredQueue());
+  }
+}
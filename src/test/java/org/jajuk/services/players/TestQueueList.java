@@ -307,6 +307,66 @@ public class TestQueueList extends JajukTestCase {
     // tested above
   }
 
+  /**
+   * Test method for {@link org.jajuk.services.players.QueueList#remove(int[])}.
+   *
+   * @throws Exception the exception
+   */
+  public void testRemoveIndexes() throws Exception {
+    QueueList impl = new QueueList();
+    impl.clear();
+    List<StackItem> items = prepareQueueImpl(impl);
+    items.addAll(prepareQueueImpl(impl));
+    long modCount = impl.getModificationCount();
+    impl.remove(new int[] { 0, 2, 3 });
+    assertEquals(modCount + 1, impl.getModificationCount());
+    assertEquals(3, impl.size());
+    assertSame(items.get(1), impl.get(0));
+    assertSame(items.get(4), impl.get(1));
+    assertSame(items.get(5), impl.get(2));
+    // void removal
+    impl.remove(new int[0]);
+    assertEquals(3, impl.size());
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.players.QueueList#swap(int, int)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testSwap() throws Exception {
+    QueueList impl = new QueueList();
+    impl.clear();
+    List<StackItem> items = prepareQueueImpl(impl);
+    long modCount = impl.getModificationCount();
+    impl.swap(0, 2);
+    assertEquals(modCount + 1, impl.getModificationCount());
+    assertSame(items.get(2), impl.get(0));
+    assertSame(items.get(1), impl.get(1));
+    assertSame(items.get(0), impl.get(2));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.players.QueueList#getModificationCount()}.
+   *
+   * @throws Exception the exception
+   */
+  public void testGetModificationCount() throws Exception {
+    QueueList impl = new QueueList();
+    long modCount = impl.getModificationCount();
+    prepareQueueImpl(impl);
+    assertTrue(impl.getModificationCount() > modCount);
+    modCount = impl.getModificationCount();
+    // reads don't change it
+    impl.get(0);
+    impl.getQueue();
+    assertEquals(modCount, impl.getModificationCount());
+    Iterator<StackItem> it = impl.iterator();
+    it.next();
+    it.remove();
+    assertTrue(impl.getModificationCount() > modCount);
+  }
+
   /**
    * Test method for {@link org.jajuk.services.players.QueueList#subList(int, int)}.
    *
@@ -0,0 +1,138 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.reporting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.JajukTestCase;
+import org.jajuk.MockPlayer;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.Directory;
+import org.jajuk.base.File;
+import org.jajuk.base.Item;
+import org.jajuk.util.Const;
+import org.jajuk.util.Messages;
+
+/**
+ * Test methods for {@link org.jajuk.services.reporting.HTMLExporter}.
+ */
+public class TestHTMLExporter extends JajukTestCase {
+  // settings for the micro-benchmark
+  private static final int DIRECTORIES = 50;
+  private static final int FILES_PER_DIRECTORY = 40;
+  private File file1;
+  private Directory sub;
+
+  @Override
+  protected void specificSetUp() throws Exception {
+    Directory dir = TestHelpers.getDirectory();
+    sub = TestHelpers.getDirectory("sub", dir, TestHelpers.getDevice());
+    file1 = TestHelpers.getFile("file1 & co", dir, true, MockPlayer.class);
+    TestHelpers.getFile("file2", sub, true, MockPlayer.class);
+  }
+
+  private static String read(Exporter exporter) throws Exception {
+    return FileUtils.readFileToString(exporter.getCacheFile(), "UTF-8");
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.reporting.HTMLExporter#processCollection(int)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testProcessCollectionPhysical() throws Exception {
+    HTMLExporter exporter = new HTMLExporter();
+    exporter.processCollection(Exporter.PHYSICAL_COLLECTION);
+    String html = read(exporter);
+    assertTrue(html, html.startsWith("<!DOCTYPE html"));
+    assertTrue(html, html.trim().endsWith("</html>"));
+    assertTrue(html.contains("<h2 id='a" + TestHelpers.getDevice().getID() + "'>"));
+    assertTrue(html.contains("<p><a href='#a" + sub.getID() + "'>"));
+    assertTrue(html.contains("<h2 id='a" + sub.getID() + "'>"));
+    assertTrue(html.contains("<td>file1 &amp; co</td>"));
+    assertTrue(html.contains("<th>" + Messages.getHumanPropertyName(Const.XML_ARTIST) + "</th>"));
+    // Sections in order, the sub-directory table before its parent one
+    assertTrue(html.indexOf("<h2 id='a2'>") < html.indexOf("<h2 id='a3'>"));
+    assertTrue(html.indexOf("<td>file2</td>") < html.indexOf("<td>file1 &amp; co</td>"));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.reporting.HTMLExporter#processCollection(int)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testProcessCollectionLogical() throws Exception {
+    HTMLExporter exporter = new HTMLExporter();
+    exporter.processCollection(Exporter.LOGICAL_COLLECTION);
+    String html = read(exporter);
+    String genre = file1.getTrack().getGenre().getName2();
+    assertTrue(html.contains("<a href='#a" + file1.getTrack().getGenre().getID() + "'>" + genre
+        + "</a>"));
+    assertTrue(html.contains("<a href='#a3'>"));
+    assertTrue(html.contains("<h4>" + file1.getTrack().getArtist().getName2() + "</h4>"));
+    assertTrue(html.contains("<td width='50%'>" + file1.getTrack().getAlbum().getName2()
+        + "</td>"));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.reporting.HTMLExporter#process(java.util.List)},
+   * transformed from XML.
+   *
+   * @throws Exception the exception
+   */
+  public void testProcessDirectory() throws Exception {
+    List<Item> items = new ArrayList<Item>();
+    items.add(sub);
+    HTMLExporter exporter = new HTMLExporter();
+    exporter.process(items);
+    assertTrue(read(exporter).contains("file2"));
+  }
+
+  /**
+   * Compare the direct rendering of the physical collection with the XML
+   * transformation.
+   *
+   * @throws Exception the exception
+   */
+  public void testRenderingBenchmark() throws Exception {
+    for (int i = 0; i < DIRECTORIES; i++) {
+      Directory dir = TestHelpers.getDirectory("dir" + i);
+      for (int j = 0; j < FILES_PER_DIRECTORY; j++) {
+        TestHelpers.getFile("file" + i + "_" + j, dir, true, MockPlayer.class);
+      }
+    }
+    long start = System.currentTimeMillis();
+    XMLExporter xmlExporter = new XMLExporter();
+    xmlExporter.processCollection(Exporter.PHYSICAL_COLLECTION);
+    XMLTransformer.xmlToHTML(xmlExporter.getCacheFile(), new HTMLExporter().getCacheFile(),
+        Const.XSLT_DEVICE);
+    long transformed = System.currentTimeMillis() - start;
+    start = System.currentTimeMillis();
+    HTMLExporter exporter = new HTMLExporter();
+    exporter.processCollection(Exporter.PHYSICAL_COLLECTION);
+    long direct = System.currentTimeMillis() - start;
+    assertTrue(read(exporter).contains("file0_0"));
+    System.out.println("Physical collection report of " + (DIRECTORIES * FILES_PER_DIRECTORY)
+        + " files, XML + XSLT: " + transformed + "ms, direct: " + direct + "ms");
+  }
+}
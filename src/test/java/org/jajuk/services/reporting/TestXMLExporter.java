@@ -0,0 +1,137 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.reporting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathFactory;
+
+import org.jajuk.ConstTest;
+import org.jajuk.JajukTestCase;
+import org.jajuk.MockPlayer;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.Device;
+import org.jajuk.base.Directory;
+import org.jajuk.base.File;
+import org.jajuk.base.Item;
+import org.w3c.dom.Document;
+
+/**
+ * Test methods for {@link org.jajuk.services.reporting.XMLExporter}.
+ */
+public class TestXMLExporter extends JajukTestCase {
+  private File file1;
+  private Directory sub;
+
+  @Override
+  protected void specificSetUp() throws Exception {
+    Directory dir = TestHelpers.getDirectory();
+    sub = TestHelpers.getDirectory("sub", dir, TestHelpers.getDevice());
+    file1 = TestHelpers.getFile("file1 & co", dir, true, MockPlayer.class);
+    TestHelpers.getFile("file2", sub, true, MockPlayer.class);
+    // Not a valid XML char
+    file1.getTrack().setComment("<bad\u0001comment>");
+  }
+
+  private static Document parse(Exporter exporter) throws Exception {
+    return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .parse(exporter.getCacheFile());
+  }
+
+  private static String eval(Document doc, String expression) throws Exception {
+    return XPathFactory.newInstance().newXPath().evaluate(expression, doc);
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.reporting.XMLExporter#processCollection(int)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testProcessCollectionPhysical() throws Exception {
+    XMLExporter exporter = new XMLExporter();
+    exporter.processCollection(Exporter.PHYSICAL_COLLECTION);
+    Document doc = parse(exporter);
+    assertEquals("1", eval(doc, "count(/collection/device)"));
+    assertEquals("1", eval(doc, "count(/collection/i18n)"));
+    // The sub-directory is nested in its parent
+    assertEquals("sub", eval(doc, "/collection/device/directory/directory/name"));
+    assertEquals("file2", eval(doc, "/collection/device/directory/directory/file/name"));
+    assertEquals("file1 & co", eval(doc, "/collection/device/directory/file/name"));
+    assertEquals("<badcomment>", eval(doc, "/collection/device/directory/file/track/comment"));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.reporting.XMLExporter#processCollection(int)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testProcessCollectionLogical() throws Exception {
+    XMLExporter exporter = new XMLExporter();
+    exporter.setShowTracks(false);
+    exporter.processCollection(Exporter.LOGICAL_COLLECTION);
+    Document doc = parse(exporter);
+    assertEquals("1", eval(doc, "count(/collection/style)"));
+    assertEquals("1", eval(doc, "count(/collection/style/album)"));
+    assertEquals("1", eval(doc, "count(/collection/style/author/album)"));
+    assertEquals("0", eval(doc, "count(//track)"));
+  }
+
+  /**
+   * Test method for {@link org.jajuk.services.reporting.XMLExporter#process(java.util.List)}.
+   *
+   * @throws Exception the exception
+   */
+  public void testProcessList() throws Exception {
+    List<Item> items = new ArrayList<Item>();
+    items.add(file1.getTrack().getAlbum());
+    XMLExporter exporter = new XMLExporter();
+    exporter.process(items);
+    Document doc = parse(exporter);
+    assertEquals("1", eval(doc, "count(/collection/album)"));
+    assertEquals("2", eval(doc, "count(/collection/album/track)"));
+  }
+
+  /**
+   * Test the progress notifications and the chunks cleanup.
+   *
+   * @throws Exception the exception
+   */
+  public void testProgress() throws Exception {
+    TestHelpers.getDevice("other", Device.Type.DIRECTORY, ConstTest.DEVICES_BASE_PATH + "/other");
+    final List<String> progress = new ArrayList<String>();
+    XMLExporter exporter = new XMLExporter();
+    exporter.setProgressListener(new ExportProgressListener() {
+      @Override
+      public void progress(int done, int total) {
+        progress.add(done + "/" + total);
+      }
+    });
+    exporter.processCollection(Exporter.PHYSICAL_COLLECTION);
+    assertEquals("[1/2, 2/2]", progress.toString());
+    assertEquals("2", eval(parse(exporter), "count(/collection/device)"));
+    for (java.io.File file : exporter.getCacheFile().getAbsoluteFile().getParentFile()
+        .listFiles()) {
+      assertFalse(file.getName(), file.getName().endsWith(".part"));
+    }
+  }
+}
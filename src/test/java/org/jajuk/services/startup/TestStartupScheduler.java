@@ -0,0 +1,153 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.startup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jajuk.JajukTestCase;
+
+/**
+ * Tests for org.jajuk.services.startup.StartupScheduler
+ */
+public class TestStartupScheduler extends JajukTestCase {
+  /** Names of the done tasks, in order. */
+  private List<String> done;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    done = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  /**
+   * Task recording its name once done.
+   *
+   * @param name
+   *
+   * @return the task
+   */
+  private Runnable record(final String name) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        done.add(name);
+      }
+    };
+  }
+
+  public void testPrerequisites() throws Exception {
+    StartupScheduler scheduler = new StartupScheduler(3);
+    scheduler.add("a", record("a"));
+    scheduler.add("b", record("b"), "a");
+    scheduler.add("c", record("c"));
+    scheduler.add("d", record("d"), "b", "c");
+    scheduler.run();
+    assertEquals(4, done.size());
+    assertTrue(done.indexOf("a") < done.indexOf("b"));
+    assertTrue(done.indexOf("b") < done.indexOf("d"));
+    assertTrue(done.indexOf("c") < done.indexOf("d"));
+  }
+
+  public void testParallel() throws Exception {
+    // Both tasks wait for each other : they must run at the same time
+    final CountDownLatch latch = new CountDownLatch(2);
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+        try {
+          assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    StartupScheduler scheduler = new StartupScheduler(2);
+    scheduler.add("a", task);
+    scheduler.add("b", task);
+    scheduler.run();
+    assertEquals(0, latch.getCount());
+  }
+
+  public void testFailure() throws Exception {
+    StartupScheduler scheduler = new StartupScheduler(2);
+    scheduler.add("a", new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException("test");
+      }
+    });
+    scheduler.add("b", record("b"), "a");
+    try {
+      scheduler.run();
+      fail("Should throw the task failure");
+    } catch (IllegalStateException e) {
+      assertEquals("test", e.getMessage());
+    }
+    assertFalse(done.contains("b"));
+    assertEquals(-1, scheduler.getDuration("b"));
+    assertTrue(scheduler.getReport().contains("b: not run"));
+  }
+
+  public void testUnknownPrerequisite() {
+    StartupScheduler scheduler = new StartupScheduler();
+    try {
+      scheduler.add("a", record("a"), "b");
+      fail("Should reject an unknown prerequisite");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    scheduler.add("a", record("a"));
+    try {
+      scheduler.add("a", record("a"));
+      fail("Should reject a duplicate task");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testReport() throws Exception {
+    StartupScheduler scheduler = new StartupScheduler(1);
+    scheduler.add("a", new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    scheduler.add("b", record("b"), "a");
+    scheduler.run();
+    assertTrue(scheduler.getDuration("a") >= 40);
+    assertTrue(scheduler.getStart("b") >= scheduler.getStart("a") + scheduler.getDuration("a"));
+    assertTrue(scheduler.getReport().contains("Startup Thread"));
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.services.tags;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.TypeManager;
+import org.jajuk.ui.helpers.RefreshReporter;
+
+/**
+ * Test methods for {@link org.jajuk.services.tags.TagMetadataCache}.
+ */
+public class TestTagMetadataCache extends JajukTestCase {
+  private File music;
+  private CountingReporter reporter;
+
+  /**
+   * Reporter counting the tag reads.
+   */
+  private static class CountingReporter extends RefreshReporter {
+    int cached;
+    int parsed;
+
+    CountingReporter() {
+      super(null);
+    }
+
+    @Override
+    public synchronized void notifyTagRead(boolean bCached, long parseTime) {
+      if (bCached) {
+        cached++;
+      } else {
+        parsed++;
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.jajuk.JajukTestCase#specificSetUp()
+   */
+  @Override
+  protected void specificSetUp() throws Exception {
+    assertNotNull(TypeManager.getInstance().registerType("testtag", "tst", null,
+        NoTagsTagImpl.class));
+    // Only the collection files are persisted
+    music = TestHelpers.getFile("cached.tst", true).getFIO();
+    FileUtils.writeStringToFile(music, "content");
+    TagMetadataCache.getInstance().release();
+    TagMetadataCache.getCacheFile().delete();
+    Tag.clearCache();
+    reporter = new CountingReporter();
+  }
+
+  public void testReadUnchanged() throws Exception {
+    TagMetadata metadata = TagMetadataCache.getInstance().read(music, reporter);
+    assertEquals(music.getName().replace(".tst", ""), metadata.getTrackName());
+    assertEquals(1, reporter.parsed);
+    assertSame(metadata, TagMetadataCache.getInstance().read(music, reporter));
+    assertEquals(1, reporter.parsed);
+    assertEquals(1, reporter.cached);
+  }
+
+  public void testReadChanged() throws Exception {
+    TagMetadataCache.getInstance().read(music, reporter);
+    FileUtils.writeStringToFile(music, "longer content");
+    TagMetadataCache.getInstance().read(music, reporter);
+    assertEquals(2, reporter.parsed);
+    music.setLastModified(music.lastModified() - 10000);
+    TagMetadataCache.getInstance().read(music, reporter);
+    assertEquals(3, reporter.parsed);
+    assertEquals(0, reporter.cached);
+  }
+
+  public void testInvalidate() throws Exception {
+    TagMetadataCache.getInstance().read(music, reporter);
+    TagMetadataCache.getInstance().invalidate(music);
+    TagMetadataCache.getInstance().read(music, reporter);
+    assertEquals(2, reporter.parsed);
+    assertEquals(0, reporter.cached);
+  }
+
+  public void testInvalidateNotLoaded() throws Exception {
+    TagMetadataCache.getInstance().read(music, reporter);
+    TagMetadataCache.getInstance().release();
+    TagMetadataCache.getInstance().invalidate(music);
+    TagMetadataCache.getInstance().read(music, reporter);
+    assertEquals(2, reporter.parsed);
+    assertEquals(0, reporter.cached);
+  }
+
+  public void testPersistence() throws Exception {
+    TagMetadata metadata = TagMetadataCache.getInstance().read(music, reporter);
+    TagMetadataCache.getInstance().release();
+    assertTrue(TagMetadataCache.getCacheFile().exists());
+    TagMetadata read = TagMetadataCache.getInstance().read(music, reporter);
+    assertEquals(1, reporter.parsed);
+    assertEquals(1, reporter.cached);
+    assertEquals(metadata.getTrackName(), read.getTrackName());
+    assertEquals(metadata.getAlbumName(), read.getAlbumName());
+    assertEquals(metadata.getLength(), read.getLength());
+    assertEquals(metadata.isCorrupted(), read.isCorrupted());
+  }
+
+  public void testUnknownFilesNotPersisted() throws Exception {
+    File other = File.createTempFile("other", ".tst");
+    other.deleteOnExit();
+    FileUtils.writeStringToFile(other, "content");
+    TagMetadataCache.getInstance().read(music, reporter);
+    TagMetadataCache.getInstance().read(other, reporter);
+    TagMetadataCache.getInstance().release();
+    TagMetadataCache.getInstance().read(music, reporter);
+    TagMetadataCache.getInstance().read(other, reporter);
+    assertEquals(3, reporter.parsed);
+    assertEquals(1, reporter.cached);
+  }
+}
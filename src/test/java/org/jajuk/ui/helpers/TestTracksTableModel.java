@@ -0,0 +1,146 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.ui.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.File;
+import org.jajuk.base.Item;
+import org.jajuk.base.Track;
+import org.jajuk.util.Const;
+import org.junit.Test;
+
+/**
+ * Test methods for {@link org.jajuk.ui.helpers.TracksTableModel}.
+ */
+public class TestTracksTableModel extends JajukTestCase {
+  @Test
+  public void testModel() {
+    File file1 = TestHelpers.getFile("file1.tst", true);
+    File file2 = TestHelpers.getFile("file2.tst", true);
+    TracksTableModel model = new TracksTableModel("view");
+    model.populateModel(Arrays.asList(Const.XML_PLAY, Const.XML_NAME, Const.XML_FILES));
+    assertEquals(2, model.getRowCount());
+    assertEquals(15, model.getColumnCount());
+    for (int row = 0; row < 2; row++) {
+      Track track = (Track) model.getItemAt(row);
+      File file = (track == file1.getTrack()) ? file1 : file2;
+      assertEquals(track.getName(), model.getValueAt(row, 1));
+      assertEquals(file.getAbsolutePath(), model.getValueAt(row, 14));
+      // Hidden columns are not computed
+      assertEquals("", model.getValueAt(row, 2));
+      assertEquals("", model.getValueAt(row, 13));
+    }
+    // Out of bounds rows
+    assertNull(model.getValueAt(2, 1));
+  }
+
+  @Test
+  public void testEditAndUndo() {
+    TestHelpers.getFile("file1.tst", true);
+    TracksTableModel model = new TracksTableModel("view");
+    model.setEditable(true);
+    model.populateModel(Arrays.asList(Const.XML_NAME));
+    // play and hits columns are never editable
+    assertFalse(model.isCellEditable(0, 0));
+    assertFalse(model.isCellEditable(0, 13));
+    Object name = model.getValueAt(0, 1);
+    model.setValueAt("new name", 0, 1);
+    assertEquals("new name", model.getValueAt(0, 1));
+    model.undo(0, 1);
+    assertEquals(name, model.getValueAt(0, 1));
+  }
+
+  @Test
+  public void testRefreshItems() {
+    File file1 = TestHelpers.getFile("file1.tst", true);
+    TestHelpers.getFile("file2.tst", true);
+    TracksTableModel model = new TracksTableModel("view");
+    model.populateModel(Arrays.asList(Const.XML_TRACK_HITS));
+    int row = (model.getItemAt(0) == file1.getTrack()) ? 0 : 1;
+    assertEquals(0l, model.getValueAt(row, 13));
+    final List<TableModelEvent> events = new ArrayList<TableModelEvent>();
+    model.addTableModelListener(new TableModelListener() {
+      @Override
+      public void tableChanged(TableModelEvent e) {
+        events.add(e);
+      }
+    });
+    file1.getTrack().setHits(3);
+    // Rendered rows are cached until refreshed
+    assertEquals(0l, model.getValueAt(row, 13));
+    assertTrue(model.refreshItems(Collections.singletonList(file1.getTrack())));
+    assertEquals(3l, model.getValueAt(row, 13));
+    // Only the changed row is updated
+    assertEquals(1, events.size());
+    assertEquals(row, events.get(0).getFirstRow());
+    assertEquals(row, events.get(0).getLastRow());
+  }
+
+  @Test
+  public void testCellsComputedOnDemand() {
+    for (int i = 0; i < 300; i++) {
+      TestHelpers.getFile("file" + i + ".tst", true);
+    }
+    final int[] computed = new int[15];
+    TracksTableModel model = new TracksTableModel("view") {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected Object computeValue(Item item, int columnIndex) {
+        computed[columnIndex]++;
+        return super.computeValue(item, columnIndex);
+      }
+    };
+    model.populateModel(Arrays.asList(Const.XML_NAME, Const.XML_FILES));
+    // Like a sort on the name column: each of its cells is computed only once
+    for (int i = 0; i < 2; i++) {
+      for (int row = 0; row < model.getRowCount(); row++) {
+        assertNotNull(model.getValueAt(row, 1));
+      }
+    }
+    assertEquals(300, computed[1]);
+    // No other cell has been computed
+    for (int column = 0; column < computed.length; column++) {
+      if (column != 1) {
+        assertEquals(0, computed[column]);
+      }
+    }
+    // Cached cells are not computed again
+    model.getValueAt(0, 14);
+    model.getValueAt(0, 14);
+    assertEquals(1, computed[14]);
+    // Refreshed rows are computed again
+    model.refreshItems(Collections.singletonList(model.getItemAt(0)));
+    model.getValueAt(0, 14);
+    model.getValueAt(1, 14);
+    assertEquals(3, computed[14]);
+    assertEquals(300, computed[1]);
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.ui.thumbnails;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.Album;
+import org.jajuk.util.Const;
+
+/**
+ * Test methods for {@link org.jajuk.ui.thumbnails.ThumbnailManager}.
+ */
+public class TestThumbnailManager extends JajukTestCase {
+  /**
+   * Create a cover image file.
+   *
+   * @param width 
+   * @param height 
+   * @return the cover file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private File getCover(int width, int height) throws IOException {
+    File cover = File.createTempFile("cover", ".png");
+    cover.deleteOnExit();
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", cover);
+    return cover;
+  }
+
+  /**
+   * Gets the album thumb file, creating the thumbs directory if required.
+   *
+   * @param album 
+   * @param size 
+   * @return the thumb file
+   */
+  private File getThumb(Album album, int size) {
+    File thumb = ThumbnailManager.getThumbBySize(album, size);
+    thumb.getParentFile().mkdirs();
+    return thumb;
+  }
+
+  public void testReadImageSubsampled() throws Exception {
+    BufferedImage image = ThumbnailManager.readImage(getCover(1600, 800), 100);
+    // Large images are decoded at least twice as large as the thumb
+    assertEquals(200, image.getWidth());
+    assertEquals(100, image.getHeight());
+    // Small ones are fully decoded
+    image = ThumbnailManager.readImage(getCover(150, 120), 100);
+    assertEquals(150, image.getWidth());
+  }
+
+  public void testReadImageInvalid() throws Exception {
+    File file = File.createTempFile("cover", ".png");
+    file.deleteOnExit();
+    try {
+      ThumbnailManager.readImage(file, 100);
+      fail("Should throw an exception");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testCreateThumbnail() throws Exception {
+    File thumb = getThumb(TestHelpers.getAlbum(), 100);
+    ThumbnailManager.createThumbnail(getCover(1000, 500), thumb, 100);
+    BufferedImage image = ImageIO.read(thumb);
+    assertEquals(100, image.getWidth());
+    assertEquals(50, image.getHeight());
+    // No temporary file is left
+    assertEquals(0, thumb.getParentFile().listFiles(new java.io.FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(".tmp");
+      }
+    }).length);
+  }
+
+  public void testRefreshThumbnail() throws Exception {
+    Album album = TestHelpers.getAlbum();
+    File thumb = getThumb(album, 150);
+    thumb.delete();
+    album.setAvailableThumb(150, false);
+    // No cover
+    assertFalse(ThumbnailManager.refreshThumbnail(album, 150));
+    album.setProperty(Const.XML_ALBUM_SELECTED_COVER, getCover(600, 600).getAbsolutePath());
+    assertTrue(ThumbnailManager.refreshThumbnail(album, 150));
+    assertTrue(album.isThumbAvailable(150));
+    assertTrue(thumb.exists());
+    // Already available
+    assertFalse(ThumbnailManager.refreshThumbnail(album, 150));
+  }
+
+  public void testRequestSharesPendingCreation() throws Exception {
+    Album album1 = TestHelpers.getAlbum("album1", 0);
+    Album album2 = TestHelpers.getAlbum("album2", 0);
+    for (Album album : new Album[] { album1, album2 }) {
+      getThumb(album, 200).delete();
+      album.setAvailableThumb(200, false);
+      album.setProperty(Const.XML_ALBUM_SELECTED_COVER, getCover(2000, 2000).getAbsolutePath());
+    }
+    ThumbnailService service = ThumbnailService.getInstance();
+    Future<Boolean> first = service.request(album1, 200, false);
+    Future<Boolean> second = service.request(album1, 200, true);
+    Future<Boolean> other = service.request(album2, 200, true);
+    // The second request is either served by the pending creation or finds
+    // the thumb done
+    assertTrue(second == first || first.isDone());
+    assertTrue(service.waitFor(first));
+    assertTrue(service.waitFor(other));
+    assertTrue(album1.isThumbAvailable(200));
+    assertTrue(album2.isThumbAvailable(200));
+  }
+
+  public void testPopulateCache() throws Exception {
+    Album album = TestHelpers.getAlbum();
+    File thumb = getThumb(album, 250);
+    ThumbnailManager.createThumbnail(getCover(300, 300), thumb, 250);
+    album.setAvailableThumb(250, false);
+    ThumbnailManager.populateCache(250);
+    assertTrue(album.isThumbAvailable(250));
+    // Empty thumbs are not available
+    FileUtils.writeByteArrayToFile(thumb, new byte[0]);
+    ThumbnailManager.populateCache(250);
+    assertFalse(album.isThumbAvailable(250));
+    thumb.delete();
+    // Lock files left by previous versions are deleted
+    File lock = new File(thumb.getAbsolutePath() + ".lock");
+    assertTrue(lock.createNewFile());
+    ThumbnailManager.populateCache(250);
+    assertFalse(album.isThumbAvailable(250));
+    assertFalse(lock.exists());
+  }
+}
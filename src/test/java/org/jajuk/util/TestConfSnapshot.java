@@ -0,0 +1,131 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *
+ */
+package org.jajuk.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+
+import org.jajuk.JajukTestCase;
+
+/**
+ * Test methods for {@link org.jajuk.util.ConfSnapshot} and the Conf typed
+ * getters.
+ */
+public class TestConfSnapshot extends JajukTestCase {
+  // settings for the micro-benchmark
+  private static final int LOOKUPS_PER_TEST = 5000000;
+  private static final int NUMBER_OF_TESTS = 5;
+
+  public void testTypedGetters() {
+    Conf.setProperty(Const.CONF_FADE_DURATION, "4");
+    Conf.setProperty(Const.CONF_OPTIONS_HIDE_UNMOUNTED, "true");
+    Conf.setProperty(Const.CONF_REGEXP, "false");
+    assertEquals(4, Conf.getInt(Const.CONF_FADE_DURATION));
+    assertEquals(4f, Conf.getFloat(Const.CONF_FADE_DURATION));
+    assertEquals(4, Conf.getSnapshot().getFadeDuration());
+    assertTrue(Conf.getBoolean(Const.CONF_OPTIONS_HIDE_UNMOUNTED));
+    assertTrue(Conf.getSnapshot().isHideUnmounted());
+    assertFalse(Conf.getSnapshot().isRegexp());
+    // a previous snapshot never changes
+    ConfSnapshot previous = Conf.getSnapshot();
+    Conf.invert(Const.CONF_OPTIONS_HIDE_UNMOUNTED);
+    assertTrue(previous.isHideUnmounted());
+    assertFalse(Conf.getSnapshot().isHideUnmounted());
+    HashMap<String, String> values = new HashMap<String, String>();
+    values.put(Const.CONF_FADE_DURATION, "8");
+    Conf.setProperties(values);
+    assertEquals(8, Conf.getSnapshot().getFadeDuration());
+    Conf.restoreValue(Const.CONF_FADE_DURATION);
+    assertEquals(Conf.getDefaultProperty(Const.CONF_FADE_DURATION),
+        Integer.toString(Conf.getInt(Const.CONF_FADE_DURATION)));
+  }
+
+  public void testUnparsableValue() {
+    // the default value is used
+    Conf.setProperty(Const.CONF_FADE_DURATION, "foo");
+    assertEquals(Integer.parseInt(Conf.getDefaultProperty(Const.CONF_FADE_DURATION)),
+        Conf.getInt(Const.CONF_FADE_DURATION));
+    Conf.restoreValue(Const.CONF_FADE_DURATION);
+    try {
+      Conf.getInt("unknown property");
+      fail("Should not parse an unknown property");
+    } catch (NumberFormatException e) {
+      // expected
+    }
+    assertFalse(Conf.getBoolean("unknown property"));
+  }
+
+  public void testListener() {
+    final List<ConfSnapshot> changes = new ArrayList<ConfSnapshot>();
+    ConfListener listener = new ConfListener() {
+      @Override
+      public void confChanged(ConfSnapshot previous, ConfSnapshot current) {
+        changes.add(current);
+      }
+    };
+    Conf.addListener(listener);
+    try {
+      Conf.setProperty(Const.CONF_REGEXP, "true");
+      Conf.setProperty(Const.CONF_REGEXP, "true");
+      assertEquals(1, changes.size());
+      assertTrue(changes.get(0).isRegexp());
+      Conf.removeProperty(Const.CONF_REGEXP);
+      assertEquals(2, changes.size());
+      assertFalse(changes.get(1).isRegexp());
+    } finally {
+      Conf.removeListener(listener);
+      Conf.restoreValue(Const.CONF_REGEXP);
+    }
+    assertEquals(2, changes.size());
+  }
+
+  public void testLookupBenchmark() {
+    // Lookup the way it was done before : synchronized Properties and parse
+    Properties properties = Conf.getProperties();
+    long overallBefore = 0;
+    long overallAfter = 0;
+    long sum = 0;
+    for (int i = 0; i < NUMBER_OF_TESTS; i++) {
+      long start = System.currentTimeMillis();
+      for (int j = 0; j < LOOKUPS_PER_TEST; j++) {
+        sum += Integer.parseInt(properties.getProperty(Const.CONF_FADE_DURATION));
+        if (Boolean.parseBoolean(properties.getProperty(Const.CONF_OPTIONS_HIDE_UNMOUNTED))) {
+          sum++;
+        }
+      }
+      overallBefore += System.currentTimeMillis() - start;
+      start = System.currentTimeMillis();
+      for (int j = 0; j < LOOKUPS_PER_TEST; j++) {
+        ConfSnapshot snapshot = Conf.getSnapshot();
+        sum += snapshot.getFadeDuration();
+        if (snapshot.isHideUnmounted()) {
+          sum++;
+        }
+      }
+      overallAfter += System.currentTimeMillis() - start;
+    }
+    System.out.println("Average properties lookup duration: " + (overallBefore / NUMBER_OF_TESTS)
+        + "ms, snapshot lookup duration: " + (overallAfter / NUMBER_OF_TESTS) + "ms (" + sum
+        + ")");
+  }
+}
@@ -24,7 +24,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jajuk.JajukTestCase;
+import org.jajuk.TestHelpers;
+import org.jajuk.base.Genre;
+import org.jajuk.base.GenreManager;
 import org.jajuk.base.Item;
+import org.jajuk.base.Track;
 
 /**
  * .
@@ -84,4 +88,57 @@ public class TestFilter extends JajukTestCase {
     list = Filter.filterItems(list, filter, Item.class);
     // TODO: more sophisticated testing is missing here
   }
+
+  /**
+   * Test words matching, ignoring case and order.
+   */
+  public final void testFilterItemsWords() {
+    List<Genre> list = new ArrayList<Genre>();
+    list.add(GenreManager.getInstance().registerGenre("Rock And Roll"));
+    list.add(GenreManager.getInstance().registerGenre("Hard Rock"));
+    list.add(GenreManager.getInstance().registerGenre("Jazz"));
+    List<Genre> out = Filter.filterItems(list, new Filter("any", "rock", true, false), Genre.class);
+    assertEquals(2, out.size());
+    out = Filter.filterItems(list, new Filter("any", "roll ROCK", true, false), Genre.class);
+    assertEquals(1, out.size());
+    assertEquals("Rock And Roll", out.get(0).getName());
+    // Exact mode matches the expression against each property
+    out = Filter.filterItems(list, new Filter("any", "Hard.*", true, true), Genre.class);
+    assertEquals(1, out.size());
+    assertEquals("Hard Rock", out.get(0).getName());
+  }
+
+  /**
+   * Test that search keys follow the collection changes.
+   */
+  public final void testFilterItemsAfterChange() {
+    List<Track> list = new ArrayList<Track>();
+    list.add(TestHelpers.getTrack(1));
+    list.add(TestHelpers.getTrack(2));
+    Filter filter = new Filter("any", "great comment", true, false);
+    assertEquals(0, Filter.filterItems(list, filter, Track.class).size());
+    list.get(1).setProperty(Const.XML_TRACK_COMMENT, "A Great Comment");
+    List<Track> out = Filter.filterItems(list, filter, Track.class);
+    assertEquals(1, out.size());
+    assertEquals(list.get(1), out.get(0));
+  }
+
+  /**
+   * Test filtering of a large list, done in parallel.
+   */
+  public final void testFilterItemsLargeList() {
+    List<Genre> list = new ArrayList<Genre>();
+    for (int i = 0; i < 30000; i++) {
+      list.add(GenreManager.getInstance().registerGenre("genre " + i));
+    }
+    List<Genre> out = Filter.filterItems(list, new Filter("any", "7", true, false), Genre.class);
+    List<Genre> expected = new ArrayList<Genre>();
+    for (Genre genre : list) {
+      if (genre.getName().indexOf('7') != -1) {
+        expected.add(genre);
+      }
+    }
+    // Same items, same order
+    assertEquals(expected, out);
+  }
 }
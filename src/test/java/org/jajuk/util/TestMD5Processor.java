@@ -0,0 +1,130 @@
+/*
+ *  Jajuk
+ *  Copyright (C) The Jajuk Team
+ *  http://jajuk.info
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ *  
+ */
+package org.jajuk.util;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.jajuk.JajukTestCase;
+import org.jajuk.ThreadTestHelper;
+
+public class TestMD5Processor extends JajukTestCase {
+  // settings for the micro-benchmark
+  private static final int HASHES_PER_TEST = 300000;
+  private static final int NUMBER_OF_HASH_TESTS = 5;
+  private static final int NUMBER_OF_THREADS = 10;
+  private static final int NUMBER_OF_TESTS = 1000;
+  private static final Random random = new Random();
+
+  /**
+   * Hash the way it was done before, IDs stored in the collection depend on
+   * it.
+   */
+  private static String referenceHash(String sIn) throws Exception {
+    MessageDigest md = MessageDigest.getInstance("MD5");
+    return new BigInteger(md.digest(sIn.getBytes("UTF-8"))).abs().toString(36);
+  }
+
+  /**
+   * Test method for {@link org.jajuk.util.MD5Processor#hash(java.lang.String)}.
+   */
+  public void testHashSameAsBefore() throws Exception {
+    assertEquals(referenceHash(""), MD5Processor.hash(""));
+    assertEquals(referenceHash("myalbum0"), MD5Processor.hash("myalbum0"));
+    assertEquals(referenceHash("été"), MD5Processor.hash("été"));
+    for (int i = 0; i < 10000; i++) {
+      String sIn = Long.toString(random.nextLong()) + i;
+      assertEquals(sIn, referenceHash(sIn), MD5Processor.hash(sIn));
+    }
+  }
+
+  /**
+   * Test method for {@link org.jajuk.util.MD5Processor#toBase36(byte[])}.
+   */
+  public void testToBase36Bounds() {
+    byte[] digest = new byte[16];
+    assertEquals("0", MD5Processor.toBase36(digest));
+    digest[15] = 1;
+    assertEquals("1", MD5Processor.toBase36(digest));
+    // -1
+    java.util.Arrays.fill(digest, (byte) 0xff);
+    assertEquals("1", MD5Processor.toBase36(digest));
+    // -2^127, its absolute value doesn't fit into a signed 128 bits number
+    java.util.Arrays.fill(digest, (byte) 0);
+    digest[0] = (byte) 0x80;
+    assertEquals(new BigInteger(digest).abs().toString(36), MD5Processor.toBase36(digest));
+    // 2^127 - 1
+    java.util.Arrays.fill(digest, (byte) 0xff);
+    digest[0] = 0x7f;
+    assertEquals(new BigInteger(digest).toString(36), MD5Processor.toBase36(digest));
+  }
+
+  /**
+   * Hashes are pooled, digests are not.
+   */
+  public void testHashIsPooled() {
+    String sIn = "pooled" + random.nextLong();
+    String hash = MD5Processor.hash(sIn);
+    assertSame(hash, MD5Processor.hash(new String(sIn)));
+    assertSame(hash, IDPool.canonical(new String(hash)));
+    String digest = MD5Processor.digest(sIn);
+    assertEquals(hash, digest);
+    assertNotSame(hash, digest);
+  }
+
+  public void testMultipleThreads() throws Exception {
+    ThreadTestHelper helper = new ThreadTestHelper(NUMBER_OF_THREADS, NUMBER_OF_TESTS);
+    helper.executeTest(new ThreadTestHelper.TestRunnable() {
+      @Override
+      public void doEnd(int threadnum) throws Exception {
+        // do stuff at the end ...
+      }
+
+      @Override
+      public void run(int threadnum, int iter) throws Exception {
+        String sIn = threadnum + "/" + iter;
+        assertEquals(referenceHash(sIn), MD5Processor.hash(sIn));
+      }
+    });
+  }
+
+  public void testHashBenchmark() {
+    long overall = 0;
+    for (int i = 0; i < NUMBER_OF_HASH_TESTS; i++) {
+      long dur = runMicroBenchmark();
+      System.out.println("Test run took " + dur + "ms");
+      overall += dur;
+    }
+    System.out.println("Average test duration: " + (overall / NUMBER_OF_HASH_TESTS));
+  }
+
+  /**
+   * Hash IDs the way a refresh does, most of them already known.
+   */
+  private long runMicroBenchmark() {
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < HASHES_PER_TEST; i++) {
+      MD5Processor.hash("mydevice/mydirectory/" + (i % 10000) + " - my track.mp3");
+    }
+    return System.currentTimeMillis() - start;
+  }
+}